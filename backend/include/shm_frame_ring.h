@@ -0,0 +1,59 @@
+#ifndef SHM_FRAME_RING_H
+#define SHM_FRAME_RING_H
+
+#include <opencv2/opencv.hpp>
+#include <cstddef>
+#include <cstdint>
+#include <string>
+
+namespace dough_vision {
+
+// Pixel formats; values match RawFrames.PixelFormat on the Java side
+enum class RingPixelFormat : int32_t {
+    RGB24 = 0,
+    BGR24 = 1,
+    RGBX32 = 2,
+    BGRX32 = 3,
+    GRAY8 = 4
+};
+
+// Single-producer/single-consumer frame ring in a shared memory file
+// (normally under /dev/shm), read by the Java ShmFrameSource without copying.
+// The layout is documented in ShmFrameRing.java and must stay in sync with it.
+class ShmFrameRing {
+public:
+    ShmFrameRing();
+    ~ShmFrameRing();
+
+    // Create (or replace) the ring file and map it. An existing ring is marked
+    // replaced and swapped out by rename, never truncated under its consumers.
+    bool create(const std::string& path, int slot_count, int width, int height,
+                RingPixelFormat format);
+
+    // Copy a frame into the next free slot and publish it.
+    // Returns false if the consumer is a full ring behind (the frame is dropped).
+    bool write(const cv::Mat& frame, int64_t timestamp_ns);
+
+    // Mark the stream finished and unmap
+    void close();
+
+    bool isOpen() const;
+    uint64_t droppedFrames() const;
+
+private:
+    uint8_t* slot(uint64_t sequence) const;
+
+    uint8_t* base_;
+    size_t size_;
+    int slot_count_;
+    int width_;
+    int height_;
+    int stride_;
+    int bytes_per_pixel_;
+    size_t slot_size_;
+    uint64_t write_sequence_;
+};
+
+} // namespace dough_vision
+
+#endif // SHM_FRAME_RING_H
@@ -1,8 +1,10 @@
+#include <chrono>
 #include <iostream>
 #include <opencv2/opencv.hpp>
 #include "vision_processor.h"
 #include "camera_interface.h"
 #include "config_manager.h"
+#include "shm_frame_ring.h"
 
 using namespace dough_vision;
 
@@ -11,8 +13,22 @@ int main(int argc, char** argv) {
     
     // Load configuration
     std::string config_path = "../config/default_config.json";
-    if (argc > 1) {
-        config_path = argv[1];
+    // Optional: --shm-ring <path> publishes captured frames to the Java engine
+    std::string ring_path;
+    for (int i = 1; i < argc; i++) {
+        std::string arg = argv[i];
+        if (arg == "--shm-ring") {
+            if (i + 1 >= argc) {
+                std::cerr << "Error: --shm-ring needs a path" << std::endl;
+                return -1;
+            }
+            ring_path = argv[++i];
+        } else if (arg.rfind("--", 0) == 0) {
+            std::cerr << "Error: unknown option " << arg << std::endl;
+            return -1;
+        } else {
+            config_path = arg;
+        }
     }
     
     // Initialize camera
@@ -29,6 +45,9 @@ int main(int argc, char** argv) {
         return -1;
     }
     
+    ShmFrameRing ring;
+    const int ring_slots = 8;
+    
     std::cout << "System initialized. Press 'q' to quit, 's' to save config" << std::endl;
     
     cv::Mat frame;
@@ -39,6 +58,18 @@ int main(int argc, char** argv) {
             break;
         }
         
+        // Hand the raw frame to the Java engine (created on the first frame, when the size is known)
+        if (!ring_path.empty() && frame.type() == CV_8UC3) {
+            if (!ring.isOpen() &&
+                !ring.create(ring_path, ring_slots, frame.cols, frame.rows, RingPixelFormat::BGR24)) {
+                ring_path.clear();
+            } else {
+                int64_t now_ns = std::chrono::duration_cast<std::chrono::nanoseconds>(
+                    std::chrono::steady_clock::now().time_since_epoch()).count();
+                ring.write(frame, now_ns);
+            }
+        }
+        
         // Process frame
         DetectionResult result = processor.processFrame(frame);
         
@@ -68,6 +99,10 @@ int main(int argc, char** argv) {
         }
     }
     
+    if (ring.isOpen()) {
+        std::cout << "Frame ring: " << ring.droppedFrames() << " frames dropped" << std::endl;
+        ring.close();
+    }
     camera.release();
     cv::destroyAllWindows();
     
@@ -0,0 +1,244 @@
+#include "shm_frame_ring.h"
+#include <atomic>
+#include <cstdio>
+#include <cstring>
+#include <fcntl.h>
+#include <iostream>
+#include <sys/mman.h>
+#include <unistd.h>
+
+namespace dough_vision {
+
+namespace {
+
+const int32_t kMagic = 0x44565247;  // "DVRG"
+const int32_t kVersion = 1;
+const size_t kHeaderSize = 4096;
+const size_t kSlotHeaderSize = 64;
+
+// Header offsets
+const size_t kOffMagic = 0;
+const size_t kOffVersion = 4;
+const size_t kOffSlotCount = 8;
+const size_t kOffWidth = 12;
+const size_t kOffHeight = 16;
+const size_t kOffStride = 20;
+const size_t kOffFormat = 24;
+const size_t kOffSlotSize = 32;
+const size_t kOffDataOffset = 40;
+const size_t kOffWriteSequence = 64;
+const size_t kOffReadSequence = 128;
+const size_t kOffDropped = 192;
+const size_t kOffClosed = 256;
+
+// Slot header offsets and states
+const size_t kSlotSequence = 0;
+const size_t kSlotTimestamp = 8;
+const size_t kSlotState = 16;
+const size_t kSlotLength = 20;
+
+const int32_t kProducerRunning = 0;
+const int32_t kProducerClosed = 1;
+const int32_t kProducerReplaced = 2;
+
+const int32_t kStateWriting = 1;
+const int32_t kStateReady = 2;
+
+static_assert(sizeof(std::atomic<uint64_t>) == sizeof(uint64_t) && std::atomic<uint64_t>::is_always_lock_free,
+              "shared counters need lock-free 64-bit atomics");
+static_assert(sizeof(std::atomic<int32_t>) == sizeof(int32_t) && std::atomic<int32_t>::is_always_lock_free,
+              "shared flags need lock-free 32-bit atomics");
+
+std::atomic<uint64_t>* atomic64(uint8_t* base, size_t offset) {
+    return reinterpret_cast<std::atomic<uint64_t>*>(base + offset);
+}
+
+std::atomic<int32_t>* atomic32(uint8_t* base, size_t offset) {
+    return reinterpret_cast<std::atomic<int32_t>*>(base + offset);
+}
+
+void putInt32(uint8_t* base, size_t offset, int32_t value) {
+    std::memcpy(base + offset, &value, sizeof(value));
+}
+
+void putUint64(uint8_t* base, size_t offset, uint64_t value) {
+    std::memcpy(base + offset, &value, sizeof(value));
+}
+
+int bytesPerPixel(RingPixelFormat format) {
+    switch (format) {
+        case RingPixelFormat::RGB24:
+        case RingPixelFormat::BGR24:
+            return 3;
+        case RingPixelFormat::RGBX32:
+        case RingPixelFormat::BGRX32:
+            return 4;
+        case RingPixelFormat::GRAY8:
+            return 1;
+    }
+    return 0;
+}
+
+// Tell consumers of an existing ring at this path that a new producer is taking over.
+// Only the header page is mapped and the file keeps its size: truncating a ring that
+// a consumer has mapped would make its next access fault (SIGBUS).
+void markReplaced(const std::string& path) {
+    int fd = ::open(path.c_str(), O_RDWR);
+    if (fd < 0) {
+        return;
+    }
+    off_t size = lseek(fd, 0, SEEK_END);
+    if (size >= static_cast<off_t>(kHeaderSize)) {
+        void* header = mmap(nullptr, kHeaderSize, PROT_READ | PROT_WRITE, MAP_SHARED, fd, 0);
+        if (header != MAP_FAILED) {
+            uint8_t* base = static_cast<uint8_t*>(header);
+            if (atomic32(base, kOffMagic)->load(std::memory_order_acquire) == kMagic) {
+                atomic32(base, kOffClosed)->store(kProducerReplaced, std::memory_order_release);
+            }
+            munmap(header, kHeaderSize);
+        }
+    }
+    ::close(fd);
+}
+
+} // namespace
+
+ShmFrameRing::ShmFrameRing()
+    : base_(nullptr), size_(0), slot_count_(0), width_(0), height_(0),
+      stride_(0), bytes_per_pixel_(0), slot_size_(0), write_sequence_(0) {}
+
+ShmFrameRing::~ShmFrameRing() {
+    close();
+}
+
+bool ShmFrameRing::create(const std::string& path, int slot_count, int width, int height,
+                          RingPixelFormat format) {
+    close();
+    if (slot_count < 2 || width < 1 || height < 1) {
+        std::cerr << "Error: Invalid frame ring geometry" << std::endl;
+        return false;
+    }
+
+    bytes_per_pixel_ = bytesPerPixel(format);
+    stride_ = width * bytes_per_pixel_;
+    slot_size_ = (kSlotHeaderSize + static_cast<size_t>(stride_) * height + 4095) & ~static_cast<size_t>(4095);
+    size_ = kHeaderSize + slot_size_ * slot_count;
+    if (size_ > 0x7FFFFFFF) {
+        std::cerr << "Error: Frame ring exceeds 2 GB" << std::endl;
+        return false;
+    }
+
+    // Built in a private temporary file and renamed over the path, so an existing
+    // ring is never truncated under a consumer that still has it mapped
+    const std::string temp_path = path + ".new";
+    int fd = ::open(temp_path.c_str(), O_RDWR | O_CREAT | O_TRUNC, 0644);
+    if (fd < 0) {
+        std::cerr << "Error: Could not create frame ring " << temp_path << std::endl;
+        return false;
+    }
+    if (ftruncate(fd, static_cast<off_t>(size_)) != 0) {
+        std::cerr << "Error: Could not size frame ring " << temp_path << std::endl;
+        ::close(fd);
+        return false;
+    }
+    void* mapped = mmap(nullptr, size_, PROT_READ | PROT_WRITE, MAP_SHARED, fd, 0);
+    ::close(fd);
+    if (mapped == MAP_FAILED) {
+        std::cerr << "Error: Could not map frame ring " << path << std::endl;
+        return false;
+    }
+
+    base_ = static_cast<uint8_t*>(mapped);
+    slot_count_ = slot_count;
+    width_ = width;
+    height_ = height;
+    write_sequence_ = 0;
+
+    putInt32(base_, kOffVersion, kVersion);
+    putInt32(base_, kOffSlotCount, slot_count);
+    putInt32(base_, kOffWidth, width);
+    putInt32(base_, kOffHeight, height);
+    putInt32(base_, kOffStride, stride_);
+    putInt32(base_, kOffFormat, static_cast<int32_t>(format));
+    putUint64(base_, kOffSlotSize, slot_size_);
+    putUint64(base_, kOffDataOffset, kHeaderSize);
+    // Magic last: a consumer that sees it also sees the geometry
+    atomic32(base_, kOffMagic)->store(kMagic, std::memory_order_release);
+
+    markReplaced(path);
+    if (std::rename(temp_path.c_str(), path.c_str()) != 0) {
+        std::cerr << "Error: Could not move frame ring into place at " << path << std::endl;
+        munmap(base_, size_);
+        base_ = nullptr;
+        return false;
+    }
+
+    std::cout << "Frame ring created: " << path << " (" << slot_count << " x "
+              << width << "x" << height << ")" << std::endl;
+    return true;
+}
+
+bool ShmFrameRing::write(const cv::Mat& frame, int64_t timestamp_ns) {
+    if (base_ == nullptr) {
+        return false;
+    }
+    if (frame.cols != width_ || frame.rows != height_ ||
+        frame.elemSize() != static_cast<size_t>(bytes_per_pixel_) || frame.depth() != CV_8U) {
+        std::cerr << "Error: Frame does not match ring geometry" << std::endl;
+        return false;
+    }
+
+    uint64_t read_sequence = atomic64(base_, kOffReadSequence)->load(std::memory_order_acquire);
+    if (write_sequence_ - read_sequence >= static_cast<uint64_t>(slot_count_)) {
+        // Consumer is behind; drop rather than stall capture
+        std::atomic<uint64_t>* dropped = atomic64(base_, kOffDropped);
+        dropped->store(dropped->load(std::memory_order_relaxed) + 1, std::memory_order_release);
+        return false;
+    }
+
+    uint8_t* s = slot(write_sequence_);
+    atomic32(s, kSlotState)->store(kStateWriting, std::memory_order_relaxed);
+
+    uint8_t* pixels = s + kSlotHeaderSize;
+    if (frame.isContinuous()) {
+        std::memcpy(pixels, frame.data, static_cast<size_t>(stride_) * height_);
+    } else {
+        for (int y = 0; y < height_; y++) {
+            std::memcpy(pixels + static_cast<size_t>(y) * stride_, frame.ptr(y), stride_);
+        }
+    }
+
+    putUint64(s, kSlotSequence, write_sequence_);
+    putUint64(s, kSlotTimestamp, static_cast<uint64_t>(timestamp_ns));
+    putInt32(s, kSlotLength, stride_ * height_);
+    atomic32(s, kSlotState)->store(kStateReady, std::memory_order_relaxed);
+
+    // Release: pixels and slot header are visible before the new sequence
+    atomic64(base_, kOffWriteSequence)->store(++write_sequence_, std::memory_order_release);
+    return true;
+}
+
+void ShmFrameRing::close() {
+    if (base_ != nullptr) {
+        // Keep a replaced mark from a restarted producer, so consumers follow the new ring
+        int32_t running = kProducerRunning;
+        atomic32(base_, kOffClosed)->compare_exchange_strong(running, kProducerClosed, std::memory_order_release,
+                                                             std::memory_order_relaxed);
+        munmap(base_, size_);
+        base_ = nullptr;
+    }
+}
+
+bool ShmFrameRing::isOpen() const {
+    return base_ != nullptr;
+}
+
+uint64_t ShmFrameRing::droppedFrames() const {
+    return base_ == nullptr ? 0 : atomic64(base_, kOffDropped)->load(std::memory_order_acquire);
+}
+
+uint8_t* ShmFrameRing::slot(uint64_t sequence) const {
+    return base_ + kHeaderSize + (sequence % slot_count_) * slot_size_;
+}
+
+} // namespace dough_vision
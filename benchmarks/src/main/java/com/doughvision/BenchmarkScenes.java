@@ -0,0 +1,81 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Synthetic dough belts and rule sets for the benchmarks.
+ *
+ * Belts come from SceneGenerator with the same number of pieces at every
+ * resolution, so the fraction of dough pixels stays the same as the size
+ * grows. Scenes are seeded: the same size always gives the same pixels.
+ */
+final class BenchmarkScenes {
+    
+    static final long SEED = 42;
+    
+    private static final int PIECES = 40;
+    
+    private BenchmarkScenes() {
+    }
+    
+    /**
+     * Width and height (4:3) for a size in megapixels, e.g. 0.3 -> 640x480, 12 -> 4000x3000
+     */
+    static int[] size(double megapixels) {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1e6 * 4 / 3) / 16) * 16;
+        return new int[]{width, width * 3 / 4};
+    }
+    
+    static BufferedImage belt(double megapixels) {
+        int[] size = size(megapixels);
+        return belt(size[0], size[1], SEED);
+    }
+    
+    static BufferedImage belt(int width, int height, long seed) {
+        SceneGenerator.Options options = new SceneGenerator.Options().size(width, height).pieces(PIECES);
+        return new SceneGenerator(options, seed).generate(0).getImage();
+    }
+    
+    /**
+     * A rule set with the given number of labels: "dough" detects the generated pieces, "belt"
+     * (from 2 labels on) is ignored, and the rest are narrow rules that match nothing
+     */
+    static Map<String, ConfigurationManager.LabelRule> rules(int labels) {
+        Map<String, ConfigurationManager.LabelRule> rules = new HashMap<>();
+        rules.put("dough", new ConfigurationManager.LabelRule("dough", 10, 60, 150, 25, 160, 255));
+        if (labels > 1) {
+            rules.put("belt", new ConfigurationManager.LabelRule("belt", 0, 0, 0, 179, 50, 110));
+        }
+        for (int i = 2; i < labels; i++) {
+            int hue = 40 + i;
+            rules.put("unused" + i, new ConfigurationManager.LabelRule("unused" + i, hue, 240, 240, hue, 255, 255));
+        }
+        return rules;
+    }
+    
+    /**
+     * A manager that inspects with the given rules and default settings; it neither reads the
+     * learned rules and session in the working directory nor writes them
+     */
+    static ConfigurationManager configManager(int labels) {
+        ConfigurationManager configManager = ConfigurationManager.withDefaults();
+        configManager.setFastMode(false);
+        configManager.useRules(rules(labels), Collections.singleton("belt"));
+        return configManager;
+    }
+    
+    /**
+     * Inspect an image step by step, keeping the masks, boxes and pieces the later stages work on
+     */
+    static ConfigurationManager.InspectionState inspect(ConfigurationManager configManager, BufferedImage image) {
+        ConfigurationManager.InspectionState state = configManager.beginInspection();
+        configManager.classify(state, image);
+        configManager.cleanMasks(state);
+        configManager.label(state);
+        configManager.measure(state);
+        return state;
+    }
+}
@@ -0,0 +1,55 @@
+package com.doughvision;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RGB to packed HSV for every pixel of an image, as classify() does before the rule lookup
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ColorConversionBenchmark {
+    
+    @Param({"0.3", "2", "5", "12"})
+    public double megapixels;
+    
+    private BufferedImage image;
+    private int[] row;
+    
+    @Setup
+    public void setup() {
+        image = BenchmarkScenes.belt(megapixels);
+        row = new int[image.getWidth()];
+    }
+    
+    /**
+     * Row reads included, the way classify() sees the image
+     */
+    @Benchmark
+    public long rgbToHsv() {
+        long sum = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            ConfigurationManager.readRGBRow(image, y, row);
+            for (int rgb : row) {
+                sum += ConfigurationManager.rgbToHsvPacked((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,61 @@
+package com.doughvision;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The steps after morphology on a cleaned mask: connected components,
+ * oriented boxes for every piece, and drawing the contours
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class MeasurementBenchmark {
+    
+    @Param({"0.3", "2", "5", "12"})
+    public double megapixels;
+    
+    private ConfigurationManager configManager;
+    private ConfigurationManager.InspectionState state;
+    
+    @Setup
+    public void setup() {
+        configManager = BenchmarkScenes.configManager(2);
+        state = BenchmarkScenes.inspect(configManager, BenchmarkScenes.belt(megapixels));
+    }
+    
+    @Benchmark
+    public List<Rectangle> labelComponents() {
+        return configManager.findBoundingBoxes(state.detectionMask);
+    }
+    
+    @Benchmark
+    public void orientedBoxes(Blackhole blackhole) {
+        for (Rectangle box : state.boxes) {
+            blackhole.consume(configManager.calculateOBB(state.detectionMask, box));
+        }
+    }
+    
+    @Benchmark
+    public BufferedImage drawContours() {
+        return configManager.drawContours(state.processed, state.detectionMask, state.pieces);
+    }
+}
@@ -0,0 +1,56 @@
+package com.doughvision;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One dilation or erosion of a detection mask with a square kernel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class MorphologyBenchmark {
+    
+    @Param({"0.3", "2", "5", "12"})
+    public double megapixels;
+    
+    @Param({"3", "5", "9", "15"})
+    public int kernel;
+    
+    private ConfigurationManager configManager;
+    private boolean[][] mask;
+    private boolean[][] result;
+    
+    @Setup
+    public void setup() {
+        configManager = BenchmarkScenes.configManager(2);
+        mask = BenchmarkScenes.inspect(configManager, BenchmarkScenes.belt(megapixels)).detectionMask;
+        result = new boolean[mask.length][mask[0].length];
+    }
+    
+    @Benchmark
+    public boolean[][] dilate() {
+        configManager.dilate(mask, kernel, result, null, 0);
+        return result;
+    }
+    
+    @Benchmark
+    public boolean[][] erode() {
+        configManager.erode(mask, kernel, result, null, 0);
+        return result;
+    }
+}
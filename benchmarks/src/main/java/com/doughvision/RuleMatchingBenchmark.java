@@ -0,0 +1,68 @@
+package com.doughvision;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiled rule lookup for every pixel of an already converted image
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RuleMatchingBenchmark {
+    
+    @Param({"0.3", "2", "5", "12"})
+    public double megapixels;
+    
+    @Param({"1", "8", "64"})
+    public int labels;
+    
+    private int[] hsv;
+    private CompiledClassifier classifier;
+    
+    @Setup
+    public void setup() {
+        BufferedImage image = BenchmarkScenes.belt(megapixels);
+        int width = image.getWidth();
+        int[] row = new int[width];
+        hsv = new int[width * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            ConfigurationManager.readRGBRow(image, y, row);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                hsv[y * width + x] = ConfigurationManager.rgbToHsvPacked((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            }
+        }
+        classifier = CompiledClassifier.compile(BenchmarkScenes.rules(labels), Collections.singleton("belt"));
+    }
+    
+    /**
+     * Pixels classified as detections
+     */
+    @Benchmark
+    public int classify() {
+        int detected = 0;
+        for (int value : hsv) {
+            if (classifier.classifyPacked(value) == CompiledClassifier.DETECT) {
+                detected++;
+            }
+        }
+        return detected;
+    }
+}
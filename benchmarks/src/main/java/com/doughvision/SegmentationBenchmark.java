@@ -0,0 +1,50 @@
+package com.doughvision;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end: inspect at full quality and render the overlay, as runSegmentation() does
+ * but without its console report
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SegmentationBenchmark {
+    
+    @Param({"0.3", "2", "5", "12"})
+    public double megapixels;
+    
+    @Param({"1", "8", "64"})
+    public int labels;
+    
+    private ConfigurationManager configManager;
+    private BufferedImage image;
+    
+    @Setup
+    public void setup() {
+        configManager = BenchmarkScenes.configManager(labels);
+        image = BenchmarkScenes.belt(megapixels);
+    }
+    
+    @Benchmark
+    public BufferedImage inspectAndRender() {
+        InspectionResult inspection = configManager.inspect(image);
+        return configManager.renderOverlay(image, inspection);
+    }
+}
@@ -0,0 +1,98 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Crash-safe file replacement.
+ *
+ * Content is written to a temporary file in the target's directory, forced to
+ * disk, and then renamed over the target in one step. A reader (or the next
+ * start after a power loss) sees either the old file or the new one, never a
+ * half-written mix.
+ */
+public class AtomicFiles {
+    
+    private AtomicFiles() {
+    }
+    
+    /**
+     * Produces the file content
+     */
+    public interface ContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+    
+    public static void write(File target, ContentWriter content) throws IOException {
+        replace(target, channel -> {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1);
+            content.write(writer);
+            writer.flush();
+        });
+    }
+    
+    public static void write(File target, byte[] content) throws IOException {
+        replace(target, channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+    
+    private interface ChannelWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+    
+    private static void replace(File target, ChannelWriter content) throws IOException {
+        File dir = target.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        
+        Path temp = Files.createTempFile(dir.toPath(), target.getName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                content.write(channel);
+                channel.force(true);
+            }
+            keepPermissions(target, temp);
+            
+            try {
+                Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Some file systems cannot rename atomically; still never truncate the target in place
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Temp files are created owner-only; give the replacement the old file's permissions (or rw-r--r--)
+     */
+    private static void keepPermissions(File target, Path temp) throws IOException {
+        try {
+            Set<PosixFilePermission> permissions = target.exists()
+                ? Files.getPosixFilePermissions(target.toPath())
+                : PosixFilePermissions.fromString("rw-r--r--");
+            Files.setPosixFilePermissions(temp, permissions);
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch inspection from the command line:
+ *
+ *   batch [--recipe NAME] [--threads N] [--fast] [--pipeline | --virtual] [--out DIR] [--log FILE] <file|folder|glob>...
+ *
+ * Uses the learned rules and session config from the working directory (as the
+ * GUI does), optionally overridden by a saved recipe for this run only. Prints
+ * one line per image and then images/s, p50/p99 latency (decode + inspect) and
+ * peak heap. With --log, every piece is appended to a binary DetectionLog
+ * (frame id = position in the sorted input list). With --pipeline, images go
+ * through an InspectionPipeline (decode, classify, morphology, label and
+ * measure overlapped on different images, --threads workers on the classify
+ * stage) and per-stage utilization is printed as well. With --virtual, each image is
+ * a JobExecutor job: read and written on its own virtual thread (JDK 21+, else
+ * a platform I/O pool) while decoding and inspection use --threads CPU threads;
+ * this mode is experimental and never the default. Only image and java.lang.management classes are used, so it runs
+ * on machines without a display.
+ */
+public class BatchRunner {
+    
+    private static final int JOBS_PER_THREAD = 16;  // Images started but not finished, per CPU thread, with --virtual
+    
+    private static final List<String> IMAGE_EXTENSIONS =
+        Arrays.asList("jpg", "jpeg", "png", "bmp", "ppm", "pgm", "raw");
+    
+    private final ConfigurationManager configManager;
+    private final int threads;
+    private final File outputDir;
+    private final DetectionLog detectionLog;
+    private boolean pipelined;
+    private boolean jobs;
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    
+    public BatchRunner(ConfigurationManager configManager, int threads, File outputDir, DetectionLog detectionLog) {
+        this.configManager = configManager;
+        this.threads = Math.max(1, threads);
+        this.outputDir = outputDir;
+        this.detectionLog = detectionLog;
+    }
+    
+    /**
+     * Summary of one batch run
+     */
+    public static class Report {
+        public int images;
+        public int failed;
+        public int pieces;
+        public int rejects;
+        public long wallNanos;
+        public long p50Nanos;
+        public long p99Nanos;
+        public long peakHeapBytes;
+        
+        public double imagesPerSecond() {
+            return wallNanos > 0 ? (images - failed) * 1e9 / wallNanos : 0;
+        }
+    }
+    
+    /**
+     * Run the stages of inspection concurrently (see InspectionPipeline) instead of one image per thread
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+    
+    /**
+     * Run one job per image on a JobExecutor (virtual threads for I/O where available); off by default
+     */
+    public void setVirtualThreads(boolean jobs) {
+        this.jobs = jobs;
+    }
+    
+    /**
+     * Inspect the files on the worker threads; each worker claims the next file from a shared cursor
+     */
+    public Report run(List<File> files) throws InterruptedException {
+        if (pipelined) {
+            return runPipelined(files);
+        }
+        if (jobs) {
+            return runJobs(files);
+        }
+        long[] latencies = new long[files.size()];
+        boolean[] failed = new boolean[files.size()];
+        int[] pieces = new int[files.size()];
+        int[] rejects = new int[files.size()];
+        AtomicInteger cursor = new AtomicInteger();
+        
+        resetPeakHeap();
+        long start = System.nanoTime();
+        int workers = Math.min(threads, Math.max(1, files.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        for (int w = 0; w < workers; w++) {
+            pool.execute(() -> {
+                try (ImageLoader loader = new ImageLoader()) {
+                    int i;
+                    while ((i = cursor.getAndIncrement()) < files.size()) {
+                        File file = files.get(i);
+                        InspectionEvents.Stage decodeEvent = InspectionEvents.beginStage(InspectionPipeline.StageName.DECODE);
+                        long t0 = System.nanoTime();
+                        try {
+                            BufferedImage image = loader.read(file);
+                            long t1 = System.nanoTime();
+                            configManager.endDecode(decodeEvent, t0, image);
+                            InspectionResult result = configManager.inspect(image);
+                            if (result == null) {
+                                throw new IOException("inspection failed");
+                            }
+                            latencies[i] = System.nanoTime() - t0;
+                            pieces[i] = result.getPieces().size();
+                            rejects[i] = result.getRejectCount();
+                            if (detectionLog != null) {
+                                detectionLog.append(System.currentTimeMillis(), i, 0, result);
+                            }
+                            printResult(file, image, result,
+                                String.format(Locale.ROOT, "decode=%.1fms", (t1 - t0) / 1e6));
+                            writeResult(file, image, result);
+                        } catch (Exception e) {
+                            latencies[i] = System.nanoTime() - t0;
+                            failed[i] = true;
+                            System.out.println(String.format("%-32s FAILED: %s", file.getName(), e.getMessage()));
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return summarize(System.nanoTime() - start, latencies, failed, pieces, rejects);
+    }
+    
+    /**
+     * One job per image on a JobExecutor: the file is read and the result written on the job's
+     * I/O thread (a virtual thread on JDK 21+), decoding and inspection run on --threads CPU threads
+     */
+    private Report runJobs(List<File> files) throws InterruptedException {
+        long[] latencies = new long[files.size()];
+        boolean[] failed = new boolean[files.size()];
+        int[] pieces = new int[files.size()];
+        int[] rejects = new int[files.size()];
+        ThreadLocal<ImageLoader> loaders = ThreadLocal.withInitial(ImageLoader::new);
+        Semaphore window = new Semaphore(threads * JOBS_PER_THREAD);  // Bounds encoded files held in memory
+        
+        resetPeakHeap();
+        long start = System.nanoTime();
+        JobExecutor executor = new JobExecutor("batch", threads, threads * JobExecutor.IO_THREADS_PER_CPU, true);
+        try {
+            for (int n = 0; n < files.size(); n++) {
+                int i = n;
+                File file = files.get(i);
+                window.acquire();
+                executor.execute(() -> {
+                    long t0 = System.nanoTime();
+                    try {
+                        // Raw frames are mapped, not read, so there is nothing to prefetch
+                        byte[] encoded = RawFrames.isRawFrameFile(file) ? null : Files.readAllBytes(file.toPath());
+                        long t1 = System.nanoTime();
+                        Object[] decoded = executor.onCpu(() -> {
+                            InspectionEvents.Stage decodeEvent =
+                                InspectionEvents.beginStage(InspectionPipeline.StageName.DECODE);
+                            long decodeStart = System.nanoTime();
+                            BufferedImage image = encoded != null
+                                ? loaders.get().read(encoded, file.getName()) : loaders.get().read(file);
+                            configManager.endDecode(decodeEvent, decodeStart, image);
+                            return new Object[]{image, configManager.inspect(image)};
+                        });
+                        BufferedImage image = (BufferedImage) decoded[0];
+                        InspectionResult result = (InspectionResult) decoded[1];
+                        if (result == null) {
+                            throw new IOException("inspection failed");
+                        }
+                        latencies[i] = System.nanoTime() - t0;
+                        pieces[i] = result.getPieces().size();
+                        rejects[i] = result.getRejectCount();
+                        if (detectionLog != null) {
+                            detectionLog.append(System.currentTimeMillis(), i, 0, result);
+                        }
+                        printResult(file, image, result, String.format(Locale.ROOT, "read=%.1fms", (t1 - t0) / 1e6));
+                        writeResult(file, image, result);
+                    } catch (Exception e) {
+                        latencies[i] = System.nanoTime() - t0;
+                        failed[i] = true;
+                        System.out.println(String.format("%-32s FAILED: %s", file.getName(), e.getMessage()));
+                    } finally {
+                        window.release();
+                    }
+                });
+            }
+        } finally {
+            executor.close();
+        }
+        System.out.println("Jobs ran on " + (executor.usesVirtualThreads() ? "virtual threads" : "a platform I/O pool")
+            + " with " + threads + " CPU threads");
+        return summarize(System.nanoTime() - start, latencies, failed, pieces, rejects);
+    }
+    
+    private static Report summarize(long wallNanos, long[] latencies, boolean[] failed, int[] pieces, int[] rejects) {
+        Report report = new Report();
+        report.wallNanos = wallNanos;
+        report.images = latencies.length;
+        List<Long> ok = new ArrayList<>();
+        for (int i = 0; i < latencies.length; i++) {
+            if (failed[i]) {
+                report.failed++;
+            } else {
+                ok.add(latencies[i]);
+                report.pieces += pieces[i];
+                report.rejects += rejects[i];
+            }
+        }
+        long[] sorted = ok.stream().mapToLong(Long::longValue).sorted().toArray();
+        report.p50Nanos = percentile(sorted, 0.50);
+        report.p99Nanos = percentile(sorted, 0.99);
+        report.peakHeapBytes = peakHeap();
+        return report;
+    }
+    
+    private Report runPipelined(List<File> files) throws InterruptedException {
+        Report report = new Report();
+        report.images = files.size();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        Map<File, Integer> index = new HashMap<>();  // Frame id for the log
+        for (int i = 0; i < files.size(); i++) {
+            index.put(files.get(i), i);
+        }
+        InspectionPipeline.Options options = new InspectionPipeline.Options()
+            .workers(InspectionPipeline.StageName.CLASSIFY, threads);
+        
+        resetPeakHeap();
+        long start = System.nanoTime();
+        InspectionPipeline pipeline = new InspectionPipeline(configManager, options, job -> {
+            File file = job.getFile();
+            InspectionResult result = job.getResult();
+            if (result == null) {
+                synchronized (report) {
+                    report.failed++;
+                }
+                String reason = job.getError() != null ? job.getError().getMessage() : "dropped";
+                System.out.println(String.format("%-32s FAILED: %s", file.getName(), reason));
+                return;
+            }
+            latencies.add(job.getLatencyNanos());
+            synchronized (report) {
+                report.pieces += result.getPieces().size();
+                report.rejects += result.getRejectCount();
+            }
+            printResult(file, job.getImage(), result,
+                String.format(Locale.ROOT, "latency=%.1fms", job.getLatencyNanos() / 1e6));
+            if (detectionLog != null) {
+                detectionLog.append(System.currentTimeMillis(), index.get(file), 0, result);
+            }
+            try {
+                writeResult(file, job.getImage(), result);
+            } catch (IOException e) {
+                System.err.println("Could not write result for " + file.getName() + ": " + e.getMessage());
+            }
+        });
+        try {
+            for (File file : files) {
+                pipeline.submit(file);
+            }
+            pipeline.drain();
+            report.wallNanos = System.nanoTime() - start;
+            pipeline.printStatus();
+        } finally {
+            pipeline.close();
+        }
+        
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        report.p50Nanos = percentile(sorted, 0.50);
+        report.p99Nanos = percentile(sorted, 0.99);
+        report.peakHeapBytes = peakHeap();
+        return report;
+    }
+    
+    private void printResult(File file, BufferedImage image, InspectionResult result, String timing) {
+        System.out.println(String.format(Locale.ROOT, "%-32s %5dx%-5d pieces=%-3d pass=%-3d reject=%-3d %s inspect=%.1fms",
+            file.getName(), image.getWidth(), image.getHeight(), result.getPieces().size(),
+            result.getPassCount(), result.getRejectCount(), timing, result.getElapsedNanos() / 1e6));
+    }
+    
+    private void writeResult(File file, BufferedImage image, InspectionResult result) throws IOException {
+        if (outputDir == null) {
+            return;
+        }
+        JsonObject json = WatchFolderService.toJson(file.getName(), image.getWidth(), image.getHeight(), result);
+        AtomicFiles.write(new File(outputDir, file.getName() + WatchFolderService.RESULT_SUFFIX),
+            gson.toJson(json).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Nearest-rank percentile of sorted values
+     */
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+    
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+    
+    /**
+     * Sum of the heap pools' peak usage since the last reset (an upper bound on the true peak)
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+    
+    /**
+     * Expand files, folders (their images) and glob patterns such as shift3/*.jpg or recordings/**.ppm
+     */
+    static List<File> expandInputs(List<String> inputs) throws IOException {
+        TreeSet<File> files = new TreeSet<>();
+        for (String input : inputs) {
+            if (input.matches(".*[*?\\[{].*")) {
+                // Glob: walk from the last directory before the first wildcard
+                int wildcard = input.replaceAll("[*?\\[{].*", "").length();
+                int slash = input.lastIndexOf('/', wildcard);
+                Path base = Paths.get(slash < 0 ? "." : input.substring(0, Math.max(1, slash)));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(slash + 1));
+                try (Stream<Path> walk = Files.walk(base)) {
+                    walk.filter(p -> Files.isRegularFile(p) && matcher.matches(base.relativize(p)))
+                        .forEach(p -> files.add(p.toFile()));
+                }
+            } else {
+                File file = new File(input);
+                if (file.isDirectory()) {
+                    File[] children = file.listFiles();
+                    if (children != null) {
+                        for (File child : children) {
+                            if (child.isFile() && isImage(child)) {
+                                files.add(child);
+                            }
+                        }
+                    }
+                } else if (file.isFile()) {
+                    files.add(file);
+                } else {
+                    throw new IOException("No such file: " + input);
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+    
+    /**
+     * Image files, except ground-truth masks and rendered overlays kept next to them
+     */
+    private static boolean isImage(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1)) &&
+            !name.endsWith(RuleEvaluator.MASK_SUFFIX) && !name.endsWith(WatchFolderService.OVERLAY_SUFFIX);
+    }
+    
+    /**
+     * Command line entry (args[0] is "batch")
+     */
+    static int run(String[] args) {
+        String recipeName = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean fast = false;
+        File outputDir = null;
+        File logFile = null;
+        boolean pipelined = false;
+        boolean virtual = false;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--recipe") && i + 1 < args.length) {
+                recipeName = args[++i];
+            } else if (arg.equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--fast")) {
+                fast = true;
+            } else if (arg.equals("--pipeline")) {
+                pipelined = true;
+            } else if (arg.equals("--virtual")) {
+                virtual = true;
+            } else if (arg.equals("--out") && i + 1 < args.length) {
+                outputDir = new File(args[++i]);
+            } else if (arg.equals("--log") && i + 1 < args.length) {
+                logFile = new File(args[++i]);
+            } else if (arg.startsWith("--")) {
+                System.err.println("Unknown option: " + arg);
+                return 2;
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: batch [--recipe NAME] [--threads N] [--fast] [--pipeline | --virtual] [--out DIR] [--log FILE] <file|folder|glob>...");
+            return 2;
+        }
+        
+        List<File> files;
+        try {
+            files = expandInputs(inputs);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 2;
+        }
+        if (files.isEmpty()) {
+            System.err.println("No images matched " + inputs);
+            return 2;
+        }
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Cannot create output folder: " + outputDir);
+            return 1;
+        }
+        
+        ConfigurationManager configManager = new ConfigurationManager();
+        // Settings applied below are for this run only
+        configManager.setSessionReadOnly(true);
+        if (recipeName != null) {
+            CompiledRecipe recipe;
+            try {
+                recipe = new RecipeCache().get(recipeName);
+            } catch (IOException e) {
+                System.err.println("Cannot load recipe '" + recipeName + "': " + e.getMessage());
+                return 1;
+            }
+            if (recipe == null) {
+                System.err.println("No recipe named '" + recipeName + "' in " + RecipeStore.FILE_NAME);
+                return 2;
+            }
+            configManager.activateRecipe(recipe);
+        }
+        configManager.setFastMode(fast);
+        configManager.getMetrics().register("batch");
+        if (!configManager.hasLearnedRules()) {
+            System.err.println("No learned rules found; teach the model first.");
+            return 1;
+        }
+        
+        DetectionLog detectionLog = null;
+        if (logFile != null) {
+            try {
+                detectionLog = DetectionLog.open(logFile);
+            } catch (IOException e) {
+                System.err.println("Cannot open detection log: " + e.getMessage());
+                return 1;
+            }
+        }
+        
+        try {
+            BatchRunner runner = new BatchRunner(configManager, threads, outputDir, detectionLog);
+            runner.setPipelined(pipelined);
+            runner.setVirtualThreads(virtual);
+            Report report = runner.run(files);
+            if (detectionLog != null) {
+                detectionLog.close();
+                System.out.println(String.format("Logged %d pieces to %s (%d dropped)",
+                    detectionLog.getWrittenCount(), logFile, detectionLog.getDroppedCount()));
+            }
+            System.out.println();
+            System.out.println(String.format(Locale.ROOT, "Images: %d (%d failed), pieces: %d (%d rejected)",
+                report.images, report.failed, report.pieces, report.rejects));
+            System.out.println(String.format(Locale.ROOT, "Throughput: %.2f images/s on %d threads (%.2f s wall)",
+                report.imagesPerSecond(), Math.min(threads, files.size()), report.wallNanos / 1e9));
+            System.out.println(String.format(Locale.ROOT, "Latency: p50 %.1f ms, p99 %.1f ms",
+                report.p50Nanos / 1e6, report.p99Nanos / 1e6));
+            System.out.println(String.format(Locale.ROOT, "Peak heap: %.1f MB", report.peakHeapBytes / (1024.0 * 1024.0)));
+            configManager.getMetrics().printStatus();
+            return report.failed == 0 ? 0 : 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            if (detectionLog != null) {
+                detectionLog.close();
+            }
+        }
+    }
+}
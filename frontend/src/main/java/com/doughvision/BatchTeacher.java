@@ -0,0 +1,179 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teaches the model from a folder of annotated images.
+ *
+ * Every image with a region sidecar (see {@link RegionFiles}) is decoded and
+ * sampled on a worker pool. Each worker claims images from a shared atomic
+ * cursor and accumulates statistics into its own per-label map, so workers
+ * never share mutable state; the per-worker maps are reduced once at the end
+ * and merged into the model as a single teach run.
+ */
+public class BatchTeacher {
+    
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList("jpg", "jpeg", "png", "bmp");
+    
+    private final ConfigurationManager configManager;
+    private final int threads;
+    
+    public BatchTeacher(ConfigurationManager configManager) {
+        this(configManager, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public BatchTeacher(ConfigurationManager configManager, int threads) {
+        this.configManager = configManager;
+        this.threads = Math.max(1, threads);
+    }
+    
+    /**
+     * Annotated images in a folder (images that have a region sidecar)
+     */
+    public static List<File> findAnnotatedImages(File folder) {
+        List<File> images = new ArrayList<>();
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return images;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            int dot = name.lastIndexOf('.');
+            if (file.isFile() && dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1)) &&
+                RegionFiles.sidecarFor(file).exists()) {
+                images.add(file);
+            }
+        }
+        return images;
+    }
+    
+    /**
+     * Teach from every annotated image in the folder and merge the result into the model
+     */
+    public Report teachFolder(File folder) throws Exception {
+        List<File> images = findAnnotatedImages(folder);
+        if (images.isEmpty()) {
+            throw new Exception("No annotated images found in " + folder.getAbsolutePath() +
+                " (expected image files with " + RegionFiles.SUFFIX + " sidecars)");
+        }
+        
+        System.out.println("Batch teaching from " + images.size() + " image(s) on " + threads + " thread(s)...");
+        InspectionEvents.Teach event = new InspectionEvents.Teach();
+        event.begin();
+        long startTime = System.nanoTime();
+        
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong decodedPixels = new AtomicLong();
+        
+        int workers = Math.min(threads, images.size());
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Map<String, LabelStatistics>>> partials = new ArrayList<>();
+        try {
+            for (int w = 0; w < workers; w++) {
+                partials.add(pool.submit(() -> {
+                    Map<String, LabelStatistics> local = new HashMap<>();
+                    ImageLoader loader = new ImageLoader();  // Decoders are reused across this worker's images
+                    int index;
+                    while ((index = cursor.getAndIncrement()) < images.size()) {
+                        File imageFile = images.get(index);
+                        try {
+                            BufferedImage image = loader.read(imageFile);
+                            List<TeachModePanel.AnnotatedRegion> regions =
+                                RegionFiles.read(RegionFiles.sidecarFor(imageFile));
+                            
+                            for (LabelStatistics stats : configManager.collectStatistics(image, regions).values()) {
+                                local.computeIfAbsent(stats.getLabel(),
+                                    k -> new LabelStatistics(k, stats.isIgnore())).merge(stats);
+                            }
+                            decodedPixels.addAndGet((long) image.getWidth() * image.getHeight());
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            System.err.println("Skipping " + imageFile.getName() + ": " + e.getMessage());
+                        }
+                    }
+                    loader.close();
+                    return local;
+                }));
+            }
+            
+            // Reduce the per-worker statistics once all workers are done
+            Map<String, LabelStatistics> merged = new HashMap<>();
+            for (Future<Map<String, LabelStatistics>> partial : partials) {
+                for (LabelStatistics stats : partial.get().values()) {
+                    merged.computeIfAbsent(stats.getLabel(),
+                        k -> new LabelStatistics(k, stats.isIgnore())).merge(stats);
+                }
+            }
+            
+            if (merged.isEmpty()) {
+                throw new Exception("No samples could be extracted from " + folder.getAbsolutePath());
+            }
+            configManager.mergeStatistics(merged);
+            configManager.endTeach(event, images.size() - failed.get(), 0, decodedPixels.get());
+            
+            Report report = new Report(images.size() - failed.get(), failed.get(),
+                decodedPixels.get(), System.nanoTime() - startTime, merged);
+            System.out.println(report);
+            return report;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Outcome and throughput of a batch teach run
+     */
+    public static class Report {
+        public final int images;
+        public final int failed;
+        public final long pixels;
+        public final long elapsedNanos;
+        public final Map<String, LabelStatistics> statistics;
+        
+        Report(int images, int failed, long pixels, long elapsedNanos, Map<String, LabelStatistics> statistics) {
+            this.images = images;
+            this.failed = failed;
+            this.pixels = pixels;
+            this.elapsedNanos = elapsedNanos;
+            this.statistics = statistics;
+        }
+        
+        public double getImagesPerSecond() {
+            return images / Math.max(1e-9, elapsedNanos / 1e9);
+        }
+        
+        public double getPixelsPerSecond() {
+            return pixels / Math.max(1e-9, elapsedNanos / 1e9);
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Taught %d image(s) in %.2fs (%.1f images/s, %.1f Mpixels/s)",
+                images, elapsedNanos / 1e9, getImagesPerSecond(), getPixelsPerSecond() / 1e6));
+            if (failed > 0) {
+                sb.append(", ").append(failed).append(" skipped");
+            }
+            for (LabelStatistics stats : statistics.values()) {
+                sb.append(String.format(Locale.ROOT, "%n  %s '%s': %d samples from %d image(s)",
+                    stats.isIgnore() ? "IGNORE" : "DETECT", stats.getLabel(),
+                    (long) stats.getCount(), stats.getImages()));
+            }
+            return sb.toString();
+        }
+    }
+}
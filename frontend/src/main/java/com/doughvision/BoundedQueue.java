@@ -0,0 +1,133 @@
+package com.doughvision;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-capacity multi-producer multi-consumer queue without locks.
+ *
+ * Each slot carries a sequence number that says whose turn it is: a producer
+ * may fill slot i when its sequence equals the enqueue position, a consumer
+ * may empty it when it equals the position + 1. Positions are claimed with
+ * one CAS, so producers and consumers only contend with their own kind.
+ * Capacity is rounded up to a power of two.
+ *
+ * put() and take() wait by spinning briefly and then parking with a growing
+ * back-off, like ShmFrameSource, so an idle stage costs almost nothing.
+ */
+public class BoundedQueue<T> {
+    
+    private static final int SPINS = 100;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();  // Next position to dequeue
+    private final AtomicLong tail = new AtomicLong();  // Next position to enqueue
+    
+    public BoundedQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Add an item if there is room; never waits
+     */
+    public boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long diff = sequences.get(slot) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.lazySet(slot, item);
+                    sequences.set(slot, position + 1);  // Publishes the item
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;  // Full: the slot still holds an item from one lap ago
+            }
+            // Another producer claimed this position; retry with the new tail
+        }
+    }
+    
+    /**
+     * Remove the oldest item, or null if empty; never waits
+     */
+    public T poll() {
+        while (true) {
+            long position = head.get();
+            int slot = (int) position & mask;
+            long diff = sequences.get(slot) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T item = items.get(slot);
+                    items.lazySet(slot, null);
+                    sequences.set(slot, position + mask + 1);  // Free for the next lap
+                    return item;
+                }
+            } else if (diff < 0) {
+                return null;  // Empty
+            }
+        }
+    }
+    
+    /**
+     * Add an item, waiting for room
+     */
+    public void put(T item) throws InterruptedException {
+        int idle = 0;
+        while (!offer(item)) {
+            idle = backOff(idle);
+        }
+    }
+    
+    /**
+     * Remove the oldest item, waiting up to the timeout; null if none arrived
+     */
+    public T take(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int idle = 0;
+        T item;
+        while ((item = poll()) == null) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            idle = backOff(idle);
+        }
+        return item;
+    }
+    
+    private static int backOff(int idle) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (idle < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            // 1 us, 2 us, 4 us ... up to 1 ms
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(20, idle - SPINS)));
+        }
+        return idle + 1;
+    }
+    
+    /**
+     * Items currently queued (approximate while other threads are active)
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+}
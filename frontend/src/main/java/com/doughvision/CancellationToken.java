@@ -0,0 +1,38 @@
+package com.doughvision;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets the caller stop a long inspection part-way.
+ *
+ * Inspection checks the token between row bands (a few milliseconds of work
+ * even on a 50 MP image) and throws CancellationException, releasing its
+ * pooled buffers on the way out. Interrupting the worker thread, as
+ * SwingWorker.cancel(true) does, counts as cancelling too.
+ */
+public class CancellationToken {
+    
+    /** Never cancelled; only an interrupt stops the work */
+    public static final CancellationToken NONE = new CancellationToken();
+    
+    private volatile boolean cancelled;
+    
+    public void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+    
+    public boolean isCancelled() {
+        return cancelled || Thread.currentThread().isInterrupted();
+    }
+    
+    /**
+     * Throw CancellationException if cancelled or the current thread was interrupted
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Inspection cancelled");
+        }
+    }
+}
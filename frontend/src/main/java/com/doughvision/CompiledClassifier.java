@@ -0,0 +1,171 @@
+package com.doughvision;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Learned rules compiled into per-channel bitmask tables.
+ *
+ * Rule i sets bit i in hBits[h] for every hue h inside its range, and the
+ * same for saturation and value. The set of rules matching a pixel is then
+ * hBits[h] & sBits[s] & vBits[v], so classification costs three table
+ * lookups per 64 rules no matter how many labels are taught.
+ */
+public class CompiledClassifier {
+    
+    public static final int NONE = 0;
+    public static final int DETECT = 1;
+    public static final int IGNORE = 2;
+    
+    private final String[] labels;
+    private final int words;  // 64-bit words per table entry
+    private final long[] hBits;
+    private final long[] sBits;
+    private final long[] vBits;
+    private final long[] ignoreBits;
+    private final long[] detectBits;
+    
+    private CompiledClassifier(String[] labels, int words) {
+        this(labels, words, new long[LabelStatistics.H_BINS * words], new long[LabelStatistics.SV_BINS * words],
+            new long[LabelStatistics.SV_BINS * words], new long[words], new long[words]);
+    }
+    
+    private CompiledClassifier(String[] labels, int words, long[] hBits, long[] sBits, long[] vBits,
+                               long[] ignoreBits, long[] detectBits) {
+        this.labels = labels;
+        this.words = words;
+        this.hBits = hBits;
+        this.sBits = sBits;
+        this.vBits = vBits;
+        this.ignoreBits = ignoreBits;
+        this.detectBits = detectBits;
+    }
+    
+    /**
+     * Classifier from tables previously compiled and stored (see {@link ModelFile})
+     */
+    static CompiledClassifier fromTables(String[] labels, int words, long[] hBits, long[] sBits, long[] vBits,
+                                         long[] ignoreBits, long[] detectBits) {
+        if (words < 1 || labels.length > words * 64 ||
+            hBits.length != LabelStatistics.H_BINS * words || sBits.length != LabelStatistics.SV_BINS * words ||
+            vBits.length != LabelStatistics.SV_BINS * words || ignoreBits.length != words || detectBits.length != words) {
+            throw new IllegalArgumentException("Inconsistent classifier tables");
+        }
+        return new CompiledClassifier(labels, words, hBits, sBits, vBits, ignoreBits, detectBits);
+    }
+    
+    /**
+     * Compile rules; labels in ignoreLabels take precedence over detection labels
+     */
+    static CompiledClassifier compile(Map<String, ConfigurationManager.LabelRule> rules, Collection<String> ignoreLabels) {
+        List<ConfigurationManager.LabelRule> ordered = new ArrayList<>(rules.values());
+        String[] labels = new String[ordered.size()];
+        CompiledClassifier classifier = new CompiledClassifier(labels, Math.max(1, (ordered.size() + 63) / 64));
+        
+        for (int i = 0; i < ordered.size(); i++) {
+            ConfigurationManager.LabelRule rule = ordered.get(i);
+            labels[i] = rule.label;
+            int word = i >>> 6;
+            long bit = 1L << (i & 63);
+            
+            setRange(classifier.hBits, classifier.words, word, bit, rule.hMin, rule.hMax, LabelStatistics.H_BINS);
+            setRange(classifier.sBits, classifier.words, word, bit, rule.sMin, rule.sMax, LabelStatistics.SV_BINS);
+            setRange(classifier.vBits, classifier.words, word, bit, rule.vMin, rule.vMax, LabelStatistics.SV_BINS);
+            
+            if (ignoreLabels.contains(rule.label)) {
+                classifier.ignoreBits[word] |= bit;
+            } else {
+                classifier.detectBits[word] |= bit;
+            }
+        }
+        return classifier;
+    }
+    
+    private static void setRange(long[] table, int words, int word, long bit, int min, int max, int bins) {
+        for (int v = Math.max(0, min); v <= Math.min(bins - 1, max); v++) {
+            table[v * words + word] |= bit;
+        }
+    }
+    
+    /**
+     * Classify one HSV pixel as NONE, DETECT or IGNORE
+     */
+    public int classify(int h, int s, int v) {
+        int hi = h * words, si = s * words, vi = v * words;
+        boolean detect = false;
+        for (int w = 0; w < words; w++) {
+            long match = hBits[hi + w] & sBits[si + w] & vBits[vi + w];
+            if ((match & ignoreBits[w]) != 0) {
+                return IGNORE;
+            }
+            detect |= (match & detectBits[w]) != 0;
+        }
+        return detect ? DETECT : NONE;
+    }
+    
+    /**
+     * Classify a packed HSV value (h << 16 | s << 8 | v)
+     */
+    public int classifyPacked(int hsv) {
+        return classify(hsv >>> 16, (hsv >>> 8) & 0xFF, hsv & 0xFF);
+    }
+    
+    /**
+     * Bits of all rules matching a pixel, for the given 64-rule word
+     */
+    public long matchBits(int h, int s, int v, int word) {
+        return hBits[h * words + word] & sBits[s * words + word] & vBits[v * words + word];
+    }
+    
+    /**
+     * Index of a label's rule bit, or -1 if there is no rule for it
+     */
+    public int indexOf(String label) {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public String getLabel(int index) {
+        return labels[index];
+    }
+    
+    public int getLabelCount() {
+        return labels.length;
+    }
+    
+    public int getWords() {
+        return words;
+    }
+    
+    public boolean isIgnore(int index) {
+        return (ignoreBits[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+    
+    // Raw tables, for serialization only
+    
+    long[] getHueTable() {
+        return hBits;
+    }
+    
+    long[] getSaturationTable() {
+        return sBits;
+    }
+    
+    long[] getValueTable() {
+        return vBits;
+    }
+    
+    long[] getIgnoreBits() {
+        return ignoreBits;
+    }
+    
+    long[] getDetectBits() {
+        return detectBits;
+    }
+}
@@ -0,0 +1,72 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recipe resolved into everything inspection needs: the settings plus, if the
+ * recipe was saved with one, its rules and compiled classifier tables.
+ *
+ * Immutable, so it can be built ahead of time on any thread and handed to
+ * {@link ConfigurationManager#activateRecipe} for a changeover that only swaps
+ * references under the lock.
+ */
+public final class CompiledRecipe {
+    
+    final String name;
+    final int[] colorLower;
+    final int[] colorUpper;
+    final int minArea;
+    final int maxArea;
+    final double minCircularity;
+    final double maxCircularity;
+    final double pixelsPerMm;
+    final double targetWidth;
+    final double targetHeight;
+    final double widthTolerance;
+    final double heightTolerance;
+    
+    // Null when the recipe has no saved model; the currently learned rules are kept then
+    final List<ConfigurationManager.LabelRule> rules;
+    final List<String> ignoreLabels;
+    final CompiledClassifier classifier;
+    
+    private CompiledRecipe(DetectionRecipe recipe, ModelFile model) {
+        this.name = recipe.name;
+        this.colorLower = new int[]{recipe.hueMin, recipe.satMin, recipe.valMin};
+        this.colorUpper = new int[]{recipe.hueMax, recipe.satMax, recipe.valMax};
+        this.minArea = recipe.minArea;
+        this.maxArea = recipe.maxArea;
+        this.minCircularity = recipe.minCircularity;
+        this.maxCircularity = recipe.maxCircularity;
+        this.pixelsPerMm = recipe.pixelsPerMm;
+        this.targetWidth = recipe.targetWidth;
+        this.targetHeight = recipe.targetHeight;
+        this.widthTolerance = recipe.widthTolerance;
+        this.heightTolerance = recipe.heightTolerance;
+        this.rules = model == null ? null : Collections.unmodifiableList(model.rules);
+        this.ignoreLabels = model == null ? null : Collections.unmodifiableList(model.ignoreLabels);
+        this.classifier = model == null ? null : model.classifier;
+    }
+    
+    /**
+     * Resolve a recipe, mapping its saved model (relative to modelDir) if it has one
+     */
+    public static CompiledRecipe compile(DetectionRecipe recipe, File modelDir) throws IOException {
+        ModelFile model = null;
+        if (recipe.modelFile != null) {
+            model = ModelFile.read(new File(modelDir, recipe.modelFile));
+        }
+        return new CompiledRecipe(recipe, model);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public boolean hasModel() {
+        return classifier != null;
+    }
+}
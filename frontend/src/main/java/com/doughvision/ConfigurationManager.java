@@ -17,10 +17,17 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.imageio.ImageIO;
 
 /**
@@ -28,36 +35,89 @@ import javax.imageio.ImageIO;
  */
 public class ConfigurationManager {
     
+    /**
+     * Default per-region teach sample budget. By the DKW inequality the empirical
+     * CDF of n uniform samples is within sqrt(ln(2 / alpha) / (2n)) of the region's
+     * true CDF everywhere with probability 1 - alpha, so at n = 250,000 the 10th and
+     * 90th percentiles used for rules are off by at most +/-0.4 percentile points
+     * (alpha = 0.001). Stratified sampling is never worse than that.
+     */
+    public static final int DEFAULT_TEACH_SAMPLE_BUDGET = 250_000;
+    
+    // Fast mode processes frames at no more than this size
+    public static final int FAST_MODE_MAX_WIDTH = 1280;
+    public static final int FAST_MODE_MAX_HEIGHT = 960;
+    
+    // Components no larger than this (input pixels) in both directions are noise
+    private static final int MIN_PIECE_SIZE = 10;
+    
+    // Cancellation and progress are checked every 16 rows (about 1 ms of morphology on a 50 MP image)
+    private static final int BAND_MASK = 15;
+    
     private VisionConfiguration config;
     private Gson gson;
     private final Object lock = new Object(); // For thread synchronization
     private List<TeachModePanel.AnnotatedRegion> trainingData;
-    private Map<String, LabelRule> learnedRules;
-    private List<String> ignoreLabels;
+    // Rules, compiled tables and calibration; read without locking, replaced (under lock) on every change
+    private final AtomicReference<ModelSnapshot> model = new AtomicReference<>(ModelSnapshot.EMPTY);
+    private final MaskPool maskPool = new MaskPool(6);  // Scratch masks for about two concurrent inspections
+    private final InspectionMetrics metrics = new InspectionMetrics();  // Stage latencies and frame counters
+    private Map<String, LabelStatistics> labelStatistics;  // Accumulated across teach runs
+    private double teachDecay = 1.0;  // Weight kept by older statistics on each teach (1.0 = never forget)
+    private int teachSampleBudget = DEFAULT_TEACH_SAMPLE_BUDGET;  // Max pixels sampled per region (0 = all)
+    
+    // Margins added around the taught 10th-90th percentile ranges when computing rules
+    private int hTolerance = 15;
+    private int sTolerance = 50;
+    private int vTolerance = 60;
     private volatile boolean fastMode = false;  // Fast inference for constrained hardware
     
-    // Calibration and measurement
-    private double pixelsPerMm = 1.0;  // Default: 1px = 1mm (uncalibrated)
-    private double targetWidth = 100.0;  // Target width in mm
-    private double targetHeight = 100.0; // Target height in mm
-    private double widthTolerance = 5.0;  // Width tolerance in mm (±)
-    private double heightTolerance = 5.0; // Height tolerance in mm (±)
+    // Static exclusion zones (full-frame coordinates), rasterized to a mask per frame size, scale and origin.
+    // Both are replaced, never modified, so inspection reads them without the lock.
+    private volatile List<TeachModePanel.AnnotatedRegion> exclusionRegions = Collections.emptyList();
+    private volatile ExclusionMask exclusionMask;
+    
+    // Session config writes are coalesced and done off the calling (often the Swing) thread
+    private static final long SESSION_SAVE_DELAY_MS = 500;
+    private final DebouncedSaver sessionSaver =
+        new DebouncedSaver("session-config-writer", SESSION_SAVE_DELAY_MS, this::writeSessionConfig);
+    // Likewise the learned rules, compiled model and statistics after teach, forget, decay or a tolerance change
+    private final DebouncedSaver modelSaver =
+        new DebouncedSaver("model-writer", SESSION_SAVE_DELAY_MS, this::writeModelFiles);
+    private volatile boolean sessionReadOnly = false;
+    private volatile String activeRecipe;  // Name of the last activated recipe, or null (written under the lock)
     
     public ConfigurationManager() {
+        this(true);
+    }
+    
+    private ConfigurationManager(boolean loadFiles) {
         this.gson = new GsonBuilder().setPrettyPrinting().create();
         this.config = new VisionConfiguration();
         this.trainingData = new ArrayList<>();
-        this.learnedRules = new HashMap<>();
-        this.ignoreLabels = new ArrayList<>();
+        this.labelStatistics = new HashMap<>();
         
         // Try to load saved session configuration
-        if (!loadSessionConfig()) {
+        if (!loadFiles || !loadSessionConfig()) {
             // If no saved config, load defaults
             loadDefaultConfig();
         }
         
         // Try to load saved rules on startup
-        loadRulesFromFile();
+        if (loadFiles) {
+            loadRulesFromFile();
+            loadStatisticsFromFile();
+        }
+    }
+    
+    /**
+     * A manager with default settings and no rules that reads nothing from the working directory
+     * and never writes the session file (benchmarks and tests set their own rules with useRules)
+     */
+    static ConfigurationManager withDefaults() {
+        ConfigurationManager configManager = new ConfigurationManager(false);
+        configManager.setSessionReadOnly(true);
+        return configManager;
     }
     
     public void loadDefaultConfig() {
@@ -176,12 +236,13 @@ public class ConfigurationManager {
             json.add("processing", processing);
             
             // Measurement settings
+            ModelSnapshot snapshot = model.get();
             JsonObject measurement = new JsonObject();
-            measurement.addProperty("pixels_per_mm", pixelsPerMm);
-            measurement.addProperty("target_width_mm", targetWidth);
-            measurement.addProperty("target_height_mm", targetHeight);
-            measurement.addProperty("width_tolerance", widthTolerance);
-            measurement.addProperty("height_tolerance", heightTolerance);
+            measurement.addProperty("pixels_per_mm", snapshot.getPixelsPerMm());
+            measurement.addProperty("target_width_mm", snapshot.getTargetWidth());
+            measurement.addProperty("target_height_mm", snapshot.getTargetHeight());
+            measurement.addProperty("width_tolerance", snapshot.getWidthTolerance());
+            measurement.addProperty("height_tolerance", snapshot.getHeightTolerance());
             json.add("measurement", measurement);
             
             gson.toJson(json, writer);
@@ -234,123 +295,464 @@ public class ConfigurationManager {
     }
     
     /**
-     * Teach the model based on annotated regions
+     * Set areas that are never reported as detections (e.g. belt edges, guides) from the regions labelled
+     * as exclusion zones (see isExclusionLabel); other regions are skipped. Coordinates are full-frame
+     * pixels. Returns the number of zones set.
+     */
+    public int setExclusionRegions(List<TeachModePanel.AnnotatedRegion> regions) {
+        List<TeachModePanel.AnnotatedRegion> zones = exclusionZones(regions);
+        synchronized (lock) {
+            this.exclusionRegions = zones;
+            this.exclusionMask = null;
+        }
+        System.out.println("Exclusion zones set: " + zones.size() + " region(s)");
+        saveSessionConfig(); // Auto-save
+        return zones.size();
+    }
+    
+    /**
+     * Labels that mark an exclusion zone, e.g. "exclude" or "exclusion zone"
+     */
+    static boolean isExclusionLabel(String label) {
+        String lowerLabel = label.toLowerCase();
+        return lowerLabel.contains("exclude") || lowerLabel.contains("exclusion");
+    }
+    
+    private static List<TeachModePanel.AnnotatedRegion> exclusionZones(List<TeachModePanel.AnnotatedRegion> regions) {
+        List<TeachModePanel.AnnotatedRegion> zones = new ArrayList<>();
+        for (TeachModePanel.AnnotatedRegion region : regions) {
+            if (isExclusionLabel(region.label)) {
+                zones.add(region);
+            }
+        }
+        return Collections.unmodifiableList(zones);
+    }
+    
+    /**
+     * A rasterized exclusion mask and the regions, frame size, scale and origin it was built for
+     */
+    private static final class ExclusionMask {
+        final List<TeachModePanel.AnnotatedRegion> regions;
+        final boolean[][] mask;
+        final double scale;
+        final int originX;
+        final int originY;
+        
+        ExclusionMask(List<TeachModePanel.AnnotatedRegion> regions, boolean[][] mask, double scale,
+                      int originX, int originY) {
+            this.regions = regions;
+            this.mask = mask;
+            this.scale = scale;
+            this.originX = originX;
+            this.originY = originY;
+        }
+    }
+    
+    /**
+     * Static exclusion mask for a processed image whose top-left pixel is frame (originX, originY) and
+     * which has scale pixels per frame pixel; rebuilt only when the regions, size, scale or origin change.
+     * Lock-free: workers that race on a rebuild each build the same mask and one of them is kept.
+     */
+    private boolean[][] getExclusionMask(int width, int height, double scale, int originX, int originY) {
+        List<TeachModePanel.AnnotatedRegion> regions = exclusionRegions;
+        if (regions.isEmpty()) {
+            return null;
+        }
+        
+        ExclusionMask cached = exclusionMask;
+        if (cached == null || cached.regions != regions || cached.mask.length != height ||
+            cached.mask[0].length != width || cached.scale != scale ||
+            cached.originX != originX || cached.originY != originY) {
+            boolean[][] mask = new boolean[height][width];
+            for (TeachModePanel.AnnotatedRegion region : regions) {
+                RegionSpans spans = scale == 1.0 && originX == 0 && originY == 0
+                    ? region.getSpans() : RegionSpans.of(region, scale, originX, originY);
+                spans.fill(mask, true);
+            }
+            cached = new ExclusionMask(regions, mask, scale, originX, originY);
+            exclusionMask = cached;
+        }
+        return cached.mask;
+    }
+    
+    /**
+     * Teach the model based on annotated regions.
+     * Statistics from this image are merged into those from earlier teach runs,
+     * and rules for every label are recomputed from the merged histograms.
      */
     public boolean teachModel(BufferedImage image, List<TeachModePanel.AnnotatedRegion> regions) {
+        InspectionEvents.Teach event = new InspectionEvents.Teach();
+        event.begin();
         try {
             System.out.println("Teaching model with " + regions.size() + " annotated regions...");
             
             // Store training data
             this.trainingData = new ArrayList<>(regions);
             
-            // Separate positive samples and ignore samples
-            Map<String, List<ColorSample>> labelSamples = new HashMap<>();
-            List<String> newIgnoreLabels = new ArrayList<>();
-            Map<String, LabelRule> newLearnedRules = new HashMap<>();
+            mergeStatistics(collectStatistics(image, regions));
+            endTeach(event, 1, regions.size(), (long) image.getWidth() * image.getHeight());
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Record a finished teach run for JFR (regions 0 when not known)
+     */
+    void endTeach(InspectionEvents.Teach event, int images, int regions, long pixels) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.images = images;
+            event.regions = regions;
+            event.pixels = pixels;
+            event.rules = model.get().getRules().size();
+            event.recipe = activeRecipe;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Collect per-label statistics from the annotated regions of one image. Exclusion zones are
+     * positional (see setExclusionRegions), so their colours are never learned as a rule.
+     */
+    Map<String, LabelStatistics> collectStatistics(BufferedImage image, List<TeachModePanel.AnnotatedRegion> regions) {
+        Map<String, LabelStatistics> imageStatistics = new HashMap<>();
+        for (TeachModePanel.AnnotatedRegion region : regions) {
+            if (isExclusionLabel(region.label)) {
+                continue;
+            }
+            LabelStatistics stats = imageStatistics.computeIfAbsent(region.label,
+                k -> new LabelStatistics(k, isIgnoreLabel(k)));
+            extractColorSamples(image, region, stats);
+        }
+        for (LabelStatistics stats : imageStatistics.values()) {
+            stats.setImages(1);
+        }
+        return imageStatistics;
+    }
+    
+    /**
+     * Check if a label marks colours to ignore rather than detect ("exclude" marks an exclusion zone instead)
+     */
+    boolean isIgnoreLabel(String label) {
+        String lowerLabel = label.toLowerCase();
+        return lowerLabel.contains("ignore") || lowerLabel.contains("background") || 
+               lowerLabel.contains("reject");
+    }
+    
+    /**
+     * Merge newly taught statistics into the accumulated ones and rebuild all rules
+     */
+    void mergeStatistics(Map<String, LabelStatistics> newStatistics) {
+        synchronized (lock) {
+            if (teachDecay < 1.0) {
+                for (LabelStatistics stats : labelStatistics.values()) {
+                    stats.decay(teachDecay);
+                }
+            }
+            for (LabelStatistics stats : newStatistics.values()) {
+                LabelStatistics merged = labelStatistics.computeIfAbsent(stats.getLabel(),
+                    k -> new LabelStatistics(k, stats.isIgnore()));
+                merged.merge(stats);
+                if (stats.isIgnore()) {
+                    System.out.println("Marking '" + stats.getLabel() + "' as IGNORE label");
+                }
+            }
+        }
+        
+        rebuildRulesFromStatistics();
+    }
+    
+    /**
+     * Forget everything taught for a label
+     */
+    public void forgetLabel(String label) {
+        synchronized (lock) {
+            labelStatistics.remove(label);
+            ModelSnapshot current = model.get();
+            Map<String, LabelRule> rules = new HashMap<>(current.getRules());
+            rules.remove(label);
+            swapModel(current.withRules(rules, current.getIgnoreLabels(), null), "forget label");
+        }
+        System.out.println("Forgot label '" + label + "'");
+        rebuildRulesFromStatistics();
+    }
+    
+    /**
+     * Scale the weight of all taught data by a factor in (0, 1]; labels that fall below one sample are dropped
+     */
+    public void decayStatistics(double factor) {
+        synchronized (lock) {
+            for (LabelStatistics stats : labelStatistics.values()) {
+                stats.decay(factor);
+            }
+        }
+        System.out.println("Decayed taught statistics by " + factor);
+        rebuildRulesFromStatistics();
+    }
+    
+    /**
+     * Forget all taught data and rules
+     */
+    public void resetStatistics() {
+        synchronized (lock) {
+            labelStatistics = new HashMap<>();
+            swapModel(model.get().withRules(Collections.emptyMap(), Collections.emptyList(), null), "reset");
+        }
+        System.out.println("Cleared all taught statistics and rules");
+        modelSaver.request();
+    }
+    
+    /**
+     * Set the weight older statistics keep each time a new image is taught (1.0 = never forget)
+     */
+    public void setTeachDecay(double decay) {
+        synchronized (lock) {
+            this.teachDecay = Math.max(0.0, Math.min(1.0, decay));
+        }
+        saveSessionConfig(); // Auto-save
+    }
+    
+    public double getTeachDecay() {
+        synchronized (lock) {
+            return teachDecay;
+        }
+    }
+    
+    public List<String> getTaughtLabels() {
+        synchronized (lock) {
+            return new ArrayList<>(labelStatistics.keySet());
+        }
+    }
+    
+    /**
+     * Whether there are rules to segment with
+     */
+    public boolean hasLearnedRules() {
+        return model.get().hasRules();
+    }
+    
+    /**
+     * Copy of the accumulated statistics, e.g. for evaluating other tolerances without touching the model
+     */
+    Map<String, LabelStatistics> getStatisticsSnapshot() {
+        synchronized (lock) {
+            Map<String, LabelStatistics> snapshot = new HashMap<>();
+            for (LabelStatistics stats : labelStatistics.values()) {
+                LabelStatistics copy = new LabelStatistics(stats.getLabel(), stats.isIgnore());
+                copy.merge(stats);
+                snapshot.put(stats.getLabel(), copy);
+            }
+            return snapshot;
+        }
+    }
+    
+    /**
+     * Set the HSV margins added around taught ranges and recompute the rules
+     */
+    public void setRuleTolerances(int hTol, int sTol, int vTol) {
+        synchronized (lock) {
+            this.hTolerance = Math.max(0, hTol);
+            this.sTolerance = Math.max(0, sTol);
+            this.vTolerance = Math.max(0, vTol);
+        }
+        System.out.println("Rule tolerances set: H +/-" + hTol + ", S +/-" + sTol + ", V +/-" + vTol);
+        saveSessionConfig(); // Auto-save
+        rebuildRulesFromStatistics();
+    }
+    
+    public int[] getRuleTolerances() {
+        synchronized (lock) {
+            return new int[]{hTolerance, sTolerance, vTolerance};
+        }
+    }
+    
+    /**
+     * Current rules compiled into lookup tables
+     */
+    CompiledClassifier getCompiledClassifier() {
+        return model.get().getClassifier();
+    }
+    
+    /**
+     * The current model; immutable, so it can be used for as long as needed without locking
+     */
+    public ModelSnapshot getModelSnapshot() {
+        return model.get();
+    }
+    
+    /**
+     * Publish a new model to inspection (call under the lock) and record the swap for JFR
+     */
+    private void swapModel(ModelSnapshot next, String reason) {
+        model.set(next);
+        InspectionEvents.ModelSwap event = new InspectionEvents.ModelSwap();
+        if (event.shouldCommit()) {
+            event.reason = reason;
+            event.rules = next.getRules().size();
+            event.ignoreLabels = next.getIgnoreLabels().size();
+            event.recipe = activeRecipe;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Publish rules as they are, without statistics and without saving (benchmarks, generated scenes)
+     */
+    void useRules(Map<String, LabelRule> rules, Collection<String> ignoreLabels) {
+        synchronized (lock) {
+            swapModel(model.get().withRules(rules, ignoreLabels, null), "use rules");
+        }
+    }
+    
+    /**
+     * Recompute rules for every label from the accumulated histograms (O(bins) per label).
+     * Rules for labels without statistics, e.g. hand-edited ones, are kept as they are.
+     */
+    private void rebuildRulesFromStatistics() {
+        synchronized (lock) {
+            labelStatistics.values().removeIf(LabelStatistics::isEmpty);
             
-            // Collect samples from annotated regions
-            for (TeachModePanel.AnnotatedRegion region : regions) {
-                List<ColorSample> samples = extractColorSamples(image, region);
-                
-                // Check if this is an ignore label
-                String lowerLabel = region.label.toLowerCase();
-                if (lowerLabel.contains("ignore") || lowerLabel.contains("background") || 
-                    lowerLabel.contains("reject") || lowerLabel.contains("exclude")) {
-                    newIgnoreLabels.add(region.label);
-                    System.out.println("Marking '" + region.label + "' as IGNORE label");
+            ModelSnapshot current = model.get();
+            Map<String, LabelRule> newLearnedRules = new HashMap<>();
+            List<String> newIgnoreLabels = new ArrayList<>();
+            for (Map.Entry<String, LabelRule> entry : current.getRules().entrySet()) {
+                if (!labelStatistics.containsKey(entry.getKey())) {
+                    newLearnedRules.put(entry.getKey(), entry.getValue());
+                    if (current.getIgnoreLabels().contains(entry.getKey())) {
+                        newIgnoreLabels.add(entry.getKey());
+                    }
                 }
-                
-                labelSamples.computeIfAbsent(region.label, k -> new ArrayList<>()).addAll(samples);
             }
             
-            // Create rules for each label using robust clustering
-            for (Map.Entry<String, List<ColorSample>> entry : labelSamples.entrySet()) {
-                String label = entry.getKey();
-                List<ColorSample> samples = entry.getValue();
-                
-                LabelRule rule = computeRobustRule(label, samples);
-                newLearnedRules.put(label, rule);
+            for (LabelStatistics stats : labelStatistics.values()) {
+                LabelRule rule = computeRobustRule(stats.getLabel(), stats);
+                newLearnedRules.put(stats.getLabel(), rule);
+                if (stats.isIgnore()) {
+                    newIgnoreLabels.add(stats.getLabel());
+                }
                 
-                String type = newIgnoreLabels.contains(label) ? "IGNORE" : "DETECT";
-                System.out.println("Learned " + type + " rule for '" + label + "': HSV range [" +
+                String type = stats.isIgnore() ? "IGNORE" : "DETECT";
+                System.out.println("Learned " + type + " rule for '" + stats.getLabel() + "': HSV range [" +
                     rule.hMin + "," + rule.sMin + "," + rule.vMin + "] to [" +
-                    rule.hMax + "," + rule.sMax + "," + rule.vMax + "] (" + samples.size() + " samples)");
+                    rule.hMax + "," + rule.sMax + "," + rule.vMax + "] (" + (long) stats.getCount() +
+                    " samples from " + stats.getImages() + " image(s))");
             }
             
-            // Thread-safe update of shared state
-            synchronized (lock) {
-                ignoreLabels = newIgnoreLabels;
-                learnedRules = newLearnedRules;
-            }
-            
-            // Save rules to file
-            saveRulesToFile();
-            
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+            swapModel(current.withRules(newLearnedRules, newIgnoreLabels, null), "teach");
         }
+        
+        // Save rules and statistics to file, off the calling (often the Swing) thread
+        modelSaver.request();
     }
     
     /**
-     * Extract color samples from annotated region
+     * Set the maximum number of pixels sampled from each taught region (0 = sample every pixel)
      */
-    private List<ColorSample> extractColorSamples(BufferedImage image, TeachModePanel.AnnotatedRegion region) {
-        List<ColorSample> samples = new ArrayList<>();
-        Rectangle bounds = region.boundingBox;
-        
-        System.out.println("  Extracting samples from region '" + region.label + "': bounds=" + bounds + ", isPolygon=" + region.isPolygon);
+    public void setTeachSampleBudget(int budget) {
+        synchronized (lock) {
+            this.teachSampleBudget = Math.max(0, budget);
+        }
+        saveSessionConfig(); // Auto-save
+    }
+    
+    public int getTeachSampleBudget() {
+        synchronized (lock) {
+            return teachSampleBudget;
+        }
+    }
+    
+    /**
+     * Extract color samples from annotated region into the label's histograms.
+     * Regions larger than the sample budget are subsampled (see {@link #DEFAULT_TEACH_SAMPLE_BUDGET}).
+     */
+    private int extractColorSamples(BufferedImage image, TeachModePanel.AnnotatedRegion region, LabelStatistics stats) {
+        System.out.println("  Extracting samples from region '" + region.label + "': bounds=" + region.boundingBox + ", isPolygon=" + region.isPolygon);
         
-        int pixelsChecked = 0;
-        int pixelsInside = 0;
+        // Only visit pixels covered by the region's cached scanline spans
+        RegionSpans spans = region.getSpans().clip(image.getWidth(), image.getHeight());
+        long pixels = spans.getPixelCount();
+        int budget;
+        synchronized (lock) {
+            budget = teachSampleBudget;
+        }
         
-        for (int y = bounds.y; y < bounds.y + bounds.height && y < image.getHeight(); y++) {
-            for (int x = bounds.x; x < bounds.x + bounds.width && x < image.getWidth(); x++) {
-                pixelsChecked++;
-                
-                // Check if point is inside polygon (if applicable)
-                if (region.isPolygon && !isPointInPolygon(new Point(x, y), region.polygonPoints)) {
-                    continue;
-                }
-                
-                pixelsInside++;
-                
-                int[] rgb = getPixelRGB(image, x, y);
-                int[] hsv = rgbToHsv(rgb[0], rgb[1], rgb[2]);
-                samples.add(new ColorSample(hsv[0], hsv[1], hsv[2]));
-            }
+        int samples;
+        if (budget <= 0 || pixels <= budget) {
+            samples = extractAllSamples(image, spans, stats);
+        } else {
+            samples = extractStratifiedSamples(image, spans, budget, region.label, stats);
         }
         
-        System.out.println("  Checked " + pixelsChecked + " pixels, " + pixelsInside + " inside region, extracted " + samples.size() + " samples");
+        System.out.println("  Sampled " + spans.getSpanCount() + " spans, extracted " + samples + " of " + pixels + " pixels");
         
         return samples;
     }
     
     /**
-     * Check if point is inside polygon
+     * Add every pixel of the spans, reading each span as one run
      */
-    private boolean isPointInPolygon(Point p, List<Point> polygon) {
-        int n = polygon.size();
-        boolean inside = false;
-        
-        for (int i = 0, j = n - 1; i < n; j = i++) {
-            Point pi = polygon.get(i);
-            Point pj = polygon.get(j);
+    private int extractAllSamples(BufferedImage image, RegionSpans spans, LabelStatistics stats) {
+        int[] run = new int[image.getWidth()];
+        int samples = 0;
+        for (int i = 0; i < spans.getSpanCount(); i++) {
+            int x0 = spans.getStart(i);
+            int length = spans.getEnd(i) - x0;
+            image.getRGB(x0, spans.getRow(i), length, 1, run, 0, length);
+            for (int k = 0; k < length; k++) {
+                int rgb = run[k];
+                int hsv = rgbToHsvPacked((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                stats.add(hsv >>> 16, (hsv >>> 8) & 0xFF, hsv & 0xFF);
+            }
+            samples += length;
+        }
+        return samples;
+    }
+    
+    /**
+     * Stratified subsample: the region's pixels, in span order, are cut into budget equal
+     * strata and one pixel is drawn uniformly from each. Every sample is weighted by
+     * pixels / budget so the label's histogram still counts the region at full size.
+     * The seed depends only on the label and region size, so re-teaching is repeatable.
+     */
+    private int extractStratifiedSamples(BufferedImage image, RegionSpans spans, int budget, String label, LabelStatistics stats) {
+        long pixels = spans.getPixelCount();
+        double stride = (double) pixels / budget;
+        SplittableRandom random = new SplittableRandom(31L * label.hashCode() + pixels);
+        
+        int span = 0;
+        long spanOffset = 0;  // Linear index of the first pixel of the current span
+        for (int k = 0; k < budget; k++) {
+            long target = Math.min(pixels - 1, (long) ((k + random.nextDouble()) * stride));
             
-            if ((pi.y > p.y) != (pj.y > p.y) &&
-                p.x < (pj.x - pi.x) * (p.y - pi.y) / (pj.y - pi.y) + pi.x) {
-                inside = !inside;
+            // Targets increase, so the span walk only moves forward
+            while (target >= spanOffset + (spans.getEnd(span) - spans.getStart(span))) {
+                spanOffset += spans.getEnd(span) - spans.getStart(span);
+                span++;
             }
+            
+            int x = spans.getStart(span) + (int) (target - spanOffset);
+            int rgb = image.getRGB(x, spans.getRow(span));
+            int hsv = rgbToHsvPacked((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            stats.add(hsv >>> 16, (hsv >>> 8) & 0xFF, hsv & 0xFF, stride);
         }
-        
-        return inside;
+        return budget;
     }
     
     /**
      * Convert RGB to HSV
      */
     private int[] rgbToHsv(int r, int g, int b) {
+        int hsv = rgbToHsvPacked(r, g, b);
+        return new int[]{hsv >>> 16, (hsv >>> 8) & 0xFF, hsv & 0xFF};
+    }
+    
+    /**
+     * Convert RGB to HSV packed as h << 16 | s << 8 | v (no allocation, for per-pixel loops)
+     */
+    static int rgbToHsvPacked(int r, int g, int b) {
         float rf = r / 255f;
         float gf = g / 255f;
         float bf = b / 255f;
@@ -375,60 +777,38 @@ public class ConfigurationManager {
         float v = max;
         
         // OpenCV HSV ranges: H: 0-179, S: 0-255, V: 0-255
-        return new int[]{(int)(h / 2), (int)(s * 255), (int)(v * 255)};
+        return ((int)(h / 2) << 16) | ((int)(s * 255) << 8) | (int)(v * 255);
     }
     
     /**
      * Compute robust rule using percentile-based outlier removal
      */
-    private LabelRule computeRobustRule(String label, List<ColorSample> samples) {
-        if (samples.isEmpty()) {
+    private LabelRule computeRobustRule(String label, LabelStatistics stats) {
+        if (stats.isEmpty()) {
             return new LabelRule(label, 0, 0, 0, 179, 255, 255);
         }
         
-        System.out.println("Computing rule for '" + label + "' with " + samples.size() + " samples");
-        
-        // Sort samples by each channel
-        List<Integer> hValues = new ArrayList<>();
-        List<Integer> sValues = new ArrayList<>();
-        List<Integer> vValues = new ArrayList<>();
-        
-        for (ColorSample sample : samples) {
-            hValues.add(sample.h);
-            sValues.add(sample.s);
-            vValues.add(sample.v);
-        }
-        
-        hValues.sort(Integer::compareTo);
-        sValues.sort(Integer::compareTo);
-        vValues.sort(Integer::compareTo);
-        
-        // Use 10th and 90th percentile (tighter than before)
-        int p10 = Math.max(0, (int)(samples.size() * 0.10));
-        int p90 = Math.min(samples.size() - 1, (int)(samples.size() * 0.90));
-        
-        int hMin = hValues.get(p10);
-        int hMax = hValues.get(p90);
-        int sMin = sValues.get(p10);
-        int sMax = sValues.get(p90);
-        int vMin = vValues.get(p10);
-        int vMax = vValues.get(p90);
-        
-        System.out.println("  Raw ranges - H:[" + hMin + "-" + hMax + "] S:[" + sMin + "-" + sMax + "] V:[" + vMin + "-" + vMax + "]");
+        System.out.println("Computing rule for '" + label + "' with " + (long) stats.getCount() + " samples");
         
         // Wider tolerance for color robustness (handles lighting, camera differences)
-        int hTol = 15;  // Fixed +/-15 for hue (was 10)
-        int sTol = 50;  // Fixed +/-50 for saturation (was 30)  
-        int vTol = 60;  // Fixed +/-60 for value/brightness (was 40)
+        LabelRule rule = computeRobustRule(label, stats, hTolerance, sTolerance, vTolerance);
         
-        hMin = Math.max(0, hMin - hTol);
-        hMax = Math.min(179, hMax + hTol);
-        sMin = Math.max(0, sMin - sTol);
-        sMax = Math.min(255, sMax + sTol);
-        vMin = Math.max(0, vMin - vTol);
-        vMax = Math.min(255, vMax + vTol);
+        System.out.println("  Final ranges - H:[" + rule.hMin + "-" + rule.hMax + "] S:[" + rule.sMin + "-" + rule.sMax + "] V:[" + rule.vMin + "-" + rule.vMax + "]");
         
-        System.out.println("  Final ranges - H:[" + hMin + "-" + hMax + "] S:[" + sMin + "-" + sMax + "] V:[" + vMin + "-" + vMax + "]");
+        return rule;
+    }
+    
+    /**
+     * Rule from the 10th-90th percentile ranges widened by the given tolerances
+     */
+    static LabelRule computeRobustRule(String label, LabelStatistics stats, int hTol, int sTol, int vTol) {
+        // Use 10th and 90th percentile (tighter than before), read from the histograms
+        int hMin = Math.max(0, stats.percentileH(0.10) - hTol);
+        int hMax = Math.min(179, stats.percentileH(0.90) + hTol);
+        int sMin = Math.max(0, stats.percentileS(0.10) - sTol);
+        int sMax = Math.min(255, stats.percentileS(0.90) + sTol);
+        int vMin = Math.max(0, stats.percentileV(0.10) - vTol);
+        int vMax = Math.min(255, stats.percentileV(0.90) + vTol);
         
         return new LabelRule(label, hMin, sMin, vMin, hMax, sMax, vMax);
     }
@@ -564,6 +944,15 @@ public class ConfigurationManager {
                 (rgb >> 8) & 0xFF,
                 rgb & 0xFF
             };
+        } else if (image.getRaster().getDataBuffer() instanceof RawFrames.MappedFrameBuffer) {
+            WritableRaster raster = image.getRaster();
+            int rgb = ((RawFrames.MappedFrameBuffer) raster.getDataBuffer()).getRGB(
+                x - raster.getSampleModelTranslateX(), y - raster.getSampleModelTranslateY());
+            return new int[]{
+                (rgb >> 16) & 0xFF,
+                (rgb >> 8) & 0xFF,
+                rgb & 0xFF
+            };
         } else {
             // Fallback for other image types
             int rgb = image.getRGB(x, y);
@@ -575,6 +964,24 @@ public class ConfigurationManager {
         }
     }
     
+    /**
+     * Read one row of packed RGB pixels into a buffer
+     */
+    static void readRGBRow(BufferedImage image, int y, int[] row) {
+        int width = image.getWidth();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(pixels, y * width, row, 0, width);
+        } else if (image.getRaster().getDataBuffer() instanceof RawFrames.MappedFrameBuffer) {
+            // Mapped raw frame: read straight from the file mapping
+            WritableRaster raster = image.getRaster();
+            ((RawFrames.MappedFrameBuffer) raster.getDataBuffer()).readRGBRow(
+                -raster.getSampleModelTranslateX(), y - raster.getSampleModelTranslateY(), width, row);
+        } else {
+            image.getRGB(0, y, width, 1, row, 0, width);
+        }
+    }
+    
     /**
      * Set pixel RGB - optimized version using direct pixel access
      */
@@ -595,14 +1002,15 @@ public class ConfigurationManager {
     /**
      * Fast image resize using nearest neighbor (fast) or bilinear (quality)
      */
-    private BufferedImage resizeImage(BufferedImage image, int width, int height) {
-        BufferedImage resized = new BufferedImage(width, height, image.getType());
+    private BufferedImage resizeImage(BufferedImage image, int width, int height, boolean fast) {
+        int type = image.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_RGB : image.getType();
+        BufferedImage resized = new BufferedImage(width, height, type);
         Graphics2D g = null;
         try {
             g = resized.createGraphics();
             
             // Use fast rendering for speed
-            if (fastMode) {
+            if (fast) {
                 g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
                 g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
             } else {
@@ -625,181 +1033,469 @@ public class ConfigurationManager {
         System.out.println("Fast mode: " + (enabled ? "ENABLED" : "DISABLED"));
     }
     
+    public boolean isFastMode() {
+        return fastMode;
+    }
+    
     /**
-     * Run segmentation on image with mask generation
+     * Decoder subsampling for an image of the given size: in fast mode there is no point
+     * decoding more pixels than segmentation will keep
+     */
+    public int getDecodeSubsampling(int width, int height) {
+        return fastMode ? ImageLoader.subsamplingFor(width, height, FAST_MODE_MAX_WIDTH, FAST_MODE_MAX_HEIGHT) : 1;
+    }
+    
+    /**
+     * Run segmentation and render the result overlay (detections highlighted,
+     * ignored areas dimmed, boxes and measurements drawn) at the input resolution
      */
     public BufferedImage runSegmentation(BufferedImage image) {
-        // Thread-safe access to learnedRules and fastMode
-        boolean isEmpty;
-        boolean isFastMode;
-        Map<String, LabelRule> rulesCopy;
-        List<String> ignoreCopy;
-        
-        synchronized (lock) {
-            isEmpty = learnedRules.isEmpty();
-            isFastMode = fastMode;
-            // Make defensive copies for thread safety
-            rulesCopy = new HashMap<>(learnedRules);
-            ignoreCopy = new ArrayList<>(ignoreLabels);
+        return runSegmentation(image, CancellationToken.NONE, ProgressListener.NONE);
+    }
+    
+    /**
+     * runSegmentation that reports per-stage progress and can be cancelled part-way;
+     * throws CancellationException once the token is cancelled or the thread interrupted
+     */
+    public BufferedImage runSegmentation(BufferedImage image, CancellationToken token, ProgressListener listener) {
+        return runSegmentation(image, null, 1, token, listener);
+    }
+    
+    /**
+     * runSegmentation for part of a frame or a subsampled decode (see inspect with an origin)
+     */
+    public BufferedImage runSegmentation(BufferedImage image, Point origin, int subsampling, CancellationToken token,
+                                         ProgressListener listener) {
+        InspectionResult inspection = inspect(image, origin, subsampling,
+            fastMode ? QualityController.Level.FAST : QualityController.Level.FULL, token, listener);
+        if (inspection == null) {
+            return null;
         }
-        
-        if (isEmpty) {
+        try {
+            BufferedImage result = renderOverlay(image, inspection, token, listener);
+            System.out.println("Segmentation complete in " + inspection.getElapsedNanos() / 1_000_000 +
+                "ms. Detected pixels: " + inspection.getDetectedPixels());
+            return result;
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Classify and measure an image without rendering anything.
+     * Returns null if there are no learned rules or inspection fails.
+     */
+    public InspectionResult inspect(BufferedImage image) {
+        return inspect(image, CancellationToken.NONE, ProgressListener.NONE);
+    }
+    
+    /**
+     * inspect() that reports per-stage progress and checks the token between row bands.
+     * A cancelled inspection returns its pooled masks and throws CancellationException.
+     */
+    public InspectionResult inspect(BufferedImage image, CancellationToken token, ProgressListener listener) {
+        return inspect(image, fastMode ? QualityController.Level.FAST : QualityController.Level.FULL, token, listener);
+    }
+    
+    /**
+     * inspect() at a given quality level instead of the fast mode setting (see QualityController)
+     */
+    public InspectionResult inspect(BufferedImage image, QualityController.Level quality, CancellationToken token,
+                                    ProgressListener listener) {
+        return inspect(image, null, 1, quality, token, listener);
+    }
+    
+    /**
+     * inspect() for an image that is not the whole frame at full resolution: origin is where its top-left
+     * pixel lies in the frame (null for 0,0) and each of its pixels covers subsampling frame pixels.
+     * Calibration, the minimum piece size and exclusion zones are in frame pixels, so they still apply;
+     * piece boxes stay in the image's own pixels.
+     */
+    public InspectionResult inspect(BufferedImage image, Point origin, int subsampling, QualityController.Level quality,
+                                    CancellationToken token, ProgressListener listener) {
+        InspectionState state = beginInspection(quality);
+        if (state == null) {
             System.err.println("No learned rules. Please teach the model first.");
             return null;
         }
+        state.setInput(origin, subsampling);
+        state.token = token;
+        state.listener = listener;
         
         try {
-            long startTime = System.currentTimeMillis();
-            
-            // Fast mode: downsample for speed
-            BufferedImage processImage = image;
-            double scale = 1.0;
-            if (isFastMode && (image.getWidth() > 1280 || image.getHeight() > 960)) {
-                scale = Math.min(1280.0 / image.getWidth(), 960.0 / image.getHeight());
-                int newW = (int)(image.getWidth() * scale);
-                int newH = (int)(image.getHeight() * scale);
-                processImage = resizeImage(image, newW, newH);
-                System.out.println("Fast mode: downsampled to " + newW + "x" + newH);
+            long startTime = System.nanoTime();
+            classify(state, image);
+            cleanMasks(state);
+            label(state);
+            measure(state);
+            state.elapsedNanos = System.nanoTime() - startTime;
+            return state.toResult();
+        } catch (CancellationException e) {
+            releaseMasks(state);
+            throw e;
+        } catch (Exception e) {
+            releaseMasks(state);
+            metrics.recordFailure();
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Stage latencies and counters of every inspection this manager runs
+     */
+    public InspectionMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * One image part-way through inspection. The steps below fill it in order;
+     * inspect() runs them back to back, InspectionPipeline runs each on its own stage.
+     */
+    static final class InspectionState {
+        final ModelSnapshot snapshot;
+        final QualityController.Level quality;
+        String recipe;  // Active recipe when the inspection started, for events
+        BufferedImage processed;
+        double scale = 1.0;  // Processed pixels per input pixel
+        int originX, originY;  // Frame position of the input's top-left pixel
+        int subsampling = 1;  // Frame pixels per input pixel
+        boolean[][] detectionMask;
+        boolean[][] ignoreMask;
+        List<Rectangle> boxes;
+        List<InspectionResult.Piece> pieces;
+        long elapsedNanos;  // Time spent in the steps (not waiting between them)
+        boolean[][] rawDetectionMask;  // Pooled classify output, until morphology has used it
+        boolean evaluation;  // Scoring a candidate rule set: no stage metrics or events, no exclusion zones
+        CancellationToken token = CancellationToken.NONE;
+        ProgressListener listener = ProgressListener.NONE;
+        
+        InspectionState(ModelSnapshot snapshot, QualityController.Level quality) {
+            this.snapshot = snapshot;
+            this.quality = quality;
+        }
+        
+        /**
+         * Where the input image lies in the full frame; set before classify
+         */
+        void setInput(Point origin, int subsampling) {
+            this.originX = origin != null ? origin.x : 0;
+            this.originY = origin != null ? origin.y : 0;
+            this.subsampling = Math.max(1, subsampling);
+        }
+        
+        /**
+         * Processed pixels per full-frame pixel: input subsampling and the quality resize together
+         */
+        double frameScale() {
+            return scale / subsampling;
+        }
+        
+        /**
+         * Called between row bands: stop if cancelled, else report progress
+         */
+        void checkpoint(InspectionPipeline.StageName stage, double fraction) {
+            token.throwIfCancelled();
+            listener.progress(stage, fraction);
+        }
+        
+        InspectionResult toResult() {
+            return new InspectionResult(processed, detectionMask, ignoreMask, scale, quality, pieces, elapsedNanos);
+        }
+    }
+    
+    /**
+     * Return the pooled masks of an inspection that stopped before morphology used them
+     */
+    void releaseMasks(InspectionState state) {
+        maskPool.release(state.rawDetectionMask);
+        state.rawDetectionMask = null;
+    }
+    
+    /**
+     * Start an inspection with the current model and settings; null if there are no rules.
+     * One read of the published model is used for the whole image: no lock, and a recipe
+     * change mid-image cannot mix old rules with new calibration.
+     */
+    InspectionState beginInspection() {
+        return beginInspection(fastMode ? QualityController.Level.FAST : QualityController.Level.FULL);
+    }
+    
+    /**
+     * Start a full-quality inspection with a candidate rule set instead of the model's rules, for evaluation.
+     * It is not recorded in the stage metrics or JFR, and exclusion zones are not applied, so pieces are
+     * counted on the same pixels the evaluator scores.
+     */
+    InspectionState beginInspection(CompiledClassifier classifier) {
+        InspectionState state = new InspectionState(model.get().withClassifier(classifier), QualityController.Level.FULL);
+        state.evaluation = true;
+        return state;
+    }
+    
+    InspectionState beginInspection(QualityController.Level quality) {
+        ModelSnapshot snapshot = model.get();
+        if (!snapshot.hasRules()) {
+            return null;
+        }
+        InspectionState state = new InspectionState(snapshot, quality);
+        state.recipe = activeRecipe;
+        return state;
+    }
+    
+    /**
+     * Classify every pixel (ignore labels take precedence over detection labels)
+     */
+    void classify(InspectionState state, BufferedImage image) {
+        InspectionEvents.Stage event = InspectionEvents.beginStage(InspectionPipeline.StageName.CLASSIFY);
+        long start = System.nanoTime();
+        // Reduced quality levels (fast mode among them): downsample for speed
+        BufferedImage processed = image;
+        state.scale = state.quality.scaleFor(image.getWidth(), image.getHeight());
+        if (state.scale < 1.0) {
+            int newW = (int)(image.getWidth() * state.scale);
+            int newH = (int)(image.getHeight() * state.scale);
+            processed = resizeImage(image, newW, newH, state.quality.nearestResize);
+        }
+        // No preprocessing: training is done on raw images, so inference should match
+        
+        int width = processed.getWidth();
+        int height = processed.getHeight();
+        CompiledClassifier classifier = state.snapshot.getClassifier();
+        // Only morphology reads the raw detection mask, so it comes from the pool
+        boolean[][] detectionMask = maskPool.acquire(width, height);
+        boolean[][] ignoreMask = new boolean[height][width];
+        state.rawDetectionMask = detectionMask;
+        
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            if ((y & BAND_MASK) == 0) {
+                state.checkpoint(InspectionPipeline.StageName.CLASSIFY, (double) y / height);
             }
-            
-            // Skip preprocessing in fast mode OR if it hurts accuracy
-            // Training is done on raw images, so inference should match
-            BufferedImage processed = processImage;
-            
-            int width = processed.getWidth();
-            int height = processed.getHeight();
-            
-            // Create binary mask for detection
-            boolean[][] detectionMask = new boolean[height][width];
-            boolean[][] ignoreMask = new boolean[height][width];
-            
-            // First pass: classify each pixel (use preprocessed image)
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int[] rgb = getPixelRGB(processed, x, y);
-                    int[] hsv = rgbToHsv(rgb[0], rgb[1], rgb[2]);
-                    
-                    // Check ignore labels first
-                    for (String ignoreLabel : ignoreCopy) {
-                        LabelRule rule = rulesCopy.get(ignoreLabel);
-                        if (rule != null && matchesRule(hsv, rule)) {
-                            ignoreMask[y][x] = true;
-                            break;
-                        }
-                    }
-                    
-                    // If not ignored, check detection labels
-                    if (!ignoreMask[y][x]) {
-                        for (Map.Entry<String, LabelRule> entry : rulesCopy.entrySet()) {
-                            if (ignoreCopy.contains(entry.getKey())) {
-                                continue; // Skip ignore labels
-                            }
-                            
-                            LabelRule rule = entry.getValue();
-                            if (matchesRule(hsv, rule)) {
-                                detectionMask[y][x] = true;
-                                break;
-                            }
-                        }
-                    }
-                }
+            readRGBRow(processed, y, row);
+            boolean[] detectRow = detectionMask[y];
+            boolean[] ignoreRow = ignoreMask[y];
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int hsv = rgbToHsvPacked((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                int cls = classifier.classifyPacked(hsv);
+                ignoreRow[x] = cls == CompiledClassifier.IGNORE;
+                detectRow[x] = cls == CompiledClassifier.DETECT;
             }
-            
-            // Apply morphological operations to clean up mask
-            // Use smaller kernels in fast mode
-            int closeKernel = isFastMode ? 2 : 3;
-            int openKernel = isFastMode ? 1 : 2;
-            detectionMask = morphologicalClose(detectionMask, closeKernel);
-            detectionMask = morphologicalOpen(detectionMask, openKernel);
-            
-            // Create result image
-            BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            
+        }
+        state.processed = processed;
+        state.detectionMask = detectionMask;
+        state.ignoreMask = ignoreMask;
+        endStage(InspectionPipeline.StageName.CLASSIFY, event, start, state);
+    }
+    
+    /**
+     * Clean up the detection mask with morphology and apply the exclusion zones
+     */
+    void cleanMasks(InspectionState state) {
+        InspectionEvents.Stage event = InspectionEvents.beginStage(InspectionPipeline.StageName.MORPHOLOGY);
+        long start = System.nanoTime();
+        int closeKernel = state.quality.closeKernel;
+        int openKernel = state.quality.openKernel;
+        boolean[][] raw = state.detectionMask;
+        int height = raw.length;
+        int width = raw[0].length;
+        // Close then open; only the last pass's output outlives this method
+        boolean[][] scratchA = maskPool.acquire(width, height);
+        boolean[][] scratchB = maskPool.acquire(width, height);
+        boolean[][] detectionMask = new boolean[height][width];
+        try {
+            dilate(raw, closeKernel, scratchA, state, 0);
+            if (openKernel > 1) {
+                erode(scratchA, closeKernel, scratchB, state, 1);
+                erode(scratchB, openKernel, scratchA, state, 2);
+                dilate(scratchA, openKernel, detectionMask, state, 3);
+            } else {
+                // A 1x1 opening changes nothing
+                erode(scratchA, closeKernel, detectionMask, state, 1);
+            }
+        } finally {
+            maskPool.release(scratchA);
+            maskPool.release(scratchB);
+        }
+        if (raw == state.rawDetectionMask) {
+            maskPool.release(raw);
+            state.rawDetectionMask = null;
+        }
+        
+        // Static exclusion zones are dimmed and never detected
+        boolean[][] excluded = state.evaluation ? null
+            : getExclusionMask(width, height, state.frameScale(), state.originX, state.originY);
+        if (excluded != null) {
             for (int y = 0; y < height; y++) {
                 for (int x = 0; x < width; x++) {
-                    int[] rgb = getPixelRGB(image, x, y);
-                    int r = rgb[0];
-                    int g = rgb[1];
-                    int b = rgb[2];
-                    
-                    if (detectionMask[y][x]) {
-                        // Highlight detected regions in green
-                        int highlightR = Math.min(255, r + 50);
-                        int highlightG = Math.min(255, g + 100);
-                        int highlightB = b;
-                        setPixelRGB(result, x, y, highlightR, highlightG, highlightB);
-                    } else if (ignoreMask[y][x]) {
-                        // Dim ignored regions
-                        setPixelRGB(result, x, y, r/2, g/2, b/2);
-                    } else {
-                        // Keep original for unclassified
-                        setPixelRGB(result, x, y, r, g, b);
+                    if (excluded[y][x]) {
+                        detectionMask[y][x] = false;
+                        state.ignoreMask[y][x] = true;
                     }
                 }
             }
-            
-            // Draw contours around detected regions with proper resource management
-            Graphics2D g2d = null;
-            try {
-                result = drawContours(result, detectionMask);
-                
-                long elapsed = System.currentTimeMillis() - startTime;
-                int detectedPixels = countTrue(detectionMask);
-                System.out.println("Segmentation complete in " + elapsed + "ms. Detected pixels: " + detectedPixels);
-                
-                // If we downsampled, scale back up
-                if (isFastMode && scale < 1.0) {
-                    result = resizeImage(result, image.getWidth(), image.getHeight());
-                }
-                
-                return result;
-            } finally {
-                // Ensure cleanup (though g2d should be disposed in drawContours)
-                // This is defense-in-depth
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+        }
+        state.detectionMask = detectionMask;
+        endStage(InspectionPipeline.StageName.MORPHOLOGY, event, start, state);
+    }
+    
+    /**
+     * Find the connected components of the detection mask
+     */
+    void label(InspectionState state) {
+        InspectionEvents.Stage event = InspectionEvents.beginStage(InspectionPipeline.StageName.LABEL);
+        long start = System.nanoTime();
+        state.boxes = findBoundingBoxes(state.detectionMask, state);
+        endStage(InspectionPipeline.StageName.LABEL, event, start, state);
+    }
+    
+    /**
+     * Oriented box, size in mm and verdict for each component; the last step, so the frame is counted here
+     */
+    void measure(InspectionState state) {
+        InspectionEvents.Stage event = InspectionEvents.beginStage(InspectionPipeline.StageName.MEASURE);
+        long start = System.nanoTime();
+        state.pieces = measurePieces(state.detectionMask, state.boxes, state.snapshot, state);
+        endStage(InspectionPipeline.StageName.MEASURE, event, start, state);
+        metrics.recordFrame(state.pieces);
+    }
+    
+    private void endStage(InspectionPipeline.StageName stage, InspectionEvents.Stage event, long startNanos,
+                          InspectionState state) {
+        if (state.evaluation) {
+            return;
+        }
+        int pieces = state.pieces != null ? state.pieces.size() : state.boxes != null ? state.boxes.size() : 0;
+        boolean[][] mask = state.detectionMask;
+        endStage(stage, event, startNanos, mask != null ? mask[0].length : 0, mask != null ? mask.length : 0, pieces,
+            state.quality, state.recipe);
+    }
+    
+    /**
+     * Account a finished stage: its latency histogram, and the JFR event if a recording enables it
+     */
+    private void endStage(InspectionPipeline.StageName stage, InspectionEvents.Stage event, long startNanos,
+                          int width, int height, int pieces, QualityController.Level quality, String recipe) {
+        metrics.recordStage(stage, System.nanoTime() - startNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.pieces = pieces;
+            event.quality = quality != null ? quality.name() : null;
+            event.recipe = recipe;
+            event.commit();
         }
     }
     
     /**
-     * Check if HSV values match a rule
+     * Account an image decoded for inspection (decoding happens outside this class)
      */
-    private boolean matchesRule(int[] hsv, LabelRule rule) {
-        return hsv[0] >= rule.hMin && hsv[0] <= rule.hMax &&
-               hsv[1] >= rule.sMin && hsv[1] <= rule.sMax &&
-               hsv[2] >= rule.vMin && hsv[2] <= rule.vMax;
+    void endDecode(InspectionEvents.Stage event, long startNanos, BufferedImage image) {
+        endStage(InspectionPipeline.StageName.DECODE, event, startNanos, image.getWidth(), image.getHeight(), 0,
+            null, activeRecipe);
+    }
+    
+    /**
+     * Draw an inspection onto its image: detections highlighted, ignored areas dimmed,
+     * contours, oriented boxes and measurements. Returned at the input resolution.
+     */
+    public BufferedImage renderOverlay(BufferedImage image, InspectionResult inspection) {
+        return renderOverlay(image, inspection, CancellationToken.NONE, ProgressListener.NONE);
+    }
+    
+    private BufferedImage renderOverlay(BufferedImage image, InspectionResult inspection,
+                                        CancellationToken token, ProgressListener listener) {
+        InspectionEvents.Stage event = InspectionEvents.beginStage(InspectionPipeline.StageName.RENDER);
+        long start = System.nanoTime();
+        BufferedImage processed = inspection.getProcessedImage();
+        boolean[][] detectionMask = inspection.getDetectionMask();
+        boolean[][] ignoreMask = inspection.getIgnoreMask();
+        int width = inspection.getWidth();
+        int height = inspection.getHeight();
+        
+        // Create result image
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        
+        for (int y = 0; y < height; y++) {
+            if ((y & BAND_MASK) == 0) {
+                token.throwIfCancelled();
+                listener.progress(InspectionPipeline.StageName.RENDER, 0.9 * y / height);
+            }
+            for (int x = 0; x < width; x++) {
+                int[] rgb = getPixelRGB(processed, x, y);
+                int r = rgb[0];
+                int g = rgb[1];
+                int b = rgb[2];
+                
+                if (detectionMask[y][x]) {
+                    // Highlight detected regions in green
+                    int highlightR = Math.min(255, r + 50);
+                    int highlightG = Math.min(255, g + 100);
+                    int highlightB = b;
+                    setPixelRGB(result, x, y, highlightR, highlightG, highlightB);
+                } else if (ignoreMask[y][x]) {
+                    // Dim ignored regions
+                    setPixelRGB(result, x, y, r/2, g/2, b/2);
+                } else {
+                    // Keep original for unclassified
+                    setPixelRGB(result, x, y, r, g, b);
+                }
+            }
+        }
+        
+        // Draw contours around detected regions
+        token.throwIfCancelled();
+        result = drawContours(result, detectionMask, inspection.getPieces());
+        listener.progress(InspectionPipeline.StageName.RENDER, 1.0);
+        
+        // If we downsampled, scale back up
+        if (inspection.getScale() < 1.0) {
+            result = resizeImage(result, image.getWidth(), image.getHeight(), inspection.getQuality().nearestResize);
+        }
+        endStage(InspectionPipeline.StageName.RENDER, event, start, width, height, inspection.getPieces().size(),
+            inspection.getQuality(), activeRecipe);
+        return result;
     }
     
     /**
      * Morphological closing (dilation followed by erosion)
      */
-    private boolean[][] morphologicalClose(boolean[][] mask, int kernelSize) {
-        mask = dilate(mask, kernelSize);
-        mask = erode(mask, kernelSize);
-        return mask;
+    boolean[][] morphologicalClose(boolean[][] mask, int kernelSize) {
+        boolean[][] dilated = new boolean[mask.length][mask[0].length];
+        boolean[][] result = new boolean[mask.length][mask[0].length];
+        dilate(mask, kernelSize, dilated, null, 0);
+        erode(dilated, kernelSize, result, null, 0);
+        return result;
     }
     
     /**
      * Morphological opening (erosion followed by dilation)
      */
-    private boolean[][] morphologicalOpen(boolean[][] mask, int kernelSize) {
-        mask = erode(mask, kernelSize);
-        mask = dilate(mask, kernelSize);
-        return mask;
+    boolean[][] morphologicalOpen(boolean[][] mask, int kernelSize) {
+        boolean[][] eroded = new boolean[mask.length][mask[0].length];
+        boolean[][] result = new boolean[mask.length][mask[0].length];
+        erode(mask, kernelSize, eroded, null, 0);
+        dilate(eroded, kernelSize, result, null, 0);
+        return result;
     }
     
     /**
-     * Dilate mask
+     * Dilate mask into result (every cell is written). With a state, pass 0..3 of the
+     * morphology stage is reported and cancellation checked per row band.
      */
-    private boolean[][] dilate(boolean[][] mask, int kernelSize) {
+    void dilate(boolean[][] mask, int kernelSize, boolean[][] result, InspectionState state, int pass) {
         int height = mask.length;
         int width = mask[0].length;
-        boolean[][] result = new boolean[height][width];
         int half = kernelSize / 2;
         
         for (int y = 0; y < height; y++) {
+            if (state != null && (y & BAND_MASK) == 0) {
+                state.checkpoint(InspectionPipeline.StageName.MORPHOLOGY, (pass + (double) y / height) / 4);
+            }
             for (int x = 0; x < width; x++) {
                 boolean hasTrue = false;
                 for (int ky = -half; ky <= half; ky++) {
@@ -816,19 +1512,20 @@ public class ConfigurationManager {
                 result[y][x] = hasTrue;
             }
         }
-        return result;
     }
     
     /**
-     * Erode mask
+     * Erode mask into result (every cell is written), reporting like dilate()
      */
-    private boolean[][] erode(boolean[][] mask, int kernelSize) {
+    void erode(boolean[][] mask, int kernelSize, boolean[][] result, InspectionState state, int pass) {
         int height = mask.length;
         int width = mask[0].length;
-        boolean[][] result = new boolean[height][width];
         int half = kernelSize / 2;
         
         for (int y = 0; y < height; y++) {
+            if (state != null && (y & BAND_MASK) == 0) {
+                state.checkpoint(InspectionPipeline.StageName.MORPHOLOGY, (pass + (double) y / height) / 4);
+            }
             for (int x = 0; x < width; x++) {
                 boolean allTrue = true;
                 for (int ky = -half; ky <= half; ky++) {
@@ -845,28 +1542,40 @@ public class ConfigurationManager {
                 result[y][x] = allTrue;
             }
         }
-        return result;
     }
     
     /**
      * Find connected components and their bounding boxes
      */
-    private List<Rectangle> findBoundingBoxes(boolean[][] mask) {
+    List<Rectangle> findBoundingBoxes(boolean[][] mask) {
+        return findBoundingBoxes(mask, null);
+    }
+    
+    private List<Rectangle> findBoundingBoxes(boolean[][] mask, InspectionState state) {
         int height = mask.length;
         int width = mask[0].length;
-        boolean[][] visited = new boolean[height][width];
+        boolean[][] visited = maskPool.acquireCleared(width, height);
         List<Rectangle> boxes = new ArrayList<>();
+        // 10 frame pixels, so downsampling and subsampled decodes keep the same pieces
+        double minSize = MIN_PIECE_SIZE * (state != null ? state.frameScale() : 1.0);
         
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (mask[y][x] && !visited[y][x]) {
-                    // Found new component, flood fill to find bounds
-                    Rectangle bounds = floodFillBounds(mask, visited, x, y);
-                    if (bounds.width > 10 && bounds.height > 10) {  // Filter tiny detections
-                        boxes.add(bounds);
+        try {
+            for (int y = 0; y < height; y++) {
+                if (state != null && (y & BAND_MASK) == 0) {
+                    state.checkpoint(InspectionPipeline.StageName.LABEL, (double) y / height);
+                }
+                for (int x = 0; x < width; x++) {
+                    if (mask[y][x] && !visited[y][x]) {
+                        // Found new component, flood fill to find bounds
+                        Rectangle bounds = floodFillBounds(mask, visited, x, y, state);
+                        if (bounds.width > minSize && bounds.height > minSize) {  // Filter tiny detections
+                            boxes.add(bounds);
+                        }
                     }
                 }
             }
+        } finally {
+            maskPool.release(visited);
         }
         
         return boxes;
@@ -875,7 +1584,8 @@ public class ConfigurationManager {
     /**
      * Flood fill to find component bounds
      */
-    private Rectangle floodFillBounds(boolean[][] mask, boolean[][] visited, int startX, int startY) {
+    private Rectangle floodFillBounds(boolean[][] mask, boolean[][] visited, int startX, int startY,
+                                      InspectionState state) {
         int height = mask.length;
         int width = mask[0].length;
         
@@ -886,8 +1596,13 @@ public class ConfigurationManager {
         queue.add(new Point(startX, startY));
         visited[startY][startX] = true;
         
+        int filled = 0;
         while (!queue.isEmpty()) {
             Point p = queue.poll();
+            // One component can cover most of the image; don't wait for it to finish
+            if (state != null && (++filled & 0xFFFF) == 0) {
+                state.token.throwIfCancelled();
+            }
             
             minX = Math.min(minX, p.x);
             maxX = Math.max(maxX, p.x);
@@ -914,7 +1629,7 @@ public class ConfigurationManager {
     /**
      * Calculate oriented bounding box using PCA
      */
-    private static class OrientedBoundingBox {
+    static class OrientedBoundingBox {
         Point center;
         double width;
         double height;
@@ -922,7 +1637,7 @@ public class ConfigurationManager {
         Point[] corners; // 4 corners of rotated box
     }
     
-    private OrientedBoundingBox calculateOBB(boolean[][] mask, Rectangle bounds) {
+    OrientedBoundingBox calculateOBB(boolean[][] mask, Rectangle bounds) {
         OrientedBoundingBox obb = new OrientedBoundingBox();
         
         // Collect all points in the region
@@ -1035,11 +1750,56 @@ public class ConfigurationManager {
         return obb;
     }
     
+    /**
+     * Measure each detected component: oriented box, length/width in mm and pass/fail
+     * against the target dimensions
+     */
+    private List<InspectionResult.Piece> measurePieces(boolean[][] mask, List<Rectangle> boxes, ModelSnapshot snapshot,
+                                                       InspectionState state) {
+        // Calibration is for frame pixels; the mask may be subsampled and downsampled
+        double pxPerMm = snapshot.getPixelsPerMm() * state.frameScale();
+        double lengthTarget = snapshot.getLengthTarget();
+        double widthTarget = snapshot.getWidthTarget();
+        double lengthTolerance = snapshot.getLengthTolerance();
+        double widthToleranceUsed = snapshot.getShortSideTolerance();
+        
+        List<InspectionResult.Piece> pieces = new ArrayList<>();
+        for (int i = 0; i < boxes.size(); i++) {
+            Rectangle box = boxes.get(i);
+            state.checkpoint(InspectionPipeline.StageName.MEASURE, (double) i / boxes.size());
+            // Calculate OBB for accurate measurements
+            OrientedBoundingBox obb = calculateOBB(mask, box);
+            
+            if (obb == null) {
+                continue;
+            }
+            
+            // Use OBB dimensions for measurements (always use the larger dimension as length)
+            double lengthPx = Math.max(obb.width, obb.height);
+            double widthPx = Math.min(obb.width, obb.height);
+            
+            // Convert to mm
+            double lengthMm = lengthPx / pxPerMm;
+            double widthMm = widthPx / pxPerMm;
+            
+            // Check pass/fail based on separate width and height tolerances (in mm)
+            double lengthDiffMm = Math.abs(lengthMm - lengthTarget);
+            double widthDiffMm = Math.abs(widthMm - widthTarget);
+            boolean lengthPass = lengthDiffMm <= lengthTolerance;
+            boolean widthPass = widthDiffMm <= widthToleranceUsed;
+            
+            // The piece derives its verdict and failure reason from the two checks
+            pieces.add(new InspectionResult.Piece(pieces.size() + 1, box, obb.center, obb.corners,
+                lengthMm, widthMm, lengthPass, widthPass));
+        }
+        return pieces;
+    }
+    
     /**
      * Draw contours around detected regions with measurements
      * Uses proper resource management with try-finally
      */
-    private BufferedImage drawContours(BufferedImage image, boolean[][] mask) {
+    BufferedImage drawContours(BufferedImage image, boolean[][] mask, List<InspectionResult.Piece> pieces) {
         int height = mask.length;
         int width = mask[0].length;
         BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
@@ -1050,9 +1810,6 @@ public class ConfigurationManager {
         // Copy original
         g2d.drawImage(image, 0, 0, null);
         
-        // Find bounding boxes for each detection
-        List<Rectangle> boxes = findBoundingBoxes(mask);
-        
         // Draw contour edges in bright green
         for (int y = 1; y < height - 1; y++) {
             for (int x = 1; x < width - 1; x++) {
@@ -1072,59 +1829,17 @@ public class ConfigurationManager {
         g2d.setStroke(new BasicStroke(3));
         g2d.setFont(new Font("SansSerif", Font.BOLD, 13));
         
-        int detectionNum = 1;
         int passCount = 0;
         int failCount = 0;
         
-        for (Rectangle box : boxes) {
-            // Calculate OBB for accurate measurements
-            OrientedBoundingBox obb = calculateOBB(mask, box);
-            
-            if (obb == null) {
-                continue;
-            }
-            
-            // Use OBB dimensions for measurements (always use the larger dimension as length)
-            double lengthPx = Math.max(obb.width, obb.height);
-            double widthPx = Math.min(obb.width, obb.height);
-            
-            // Convert to mm
-            double lengthMm = lengthPx / pixelsPerMm;
-            double widthMm = widthPx / pixelsPerMm;
-            
-            // Check pass/fail based on separate width and height tolerances (in mm)
-            // Compare against target dimensions (larger vs larger, smaller vs smaller)
-            double lengthTarget = Math.max(targetWidth, targetHeight);
-            double widthTarget = Math.min(targetWidth, targetHeight);
-            double lengthTolerance = Math.max(widthTolerance, heightTolerance);
-            double widthToleranceUsed = Math.min(widthTolerance, heightTolerance);
-            
-            double lengthDiffMm = Math.abs(lengthMm - lengthTarget);
-            double widthDiffMm = Math.abs(widthMm - widthTarget);
-            boolean lengthPass = lengthDiffMm <= lengthTolerance;
-            boolean widthPass = widthDiffMm <= widthToleranceUsed;
-            boolean pass = (lengthPass && widthPass);
-            
+        for (InspectionResult.Piece piece : pieces) {
+            boolean pass = piece.pass;
             if (pass) {
                 passCount++;
             } else {
                 failCount++;
             }
             
-            // Determine failure reason
-            String failureReason = "";
-            if (!pass) {
-                boolean lengthFail = !lengthPass;
-                boolean widthFail = !widthPass;
-                if (lengthFail && widthFail) {
-                    failureReason = "Width & Height";
-                } else if (lengthFail) {
-                    failureReason = "Height"; // length corresponds to height
-                } else {
-                    failureReason = "Width";
-                }
-            }
-            
             // Color based on pass/fail
             Color boxColor = pass ? new Color(0, 255, 0) : new Color(255, 0, 0);
             g2d.setColor(boxColor);
@@ -1133,20 +1848,20 @@ public class ConfigurationManager {
             int[] xPoints = new int[4];
             int[] yPoints = new int[4];
             for (int i = 0; i < 4; i++) {
-                xPoints[i] = obb.corners[i].x;
-                yPoints[i] = obb.corners[i].y;
+                xPoints[i] = piece.corners[i].x;
+                yPoints[i] = piece.corners[i].y;
             }
             g2d.drawPolygon(xPoints, yPoints, 4);
             
             // Draw measurement labels
-            String lengthLabel = String.format("L: %.1fmm", lengthMm);
-            String widthLabel = String.format("W: %.1fmm", widthMm);
+            String lengthLabel = String.format("L: %.1fmm", piece.lengthMm);
+            String widthLabel = String.format("W: %.1fmm", piece.widthMm);
             String statusLabel = pass ? "✓ PASS" : "✗ REJECT";
-            String idLabel = String.format("#%d", detectionNum);
+            String idLabel = String.format("#%d", piece.id);
             
             // Position labels near the center of the OBB
-            int labelX = obb.center.x - 60;
-            int labelY = obb.center.y - 10;
+            int labelX = piece.center.x - 60;
+            int labelY = piece.center.y - 10;
             
             // Background for text (wider if showing failure reason)
             int bgWidth = !pass ? 150 : 120;
@@ -1162,10 +1877,8 @@ public class ConfigurationManager {
             // Show failure reason if failing
             if (!pass) {
                 g2d.setColor(new Color(255, 140, 0)); // Orange for failure reason
-                g2d.drawString("Fails: " + failureReason, labelX, labelY + 24);
+                g2d.drawString("Fails: " + piece.failureReason, labelX, labelY + 24);
             }
-            
-            detectionNum++;
         }
         
         // Draw summary at top
@@ -1173,7 +1886,7 @@ public class ConfigurationManager {
         g2d.setColor(new Color(0, 0, 0, 220));
         g2d.fillRect(10, 10, 280, 30);
         g2d.setColor(Color.WHITE);
-        g2d.drawString(String.format("Total: %d | ", boxes.size()), 15, 30);
+        g2d.drawString(String.format("Total: %d | ", pieces.size()), 15, 30);
         g2d.setColor(new Color(0, 255, 0));
         g2d.drawString(String.format("Pass: %d | ", passCount), 95, 30);
         g2d.setColor(new Color(255, 0, 0));
@@ -1187,20 +1900,6 @@ public class ConfigurationManager {
         }
     }
     
-    /**
-     * Count true values in mask
-     */
-    private int countTrue(boolean[][] mask) {
-        int count = 0;
-        for (int y = 0; y < mask.length; y++) {
-            for (int x = 0; x < mask[0].length; x++) {
-                if (mask[y][x]) count++;
-            }
-        }
-        return count;
-    }
-    
-    
     /**
      * Get the rules file path in the frontend directory
      */
@@ -1227,51 +1926,127 @@ public class ConfigurationManager {
     private void loadRulesFromFile() {
         try {
             File rulesFile = getRulesFile();
+            File modelFile = getModelFile();
             if (!rulesFile.exists()) {
-                System.out.println("No saved rules found at startup.");
+                // A node can be deployed with only the compiled model
+                if (modelFile.exists()) {
+                    applyModel(ModelFile.read(modelFile));
+                    System.out.println("Loaded " + model.get().getRules().size() + " rules from: " + modelFile.getAbsolutePath());
+                } else {
+                    System.out.println("No saved rules found at startup.");
+                }
                 return;
             }
             
-            try (FileReader reader = new FileReader(rulesFile)) {
-                JsonObject json = gson.fromJson(reader, JsonObject.class);
-                
-                if (json.has("rules")) {
-                    JsonArray rulesArray = json.getAsJsonArray("rules");
-                    for (int i = 0; i < rulesArray.size(); i++) {
-                        JsonObject ruleObj = rulesArray.get(i).getAsJsonObject();
-                        String label = ruleObj.get("label").getAsString();
-                        
-                        JsonArray lower = ruleObj.getAsJsonArray("lower");
-                        JsonArray upper = ruleObj.getAsJsonArray("upper");
-                        
-                        LabelRule rule = new LabelRule(
-                            label,
-                            lower.get(0).getAsInt(),
-                            lower.get(1).getAsInt(),
-                            lower.get(2).getAsInt(),
-                            upper.get(0).getAsInt(),
-                            upper.get(1).getAsInt(),
-                            upper.get(2).getAsInt()
-                        );
-                        
-                        learnedRules.put(label, rule);
+            // Use the compiled model when it was built from exactly this JSON
+            byte[] source = Files.readAllBytes(rulesFile.toPath());
+            byte[] sourceHash = ModelFile.sha256(source);
+            if (modelFile.exists()) {
+                try {
+                    ModelFile compiled = ModelFile.read(modelFile);
+                    if (compiled.isBuiltFrom(sourceHash)) {
+                        applyModel(compiled);
+                        System.out.println("Loaded " + model.get().getRules().size() + " rules from: " + modelFile.getAbsolutePath());
+                        return;
                     }
+                    System.out.println("Compiled model is stale; rebuilding from " + rulesFile.getName());
+                } catch (IOException e) {
+                    System.err.println("Ignoring compiled model: " + e.getMessage());
                 }
-                
-                if (json.has("ignore_labels")) {
-                    JsonArray ignoreArray = json.getAsJsonArray("ignore_labels");
-                    for (int i = 0; i < ignoreArray.size(); i++) {
-                        ignoreLabels.add(ignoreArray.get(i).getAsString());
-                    }
+            }
+            
+            JsonObject json = gson.fromJson(new String(source, StandardCharsets.UTF_8), JsonObject.class);
+            Map<String, LabelRule> rules = new HashMap<>();
+            List<String> ignoreLabels = new ArrayList<>();
+            
+            if (json.has("rules")) {
+                JsonArray rulesArray = json.getAsJsonArray("rules");
+                for (int i = 0; i < rulesArray.size(); i++) {
+                    JsonObject ruleObj = rulesArray.get(i).getAsJsonObject();
+                    String label = ruleObj.get("label").getAsString();
+                    
+                    JsonArray lower = ruleObj.getAsJsonArray("lower");
+                    JsonArray upper = ruleObj.getAsJsonArray("upper");
+                    
+                    LabelRule rule = new LabelRule(
+                        label,
+                        lower.get(0).getAsInt(),
+                        lower.get(1).getAsInt(),
+                        lower.get(2).getAsInt(),
+                        upper.get(0).getAsInt(),
+                        upper.get(1).getAsInt(),
+                        upper.get(2).getAsInt()
+                    );
+                    
+                    rules.put(label, rule);
                 }
-                
-                System.out.println("Loaded " + learnedRules.size() + " rules from: " + rulesFile.getAbsolutePath());
             }
+            
+            if (json.has("ignore_labels")) {
+                JsonArray ignoreArray = json.getAsJsonArray("ignore_labels");
+                for (int i = 0; i < ignoreArray.size(); i++) {
+                    ignoreLabels.add(ignoreArray.get(i).getAsString());
+                }
+            }
+            
+            ModelSnapshot loaded;
+            synchronized (lock) {
+                loaded = model.get().withRules(rules, ignoreLabels, null);
+                swapModel(loaded, "load rules");
+            }
+            System.out.println("Loaded " + rules.size() + " rules from: " + rulesFile.getAbsolutePath());
+            
+            saveModelFile(sourceHash, loaded.getRules(), loaded.getClassifier());
         } catch (Exception e) {
             System.err.println("Error loading rules: " + e.getMessage());
         }
     }
     
+    /**
+     * Compiled binary model next to the rules file
+     */
+    private File getModelFile() {
+        return new File(getRulesFile().getParentFile(), ModelFile.FILE_NAME);
+    }
+    
+    private void applyModel(ModelFile compiled) {
+        Map<String, LabelRule> rules = new HashMap<>();
+        for (LabelRule rule : compiled.rules) {
+            rules.put(rule.label, rule);
+        }
+        synchronized (lock) {
+            swapModel(model.get().withRules(rules, compiled.ignoreLabels, compiled.classifier), "load compiled model");
+        }
+    }
+    
+    /**
+     * Write the compiled model for the JSON with the given hash; failure only costs startup time
+     */
+    private void saveModelFile(byte[] sourceHash, Map<String, LabelRule> rules, CompiledClassifier classifier) {
+        try {
+            File modelFile = getModelFile();
+            InspectionEvents.save("model", modelFile,
+                () -> ModelFile.write(modelFile, sourceHash, rules, classifier));
+        } catch (IOException e) {
+            System.err.println("Could not write compiled model: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Write the rules (with the compiled model) and the statistics as they are now
+     */
+    private void writeModelFiles() {
+        saveRulesToFile();
+        saveStatisticsToFile();
+    }
+    
+    /**
+     * Write any pending rules and statistics change now
+     */
+    public void flushModelFiles() {
+        modelSaver.flush();
+    }
+    
     /**
      * Save learned rules to JSON file
      */
@@ -1279,47 +2054,101 @@ public class ConfigurationManager {
         try {
             File rulesFile = getRulesFile();
             
-            // Ensure parent directory exists
-            File parentDir = rulesFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
+            // The snapshot cannot change underneath us, so no lock or copy is needed
+            ModelSnapshot snapshot = model.get();
+            JsonObject json = new JsonObject();
+            JsonArray rulesArray = new JsonArray();
+            JsonArray ignoreArray = new JsonArray();
+            
+            for (LabelRule rule : snapshot.getRules().values()) {
+                JsonObject ruleObj = new JsonObject();
+                ruleObj.addProperty("label", rule.label);
+                ruleObj.addProperty("type", snapshot.getIgnoreLabels().contains(rule.label) ? "ignore" : "detect");
+                
+                JsonArray lower = new JsonArray();
+                lower.add(rule.hMin);
+                lower.add(rule.sMin);
+                lower.add(rule.vMin);
+                ruleObj.add("lower", lower);
+                
+                JsonArray upper = new JsonArray();
+                upper.add(rule.hMax);
+                upper.add(rule.sMax);
+                upper.add(rule.vMax);
+                ruleObj.add("upper", upper);
+                
+                rulesArray.add(ruleObj);
+            }
+            
+            for (String ignoreLabel : snapshot.getIgnoreLabels()) {
+                ignoreArray.add(ignoreLabel);
+            }
+            
+            json.add("rules", rulesArray);
+            json.add("ignore_labels", ignoreArray);
+            
+            byte[] source = gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+            InspectionEvents.save("rules", rulesFile, () -> AtomicFiles.write(rulesFile, source));
+            saveModelFile(ModelFile.sha256(source), snapshot.getRules(), snapshot.getClassifier());
+            System.out.println("Saved rules to: " + rulesFile.getAbsolutePath());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Taught statistics live next to the rules file
+     */
+    private File getStatisticsFile() {
+        return new File(getRulesFile().getParentFile(), "learned_statistics.json");
+    }
+    
+    /**
+     * Load accumulated teach statistics on startup
+     */
+    private void loadStatisticsFromFile() {
+        try {
+            File statsFile = getStatisticsFile();
+            if (!statsFile.exists()) {
+                return;
             }
             
-            try (FileWriter writer = new FileWriter(rulesFile)) {
-                JsonObject json = new JsonObject();
-                JsonArray rulesArray = new JsonArray();
-                JsonArray ignoreArray = new JsonArray();
+            try (FileReader reader = new FileReader(statsFile)) {
+                JsonObject json = gson.fromJson(reader, JsonObject.class);
                 
-                for (LabelRule rule : learnedRules.values()) {
-                    JsonObject ruleObj = new JsonObject();
-                    ruleObj.addProperty("label", rule.label);
-                    ruleObj.addProperty("type", ignoreLabels.contains(rule.label) ? "ignore" : "detect");
-                    
-                    JsonArray lower = new JsonArray();
-                    lower.add(rule.hMin);
-                    lower.add(rule.sMin);
-                    lower.add(rule.vMin);
-                    ruleObj.add("lower", lower);
-                    
-                    JsonArray upper = new JsonArray();
-                    upper.add(rule.hMax);
-                    upper.add(rule.sMax);
-                    upper.add(rule.vMax);
-                    ruleObj.add("upper", upper);
-                    
-                    rulesArray.add(ruleObj);
+                if (json.has("labels")) {
+                    JsonArray labelsArray = json.getAsJsonArray("labels");
+                    for (int i = 0; i < labelsArray.size(); i++) {
+                        LabelStatistics stats = LabelStatistics.fromJson(labelsArray.get(i).getAsJsonObject());
+                        labelStatistics.put(stats.getLabel(), stats);
+                    }
                 }
                 
-                for (String ignoreLabel : ignoreLabels) {
-                    ignoreArray.add(ignoreLabel);
+                System.out.println("Loaded statistics for " + labelStatistics.size() + " labels from: " + statsFile.getAbsolutePath());
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading statistics: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Save accumulated teach statistics (compact JSON; histograms are not meant to be hand-edited)
+     */
+    private void saveStatisticsToFile() {
+        try {
+            File statsFile = getStatisticsFile();
+            
+            JsonObject json = new JsonObject();
+            JsonArray labelsArray = new JsonArray();
+            synchronized (lock) {
+                for (LabelStatistics stats : labelStatistics.values()) {
+                    labelsArray.add(stats.toJson());
                 }
-                
-                json.add("rules", rulesArray);
-                json.add("ignore_labels", ignoreArray);
-                gson.toJson(json, writer);
-                
-                System.out.println("Saved rules to: " + rulesFile.getAbsolutePath());
             }
+            json.add("labels", labelsArray);
+            
+            InspectionEvents.save("statistics", statsFile,
+                () -> AtomicFiles.write(statsFile, writer -> new Gson().toJson(json, writer)));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -1329,9 +2158,65 @@ public class ConfigurationManager {
         return config;
     }
     
+    /**
+     * Switch to a precompiled recipe. All settings (and the recipe's rules, if it
+     * has a saved model) change in one step under the lock, with a single session save.
+     */
+    public void activateRecipe(CompiledRecipe recipe) {
+        Map<String, LabelRule> rules = new HashMap<>();
+        if (recipe.hasModel()) {
+            for (LabelRule rule : recipe.rules) {
+                rules.put(rule.label, rule);
+            }
+        }
+        synchronized (lock) {
+            config.colorLower = recipe.colorLower.clone();
+            config.colorUpper = recipe.colorUpper.clone();
+            config.minArea = recipe.minArea;
+            config.maxArea = recipe.maxArea;
+            config.minCircularity = recipe.minCircularity;
+            config.maxCircularity = recipe.maxCircularity;
+            ModelSnapshot next = model.get();
+            if (recipe.hasModel()) {
+                next = next.withRules(rules, recipe.ignoreLabels, recipe.classifier);
+            }
+            activeRecipe = recipe.name;
+            swapModel(next.withPixelsPerMm(recipe.pixelsPerMm).withTargets(
+                recipe.targetWidth, recipe.targetHeight, recipe.widthTolerance, recipe.heightTolerance), "recipe");
+        }
+        saveSessionConfig();
+    }
+    
+    /**
+     * Name of the recipe last activated, or null
+     */
+    public String getActiveRecipe() {
+        synchronized (lock) {
+            return activeRecipe;
+        }
+    }
+    
+    /**
+     * Write the current rules and compiled classifier to a model file (e.g. to store with a recipe)
+     */
+    public boolean saveCompiledModel(File file) {
+        ModelSnapshot snapshot = model.get();
+        if (!snapshot.hasRules()) {
+            return false;
+        }
+        try {
+            // Not derived from a JSON file: the file records the hash of its own payload
+            ModelFile.write(file, null, snapshot.getRules(), snapshot.getClassifier());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not write compiled model: " + e.getMessage());
+            return false;
+        }
+    }
+    
     public void setPixelsPerMm(double pixelsPerMm) {
         synchronized (lock) {
-            this.pixelsPerMm = pixelsPerMm;
+            swapModel(model.get().withPixelsPerMm(pixelsPerMm), "calibration");
         }
         System.out.println("Calibration set: " + pixelsPerMm + " pixels/mm");
         saveSessionConfig(); // Auto-save
@@ -1339,10 +2224,7 @@ public class ConfigurationManager {
     
     public void setTargetDimensions(double widthMm, double heightMm, double widthTolMm, double heightTolMm) {
         synchronized (lock) {
-            this.targetWidth = widthMm;
-            this.targetHeight = heightMm;
-            this.widthTolerance = widthTolMm;
-            this.heightTolerance = heightTolMm;
+            swapModel(model.get().withTargets(widthMm, heightMm, widthTolMm, heightTolMm), "targets");
         }
         System.out.println(String.format("Target: %.1fmm (±%.1fmm) x %.1fmm (±%.1fmm)", 
             widthMm, widthTolMm, heightMm, heightTolMm));
@@ -1350,15 +2232,13 @@ public class ConfigurationManager {
     }
     
     public double getPixelsPerMm() {
-        synchronized (lock) {
-            return pixelsPerMm;
-        }
+        return model.get().getPixelsPerMm();
     }
     
     public double[] getTargetDimensions() {
-        synchronized (lock) {
-            return new double[]{targetWidth, targetHeight, widthTolerance, heightTolerance};
-        }
+        ModelSnapshot snapshot = model.get();
+        return new double[]{snapshot.getTargetWidth(), snapshot.getTargetHeight(),
+            snapshot.getWidthTolerance(), snapshot.getHeightTolerance()};
     }
     
     /**
@@ -1417,18 +2297,25 @@ public class ConfigurationManager {
                 // Load measurement settings
                 if (json.has("measurement")) {
                     JsonObject measurement = json.getAsJsonObject("measurement");
-                    pixelsPerMm = measurement.get("pixels_per_mm").getAsDouble();
-                    targetWidth = measurement.get("target_width").getAsDouble();
-                    targetHeight = measurement.get("target_height").getAsDouble();
-                    // Try to load new format first, fall back to old format for compatibility
-                    if (measurement.has("width_tolerance")) {
-                        widthTolerance = measurement.get("width_tolerance").getAsDouble();
-                        heightTolerance = measurement.get("height_tolerance").getAsDouble();
-                    } else if (measurement.has("tolerance")) {
-                        // Old format: convert percentage to mm
-                        double tolPercent = measurement.get("tolerance").getAsDouble();
-                        widthTolerance = targetWidth * tolPercent / 100.0;
-                        heightTolerance = targetHeight * tolPercent / 100.0;
+                    double pixelsPerMm = measurement.get("pixels_per_mm").getAsDouble();
+                    double targetWidth = measurement.get("target_width").getAsDouble();
+                    double targetHeight = measurement.get("target_height").getAsDouble();
+                    synchronized (lock) {
+                        ModelSnapshot current = model.get();
+                        double widthTolerance = current.getWidthTolerance();
+                        double heightTolerance = current.getHeightTolerance();
+                        // Try to load new format first, fall back to old format for compatibility
+                        if (measurement.has("width_tolerance")) {
+                            widthTolerance = measurement.get("width_tolerance").getAsDouble();
+                            heightTolerance = measurement.get("height_tolerance").getAsDouble();
+                        } else if (measurement.has("tolerance")) {
+                            // Old format: convert percentage to mm
+                            double tolPercent = measurement.get("tolerance").getAsDouble();
+                            widthTolerance = targetWidth * tolPercent / 100.0;
+                            heightTolerance = targetHeight * tolPercent / 100.0;
+                        }
+                        swapModel(current.withPixelsPerMm(pixelsPerMm)
+                            .withTargets(targetWidth, targetHeight, widthTolerance, heightTolerance), "load session");
                     }
                 }
                 
@@ -1437,6 +2324,24 @@ public class ConfigurationManager {
                     JsonObject processing = json.getAsJsonObject("processing");
                     config.morphKernelSize = processing.get("morph_kernel_size").getAsInt();
                     config.enablePreprocessing = processing.get("enable_preprocessing").getAsBoolean();
+                    if (processing.has("teach_decay")) {
+                        teachDecay = processing.get("teach_decay").getAsDouble();
+                    }
+                    if (processing.has("teach_sample_budget")) {
+                        teachSampleBudget = processing.get("teach_sample_budget").getAsInt();
+                    }
+                    if (processing.has("rule_tolerance")) {
+                        JsonArray tolerance = processing.getAsJsonArray("rule_tolerance");
+                        hTolerance = tolerance.get(0).getAsInt();
+                        sTolerance = tolerance.get(1).getAsInt();
+                        vTolerance = tolerance.get(2).getAsInt();
+                    }
+                }
+                
+                // Load exclusion zones (full-frame pixels)
+                if (json.has("exclusion_zones")) {
+                    exclusionRegions = exclusionZones(RegionFiles.fromJson(json.getAsJsonArray("exclusion_zones")));
+                    exclusionMask = null;
                 }
                 
                 return true;
@@ -1448,20 +2353,47 @@ public class ConfigurationManager {
     }
     
     /**
-     * Save current configuration to session file
+     * Save current configuration to session file. Returns immediately; changes made
+     * within a short window are written together on a background thread.
      */
     public void saveSessionConfig() {
+        if (!sessionReadOnly) {
+            sessionSaver.request();
+        }
+    }
+    
+    /**
+     * Keep later setting changes in memory only (headless runs must not rewrite the operator's session)
+     */
+    public void setSessionReadOnly(boolean readOnly) {
+        this.sessionReadOnly = readOnly;
+    }
+    
+    /**
+     * Write any pending session config change now
+     */
+    public void flushSessionConfig() {
+        sessionSaver.flush();
+    }
+    
+    /**
+     * Write any pending session config and model change and release the writer threads and their shutdown hooks.
+     * For managers that live shorter than the application, such as a lane's; later saves write at once.
+     */
+    public void close() {
+        sessionSaver.close();
+        modelSaver.close();
+    }
+    
+    /**
+     * Write the session file (temp file + atomic rename)
+     */
+    private void writeSessionConfig() {
         try {
             File sessionFile = getSessionConfigFile();
             
-            // Ensure parent directory exists
-            File parentDir = sessionFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
-            }
-            
-            try (FileWriter writer = new FileWriter(sessionFile)) {
-                JsonObject json = new JsonObject();
+            JsonObject json = new JsonObject();
+            synchronized (lock) {
                 
                 // Save color settings
                 JsonObject colorSeg = new JsonObject();
@@ -1491,21 +2423,33 @@ public class ConfigurationManager {
                 
                 // Save measurement settings
                 JsonObject measurement = new JsonObject();
-                measurement.addProperty("pixels_per_mm", pixelsPerMm);
-                measurement.addProperty("target_width", targetWidth);
-                measurement.addProperty("target_height", targetHeight);
-                measurement.addProperty("width_tolerance", widthTolerance);
-                measurement.addProperty("height_tolerance", heightTolerance);
+                ModelSnapshot snapshot = model.get();
+                measurement.addProperty("pixels_per_mm", snapshot.getPixelsPerMm());
+                measurement.addProperty("target_width", snapshot.getTargetWidth());
+                measurement.addProperty("target_height", snapshot.getTargetHeight());
+                measurement.addProperty("width_tolerance", snapshot.getWidthTolerance());
+                measurement.addProperty("height_tolerance", snapshot.getHeightTolerance());
                 json.add("measurement", measurement);
                 
                 // Save processing settings
                 JsonObject processing = new JsonObject();
                 processing.addProperty("morph_kernel_size", config.morphKernelSize);
                 processing.addProperty("enable_preprocessing", config.enablePreprocessing);
+                processing.addProperty("teach_decay", teachDecay);
+                processing.addProperty("teach_sample_budget", teachSampleBudget);
+                JsonArray tolerance = new JsonArray();
+                tolerance.add(hTolerance);
+                tolerance.add(sTolerance);
+                tolerance.add(vTolerance);
+                processing.add("rule_tolerance", tolerance);
                 json.add("processing", processing);
                 
-                gson.toJson(json, writer);
+                // Save exclusion zones
+                json.add("exclusion_zones", RegionFiles.toJson(exclusionRegions));
             }
+            
+            InspectionEvents.save("session", sessionFile,
+                () -> AtomicFiles.write(sessionFile, writer -> gson.toJson(json, writer)));
         } catch (Exception e) {
             System.err.println("Error saving session config: " + e.getMessage());
         }
@@ -1530,26 +2474,13 @@ public class ConfigurationManager {
         public boolean enablePreprocessing;
     }
     
-    /**
-     * Color sample in HSV space
-     */
-    private static class ColorSample {
-        int h, s, v;
-        
-        ColorSample(int h, int s, int v) {
-            this.h = h;
-            this.s = s;
-            this.v = v;
-        }
-    }
-    
     /**
      * Learned rule for a label
      */
-    private static class LabelRule {
-        String label;
-        int hMin, sMin, vMin;
-        int hMax, sMax, vMax;
+    static class LabelRule {
+        final String label;
+        final int hMin, sMin, vMin;
+        final int hMax, sMax, vMax;
         
         LabelRule(String label, int hMin, int sMin, int vMin, int hMax, int sMax, int vMax) {
             this.label = label;
@@ -1,20 +1,41 @@
 package com.doughvision;
 
+import com.google.gson.GsonBuilder;
+
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
 /**
- * Control panel for adjusting detection parameters in real-time
+ * Control panel for live detection: picks the frame source, starts and stops
+ * a LiveInspection, feeds its latest result to the VisionPanel at display
+ * rate and adjusts detection parameters in real-time
  */
 public class ControlPanel extends JPanel {
     
+    private static final int DISPLAY_INTERVAL_MS = 33;  // ~30 Hz, whatever the processing rate
+    private static final String SNAPSHOT_DIR = "snapshots";
+    
+    private static final String SOURCE_SYNTHETIC = "Synthetic belt (scroll an image)";
+    private static final String SOURCE_FOLDER = "Replay image folder";
+    private static final String SOURCE_RING = "Camera (shared-memory frame ring)";
+    
     private VisionPanel visionPanel;
     private ConfigurationManager configManager;
     
+    private JComboBox<String> sourceCombo;
     private JButton startButton;
     private JButton stopButton;
     private JButton snapshotButton;
     private JToggleButton overlayToggle;
+    private JToggleButton adaptiveToggle;
     
     private JSlider minAreaSlider;
     private JSlider maxAreaSlider;
@@ -22,6 +43,13 @@ public class ControlPanel extends JPanel {
     private JLabel maxAreaLabel;
     
     private boolean isRunning = false;
+    private LiveInspection live;
+    private LiveInspection.Result shown;
+    private final Timer displayTimer = new Timer(DISPLAY_INTERVAL_MS, e -> refreshDisplay());
+    private long rateWindowStart;
+    private long rateCaptured;
+    private long rateProcessed;
+    private String rateText = "";
     
     public ControlPanel(VisionPanel visionPanel, ConfigurationManager configManager) {
         this.visionPanel = visionPanel;
@@ -32,6 +60,8 @@ public class ControlPanel extends JPanel {
     }
     
     private void initializeComponents() {
+        sourceCombo = new JComboBox<>(new String[]{SOURCE_SYNTHETIC, SOURCE_FOLDER, SOURCE_RING});
+        
         startButton = new JButton("Start Detection");
         startButton.setIcon(createColorIcon(Color.GREEN));
         startButton.addActionListener(e -> startDetection());
@@ -48,6 +78,9 @@ public class ControlPanel extends JPanel {
         overlayToggle = new JToggleButton("Show Overlay", true);
         overlayToggle.addActionListener(e -> visionPanel.setShowOverlay(overlayToggle.isSelected()));
         
+        adaptiveToggle = new JToggleButton("Adaptive Quality", true);
+        adaptiveToggle.setToolTipText("Trade resolution for speed when frames take longer than the camera allows");
+        
         // Area sliders
         minAreaSlider = new JSlider(100, 10000, 500);
         minAreaSlider.setMajorTickSpacing(2000);
@@ -71,10 +104,12 @@ public class ControlPanel extends JPanel {
         
         // Button panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        buttonPanel.add(sourceCombo);
         buttonPanel.add(startButton);
         buttonPanel.add(stopButton);
         buttonPanel.add(snapshotButton);
         buttonPanel.add(overlayToggle);
+        buttonPanel.add(adaptiveToggle);
         
         // Slider panel
         JPanel sliderPanel = new JPanel(new GridLayout(2, 2, 10, 5));
@@ -99,29 +134,194 @@ public class ControlPanel extends JPanel {
     }
     
     private void startDetection() {
+        if (!configManager.hasLearnedRules()) {
+            JOptionPane.showMessageDialog(this, "No learned rules. Please teach the model first.",
+                "No Model", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        FrameSource source;
+        try {
+            source = openSource((String) sourceCombo.getSelectedItem());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Cannot open frame source: " + e.getMessage(),
+                "Live Detection", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (source == null) {
+            return;  // Chooser cancelled
+        }
+        
+        // One worker gives the freshest results; more only help when inspection is slower than two frames
+        live = new LiveInspection(configManager, source, 1);
+        if (adaptiveToggle.isSelected()) {
+            live.setQualityController(QualityController.forFrameRate(Math.max(1, configManager.getConfig().fps), 1,
+                configManager.isFastMode() ? QualityController.Level.FAST : QualityController.Level.FULL));
+        }
+        live.start();
+        shown = null;
+        rateWindowStart = System.nanoTime();
+        rateCaptured = 0;
+        rateProcessed = 0;
+        rateText = "";
+        displayTimer.start();
+        
         isRunning = true;
+        sourceCombo.setEnabled(false);
+        adaptiveToggle.setEnabled(false);
         startButton.setEnabled(false);
         stopButton.setEnabled(true);
         visionPanel.setStatusText("Detection running...");
-        
-        // TODO: Start backend processing
-        System.out.println("Starting detection...");
+        System.out.println("Starting detection from " + sourceCombo.getSelectedItem());
+    }
+    
+    /**
+     * Ask for what the selected source needs; null if the user cancelled
+     */
+    private FrameSource openSource(String kind) throws IOException {
+        double fps = Math.max(1, configManager.getConfig().fps);
+        JFileChooser chooser = new JFileChooser();
+        if (SOURCE_RING.equals(kind)) {
+            // Written by dough_vision_detector --shm-ring <path>
+            chooser.setCurrentDirectory(new File("/dev/shm"));
+            chooser.setDialogTitle("Select the frame ring file");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return null;
+            }
+            return new ShmFrameSource(chooser.getSelectedFile());
+        }
+        if (SOURCE_FOLDER.equals(kind)) {
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            chooser.setDialogTitle("Select a folder of images to replay");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return null;
+            }
+            return new FolderFrameSource(chooser.getSelectedFile(), fps, true);
+        }
+        chooser.setDialogTitle("Select a belt image to scroll");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+            "Image files", "jpg", "jpeg", "png", "bmp", "ppm", "pgm", "raw"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return null;
+        }
+        BufferedImage belt;
+        try (ImageLoader loader = new ImageLoader()) {
+            belt = loader.read(chooser.getSelectedFile());
+        }
+        return new SyntheticFrameSource(belt, fps, Math.max(1, belt.getWidth() / 100));
     }
     
+    /**
+     * Stop the display and, off the EDT, the inspection threads (which can take a while to join);
+     * the controls come back once they have ended
+     */
     private void stopDetection() {
+        if (!isRunning) {
+            return;
+        }
+        displayTimer.stop();
         isRunning = false;
-        startButton.setEnabled(true);
         stopButton.setEnabled(false);
-        visionPanel.setStatusText("Detection stopped");
-        
-        // TODO: Stop backend processing
+        visionPanel.setStatusText("Stopping detection...");
         System.out.println("Stopping detection...");
+        LiveInspection stopping = live;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                if (stopping != null) {
+                    stopping.stop();
+                }
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                sourceCombo.setEnabled(true);
+                adaptiveToggle.setEnabled(true);
+                startButton.setEnabled(true);
+                visionPanel.setStatusText("Detection stopped" + (stopping != null ? " (" + summary() + ")" : ""));
+            }
+        }.execute();
+    }
+    
+    /**
+     * Display timer tick on the EDT: show the newest result if there is one, refresh rates once a second
+     */
+    private void refreshDisplay() {
+        if (live == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - rateWindowStart >= 1_000_000_000L) {
+            double seconds = (now - rateWindowStart) / 1e9;
+            long capturedNow = live.getCapturedCount();
+            long processedNow = live.getProcessedCount();
+            rateText = String.format("camera %.1f fps, inspected %.1f fps",
+                (capturedNow - rateCaptured) / seconds, (processedNow - rateProcessed) / seconds);
+            rateWindowStart = now;
+            rateCaptured = capturedNow;
+            rateProcessed = processedNow;
+        }
+        
+        LiveInspection.Result result = live.getLatest();
+        // At the lowest quality levels not every result carries an overlay; keep showing the last one
+        if (result != null && result != shown && result.overlay != null) {
+            shown = result;
+            visionPanel.updateFrame(result.overlay);
+            visionPanel.setDetectionCount(result.inspection.getPieces().size());
+        }
+        if (live.isSourceEnded()) {
+            stopDetection();
+            return;
+        }
+        String latency = shown != null ? String.format(", latency %.0f ms", shown.latencyNanos / 1e6) : "";
+        QualityController quality = live.getQualityController();
+        String level = quality != null ? ", quality " + quality.getLevel() : "";
+        visionPanel.setStatusText("Live: " + rateText + latency + level + ", " + summary());
     }
     
+    private String summary() {
+        return live.getProcessedCount() + " inspected, " + live.getDroppedCount() + " dropped";
+    }
+    
+    /**
+     * Save the displayed result: overlay PNG plus the result JSON, named by time
+     */
     private void takeSnapshot() {
-        visionPanel.setStatusText("Snapshot saved");
-        // TODO: Implement snapshot functionality
-        System.out.println("Taking snapshot...");
+        LiveInspection.Result result = shown;
+        if (result == null) {
+            visionPanel.setStatusText("Nothing to snapshot yet");
+            return;
+        }
+        File dir = new File(SNAPSHOT_DIR);
+        String name = "snapshot_" + new SimpleDateFormat("yyyyMMdd_HHmmss_SSS").format(new Date());
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(result.overlay, "png", png);
+            AtomicFiles.write(new File(dir, name + WatchFolderService.OVERLAY_SUFFIX), png.toByteArray());
+            String json = new GsonBuilder().setPrettyPrinting().create().toJson(WatchFolderService.toJson(
+                name, result.overlay.getWidth(), result.overlay.getHeight(), result.inspection));
+            AtomicFiles.write(new File(dir, name + WatchFolderService.RESULT_SUFFIX),
+                json.getBytes(StandardCharsets.UTF_8));
+            visionPanel.setStatusText("Snapshot saved to " + new File(dir, name).getPath());
+            System.out.println("Snapshot saved: " + name);
+        } catch (IOException e) {
+            visionPanel.setStatusText("Snapshot failed: " + e.getMessage());
+            System.err.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Stop live detection when the application exits; waits for the threads so the source is closed
+     */
+    public void shutdown() {
+        displayTimer.stop();
+        isRunning = false;
+        if (live != null) {
+            live.stop();
+        }
     }
     
     private void updateMinArea() {
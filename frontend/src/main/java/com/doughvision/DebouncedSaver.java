@@ -0,0 +1,123 @@
+package com.doughvision;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces save requests and runs them off the calling thread.
+ *
+ * The first request schedules one save after the delay; further requests
+ * inside that window are absorbed by it. The save reads the state when it
+ * runs, so the last change is always written. Saves run on a single daemon
+ * thread, and a pending save is flushed by close() or, if it was never
+ * called, when the JVM shuts down. After close() a request saves at once on
+ * the calling thread.
+ */
+public class DebouncedSaver {
+    
+    private final Runnable save;
+    private final long delayMillis;
+    private final ScheduledExecutorService executor;
+    private final Thread shutdownHook;
+    private final Object lock = new Object();
+    private final Object saveLock = new Object();  // One save at a time (writer thread or flush); taken before lock
+    private ScheduledFuture<?> pending;
+    
+    public DebouncedSaver(String name, long delayMillis, Runnable save) {
+        this.save = save;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shutdownHook = new Thread(this::stop, name + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+    
+    /**
+     * Ask for a save; returns immediately
+     */
+    public void request() {
+        synchronized (lock) {
+            if (pending != null) {
+                return;
+            }
+            try {
+                pending = executor.schedule(this::runPending, delayMillis, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Closed: save below instead
+            }
+        }
+        runSave();
+    }
+    
+    private void runPending() {
+        // Under the save lock, so a flush either ran this save already or waits for it to finish
+        synchronized (saveLock) {
+            synchronized (lock) {
+                if (pending == null) {
+                    return;  // Flushed while this was waiting
+                }
+                // Clear before saving so a request arriving mid-save schedules another one
+                pending = null;
+            }
+            runSave();
+        }
+    }
+    
+    /**
+     * Run a pending save now on the calling thread, after any save that is already running
+     */
+    public void flush() {
+        synchronized (saveLock) {
+            boolean due;
+            synchronized (lock) {
+                due = pending != null;
+                if (due) {
+                    pending.cancel(false);
+                    pending = null;
+                }
+            }
+            if (due) {
+                runSave();
+            }
+        }
+    }
+    
+    /**
+     * Flush, stop the writer thread and drop the shutdown hook
+     */
+    public void close() {
+        stop();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down and runs the hook itself
+        }
+    }
+    
+    private void stop() {
+        flush();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void runSave() {
+        synchronized (saveLock) {
+            try {
+                save.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.doughvision;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only binary log of per-piece inspection results.
+ *
+ * The file is a 16-byte header followed by fixed 64-byte little-endian records
+ * (see RECORD_SIZE and the offsets below), so record n is at a known position
+ * and a torn tail after a crash is cut back to the last whole record on open.
+ *
+ * append() only encodes the pieces and offers them to a queue; a writer thread
+ * drains everything that has arrived, writes it in one call and forces it to
+ * disk once per batch (group commit). If the writer falls behind by more than
+ * QUEUE_CAPACITY results, new ones are dropped and counted rather than making
+ * the inspection wait. Results appended after close() are counted as dropped too.
+ */
+public class DetectionLog implements AutoCloseable {
+    
+    public static final int MAGIC = 0x4C445644;  // "DVDL"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 64;
+    
+    // Record layout
+    static final int REC_TIMESTAMP = 0;     // long, epoch millis
+    static final int REC_FRAME = 8;         // long
+    static final int REC_LANE = 16;         // short
+    static final int REC_PIECE = 18;        // short, 1-based id within the frame
+    static final int REC_PASS = 20;         // byte, 1 = pass
+    static final int REC_REASON = 21;       // byte, REASON_* flags
+    static final int REC_LENGTH_MM = 24;    // float
+    static final int REC_WIDTH_MM = 28;     // float
+    static final int REC_CORNERS = 32;      // 4 x (float x, float y), full-frame pixels
+    
+    public static final int REASON_WIDTH = 1;
+    public static final int REASON_LENGTH = 2;
+    
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final long COMMIT_INTERVAL_MILLIS = 50;
+    
+    /**
+     * One logged piece
+     */
+    public static class Record {
+        public long timestampMillis;
+        public long frameId;
+        public int lane;
+        public int pieceId;
+        public boolean pass;
+        public int reasonFlags;
+        public float lengthMm;
+        public float widthMm;
+        public final float[] corners = new float[8];
+        
+        public String getFailureReason() {
+            if ((reasonFlags & REASON_WIDTH) != 0 && (reasonFlags & REASON_LENGTH) != 0) {
+                return "Width & Height";
+            }
+            if ((reasonFlags & REASON_LENGTH) != 0) {
+                return "Height";
+            }
+            return (reasonFlags & REASON_WIDTH) != 0 ? "Width" : "";
+        }
+    }
+    
+    private final File file;
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();  // Appends share it; close takes it alone
+    
+    private DetectionLog(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+        this.writer = new Thread(this::writeLoop, "detection-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Open a log for appending, creating it if needed
+     */
+    public static DetectionLog open(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create folder: " + parent);
+        }
+        FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE);
+                header.clear();
+                channel.truncate(0);
+                writeFully(channel, header, 0);
+                channel.force(true);
+                size = HEADER_SIZE;
+            } else {
+                readHeader(channel, file);
+            }
+            long whole = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            if (whole != size) {
+                System.err.println("Detection log " + file.getName() + ": dropping " + (size - whole) +
+                    " bytes of an incomplete record");
+                channel.truncate(whole);
+            }
+            channel.position(whole);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new DetectionLog(file, channel);
+    }
+    
+    static void readHeader(FileChannel channel, File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException(file.getName() + " is too short to be a detection log");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException(file.getName() + " is not a detection log");
+        }
+        short version = header.getShort();
+        short recordSize = header.getShort();
+        if (version != VERSION || recordSize != RECORD_SIZE) {
+            throw new IOException(file.getName() + ": unsupported detection log version " + version);
+        }
+    }
+    
+    /**
+     * Queue one record per piece; returns immediately. Returns false if the result was dropped.
+     */
+    public boolean append(long timestampMillis, long frameId, int lane, InspectionResult result) {
+        return append(timestampMillis, frameId, lane, result, null);
+    }
+    
+    /**
+     * As above, for a result inspected on a region of the frame
+     *
+     * @param origin frame position of the inspected image's top-left pixel (null for 0,0), so corners are
+     *               logged in full-frame pixels
+     */
+    public boolean append(long timestampMillis, long frameId, int lane, InspectionResult result, Point origin) {
+        List<InspectionResult.Piece> pieces = result.getPieces();
+        if (pieces.isEmpty()) {
+            return !closed;
+        }
+        ByteBuffer records = ByteBuffer.allocate(pieces.size() * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        double toInput = 1.0 / result.getScale();
+        int originX = origin != null ? origin.x : 0;
+        int originY = origin != null ? origin.y : 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            InspectionResult.Piece piece = pieces.get(i);
+            int base = i * RECORD_SIZE;
+            int reason = (piece.widthPass ? 0 : REASON_WIDTH) | (piece.lengthPass ? 0 : REASON_LENGTH);
+            records.putLong(base + REC_TIMESTAMP, timestampMillis);
+            records.putLong(base + REC_FRAME, frameId);
+            records.putShort(base + REC_LANE, (short) lane);
+            records.putShort(base + REC_PIECE, (short) piece.id);
+            records.put(base + REC_PASS, (byte) (piece.pass ? 1 : 0));
+            records.put(base + REC_REASON, (byte) reason);
+            records.putFloat(base + REC_LENGTH_MM, (float) piece.lengthMm);
+            records.putFloat(base + REC_WIDTH_MM, (float) piece.widthMm);
+            for (int c = 0; c < 4; c++) {
+                Point corner = piece.corners[c];
+                records.putFloat(base + REC_CORNERS + c * 8, (float) (originX + corner.x * toInput));
+                records.putFloat(base + REC_CORNERS + c * 8 + 4, (float) (originY + corner.y * toInput));
+            }
+        }
+        // The close lock makes closed-check and offer one step: the writer drains whatever got in
+        boolean queued;
+        closeLock.readLock().lock();
+        try {
+            queued = !closed && queue.offer(records);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        if (!queued) {
+            dropped.addAndGet(pieces.size());
+        }
+        return queued;
+    }
+    
+    private void writeLoop() {
+        List<ByteBuffer> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                ByteBuffer first = queue.poll(COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Let more results arrive so they share one write and one fsync
+                synchronized (this) {
+                    if (!closed && queue.size() < QUEUE_CAPACITY / 2) {
+                        wait(COMMIT_INTERVAL_MILLIS);
+                    }
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+            } catch (InterruptedException e) {
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+    
+    private void commit(List<ByteBuffer> batch) {
+        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+        long bytes = 0;
+        for (ByteBuffer buffer : buffers) {
+            bytes += buffer.remaining();
+        }
+        try {
+            long remaining = bytes;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+            written.addAndGet(bytes / RECORD_SIZE);
+        } catch (IOException e) {
+            dropped.addAndGet(bytes / RECORD_SIZE);
+            System.err.println("Error writing detection log " + file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Records committed to disk so far
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+    
+    /**
+     * Records lost because the queue was full or a write failed
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    /**
+     * Write everything queued so far and close the file
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        synchronized (this) {
+            // Wake a writer waiting for a batch to fill; not an interrupt, which would close the channel
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.doughvision;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Sequential reader for a {@link DetectionLog} file, plus CSV export.
+ *
+ * Reads in large blocks and decodes into one reused Record, so exporting a
+ * long shift does not allocate per piece. A log that is still being written
+ * can be read; a partial record at the end is ignored.
+ */
+public class DetectionLogReader implements AutoCloseable {
+    
+    private static final int BLOCK_RECORDS = 1024;
+    
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_RECORDS * DetectionLog.RECORD_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    private final DetectionLog.Record record = new DetectionLog.Record();
+    
+    public DetectionLogReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            DetectionLog.readHeader(channel, file);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channel.position(DetectionLog.HEADER_SIZE);
+        block.flip();
+    }
+    
+    /**
+     * Number of whole records in the file
+     */
+    public long getRecordCount() throws IOException {
+        return (channel.size() - DetectionLog.HEADER_SIZE) / DetectionLog.RECORD_SIZE;
+    }
+    
+    /**
+     * The next record, or null at the end. The returned object is reused by the next call.
+     */
+    public DetectionLog.Record next() throws IOException {
+        if (block.remaining() < DetectionLog.RECORD_SIZE) {
+            block.compact();
+            while (block.position() < DetectionLog.RECORD_SIZE) {
+                if (channel.read(block) < 0) {
+                    block.flip();
+                    return null;
+                }
+            }
+            block.flip();
+        }
+        int base = block.position();
+        record.timestampMillis = block.getLong(base + DetectionLog.REC_TIMESTAMP);
+        record.frameId = block.getLong(base + DetectionLog.REC_FRAME);
+        record.lane = block.getShort(base + DetectionLog.REC_LANE);
+        record.pieceId = block.getShort(base + DetectionLog.REC_PIECE);
+        record.pass = block.get(base + DetectionLog.REC_PASS) != 0;
+        record.reasonFlags = block.get(base + DetectionLog.REC_REASON);
+        record.lengthMm = block.getFloat(base + DetectionLog.REC_LENGTH_MM);
+        record.widthMm = block.getFloat(base + DetectionLog.REC_WIDTH_MM);
+        for (int i = 0; i < 8; i++) {
+            record.corners[i] = block.getFloat(base + DetectionLog.REC_CORNERS + i * 4);
+        }
+        block.position(base + DetectionLog.RECORD_SIZE);
+        return record;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Write the log as CSV (one row per piece); returns the number of rows
+     */
+    public static long exportCsv(File log, File csv) throws IOException {
+        long rows = 0;
+        try (DetectionLogReader reader = new DetectionLogReader(log);
+             Writer out = new BufferedWriter(Files.newBufferedWriter(csv.toPath(), StandardCharsets.UTF_8), 1 << 16)) {
+            out.write("timestamp,frame,lane,piece,length_mm,width_mm,pass,failure,x1,y1,x2,y2,x3,y3,x4,y4\n");
+            StringBuilder line = new StringBuilder(160);
+            DetectionLog.Record r;
+            while ((r = reader.next()) != null) {
+                line.setLength(0);
+                line.append(Instant.ofEpochMilli(r.timestampMillis)).append(',')
+                    .append(r.frameId).append(',')
+                    .append(r.lane).append(',')
+                    .append(r.pieceId).append(',')
+                    .append(String.format(Locale.ROOT, "%.1f,%.1f", r.lengthMm, r.widthMm)).append(',')
+                    .append(r.pass ? "PASS" : "FAIL").append(',')
+                    .append(r.getFailureReason());
+                for (float c : r.corners) {
+                    line.append(',').append(Math.round(c));
+                }
+                line.append('\n');
+                out.append(line);
+                rows++;
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Command line: export-log <log-file> <csv-file>
+     */
+    static int run(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: export-log <log-file> <csv-file>");
+            return 2;
+        }
+        try {
+            long rows = exportCsv(new File(args[1]), new File(args[2]));
+            System.out.println("Exported " + rows + " pieces to " + args[2]);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error exporting detection log: " + e.getMessage());
+            return 1;
+        }
+    }
+}
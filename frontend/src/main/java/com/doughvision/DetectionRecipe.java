@@ -0,0 +1,31 @@
+package com.doughvision;
+
+/**
+ * A named set of detection and measurement settings for one product
+ */
+public class DetectionRecipe {
+    String name;
+    String description;
+    String dateCreated;
+    String dateModified;
+    
+    // Color detection
+    int hueMin, satMin, valMin;
+    int hueMax, satMax, valMax;
+    
+    // Detection rules
+    int minArea, maxArea;
+    double minCircularity, maxCircularity;
+    
+    // Measurement settings
+    double pixelsPerMm;
+    double targetWidth, targetHeight;
+    double widthTolerance, heightTolerance;
+    
+    // Compiled rules saved with the recipe (file name in recipe_models/), or null
+    String modelFile;
+    
+    public String getName() {
+        return name;
+    }
+}
@@ -9,6 +9,12 @@ import java.awt.*;
 public class DoughVisionApp {
     
     public static void main(String[] args) {
+        if (args.length > 0) {
+            // Command-line modes never open a window
+            System.setProperty("java.awt.headless", "true");
+            System.exit(runCommand(args));
+        }
+        
         // Set system look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -22,4 +28,29 @@ public class DoughVisionApp {
             frame.setVisible(true);
         });
     }
+    
+    private static int runCommand(String[] args) {
+        switch (args[0]) {
+            case "watch":
+                return WatchFolderService.run(args);
+            case "batch":
+                return BatchRunner.run(args);
+            case "export-log":
+                return DetectionLogReader.run(args);
+            case "lanes":
+                return LineInspection.run(args);
+            case "scenes":
+                return SceneGenerator.run(args);
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.err.println("Commands:");
+                System.err.println("  batch [--recipe NAME] [--threads N] [--fast] [--pipeline | --virtual] [--out DIR] [--log FILE] <file|folder|glob>...");
+                System.err.println("  watch <input-folder> <output-folder> [--threads N] [--overlays] [--log FILE]");
+                System.err.println("  export-log <log-file> <csv-file>");
+                System.err.println("  lanes [--config lanes.json] [--lane NAME] [--log FILE] [--seconds N]");
+                System.err.println("  scenes <output-folder> [--count N] [--seed N] [--size WxH] [--pieces N] [--shape round|oval|bar] [--touching P] [--overlap P]");
+                System.err.println("Run without arguments to start the GUI.");
+                return 2;
+        }
+    }
 }
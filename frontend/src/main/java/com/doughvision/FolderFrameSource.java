@@ -0,0 +1,75 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replays a folder of images (JPEG, PNG, BMP, PPM/PGM or raw frames) in name
+ * order at a fixed frame rate, as if a camera were producing them, optionally
+ * looping. Useful for trying the live loop on recorded production images.
+ * Raw frames are mapped, everything else decoded, so each frame owns its image.
+ */
+public class FolderFrameSource implements FrameSource {
+    
+    private final List<File> files;
+    private final long frameNanos;  // 0 = as fast as they decode
+    private final boolean loop;
+    private final ImageLoader loader = new ImageLoader();
+    private long sequence;
+    private long nextDue;
+    private volatile boolean closed;
+    
+    /**
+     * @param fps  replay rate; 0 or less delivers frames as fast as they decode
+     * @param loop start over after the last image instead of ending
+     */
+    public FolderFrameSource(File folder, double fps, boolean loop) throws IOException {
+        this.files = new ArrayList<>(BatchRunner.expandInputs(Collections.singletonList(folder.getPath())));
+        if (files.isEmpty()) {
+            throw new IOException("No images in " + folder);
+        }
+        this.frameNanos = fps > 0 ? (long) (1e9 / fps) : 0;
+        this.loop = loop;
+    }
+    
+    public int size() {
+        return files.size();
+    }
+    
+    @Override
+    public synchronized Frame next() throws IOException {
+        if (closed || (!loop && sequence >= files.size())) {
+            return null;
+        }
+        waitUntilDue();
+        File file = files.get((int) (sequence % files.size()));
+        return new Frame(sequence++, System.nanoTime(), loader.read(file));
+    }
+    
+    private void waitUntilDue() throws InterruptedIOException {
+        long now = System.nanoTime();
+        if (nextDue == 0) {
+            nextDue = now;
+        }
+        try {
+            long wait = nextDue - now;
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for the next frame");
+        }
+        // Behind schedule (slow decode): restart the clock rather than burst to catch up
+        nextDue = Math.max(nextDue + frameNanos, System.nanoTime() - frameNanos);
+    }
+    
+    @Override
+    public synchronized void close() {
+        closed = true;
+        loader.close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * One frame from a {@link FrameSource}.
+ *
+ * The image may be backed by memory the source reuses (a mapped file or a
+ * shared ring slot), so call {@link #release()} once the frame has been
+ * processed and do not touch the image afterwards.
+ */
+public class Frame {
+    
+    private final long sequence;
+    private final long timestampNanos;
+    private BufferedImage image;
+    private final Runnable onRelease;
+    
+    public Frame(long sequence, long timestampNanos, BufferedImage image) {
+        this(sequence, timestampNanos, image, null);
+    }
+    
+    public Frame(long sequence, long timestampNanos, BufferedImage image, Runnable onRelease) {
+        this.sequence = sequence;
+        this.timestampNanos = timestampNanos;
+        this.image = image;
+        this.onRelease = onRelease;
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+    
+    public BufferedImage getImage() {
+        if (image == null) {
+            throw new IllegalStateException("Frame " + sequence + " has been released");
+        }
+        return image;
+    }
+    
+    /**
+     * True if the image is backed by memory the source will reuse after release(), so it
+     * must be copied to be kept; false if the image can be held for as long as needed
+     */
+    public boolean isBorrowed() {
+        return onRelease != null;
+    }
+    
+    /**
+     * Hand the frame's memory back to its source; safe to call more than once
+     */
+    public synchronized void release() {
+        if (image != null) {
+            image = null;
+            if (onRelease != null) {
+                onRelease.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.doughvision;
+
+import java.io.IOException;
+
+/**
+ * A stream of frames to inspect (files, a capture process, a generator, ...)
+ */
+public interface FrameSource extends AutoCloseable {
+    
+    /**
+     * Next frame, or null when the source is exhausted. Live sources block until
+     * a frame arrives and throw InterruptedIOException if the thread is interrupted.
+     */
+    Frame next() throws IOException;
+    
+    @Override
+    void close();
+}
@@ -0,0 +1,172 @@
+package com.doughvision;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Decodes only the pixels that will be processed.
+ *
+ * Readers are created once per format and reused for every image, and a
+ * source region (ROI) and integer subsampling (fast mode) are applied inside
+ * the decoder instead of cropping and resizing a full decode afterwards.
+ * Images come back as TYPE_INT_RGB where the decoder supports it, so pixel
+ * access takes the direct DataBufferInt path. PPM/PGM and raw frames are not
+ * decoded at all but mapped (see {@link RawFrames}). An ImageLoader is not
+ * thread safe; use one per thread.
+ */
+public class ImageLoader implements AutoCloseable {
+    
+    private final List<ImageReader> readers = new ArrayList<>();
+    
+    /**
+     * Largest integer subsampling that keeps the image at least maxWidth x maxHeight
+     * in its limiting dimension (1 if it is already that small)
+     */
+    public static int subsamplingFor(int width, int height, int maxWidth, int maxHeight) {
+        double factor = Math.max((double) width / maxWidth, (double) height / maxHeight);
+        return Math.max(1, (int) Math.floor(factor));
+    }
+    
+    /**
+     * Image size from the file header, without decoding pixels
+     */
+    public Dimension readSize(File file) throws IOException {
+        if (RawFrames.isRawFrameFile(file)) {
+            return RawFrames.readSize(file);
+        }
+        try (ImageInputStream stream = new FileImageInputStream(file)) {
+            ImageReader reader = readerFor(stream, file.getName());
+            reader.setInput(stream, true, true);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.reset();
+            }
+        }
+    }
+    
+    public BufferedImage read(File file) throws IOException {
+        return read(file, null, 1);
+    }
+    
+    /**
+     * Decode part of an image.
+     *
+     * @param sourceRegion region in full-resolution image coordinates, or null for the whole image
+     * @param subsampling  keep every n-th pixel in each direction (1 = full resolution)
+     */
+    public BufferedImage read(File file, Rectangle sourceRegion, int subsampling) throws IOException {
+        if (RawFrames.isRawFrameFile(file)) {
+            return RawFrames.map(file, sourceRegion, subsampling);
+        }
+        try (ImageInputStream stream = new FileImageInputStream(file)) {
+            return decode(stream, file.getName(), sourceRegion, subsampling);
+        }
+    }
+    
+    /**
+     * Decode an image whose file content was already read into memory, e.g. on an I/O thread
+     * (see JobExecutor). Raw frame files are mapped by read(File) instead.
+     */
+    public BufferedImage read(byte[] encoded, String name) throws IOException {
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(new ByteArrayInputStream(encoded))) {
+            return decode(stream, name, null, 1);
+        }
+    }
+    
+    private BufferedImage decode(ImageInputStream stream, String name, Rectangle sourceRegion,
+                                 int subsampling) throws IOException {
+        ImageReader reader = readerFor(stream, name);
+        reader.setInput(stream, true, true);
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (sourceRegion != null) {
+                Rectangle region = sourceRegion.intersection(new Rectangle(reader.getWidth(0), reader.getHeight(0)));
+                if (region.isEmpty()) {
+                    throw new IOException("Region " + sourceRegion + " is outside " + name);
+                }
+                param.setSourceRegion(region);
+            }
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            
+            ImageTypeSpecifier intRgb = findImageType(reader, BufferedImage.TYPE_INT_RGB);
+            if (intRgb != null) {
+                param.setDestinationType(intRgb);
+            }
+            return toDirectRGB(reader.read(0, param));
+        } finally {
+            reader.reset();
+        }
+    }
+    
+    /**
+     * Reuse a reader that can decode the stream, creating one for a new format
+     */
+    private ImageReader readerFor(ImageInputStream stream, String name) throws IOException {
+        for (ImageReader reader : readers) {
+            if (reader.getOriginatingProvider().canDecodeInput(stream)) {
+                return reader;
+            }
+        }
+        Iterator<ImageReader> found = ImageIO.getImageReaders(stream);
+        if (!found.hasNext()) {
+            throw new IOException("Unsupported image format: " + name);
+        }
+        ImageReader reader = found.next();
+        readers.add(reader);
+        return reader;
+    }
+    
+    private static ImageTypeSpecifier findImageType(ImageReader reader, int bufferedImageType) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        while (types.hasNext()) {
+            ImageTypeSpecifier type = types.next();
+            if (type.getBufferedImageType() == bufferedImageType) {
+                return type;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Convert to TYPE_INT_RGB unless the image already has an int-packed layout
+     */
+    private static BufferedImage toDirectRGB(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = converted.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return converted;
+    }
+    
+    @Override
+    public void close() {
+        for (ImageReader reader : readers) {
+            reader.dispose();
+        }
+        readers.clear();
+    }
+}
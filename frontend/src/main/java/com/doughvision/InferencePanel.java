@@ -7,15 +7,21 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import javax.imageio.ImageIO;
 
 /**
  * Panel for running inference on images
  */
 public class InferencePanel extends JPanel {
     
+    private static final String RUN_LABEL = "▶️ Run Inference";
+    private static final String CANCEL_LABEL = "⏹ Cancel";
+    
     private ConfigurationManager configManager;
-    private BufferedImage originalImage;
+    private BufferedImage originalImage;  // Display copy, decoded at 1/imageSubsampling
+    private File imageFile;
+    private Dimension imageSize;          // Full-resolution size; ROIs are in full-resolution coordinates
+    private int imageSubsampling = 1;
+    private final ImageLoader imageLoader = new ImageLoader();
     private BufferedImage resultImage;
     private JPanel imagePanel;
     private JButton loadButton;
@@ -44,6 +50,7 @@ public class InferencePanel extends JPanel {
     
     // Background task management
     private SwingWorker<BufferedImage, String> currentTask = null;
+    private CancellationToken currentToken;
     private JProgressBar progressBar;
     private JLabel statusLabel;
     
@@ -61,7 +68,7 @@ public class InferencePanel extends JPanel {
         loadButton = createStyledButton("📁 Load Image", new Color(52, 152, 219));
         loadButton.addActionListener(e -> loadImage());
         
-        runButton = createStyledButton("▶️ Run Inference", new Color(46, 204, 113));
+        runButton = createStyledButton(RUN_LABEL, new Color(46, 204, 113));
         runButton.setEnabled(false);
         runButton.addActionListener(e -> runInference());
         
@@ -164,7 +171,7 @@ public class InferencePanel extends JPanel {
                     
                     // Draw saved ROI if it exists
                     if (savedROI != null) {
-                        drawROI(g2d, savedROI, x, y, displayScale, new Color(0, 255, 0, 100));
+                        drawROI(g2d, savedROI, x, y, displayScale / imageSubsampling, new Color(0, 255, 0, 100));
                     }
                 } else {
                     g.setColor(new Color(149, 165, 166));
@@ -396,8 +403,8 @@ public class InferencePanel extends JPanel {
         int offsetX = (w - scaledW) / 2 + viewOffset.x;
         int offsetY = (h - scaledH) / 2 + viewOffset.y;
         
-        int imageX = (int)((screen.x - offsetX) / displayScale);
-        int imageY = (int)((screen.y - offsetY) / displayScale);
+        int imageX = (int)((screen.x - offsetX) / displayScale * imageSubsampling);
+        int imageY = (int)((screen.y - offsetY) / displayScale * imageSubsampling);
         
         return new Point(imageX, imageY);
     }
@@ -405,29 +412,39 @@ public class InferencePanel extends JPanel {
     private void loadImage() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
-            "Image files", "jpg", "jpeg", "png", "bmp"));
+            "Image files", "jpg", "jpeg", "png", "bmp", "ppm", "pgm", "raw"));
         
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
                 File file = fileChooser.getSelectedFile();
-                originalImage = ImageIO.read(file);
                 
-                if (originalImage != null) {
-                    displayImage(originalImage);
-                    runButton.setEnabled(true);
-                    
-                    // Set ROI spinners based on image dimensions
-                    roiWidthSpinner.setValue(originalImage.getWidth());
-                    roiHeightSpinner.setValue(originalImage.getHeight());
-                    roiXSpinner.setValue(0);
-                    roiYSpinner.setValue(0);
-                    
-                    System.out.println("Loaded image: " + file.getName() + 
-                        " (" + originalImage.getWidth() + "x" + originalImage.getHeight() + ")");
-                } else {
-                    JOptionPane.showMessageDialog(this, "Failed to load image", 
-                        "Error", JOptionPane.ERROR_MESSAGE);
+                // In fast mode only decode the resolution segmentation will use
+                Dimension size;
+                int subsampling;
+                BufferedImage image;
+                synchronized (imageLoader) {
+                    size = imageLoader.readSize(file);
+                    subsampling = configManager.getDecodeSubsampling(size.width, size.height);
+                    image = imageLoader.read(file, null, subsampling);
                 }
+                
+                originalImage = image;
+                imageFile = file;
+                imageSize = size;
+                imageSubsampling = subsampling;
+                savedROI = null;
+                displayImage(originalImage);
+                runButton.setEnabled(true);
+                
+                // Set ROI spinners based on image dimensions
+                roiWidthSpinner.setValue(size.width);
+                roiHeightSpinner.setValue(size.height);
+                roiXSpinner.setValue(0);
+                roiYSpinner.setValue(0);
+                
+                System.out.println("Loaded image: " + file.getName() + 
+                    " (" + size.width + "x" + size.height + ")" +
+                    (subsampling > 1 ? ", decoded at 1/" + subsampling : ""));
             } catch (Exception ex) {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(this, "Error loading image: " + ex.getMessage(),
@@ -443,9 +460,12 @@ public class InferencePanel extends JPanel {
             return;
         }
         
-        // Cancel any existing task
+        // While running, the button cancels; segmentation stops within a row band
         if (currentTask != null && !currentTask.isDone()) {
+            currentToken.cancel();
             currentTask.cancel(true);
+            statusLabel.setText("Cancelling...");
+            return;
         }
         
         // Validate ROI settings if enabled
@@ -456,7 +476,7 @@ public class InferencePanel extends JPanel {
             int height = (int)roiHeightSpinner.getValue();
             
             // Validate ROI bounds
-            if (x < 0 || y < 0 || x + width > originalImage.getWidth() || y + height > originalImage.getHeight()) {
+            if (x < 0 || y < 0 || x + width > imageSize.width || y + height > imageSize.height) {
                 JOptionPane.showMessageDialog(this, 
                     "ROI bounds exceed image dimensions. Please adjust ROI settings.",
                     "Invalid ROI", JOptionPane.WARNING_MESSAGE);
@@ -465,46 +485,53 @@ public class InferencePanel extends JPanel {
         }
         
         // Create background task
+        CancellationToken token = new CancellationToken();
+        currentToken = token;
         currentTask = new SwingWorker<BufferedImage, String>() {
             @Override
             protected BufferedImage doInBackground() throws Exception {
-                // Show progress
-                progressBar.setVisible(true);
-                progressBar.setIndeterminate(true);
-                progressBar.setString("Processing...");
-                statusLabel.setText("Running inference...");
-                
-                // Apply ROI settings if enabled
-                BufferedImage processImage = originalImage;
+                // Decode only the ROI, at the resolution segmentation will use
                 final boolean useROI = useROICheckbox.isSelected();
-                
+                Rectangle roi = null;
                 if (useROI) {
-                    publish("Applying ROI...");
-                    int x = (int)roiXSpinner.getValue();
-                    int y = (int)roiYSpinner.getValue();
-                    int width = (int)roiWidthSpinner.getValue();
-                    int height = (int)roiHeightSpinner.getValue();
-                    processImage = originalImage.getSubimage(x, y, width, height);
+                    roi = new Rectangle((int)roiXSpinner.getValue(), (int)roiYSpinner.getValue(),
+                        (int)roiWidthSpinner.getValue(), (int)roiHeightSpinner.getValue());
+                }
+                int subsampling = configManager.getDecodeSubsampling(imageSize.width, imageSize.height);
+                
+                BufferedImage processImage = originalImage;
+                if (roi != null || subsampling != imageSubsampling) {
+                    publish(useROI ? "Decoding ROI..." : "Decoding image...");
+                    synchronized (imageLoader) {
+                        processImage = imageLoader.read(imageFile, roi, subsampling);
+                    }
                 }
                 
                 // Run segmentation in background thread
                 publish("Segmenting image (this may take a moment)...");
-                BufferedImage result = configManager.runSegmentation(processImage);
+                // Tell segmentation where the decoded pixels lie in the frame, so mm and zones stay right
+                Point origin = roi != null ? roi.getLocation() : null;
+                int processSubsampling = processImage != originalImage ? subsampling : imageSubsampling;
+                BufferedImage result = configManager.runSegmentation(processImage, origin, processSubsampling, token,
+                    (stage, fraction) -> setProgress(ProgressListener.percent(stage, fraction)));
                 
                 if (result == null) {
                     throw new Exception("No learned model. Please teach the model first.");
                 }
                 
-                // If ROI was used, composite the result back onto the original image
-                if (useROI) {
+                // Composite the result back onto the displayed image (scaled to its resolution)
+                if (processImage != originalImage) {
                     publish("Compositing results...");
+                    Rectangle target = roi == null
+                        ? new Rectangle(0, 0, originalImage.getWidth(), originalImage.getHeight())
+                        : new Rectangle(roi.x / imageSubsampling, roi.y / imageSubsampling,
+                            roi.width / imageSubsampling, roi.height / imageSubsampling);
                     BufferedImage compositeResult = new BufferedImage(
                         originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
                     Graphics2D g2d = compositeResult.createGraphics();
+                    g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
                     g2d.drawImage(originalImage, 0, 0, null);
-                    int x = (int)roiXSpinner.getValue();
-                    int y = (int)roiYSpinner.getValue();
-                    g2d.drawImage(result, x, y, null);
+                    g2d.drawImage(result, target.x, target.y, target.width, target.height, null);
                     g2d.dispose();
                     result = compositeResult;
                 }
@@ -522,10 +549,6 @@ public class InferencePanel extends JPanel {
             
             @Override
             protected void done() {
-                // Hide progress bar
-                progressBar.setVisible(false);
-                progressBar.setIndeterminate(false);
-                
                 try {
                     if (isCancelled()) {
                         statusLabel.setText("Cancelled");
@@ -547,14 +570,29 @@ public class InferencePanel extends JPanel {
                 } catch (java.lang.InterruptedException e) {
                     statusLabel.setText("Interrupted");
                 } finally {
-                    runButton.setEnabled(true);
-                    currentTask = null;
+                    // A cancelled task ends before its thread does; leave a newer task's controls alone
+                    if (currentTask == this) {
+                        progressBar.setVisible(false);
+                        runButton.setText(RUN_LABEL);
+                        currentTask = null;
+                    }
                 }
             }
         };
+        currentTask.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                int percent = (Integer) evt.getNewValue();
+                progressBar.setValue(percent);
+                progressBar.setString(percent + "%");
+            }
+        });
         
-        // Disable button and start task
-        runButton.setEnabled(false);
+        // Show progress; the run button becomes a cancel button until the task ends
+        progressBar.setValue(0);
+        progressBar.setString("Processing...");
+        progressBar.setVisible(true);
+        statusLabel.setText("Running inference...");
+        runButton.setText(CANCEL_LABEL);
         currentTask.execute();
     }
     
@@ -0,0 +1,168 @@
+package com.doughvision;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Java Flight Recorder events for inspection stages, teach runs, model swaps
+ * and config saves, so a slow frame can be lined up with GC pauses, safepoints
+ * and I/O on the same timeline.
+ *
+ * All events are disabled unless a recording turns them on, which costs a
+ * field check per stage; config/doughvision.jfc enables them next to the JDK
+ * profile, e.g. for a continuous recording on the line:
+ *
+ *   java -XX:StartFlightRecording:settings=default,settings=../config/doughvision.jfc,disk=true,maxage=1h
+ *        -jar target/dough-vision-frontend-1.0-SNAPSHOT.jar
+ *
+ * and dump it with "jcmd <pid> JFR.dump filename=line.jfr" when a frame blows
+ * its budget. Events are committed on the thread that did the work, so lanes
+ * and pipeline stages show up as their own threads.
+ */
+final class InspectionEvents {
+    
+    static final String CATEGORY = "Dough Vision";
+    
+    private InspectionEvents() {
+    }
+    
+    @Name("com.doughvision.Stage")
+    @Label("Inspection Stage")
+    @Category({CATEGORY, "Inspection"})
+    @Description("One stage of inspecting an image: decode, classify, morphology, label, measure or render")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Stage extends Event {
+        @Label("Stage")
+        String stage;
+        
+        @Label("Width")
+        @Description("Width of the image the stage worked on (processed size after downsampling)")
+        int width;
+        
+        @Label("Height")
+        int height;
+        
+        @Label("Pieces")
+        @Description("Pieces found so far (0 before the label stage)")
+        int pieces;
+        
+        @Label("Quality")
+        String quality;
+        
+        @Label("Recipe")
+        String recipe;
+    }
+    
+    @Name("com.doughvision.Teach")
+    @Label("Teach")
+    @Category({CATEGORY, "Model"})
+    @Description("Statistics collected from annotated images and rules rebuilt")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Teach extends Event {
+        @Label("Images")
+        int images;
+        
+        @Label("Regions")
+        @Description("Annotated regions taught (0 when not known, e.g. for folder teaching)")
+        int regions;
+        
+        @Label("Pixels")
+        @Description("Pixels decoded from the images")
+        long pixels;
+        
+        @Label("Rules")
+        @Description("Rules in the model afterwards")
+        int rules;
+        
+        @Label("Recipe")
+        String recipe;
+    }
+    
+    @Name("com.doughvision.ModelSwap")
+    @Label("Model Swap")
+    @Category({CATEGORY, "Model"})
+    @Description("A new model (rules, calibration or targets) was published to inspection")
+    @Enabled(false)
+    static final class ModelSwap extends Event {
+        @Label("Reason")
+        String reason;
+        
+        @Label("Rules")
+        int rules;
+        
+        @Label("Ignore Labels")
+        int ignoreLabels;
+        
+        @Label("Recipe")
+        String recipe;
+    }
+    
+    @Name("com.doughvision.ConfigSave")
+    @Label("Config Save")
+    @Category({CATEGORY, "I/O"})
+    @Description("Session, rules, statistics or exported configuration written to disk")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ConfigSave extends Event {
+        @Label("Kind")
+        String kind;
+        
+        @Label("File")
+        String file;
+        
+        @Label("Size")
+        @DataAmount
+        long bytes;
+        
+        @Label("Success")
+        boolean success;
+    }
+    
+    /**
+     * A started Stage event; finish it with ConfigurationManager's stage bookkeeping
+     */
+    static Stage beginStage(InspectionPipeline.StageName name) {
+        Stage event = new Stage();
+        event.stage = name.name().toLowerCase(Locale.ROOT);
+        event.begin();
+        return event;
+    }
+    
+    interface Write {
+        void run() throws IOException;
+    }
+    
+    /**
+     * Run a file write inside a ConfigSave event; the event records failures too
+     */
+    static void save(String kind, File file, Write write) throws IOException {
+        ConfigSave event = new ConfigSave();
+        event.kind = kind;
+        event.begin();
+        boolean success = false;
+        try {
+            write.run();
+            success = true;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = file.getPath();
+                event.bytes = success ? file.length() : 0;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+}
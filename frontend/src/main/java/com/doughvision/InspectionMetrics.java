@@ -0,0 +1,266 @@
+package com.doughvision;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and throughput of one ConfigurationManager's inspections.
+ *
+ * Every stage (decode, classify, morphology, label, measure, render) records
+ * its nanosecond time into a LatencyHistogram, whether it runs inside
+ * inspect(), on an InspectionPipeline stage or in a live loop; decode is
+ * recorded by whoever decodes. Counters track frames, failures (inspections
+ * that threw; unreadable files are not frames), pieces, passes and rejects. Read it with snapshot() or printStatus(), or over JMX
+ * after register().
+ */
+public class InspectionMetrics implements InspectionMetricsMXBean {
+    
+    public static final String JMX_DOMAIN = "com.doughvision";
+    
+    /**
+     * One stage's latency statistics (an MXBean composite type, hence the getters)
+     */
+    public static class StageLatency {
+        private final String stage;
+        private final LatencyHistogram.Snapshot latency;
+        
+        StageLatency(String stage, LatencyHistogram.Snapshot latency) {
+            this.stage = stage;
+            this.latency = latency;
+        }
+        
+        public String getStage() {
+            return stage;
+        }
+        
+        public long getCount() {
+            return latency.count;
+        }
+        
+        public double getMeanMillis() {
+            return latency.meanMillis;
+        }
+        
+        public double getP50Millis() {
+            return latency.p50Millis;
+        }
+        
+        public double getP90Millis() {
+            return latency.p90Millis;
+        }
+        
+        public double getP99Millis() {
+            return latency.p99Millis;
+        }
+        
+        public double getMaxMillis() {
+            return latency.maxMillis;
+        }
+    }
+    
+    /**
+     * Everything at one moment
+     */
+    public static class Snapshot {
+        public final long frames;
+        public final long failures;
+        public final long pieces;
+        public final long passed;
+        public final long rejected;
+        public final double framesPerSecond;
+        public final List<StageLatency> stages;  // Stages that have run, in pipeline order
+        
+        Snapshot(long frames, long failures, long pieces, long passed, long rejected, double framesPerSecond,
+                 List<StageLatency> stages) {
+            this.frames = frames;
+            this.failures = failures;
+            this.pieces = pieces;
+            this.passed = passed;
+            this.rejected = rejected;
+            this.framesPerSecond = framesPerSecond;
+            this.stages = stages;
+        }
+    }
+    
+    private final LatencyHistogram[] stages = new LatencyHistogram[InspectionPipeline.StageName.values().length];
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder pieces = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+    private ObjectName registeredName;
+    
+    public InspectionMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+    
+    public void recordStage(InspectionPipeline.StageName stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+    
+    /**
+     * Count one inspected frame and its pieces
+     */
+    void recordFrame(List<InspectionResult.Piece> framePieces) {
+        frames.increment();
+        int pass = 0;
+        for (InspectionResult.Piece piece : framePieces) {
+            if (piece.pass) {
+                pass++;
+            }
+        }
+        pieces.add(framePieces.size());
+        passed.add(pass);
+        rejected.add(framePieces.size() - pass);
+    }
+    
+    void recordFailure() {
+        failures.increment();
+    }
+    
+    public LatencyHistogram.Snapshot getStage(InspectionPipeline.StageName stage) {
+        return stages[stage.ordinal()].snapshot();
+    }
+    
+    public Snapshot snapshot() {
+        return new Snapshot(frames.sum(), failures.sum(), pieces.sum(), passed.sum(), rejected.sum(),
+            getFramesPerSecond(), stageList());
+    }
+    
+    private List<StageLatency> stageList() {
+        List<StageLatency> list = new ArrayList<>();
+        for (InspectionPipeline.StageName stage : InspectionPipeline.StageName.values()) {
+            LatencyHistogram histogram = stages[stage.ordinal()];
+            if (histogram.getCount() > 0) {
+                list.add(new StageLatency(stage.name().toLowerCase(Locale.ROOT), histogram.snapshot()));
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * One line per stage that has run: count, mean, p50, p90, p99 and max
+     */
+    public void printStatus() {
+        Snapshot snapshot = snapshot();
+        System.out.println(String.format(Locale.ROOT, "Frames: %d (%d failed), pieces: %d (%d rejected), %.2f frames/s",
+            snapshot.frames, snapshot.failures, snapshot.pieces, snapshot.rejected, snapshot.framesPerSecond));
+        for (StageLatency stage : snapshot.stages) {
+            System.out.println(String.format(Locale.ROOT,
+                "  %-10s n=%-7d mean %7.2f ms  p50 %7.2f ms  p90 %7.2f ms  p99 %7.2f ms  max %7.2f ms",
+                stage.getStage(), stage.getCount(), stage.getMeanMillis(), stage.getP50Millis(),
+                stage.getP90Millis(), stage.getP99Millis(), stage.getMaxMillis()));
+        }
+    }
+    
+    @Override
+    public long getFrames() {
+        return frames.sum();
+    }
+    
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    @Override
+    public long getPieces() {
+        return pieces.sum();
+    }
+    
+    @Override
+    public long getPassed() {
+        return passed.sum();
+    }
+    
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+    
+    @Override
+    public double getFramesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? frames.sum() / seconds : 0;
+    }
+    
+    @Override
+    public Map<String, Double> getP99Millis() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (StageLatency stage : stageList()) {
+            map.put(stage.getStage(), stage.getP99Millis());
+        }
+        return map;
+    }
+    
+    @Override
+    public Map<String, Double> getP50Millis() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (StageLatency stage : stageList()) {
+            map.put(stage.getStage(), stage.getP50Millis());
+        }
+        return map;
+    }
+    
+    @Override
+    public StageLatency[] getStages() {
+        return stageList().toArray(new StageLatency[0]);
+    }
+    
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : stages) {
+            histogram.reset();
+        }
+        frames.reset();
+        failures.reset();
+        pieces.reset();
+        passed.reset();
+        rejected.reset();
+        startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Publish on the platform MBean server as com.doughvision:type=InspectionMetrics,name=NAME,
+     * replacing an earlier registration under the same name. Returns false if JMX refused it.
+     */
+    public synchronized boolean register(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregister();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=InspectionMetrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+            return true;
+        } catch (JMException e) {
+            System.err.println("Could not register metrics '" + name + "' with JMX: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    public synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            // Already gone
+        }
+        registeredName = null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.doughvision;
+
+import java.util.Map;
+
+/**
+ * JMX view of an InspectionMetrics registry, e.g. in JConsole or VisualVM
+ * under com.doughvision:type=InspectionMetrics. Times are in milliseconds.
+ */
+public interface InspectionMetricsMXBean {
+    
+    long getFrames();
+    
+    long getFailures();
+    
+    long getPieces();
+    
+    long getPassed();
+    
+    long getRejected();
+    
+    /**
+     * Frames per second since the registry was created or reset
+     */
+    double getFramesPerSecond();
+    
+    /**
+     * Stage name -> 99th percentile
+     */
+    Map<String, Double> getP99Millis();
+    
+    /**
+     * Stage name -> median
+     */
+    Map<String, Double> getP50Millis();
+    
+    /**
+     * Full statistics of every stage that has run
+     */
+    InspectionMetrics.StageLatency[] getStages();
+    
+    void reset();
+}
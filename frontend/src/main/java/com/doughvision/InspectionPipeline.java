@@ -0,0 +1,407 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inspection split into stages that run concurrently on different images.
+ *
+ *   decode -> classify -> morphology -> label -> measure [-> render] -> sink
+ *
+ * Each stage has its own worker thread(s) and a bounded BoundedQueue in front
+ * of it, so while image N is measured, N+1 can be classified and N-1 rendered:
+ * throughput is set by the slowest stage rather than the sum of all of them.
+ * When a stage's queue is full, the policy decides: BLOCK waits (backpressure
+ * reaches submit()), DROP_OLDEST discards the stalest queued image so a live
+ * camera always sees current frames. Dropped and failed images still reach
+ * the sink, flagged, so the caller can account for every submission.
+ *
+ * The model snapshot is taken when an image enters the classify stage, so a
+ * recipe change never splits one image across two models. With more than one
+ * worker on a stage, images can leave it out of order; use Job.getId().
+ */
+public class InspectionPipeline implements AutoCloseable {
+    
+    public enum Policy { BLOCK, DROP_OLDEST }
+    
+    public enum StageName { DECODE, CLASSIFY, MORPHOLOGY, LABEL, MEASURE, RENDER }
+    
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    /**
+     * Stage sizing; defaults are one worker and a queue of 4 per stage, blocking
+     */
+    public static class Options {
+        final int[] workers = {1, 1, 1, 1, 1, 1};
+        final Policy[] policies = {Policy.BLOCK, Policy.BLOCK, Policy.BLOCK, Policy.BLOCK, Policy.BLOCK, Policy.BLOCK};
+        int queueCapacity = 4;
+        boolean render;
+        
+        public Options workers(StageName stage, int count) {
+            workers[stage.ordinal()] = Math.max(1, count);
+            return this;
+        }
+        
+        public Options policy(StageName stage, Policy policy) {
+            policies[stage.ordinal()] = policy;
+            return this;
+        }
+        
+        /**
+         * Policy for every stage's queue
+         */
+        public Options policy(Policy policy) {
+            for (StageName stage : StageName.values()) {
+                policies[stage.ordinal()] = policy;
+            }
+            return this;
+        }
+        
+        public Options queueCapacity(int capacity) {
+            queueCapacity = Math.max(1, capacity);
+            return this;
+        }
+        
+        /**
+         * Also draw the overlay (see ConfigurationManager.renderOverlay)
+         */
+        public Options render(boolean enabled) {
+            render = enabled;
+            return this;
+        }
+    }
+    
+    /**
+     * Receives every submitted image once, finished, failed or dropped. Called on pipeline threads.
+     */
+    public interface Sink {
+        void accept(Job job);
+    }
+    
+    /**
+     * One image moving through the pipeline
+     */
+    public static final class Job {
+        final long id;
+        final File file;
+        BufferedImage image;
+        ConfigurationManager.InspectionState state;
+        InspectionResult result;
+        BufferedImage overlay;
+        Exception error;
+        boolean dropped;
+        final long submittedNanos = System.nanoTime();
+        long completedNanos;
+        
+        Job(long id, File file, BufferedImage image) {
+            this.id = id;
+            this.file = file;
+            this.image = image;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        /**
+         * The submitted file, or null if an image was submitted
+         */
+        public File getFile() {
+            return file;
+        }
+        
+        /**
+         * Decoded input image (null if decoding failed or the job was dropped before it)
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+        
+        /**
+         * The inspection, or null if the job failed or was dropped
+         */
+        public InspectionResult getResult() {
+            return result;
+        }
+        
+        /**
+         * Rendered overlay when rendering is on, else null
+         */
+        public BufferedImage getOverlay() {
+            return overlay;
+        }
+        
+        public Exception getError() {
+            return error;
+        }
+        
+        public boolean isDropped() {
+            return dropped;
+        }
+        
+        /**
+         * Time from submit() to delivery to the sink
+         */
+        public long getLatencyNanos() {
+            return completedNanos - submittedNanos;
+        }
+    }
+    
+    /**
+     * Snapshot of one stage's counters
+     */
+    public static class StageStats {
+        public final String name;
+        public final int workers;
+        public final int queueDepth;
+        public final int queueCapacity;
+        public final long processed;
+        public final long dropped;
+        public final double utilization;  // Busy time / (workers x elapsed), 0..1
+        
+        StageStats(String name, int workers, int queueDepth, int queueCapacity, long processed, long dropped,
+                   double utilization) {
+            this.name = name;
+            this.workers = workers;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.processed = processed;
+            this.dropped = dropped;
+            this.utilization = utilization;
+        }
+    }
+    
+    private interface Work {
+        void run(Job job) throws Exception;
+    }
+    
+    private final class Stage {
+        final StageName name;
+        final BoundedQueue<Job> queue;
+        final Policy policy;
+        final Work work;
+        final List<Thread> threads = new ArrayList<>();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        Stage next;
+        
+        Stage(StageName name, Options options, Work work) {
+            this.name = name;
+            this.queue = new BoundedQueue<>(options.queueCapacity);
+            this.policy = options.policies[name.ordinal()];
+            this.work = work;
+            for (int i = 0; i < options.workers[name.ordinal()]; i++) {
+                Thread thread = new Thread(this::runWorker, "pipeline-" + name.name().toLowerCase(Locale.ROOT) + "-" + (i + 1));
+                thread.setDaemon(true);
+                threads.add(thread);
+            }
+        }
+        
+        void enqueue(Job job) throws InterruptedException {
+            if (policy == Policy.BLOCK) {
+                queue.put(job);
+                return;
+            }
+            while (!queue.offer(job)) {
+                Job stale = queue.poll();
+                if (stale != null) {
+                    dropped.incrementAndGet();
+                    stale.dropped = true;
+                    finish(stale);
+                }
+            }
+        }
+        
+        void runWorker() {
+            try {
+                while (true) {
+                    Job job = queue.take(POLL_NANOS);
+                    if (job == null) {
+                        if (closing && inFlight.get() == 0) {
+                            return;
+                        }
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        work.run(job);
+                    } catch (Exception e) {
+                        job.error = e;
+                        if (name != StageName.DECODE) {
+                            configManager.getMetrics().recordFailure();
+                        }
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    busyNanos.addAndGet(elapsed);
+                    processed.incrementAndGet();
+                    if (job.state != null) {
+                        // Inspection time is the sum of the classify..measure stages, not the waits between them
+                        job.state.elapsedNanos += elapsed;
+                        if (name == StageName.MEASURE && job.error == null) {
+                            job.result = job.state.toResult();
+                            job.state = null;
+                        }
+                    }
+                    if (job.error != null || next == null) {
+                        finish(job);
+                    } else {
+                        next.enqueue(job);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Pipeline closed
+            }
+        }
+    }
+    
+    private final ConfigurationManager configManager;
+    private final Sink sink;
+    private final List<Stage> stages = new ArrayList<>();
+    private final ThreadLocal<ImageLoader> loaders = ThreadLocal.withInitial(ImageLoader::new);
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean closing;
+    
+    public InspectionPipeline(ConfigurationManager configManager, Options options, Sink sink) {
+        this.configManager = configManager;
+        this.sink = sink;
+        
+        stages.add(new Stage(StageName.DECODE, options, job -> {
+            if (job.image == null) {
+                InspectionEvents.Stage event = InspectionEvents.beginStage(StageName.DECODE);
+                long start = System.nanoTime();
+                job.image = loaders.get().read(job.file);
+                configManager.endDecode(event, start, job.image);
+            }
+        }));
+        stages.add(new Stage(StageName.CLASSIFY, options, job -> {
+            job.state = configManager.beginInspection();
+            if (job.state == null) {
+                throw new IllegalStateException("No learned rules; teach the model first");
+            }
+            configManager.classify(job.state, job.image);
+        }));
+        stages.add(new Stage(StageName.MORPHOLOGY, options, job -> configManager.cleanMasks(job.state)));
+        stages.add(new Stage(StageName.LABEL, options, job -> configManager.label(job.state)));
+        stages.add(new Stage(StageName.MEASURE, options, job -> configManager.measure(job.state)));
+        if (options.render) {
+            stages.add(new Stage(StageName.RENDER, options, job ->
+                job.overlay = configManager.renderOverlay(job.image, job.result)));
+        }
+        for (int i = 0; i + 1 < stages.size(); i++) {
+            stages.get(i).next = stages.get(i + 1);
+        }
+        for (Stage stage : stages) {
+            for (Thread thread : stage.threads) {
+                thread.start();
+            }
+        }
+    }
+    
+    /**
+     * Queue a file for decoding and inspection; may wait (BLOCK) or drop an older image (DROP_OLDEST)
+     */
+    public long submit(File file) throws InterruptedException {
+        return submit(new Job(nextId.getAndIncrement(), file, null));
+    }
+    
+    /**
+     * Queue an already decoded image (the decode stage passes it straight through)
+     */
+    public long submit(BufferedImage image) throws InterruptedException {
+        return submit(new Job(nextId.getAndIncrement(), null, image));
+    }
+    
+    private long submit(Job job) throws InterruptedException {
+        if (closing) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        inFlight.incrementAndGet();
+        stages.get(0).enqueue(job);
+        return job.id;
+    }
+    
+    private void finish(Job job) {
+        job.completedNanos = System.nanoTime();
+        if (job.state != null) {
+            // A failed or dropped job may still hold its pooled classify mask
+            configManager.releaseMasks(job.state);
+            job.state = null;
+        }
+        try {
+            sink.accept(job);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Images submitted but not yet delivered to the sink
+     */
+    public long getInFlight() {
+        return inFlight.get();
+    }
+    
+    public List<StageStats> getStageStats() {
+        double elapsed = System.nanoTime() - startNanos;
+        List<StageStats> stats = new ArrayList<>();
+        for (Stage stage : stages) {
+            int workers = stage.threads.size();
+            stats.add(new StageStats(stage.name.name().toLowerCase(Locale.ROOT), workers, stage.queue.size(),
+                stage.queue.capacity(), stage.processed.get(), stage.dropped.get(),
+                elapsed > 0 ? Math.min(1.0, stage.busyNanos.get() / (elapsed * workers)) : 0));
+        }
+        return stats;
+    }
+    
+    public void printStatus() {
+        StringBuilder line = new StringBuilder("Pipeline:");
+        for (StageStats stage : getStageStats()) {
+            line.append(String.format(Locale.ROOT, "  %s[%d] q=%d/%d busy=%.0f%%%s", stage.name, stage.workers,
+                stage.queueDepth, stage.queueCapacity, stage.utilization * 100,
+                stage.dropped > 0 ? " dropped=" + stage.dropped : ""));
+        }
+        System.out.println(line);
+    }
+    
+    /**
+     * Wait until every submitted image has reached the sink
+     */
+    public void drain() throws InterruptedException {
+        while (inFlight.get() > 0) {
+            Thread.sleep(1);
+        }
+    }
+    
+    /**
+     * Finish the queued images, then stop the workers
+     */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            drain();
+            for (Stage stage : stages) {
+                for (Thread thread : stage.threads) {
+                    thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Stage stage : stages) {
+                for (Thread thread : stage.threads) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.doughvision;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of inspecting one image: the classification masks and the measured pieces.
+ *
+ * Masks and piece geometry are in processed-image pixels, which are smaller than
+ * the input image when a reduced quality level (such as fast mode) downsamples
+ * it (see {@link #getScale()}); lengths and widths are always in mm.
+ */
+public class InspectionResult {
+    
+    /**
+     * One detected piece with its oriented bounding box and pass/fail verdict
+     */
+    public static class Piece {
+        public final int id;  // 1-based, in detection order
+        public final Rectangle bounds;
+        public final Point center;
+        public final Point[] corners;
+        public final double lengthMm;
+        public final double widthMm;
+        public final boolean lengthPass;  // Length within its tolerance
+        public final boolean widthPass;   // Width within its tolerance
+        public final boolean pass;
+        public final String failureReason;  // For display; "" when passing
+        
+        Piece(int id, Rectangle bounds, Point center, Point[] corners, double lengthMm, double widthMm,
+              boolean lengthPass, boolean widthPass) {
+            this.id = id;
+            this.bounds = bounds;
+            this.center = center;
+            this.corners = corners;
+            this.lengthMm = lengthMm;
+            this.widthMm = widthMm;
+            this.lengthPass = lengthPass;
+            this.widthPass = widthPass;
+            this.pass = lengthPass && widthPass;
+            // Length corresponds to height on the belt
+            this.failureReason = !lengthPass && !widthPass ? "Width & Height"
+                : !lengthPass ? "Height" : !widthPass ? "Width" : "";
+        }
+    }
+    
+    private final BufferedImage processedImage;
+    private final boolean[][] detectionMask;
+    private final boolean[][] ignoreMask;
+    private final double scale;
+    private final QualityController.Level quality;
+    private final List<Piece> pieces;
+    private final long elapsedNanos;
+    
+    InspectionResult(BufferedImage processedImage, boolean[][] detectionMask, boolean[][] ignoreMask,
+                     double scale, QualityController.Level quality, List<Piece> pieces, long elapsedNanos) {
+        this.processedImage = processedImage;
+        this.detectionMask = detectionMask;
+        this.ignoreMask = ignoreMask;
+        this.scale = scale;
+        this.quality = quality;
+        this.pieces = Collections.unmodifiableList(pieces);
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    /**
+     * The image that was classified (the input, or its downsampled copy at reduced quality)
+     */
+    BufferedImage getProcessedImage() {
+        return processedImage;
+    }
+    
+    boolean[][] getDetectionMask() {
+        return detectionMask;
+    }
+    
+    boolean[][] getIgnoreMask() {
+        return ignoreMask;
+    }
+    
+    public int getWidth() {
+        return detectionMask[0].length;
+    }
+    
+    public int getHeight() {
+        return detectionMask.length;
+    }
+    
+    /**
+     * Processed size / input size (1.0 unless the quality level downsampled the image)
+     */
+    public double getScale() {
+        return scale;
+    }
+    
+    /**
+     * Quality level the image was inspected at
+     */
+    public QualityController.Level getQuality() {
+        return quality;
+    }
+    
+    public List<Piece> getPieces() {
+        return pieces;
+    }
+    
+    public int getPassCount() {
+        int count = 0;
+        for (Piece piece : pieces) {
+            if (piece.pass) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    public int getRejectCount() {
+        return pieces.size() - getPassCount();
+    }
+    
+    public int getDetectedPixels() {
+        int count = 0;
+        for (boolean[] row : detectionMask) {
+            for (boolean detected : row) {
+                if (detected) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Time spent classifying and measuring (not decoding or rendering)
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,139 @@
+package com.doughvision;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs per-image jobs with the waiting and the computing on different threads.
+ *
+ * Each job gets its own I/O thread for reading files, writing results and
+ * other blocking calls, and hands the CPU-bound part (decode, inspect, render)
+ * to a pool sized to the cores with onCpu(). The I/O threads come from a
+ * platform pool of ioThreads. Virtual threads (JDK 21+) are opt-in with
+ * preferVirtual: they have not been measured against the platform pool on a
+ * JDK that has them, so nothing uses them unless asked. The virtual-thread
+ * factory is looked up by reflection, so the build still targets Java 11.
+ *
+ * The executor does not limit how many jobs are started; callers bound that
+ * themselves (BatchRunner and WatchFolderService hold a Semaphore), which also
+ * bounds how many encoded files are held in memory.
+ */
+public class JobExecutor implements AutoCloseable {
+    
+    /** Platform I/O threads per CPU thread when virtual threads are not used */
+    public static final int IO_THREADS_PER_CPU = 4;
+    
+    private final ExecutorService io;
+    private final ExecutorService cpu;
+    private final boolean virtual;
+    private final int cpuThreads;
+    
+    /**
+     * @param cpuThreads    size of the CPU pool (usually the number of cores)
+     * @param ioThreads     size of the platform I/O pool when virtual threads are not used
+     * @param preferVirtual use virtual threads for I/O if the JDK has them
+     */
+    public JobExecutor(String name, int cpuThreads, int ioThreads, boolean preferVirtual) {
+        this.cpuThreads = Math.max(1, cpuThreads);
+        ExecutorService virtualThreads = preferVirtual ? newVirtualThreadExecutor() : null;
+        this.virtual = virtualThreads != null;
+        this.io = virtual ? virtualThreads : Executors.newFixedThreadPool(Math.max(1, ioThreads), daemonThreads(name + "-io-"));
+        this.cpu = Executors.newFixedThreadPool(this.cpuThreads, daemonThreads(name + "-cpu-"));
+    }
+    
+    /**
+     * Platform I/O pool of IO_THREADS_PER_CPU threads per CPU thread
+     */
+    public JobExecutor(String name, int cpuThreads) {
+        this(name, cpuThreads, cpuThreads * IO_THREADS_PER_CPU, false);
+    }
+    
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() on JDK 21+ (or 19/20 with --enable-preview), else null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // NoSuchMethodException before JDK 19; UnsupportedOperationException (wrapped) without preview
+            return null;
+        }
+    }
+    
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * True if jobs run on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtual;
+    }
+    
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+    
+    /**
+     * Start a job on its own I/O thread
+     */
+    public void execute(Runnable job) {
+        io.execute(job);
+    }
+    
+    /**
+     * Run CPU-bound work on the CPU pool and wait for it. Call from a job; the
+     * waiting I/O thread does not hold a core (a virtual thread unmounts).
+     */
+    public <T> T onCpu(Callable<T> work) throws Exception {
+        Future<T> future = cpu.submit(work);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+    
+    /**
+     * Finish the started jobs, waiting up to the timeout; true if all finished
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        io.shutdown();
+        boolean done = io.awaitTermination(timeout, unit);
+        cpu.shutdown();
+        return cpu.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) && done;
+    }
+    
+    @Override
+    public void close() {
+        try {
+            shutdown(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            io.shutdownNow();
+            cpu.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.doughvision;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Sufficient statistics for one taught label: per-channel HSV histograms.
+ *
+ * Rules only depend on per-channel percentiles, so the marginal histograms
+ * are all that needs to be kept between teach runs. Statistics from new
+ * images are merged by adding bins, and rules are recomputed from the
+ * merged histograms in O(bins) instead of re-sorting every sample. Counts
+ * are doubles so old data can be decayed (exponential forgetting).
+ */
+public class LabelStatistics {
+    
+    public static final int H_BINS = 180;  // OpenCV hue range 0-179
+    public static final int SV_BINS = 256;
+    
+    private final String label;
+    private boolean ignore;
+    private final double[] hHist = new double[H_BINS];
+    private final double[] sHist = new double[SV_BINS];
+    private final double[] vHist = new double[SV_BINS];
+    private double count;
+    private int images;
+    
+    public LabelStatistics(String label, boolean ignore) {
+        this.label = label;
+        this.ignore = ignore;
+    }
+    
+    /**
+     * Add one HSV sample
+     */
+    public void add(int h, int s, int v) {
+        hHist[h]++;
+        sHist[s]++;
+        vHist[v]++;
+        count++;
+    }
+    
+    /**
+     * Add one HSV sample standing in for weight pixels (used when a region is subsampled)
+     */
+    public void add(int h, int s, int v, double weight) {
+        hHist[h] += weight;
+        sHist[s] += weight;
+        vHist[v] += weight;
+        count += weight;
+    }
+    
+    /**
+     * Add another set of statistics for the same label into this one
+     */
+    public void merge(LabelStatistics other) {
+        for (int i = 0; i < H_BINS; i++) {
+            hHist[i] += other.hHist[i];
+        }
+        for (int i = 0; i < SV_BINS; i++) {
+            sHist[i] += other.sHist[i];
+            vHist[i] += other.vHist[i];
+        }
+        count += other.count;
+        images += other.images;
+        ignore |= other.ignore;
+    }
+    
+    /**
+     * Scale all counts by a factor in [0, 1] to reduce the weight of older data
+     */
+    public void decay(double factor) {
+        for (int i = 0; i < H_BINS; i++) {
+            hHist[i] *= factor;
+        }
+        for (int i = 0; i < SV_BINS; i++) {
+            sHist[i] *= factor;
+            vHist[i] *= factor;
+        }
+        count *= factor;
+    }
+    
+    public int percentileH(double q) {
+        return percentile(hHist, q);
+    }
+    
+    public int percentileS(double q) {
+        return percentile(sHist, q);
+    }
+    
+    public int percentileV(double q) {
+        return percentile(vHist, q);
+    }
+    
+    /**
+     * Value at rank q * count, i.e. the same element a sorted sample list would give at index (int)(n * q)
+     */
+    private int percentile(double[] hist, double q) {
+        double rank = Math.floor(count * q);
+        double cumulative = 0;
+        int last = 0;
+        for (int i = 0; i < hist.length; i++) {
+            if (hist[i] <= 0) {
+                continue;
+            }
+            cumulative += hist[i];
+            last = i;
+            if (cumulative > rank) {
+                return i;
+            }
+        }
+        return last;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    public boolean isIgnore() {
+        return ignore;
+    }
+    
+    public double getCount() {
+        return count;
+    }
+    
+    public int getImages() {
+        return images;
+    }
+    
+    public void setImages(int images) {
+        this.images = images;
+    }
+    
+    public boolean isEmpty() {
+        return count < 1.0;
+    }
+    
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("label", label);
+        json.addProperty("type", ignore ? "ignore" : "detect");
+        json.addProperty("count", count);
+        json.addProperty("images", images);
+        json.add("h", toJsonArray(hHist));
+        json.add("s", toJsonArray(sHist));
+        json.add("v", toJsonArray(vHist));
+        return json;
+    }
+    
+    public static LabelStatistics fromJson(JsonObject json) {
+        LabelStatistics stats = new LabelStatistics(
+            json.get("label").getAsString(),
+            json.has("type") && "ignore".equals(json.get("type").getAsString()));
+        readJsonArray(json.getAsJsonArray("h"), stats.hHist);
+        readJsonArray(json.getAsJsonArray("s"), stats.sHist);
+        readJsonArray(json.getAsJsonArray("v"), stats.vHist);
+        stats.count = json.get("count").getAsDouble();
+        stats.images = json.has("images") ? json.get("images").getAsInt() : 0;
+        return stats;
+    }
+    
+    private static JsonArray toJsonArray(double[] hist) {
+        JsonArray array = new JsonArray();
+        for (double value : hist) {
+            // Whole counts are written without a fraction to keep the file compact
+            if (value == Math.rint(value)) {
+                array.add((long) value);
+            } else {
+                array.add(value);
+            }
+        }
+        return array;
+    }
+    
+    private static void readJsonArray(JsonArray array, double[] hist) {
+        for (int i = 0; i < hist.length && i < array.size(); i++) {
+            hist[i] = array.get(i).getAsDouble();
+        }
+    }
+}
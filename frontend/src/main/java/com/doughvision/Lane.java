@@ -0,0 +1,183 @@
+package com.doughvision;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One lane of the line: its own frame source, model, recipe and workers.
+ *
+ * Each lane has a private ConfigurationManager, so recipes, calibration and
+ * fast mode are independent and a changeover on one lane never touches the
+ * snapshot another lane is inspecting with. Its LiveInspection has dedicated
+ * capture and worker threads named after the lane, and drops stale frames
+ * rather than queueing them, so a slow or stalled lane cannot build a backlog
+ * that delays the others; on a shared camera each lane inspects its own ROI.
+ */
+public class Lane {
+    
+    private static final int LATENCY_SAMPLES = 256;
+    
+    private final int index;
+    private final LaneConfig config;
+    private final ConfigurationManager configManager;
+    private final LiveInspection inspection;
+    private final DetectionLog detectionLog;  // May be null
+    
+    private final AtomicLong pieces = new AtomicLong();
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_SAMPLES];  // Recent capture-to-result times, ring
+    private long latencyCount;
+    private volatile long startNanos;
+    
+    /**
+     * Per-lane counters at one moment
+     */
+    public static class Stats {
+        public final String name;
+        public final long frames;
+        public final long dropped;
+        public final long failed;
+        public final long pieces;
+        public final long passed;
+        public final long rejected;
+        public final double framesPerSecond;
+        public final double p50Millis;
+        public final double p99Millis;
+        public final String quality;  // Current level, or "fixed" without adaptive quality
+        
+        Stats(String name, long frames, long dropped, long failed, long pieces, long passed, long rejected,
+              double framesPerSecond, double p50Millis, double p99Millis, String quality) {
+            this.name = name;
+            this.frames = frames;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.pieces = pieces;
+            this.passed = passed;
+            this.rejected = rejected;
+            this.framesPerSecond = framesPerSecond;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.quality = quality;
+        }
+    }
+    
+    /**
+     * @param index   lane number written to the detection log
+     * @param recipes shared cache, so lanes running the same product compile it once
+     * @param renderOverlay draw overlays for a display (off for headless runs)
+     */
+    public Lane(int index, LaneConfig config, RecipeCache recipes, DetectionLog detectionLog, boolean renderOverlay)
+            throws IOException {
+        this.index = index;
+        this.config = config;
+        this.detectionLog = detectionLog;
+        
+        configManager = new ConfigurationManager();
+        try {
+            // Lane settings are for this run; the operator's session file stays as it is
+            configManager.setSessionReadOnly(true);
+            inspection = open(config, recipes, renderOverlay);
+        } catch (IOException | RuntimeException e) {
+            configManager.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Apply the lane's recipe and settings and open its source
+     */
+    private LiveInspection open(LaneConfig config, RecipeCache recipes, boolean renderOverlay) throws IOException {
+        if (config.recipe != null) {
+            CompiledRecipe recipe = recipes.get(config.recipe);
+            if (recipe == null) {
+                throw new IOException("Lane '" + config.name + "': no recipe named '" + config.recipe + "'");
+            }
+            configManager.activateRecipe(recipe);
+        }
+        if (config.pixelsPerMm > 0) {
+            configManager.setPixelsPerMm(config.pixelsPerMm);
+        }
+        configManager.setFastMode(config.fastMode);
+        configManager.getMetrics().register(config.getName());
+        
+        double fps = config.fps > 0 ? config.fps : configManager.getConfig().fps;
+        FrameSource source = config.openSource(fps);
+        LiveInspection inspection = new LiveInspection(configManager, source, config.workers, "lane" + (index + 1));
+        if (config.adaptiveQuality) {
+            inspection.setQualityController(QualityController.forFrameRate(fps, config.workers,
+                config.fastMode ? QualityController.Level.FAST : QualityController.Level.FULL));
+        }
+        inspection.setRegion(config.getRegion());
+        inspection.setRenderOverlay(renderOverlay);
+        inspection.setResultListener(this::record);
+        return inspection;
+    }
+    
+    private void record(LiveInspection.Result result) {
+        InspectionResult inspectionResult = result.inspection;
+        pieces.addAndGet(inspectionResult.getPieces().size());
+        passed.addAndGet(inspectionResult.getPassCount());
+        rejected.addAndGet(inspectionResult.getRejectCount());
+        synchronized (latencies) {
+            latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = result.latencyNanos;
+        }
+        if (detectionLog != null) {
+            // Piece corners are in the lane's ROI coordinates; the log holds full-frame positions
+            detectionLog.append(System.currentTimeMillis(), result.sequence, index, inspectionResult, result.origin);
+        }
+    }
+    
+    public void start() {
+        startNanos = System.nanoTime();
+        inspection.start();
+    }
+    
+    /**
+     * Stop the lane's threads and close its source and model; a lane is not restarted after this
+     */
+    public void stop() {
+        inspection.stop();
+        configManager.close();
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public String getName() {
+        return config.getName();
+    }
+    
+    public ConfigurationManager getConfigManager() {
+        return configManager;
+    }
+    
+    public LiveInspection getInspection() {
+        return inspection;
+    }
+    
+    public Stats getStats() {
+        long[] recent;
+        synchronized (latencies) {
+            recent = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        Arrays.sort(recent);
+        double elapsed = startNanos > 0 ? (System.nanoTime() - startNanos) / 1e9 : 0;
+        long frames = inspection.getProcessedCount();
+        QualityController quality = inspection.getQualityController();
+        return new Stats(getName(), frames, inspection.getDroppedCount(), inspection.getFailedCount(),
+            pieces.get(), passed.get(), rejected.get(), elapsed > 0 ? frames / elapsed : 0,
+            percentileMillis(recent, 0.50), percentileMillis(recent, 0.99),
+            quality != null ? quality.getLevel().name() : "fixed");
+    }
+    
+    static double percentileMillis(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+}
@@ -0,0 +1,130 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One lane of the line, as configured in lanes.json in the working directory:
+ *
+ *   {"lanes": [
+ *     {"name": "Lane 1", "source": "ring:/dev/shm/lane1", "recipe": "Baguette",
+ *      "roi": [0, 0, 1280, 960], "pixelsPerMm": 4.2, "workers": 1},
+ *     {"name": "Lane 2", "source": "folder:recordings/lane2", "fps": 10}
+ *   ]}
+ *
+ * The source is "ring:<file>" (a camera publishing through the shared-memory
+ * frame ring), "folder:<dir>" (replay, looping), "synthetic:<image>" (a
+ * scrolling belt) or "scenes:<width>x<height>" (generated scenes, see
+ * SceneGenerator). Everything else is optional: without a recipe the lane
+ * uses the learned rules and session settings; roi crops each frame;
+ * pixelsPerMm overrides the calibration; fps paces replay and synthetic
+ * sources (default: the session's camera fps) and sets the frame deadline
+ * that adaptiveQuality (on unless set to false) holds the lane to.
+ */
+public class LaneConfig {
+    
+    public static final String FILE_NAME = "lanes.json";
+    
+    /** Distinct generated scenes a "scenes:" lane cycles through */
+    static final int SCENES_PER_LANE = 16;
+    
+    String name;
+    String source;
+    String recipe;
+    int[] roi;             // x, y, width, height in frame pixels
+    double pixelsPerMm;    // 0 = from the recipe or session
+    double fps;            // 0 = the session's camera fps
+    int workers = 1;
+    boolean fastMode;
+    boolean adaptiveQuality = true;
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * The ROI as a rectangle, or null for the whole frame
+     */
+    public Rectangle getRegion() {
+        return roi != null && roi.length == 4 ? new Rectangle(roi[0], roi[1], roi[2], roi[3]) : null;
+    }
+    
+    /**
+     * Open the lane's frame source
+     */
+    public FrameSource openSource(double defaultFps) throws IOException {
+        if (source == null || source.indexOf(':') < 0) {
+            throw new IOException("Lane '" + name + "' needs a source such as ring:/dev/shm/lane1");
+        }
+        String kind = source.substring(0, source.indexOf(':'));
+        File target = new File(source.substring(source.indexOf(':') + 1));
+        double rate = fps > 0 ? fps : defaultFps;
+        switch (kind) {
+            case "ring":
+                return new ShmFrameSource(target);
+            case "folder":
+                return new FolderFrameSource(target, rate, true);
+            case "synthetic":
+                BufferedImage belt;
+                try (ImageLoader loader = new ImageLoader()) {
+                    belt = loader.read(target);
+                }
+                return new SyntheticFrameSource(belt, rate, Math.max(1, belt.getWidth() / 100));
+            case "scenes":
+                String[] size = target.getPath().toLowerCase(Locale.ROOT).split("x");
+                try {
+                    SceneGenerator.Options options = new SceneGenerator.Options()
+                        .size(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+                    return new SceneFrameSource(new SceneGenerator(options, SceneGenerator.DEFAULT_SEED), rate,
+                        SCENES_PER_LANE);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Lane '" + name + "' needs a scene size such as scenes:1280x960");
+                }
+            default:
+                throw new IOException("Lane '" + name + "' has unknown source type '" + kind + "'");
+        }
+    }
+    
+    public static File getDefaultFile() {
+        return new File(FILE_NAME);
+    }
+    
+    /**
+     * Lanes in the file, in order (the position is the lane number in the detection log)
+     */
+    public static List<LaneConfig> load(File file) throws IOException {
+        List<LaneConfig> lanes = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonElement json = JsonParser.parseReader(reader);
+            if (!json.isJsonObject() || !json.getAsJsonObject().has("lanes")) {
+                throw new IOException(file + " has no \"lanes\" array");
+            }
+            Gson gson = new Gson();
+            for (JsonElement element : json.getAsJsonObject().getAsJsonArray("lanes")) {
+                LaneConfig lane = gson.fromJson(element, LaneConfig.class);
+                if (lane.name == null) {
+                    lane.name = "Lane " + (lanes.size() + 1);
+                }
+                lanes.add(lane);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot read " + file + ": " + e.getMessage(), e);
+        }
+        if (lanes.isEmpty()) {
+            throw new IOException(file + " defines no lanes");
+        }
+        return lanes;
+    }
+}
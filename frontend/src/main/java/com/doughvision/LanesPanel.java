@@ -0,0 +1,180 @@
+package com.doughvision;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-lane view: runs every lane in lanes.json (see LaneConfig), shows each
+ * lane's latest overlay side by side and a table of per-lane and total
+ * throughput, rejects and latency, refreshed at display rate
+ */
+public class LanesPanel extends JPanel {
+    
+    private static final int DISPLAY_INTERVAL_MS = 33;
+    private static final String[] COLUMNS = {"Lane", "Frames", "FPS", "Dropped", "Pieces", "Pass", "Reject",
+        "p50 ms", "p99 ms", "Quality"};
+    
+    private JButton startButton;
+    private JButton stopButton;
+    private JLabel statusLabel;
+    private JPanel viewGrid;
+    private DefaultTableModel statsModel;
+    
+    private LineInspection line;
+    private final List<VisionPanel> views = new ArrayList<>();
+    private final List<LiveInspection.Result> shown = new ArrayList<>();
+    private final Timer displayTimer = new Timer(DISPLAY_INTERVAL_MS, e -> refreshDisplay());
+    private int tick;
+    
+    public LanesPanel() {
+        initializeComponents();
+        layoutComponents();
+    }
+    
+    private void initializeComponents() {
+        startButton = new JButton("Start All Lanes");
+        startButton.addActionListener(e -> startLanes());
+        
+        stopButton = new JButton("Stop All Lanes");
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(e -> stopLanes());
+        
+        statusLabel = new JLabel("Lanes are read from " + LaneConfig.getDefaultFile().getAbsolutePath());
+        
+        viewGrid = new JPanel(new GridLayout(1, 1, 5, 5));
+        statsModel = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+    
+    private void layoutComponents() {
+        setLayout(new BorderLayout(10, 10));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        buttonPanel.add(startButton);
+        buttonPanel.add(stopButton);
+        buttonPanel.add(statusLabel);
+        
+        JTable statsTable = new JTable(statsModel);
+        JScrollPane statsScroll = new JScrollPane(statsTable);
+        statsScroll.setPreferredSize(new Dimension(0, 160));
+        
+        add(buttonPanel, BorderLayout.NORTH);
+        add(viewGrid, BorderLayout.CENTER);
+        add(statsScroll, BorderLayout.SOUTH);
+    }
+    
+    private void startLanes() {
+        try {
+            line = new LineInspection(LaneConfig.load(LaneConfig.getDefaultFile()), null, null, true);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Cannot start lanes: " + e.getMessage(),
+                "Lanes", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        List<Lane> lanes = line.getLanes();
+        viewGrid.removeAll();
+        viewGrid.setLayout(new GridLayout(1, lanes.size(), 5, 5));
+        views.clear();
+        shown.clear();
+        statsModel.setRowCount(0);
+        for (Lane lane : lanes) {
+            VisionPanel view = new VisionPanel();
+            view.setBorder(BorderFactory.createTitledBorder(lane.getName()));
+            views.add(view);
+            shown.add(null);
+            viewGrid.add(view);
+            statsModel.addRow(new Object[COLUMNS.length]);
+        }
+        if (lanes.size() > 1) {
+            statsModel.addRow(new Object[COLUMNS.length]);
+        }
+        viewGrid.revalidate();
+        viewGrid.repaint();
+        
+        line.start();
+        tick = 0;
+        displayTimer.start();
+        startButton.setEnabled(false);
+        stopButton.setEnabled(true);
+        statusLabel.setText(lanes.size() + " lanes running");
+    }
+    
+    private void stopLanes() {
+        displayTimer.stop();
+        if (line != null) {
+            line.stop();
+            refreshStats();
+        }
+        startButton.setEnabled(true);
+        stopButton.setEnabled(false);
+        statusLabel.setText("Lanes stopped");
+    }
+    
+    /**
+     * Display timer tick on the EDT: show each lane's newest overlay, refresh the table a few times a second
+     */
+    private void refreshDisplay() {
+        List<Lane> lanes = line.getLanes();
+        for (int i = 0; i < lanes.size(); i++) {
+            LiveInspection.Result result = lanes.get(i).getInspection().getLatest();
+            if (result != null && result != shown.get(i) && result.overlay != null) {
+                shown.set(i, result);
+                views.get(i).updateFrame(result.overlay);
+                views.get(i).setDetectionCount(result.inspection.getPieces().size());
+            }
+        }
+        if (++tick % 10 == 0) {
+            refreshStats();
+        }
+        if (!line.isRunning()) {
+            stopLanes();
+        }
+    }
+    
+    private void refreshStats() {
+        List<Lane> lanes = line.getLanes();
+        long[] total = new long[6];
+        double rate = 0;
+        for (int i = 0; i < lanes.size(); i++) {
+            Lane.Stats stats = lanes.get(i).getStats();
+            setRow(i, stats.name, stats.frames, String.format("%.1f", stats.framesPerSecond), stats.dropped,
+                stats.pieces, stats.passed, stats.rejected, String.format("%.1f", stats.p50Millis),
+                String.format("%.1f", stats.p99Millis), stats.quality);
+            total[0] += stats.frames;
+            total[1] += stats.dropped;
+            total[2] += stats.pieces;
+            total[3] += stats.passed;
+            total[4] += stats.rejected;
+            rate += stats.framesPerSecond;
+        }
+        if (lanes.size() > 1) {
+            setRow(lanes.size(), "Total", total[0], String.format("%.1f", rate), total[1], total[2], total[3],
+                total[4], "", "", "");
+        }
+    }
+    
+    private void setRow(int row, Object... values) {
+        for (int column = 0; column < values.length; column++) {
+            statsModel.setValueAt(values[column], row, column);
+        }
+    }
+    
+    /**
+     * Stop all lanes, e.g. when the window closes
+     */
+    public void shutdown() {
+        if (line != null && stopButton.isEnabled()) {
+            stopLanes();
+        }
+    }
+}
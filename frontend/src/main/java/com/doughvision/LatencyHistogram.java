@@ -0,0 +1,121 @@
+package com.doughvision;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ *
+ * Buckets are log-linear: every power of two is split into 16 equal steps, so
+ * a recorded value is reported within 1/16 (6%) of itself from 1 ns up to
+ * hours, in a fixed 8 KB. record() is one atomic increment on the bucket plus
+ * two on the totals, cheap enough to call for every stage of every frame from
+ * any number of threads. Percentiles are read from a copy of the counts and
+ * may lag concurrent records by a few samples.
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Percentiles and totals at one moment
+     */
+    public static class Snapshot {
+        public final long count;
+        public final double meanMillis;
+        public final double p50Millis;
+        public final double p90Millis;
+        public final double p99Millis;
+        public final double maxMillis;
+        
+        Snapshot(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                 double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+    }
+    
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_COUNT) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);  // >= SUB_BITS
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+    
+    /**
+     * Upper end of a bucket, the value reported for samples in it
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        int sub = bucket % SUB_COUNT;
+        long lower = (long) (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+    
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long previous;
+        while (nanos > (previous = max.get()) && !max.compareAndSet(previous, nanos)) {
+            // Another thread raised the max; retry against its value
+        }
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long largest = max.get();
+        return new Snapshot(total, total > 0 ? sum.get() / 1e6 / total : 0,
+            percentile(copy, total, 0.50, largest), percentile(copy, total, 0.90, largest),
+            percentile(copy, total, 0.99, largest), largest / 1e6);
+    }
+    
+    private static double percentile(long[] counts, long total, double fraction, long largest) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), largest) / 1e6;
+            }
+        }
+        return largest / 1e6;
+    }
+    
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
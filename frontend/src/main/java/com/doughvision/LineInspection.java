@@ -0,0 +1,170 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * All lanes of a line, started and stopped together.
+ *
+ * Lanes share nothing while inspecting except the compiled-recipe cache and
+ * the detection log (whose append() only queues), so each lane's throughput
+ * and latency depend on its own source and workers. To pin a lane to cores,
+ * run it in its own process with --lane under taskset or a cgroup; Java has
+ * no per-thread affinity, but separate processes isolate lanes completely.
+ */
+public class LineInspection {
+    
+    private final List<Lane> lanes = new ArrayList<>();
+    
+    /**
+     * @param only lane name to run by itself, or null for all lanes in the file
+     */
+    public LineInspection(List<LaneConfig> configs, String only, DetectionLog detectionLog, boolean renderOverlay)
+            throws IOException {
+        RecipeCache recipes = new RecipeCache();
+        try {
+            for (int i = 0; i < configs.size(); i++) {
+                LaneConfig config = configs.get(i);
+                if (only != null && !only.equalsIgnoreCase(config.getName())) {
+                    continue;
+                }
+                // The index stays the lane's position in the file, so logs from separate processes line up
+                lanes.add(new Lane(i, config, recipes, detectionLog, renderOverlay));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Close the sources and models of the lanes already opened
+            stop();
+            throw e;
+        }
+        if (lanes.isEmpty()) {
+            throw new IOException("No lane named '" + only + "'");
+        }
+    }
+    
+    public List<Lane> getLanes() {
+        return Collections.unmodifiableList(lanes);
+    }
+    
+    public void start() {
+        for (Lane lane : lanes) {
+            lane.start();
+        }
+    }
+    
+    public void stop() {
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+    }
+    
+    /**
+     * True while any lane still has frames coming
+     */
+    public boolean isRunning() {
+        for (Lane lane : lanes) {
+            if (lane.getInspection().isRunning() && !lane.getInspection().isSourceEnded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public void printStatus() {
+        long frames = 0, dropped = 0, pieces = 0, passed = 0, rejected = 0;
+        double rate = 0;
+        for (Lane lane : lanes) {
+            Lane.Stats stats = lane.getStats();
+            System.out.println(String.format(Locale.ROOT,
+                "%-12s %6d frames %6.1f fps  dropped %d  pieces %d (pass %d, reject %d)  latency p50 %.1f ms  p99 %.1f ms  %s",
+                stats.name, stats.frames, stats.framesPerSecond, stats.dropped, stats.pieces, stats.passed,
+                stats.rejected, stats.p50Millis, stats.p99Millis, stats.quality));
+            frames += stats.frames;
+            dropped += stats.dropped;
+            pieces += stats.pieces;
+            passed += stats.passed;
+            rejected += stats.rejected;
+            rate += stats.framesPerSecond;
+        }
+        if (lanes.size() > 1) {
+            System.out.println(String.format(Locale.ROOT,
+                "%-12s %6d frames %6.1f fps  dropped %d  pieces %d (pass %d, reject %d)",
+                "Total", frames, rate, dropped, pieces, passed, rejected));
+        }
+    }
+    
+    /**
+     * Command line: lanes [--config lanes.json] [--lane NAME] [--log FILE] [--seconds N]
+     * Runs until the process is stopped, the sources end or the time is up, printing status every few seconds.
+     */
+    static int run(String[] args) {
+        File configFile = LaneConfig.getDefaultFile();
+        String only = null;
+        File logFile = null;
+        int seconds = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--config") && i + 1 < args.length) {
+                configFile = new File(args[++i]);
+            } else if (args[i].equals("--lane") && i + 1 < args.length) {
+                only = args[++i];
+            } else if (args[i].equals("--log") && i + 1 < args.length) {
+                logFile = new File(args[++i]);
+            } else if (args[i].equals("--seconds") && i + 1 < args.length) {
+                seconds = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Usage: lanes [--config lanes.json] [--lane NAME] [--log FILE] [--seconds N]");
+                return 2;
+            }
+        }
+        
+        DetectionLog detectionLog = null;
+        LineInspection line;
+        try {
+            List<LaneConfig> configs = LaneConfig.load(configFile);
+            if (logFile != null) {
+                detectionLog = DetectionLog.open(logFile);
+            }
+            line = new LineInspection(configs, only, detectionLog, false);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            if (detectionLog != null) {
+                detectionLog.close();
+            }
+            return 1;
+        }
+        
+        DetectionLog log = detectionLog;
+        Thread shutdown = new Thread(() -> {
+            line.stop();
+            if (log != null) {
+                log.close();
+            }
+            line.printStatus();
+            for (Lane lane : line.getLanes()) {
+                System.out.println(lane.getName() + " stages:");
+                lane.getConfigManager().getMetrics().printStatus();
+            }
+        }, "lanes-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        
+        line.start();
+        long deadline = seconds > 0 ? System.nanoTime() + seconds * 1_000_000_000L : Long.MAX_VALUE;
+        try {
+            int tick = 0;
+            while (line.isRunning() && System.nanoTime() - deadline < 0) {
+                Thread.sleep(200);
+                if (++tick % 25 == 0) {
+                    line.printStatus();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Runtime.getRuntime().removeShutdownHook(shutdown);
+        shutdown.run();
+        return 0;
+    }
+}
@@ -0,0 +1,390 @@
+package com.doughvision;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Continuous inspection of a FrameSource with latest-frame-wins scheduling.
+ *
+ * A capture thread takes frames from the source as fast as it delivers them
+ * and leaves each in a single pending slot; a frame still waiting there when
+ * the next one arrives is dropped, never queued, so inspection always works on
+ * the newest frame and latency cannot build up when the line runs faster than
+ * inspection. Worker threads take the pending frame, inspect it, render the
+ * overlay and publish it as the latest result. The display polls getLatest()
+ * at its own rate (see ControlPanel), independent of the processing rate.
+ *
+ * Frames whose memory the source reuses (shared-memory ring slots) are copied
+ * into a pooled buffer and released on the capture thread, so slots go back to
+ * the producer in order and within one frame time. stop() interrupts the
+ * workers, which ends an inspection in progress within a row band.
+ *
+ * An optional region restricts inspection to part of the frame (a lane's view
+ * of a shared camera); that part is copied into a pooled buffer. Without a
+ * display, overlay rendering can be switched off. With a QualityController,
+ * each frame is inspected at the controller's current level and its time fed
+ * back, so the loop keeps up with the camera by lowering resolution and
+ * skipping optional work instead of dropping frames.
+ */
+public class LiveInspection implements AutoCloseable {
+    
+    /**
+     * One inspected frame, ready to display. The inspection's processed image may be a pooled
+     * capture buffer; it is only reused once a newer result has replaced this one as the latest.
+     */
+    public static final class Result {
+        public final long sequence;
+        public final BufferedImage overlay;  // Null if rendering is off or skipped at this quality level
+        public final InspectionResult inspection;
+        public final long latencyNanos;  // Capture to published
+        public final Point origin;  // Frame position of the inspected region's top-left pixel, null for 0,0
+        private final Captured frame;  // Held until this result is replaced
+        
+        Result(long sequence, BufferedImage overlay, InspectionResult inspection, long latencyNanos, Captured frame) {
+            this.sequence = sequence;
+            this.overlay = overlay;
+            this.inspection = inspection;
+            this.latencyNanos = latencyNanos;
+            this.origin = frame.origin;
+            this.frame = frame;
+        }
+    }
+    
+    /**
+     * A captured frame the inspection owns (copied if the source's frame was borrowed)
+     */
+    private static final class Captured {
+        final long sequence;
+        final long capturedNanos;
+        final BufferedImage image;
+        final Point origin;  // Frame position of the image's top-left pixel, null for 0,0
+        final boolean pooled;
+        
+        Captured(long sequence, long capturedNanos, BufferedImage image, Point origin, boolean pooled) {
+            this.sequence = sequence;
+            this.capturedNanos = capturedNanos;
+            this.image = image;
+            this.origin = origin;
+            this.pooled = pooled;
+        }
+    }
+    
+    private final ConfigurationManager configManager;
+    private final FrameSource source;
+    private final int workerCount;
+    private final String name;
+    private Rectangle region;
+    private boolean renderOverlay = true;
+    private Consumer<Result> resultListener;
+    private volatile QualityController quality;
+    private final AtomicReference<Captured> pending = new AtomicReference<>();
+    private final AtomicReference<Result> latest = new AtomicReference<>();
+    private final BlockingQueue<BufferedImage> buffers;
+    private final Object signal = new Object();
+    private final List<Thread> threads = new ArrayList<>();
+    
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    
+    private volatile boolean running;
+    private volatile boolean sourceEnded;
+    
+    public LiveInspection(ConfigurationManager configManager, FrameSource source, int workers) {
+        this(configManager, source, workers, "live");
+    }
+    
+    /**
+     * @param name prefix for the thread names, e.g. the lane
+     */
+    public LiveInspection(ConfigurationManager configManager, FrameSource source, int workers, String name) {
+        this.configManager = configManager;
+        this.source = source;
+        this.workerCount = Math.max(1, workers);
+        this.name = name;
+        // One buffer per worker, one pending, one being filled and one held by the latest result
+        this.buffers = new ArrayBlockingQueue<>(workerCount + 3);
+    }
+    
+    /**
+     * Inspect only this part of each frame (clipped to the frame); null for the whole frame. Set before start().
+     */
+    public void setRegion(Rectangle region) {
+        this.region = region;
+    }
+    
+    /**
+     * Whether results carry a rendered overlay (default on). Set before start().
+     */
+    public void setRenderOverlay(boolean renderOverlay) {
+        this.renderOverlay = renderOverlay;
+    }
+    
+    /**
+     * Called on a worker thread for every inspected frame, e.g. to update metrics or log pieces. Set before start().
+     */
+    public void setResultListener(Consumer<Result> listener) {
+        this.resultListener = listener;
+    }
+    
+    /**
+     * Adapt the quality level to the frame deadline (null: fixed quality from the fast mode setting)
+     */
+    public void setQualityController(QualityController controller) {
+        this.quality = controller;
+    }
+    
+    /**
+     * The quality controller, or null
+     */
+    public QualityController getQualityController() {
+        return quality;
+    }
+    
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        threads.add(new Thread(this::captureLoop, name + "-capture"));
+        for (int i = 0; i < workerCount; i++) {
+            threads.add(new Thread(this::inspectLoop, name + "-inspect-" + (i + 1)));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+    
+    /**
+     * Stop capturing and inspecting and close the source (also if never started); returns once the threads have ended
+     */
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            threads.clear();
+        }
+        source.close();
+        pending.set(null);
+    }
+    
+    @Override
+    public void close() {
+        stop();
+    }
+    
+    private void captureLoop() {
+        try {
+            while (running) {
+                Frame frame = source.next();
+                if (frame == null) {
+                    endOfSource();
+                    return;
+                }
+                Captured capture;
+                try {
+                    capture = own(frame);
+                } finally {
+                    frame.release();
+                }
+                captured.incrementAndGet();
+                Captured stale = pending.getAndSet(capture);
+                if (stale != null) {
+                    dropped.incrementAndGet();
+                    recycle(stale);
+                }
+                synchronized (signal) {
+                    signal.notifyAll();
+                }
+            }
+        } catch (InterruptedIOException e) {
+            // Stopping
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Live source failed: " + e.getMessage());
+                endOfSource();
+            }
+        }
+    }
+    
+    /**
+     * No more frames: let the workers finish the pending one and exit
+     */
+    private void endOfSource() {
+        sourceEnded = true;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+    
+    /**
+     * Keep the frame's image, copying it into a pooled buffer if the source will reuse its memory
+     */
+    private Captured own(Frame frame) {
+        long now = System.nanoTime();
+        BufferedImage image = frame.getImage();
+        Point origin = null;
+        if (region != null) {
+            Rectangle clip = region.intersection(new Rectangle(image.getWidth(), image.getHeight()));
+            if (!clip.isEmpty() && !clip.equals(new Rectangle(image.getWidth(), image.getHeight()))) {
+                image = image.getSubimage(clip.x, clip.y, clip.width, clip.height);
+                origin = clip.getLocation();
+            }
+        }
+        // A crop is always copied: inspection reads int images straight from their buffer, which a sub-image shares
+        if (!frame.isBorrowed() && origin == null) {
+            return new Captured(frame.getSequence(), now, image, null, false);
+        }
+        BufferedImage copy = buffers.poll();
+        if (copy == null || copy.getWidth() != image.getWidth() || copy.getHeight() != image.getHeight()) {
+            copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = copy.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return new Captured(frame.getSequence(), now, copy, origin, true);
+    }
+    
+    private void recycle(Captured capture) {
+        if (capture.pooled) {
+            buffers.offer(capture.image);
+        }
+    }
+    
+    private void inspectLoop() {
+        try {
+            while (running) {
+                Captured capture = pending.getAndSet(null);
+                if (capture == null) {
+                    synchronized (signal) {
+                        while (running && pending.get() == null && !sourceEnded) {
+                            signal.wait();
+                        }
+                    }
+                    if (sourceEnded && pending.get() == null) {
+                        return;
+                    }
+                    continue;
+                }
+                boolean published = false;
+                try {
+                    QualityController controller = quality;
+                    long start = System.nanoTime();
+                    QualityController.Level level = controller != null ? controller.getLevel()
+                        : configManager.isFastMode() ? QualityController.Level.FAST : QualityController.Level.FULL;
+                    InspectionResult inspection = configManager.inspect(capture.image, capture.origin, 1, level,
+                        CancellationToken.NONE, ProgressListener.NONE);
+                    if (inspection == null) {
+                        failed.incrementAndGet();
+                        continue;
+                    }
+                    long frame = processed.getAndIncrement();
+                    BufferedImage overlay = renderOverlay && inspection.getQuality().rendersFrame(frame)
+                        ? configManager.renderOverlay(capture.image, inspection) : null;
+                    long elapsed = System.nanoTime() - start;
+                    if (controller != null && controller.record(elapsed)) {
+                        System.out.println(String.format(Locale.ROOT,
+                            "%s: quality %s -> %s (%.1f ms frame, %.1f ms deadline)", name, inspection.getQuality(),
+                            controller.getLevel(), elapsed / 1e6, controller.getDeadlineNanos() / 1e6));
+                    }
+                    Result result = new Result(capture.sequence, overlay, inspection,
+                        System.nanoTime() - capture.capturedNanos, capture);
+                    published = true;  // publish() now owns the buffer
+                    publish(result);
+                    if (resultListener != null) {
+                        resultListener.accept(result);
+                    }
+                } finally {
+                    if (!published) {
+                        recycle(capture);
+                    }
+                }
+            }
+        } catch (InterruptedException | CancellationException e) {
+            // Stopping
+        }
+    }
+    
+    /**
+     * With several workers results can finish out of order; never replace a newer frame.
+     * The buffer of whichever result is not kept goes back to the pool.
+     */
+    private void publish(Result result) {
+        Result current;
+        do {
+            current = latest.get();
+            if (current != null && current.sequence > result.sequence) {
+                recycle(result.frame);
+                return;
+            }
+        } while (!latest.compareAndSet(current, result));
+        if (current != null) {
+            recycle(current.frame);
+        }
+    }
+    
+    /**
+     * The most recently inspected frame, or null before the first one
+     */
+    public Result getLatest() {
+        return latest.get();
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * True once the source has no more frames (a folder replayed once) or failed
+     */
+    public boolean isSourceEnded() {
+        return sourceEnded;
+    }
+    
+    public long getCapturedCount() {
+        return captured.get();
+    }
+    
+    public long getProcessedCount() {
+        return processed.get();
+    }
+    
+    /**
+     * Frames replaced by a newer one before a worker was free
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
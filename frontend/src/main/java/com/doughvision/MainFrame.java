@@ -13,6 +13,9 @@ public class MainFrame extends JFrame {
     private InferencePanel inferencePanel;
     private ConfigurationPanel configurationPanel;
     private RecipePanel recipePanel;
+    private VisionPanel visionPanel;
+    private ControlPanel controlPanel;
+    private LanesPanel lanesPanel;
     private ConfigurationManager configManager;
     
     private JTabbedPane tabbedPane;
@@ -22,6 +25,7 @@ public class MainFrame extends JFrame {
         super("Dough Vision Detector");
         
         configManager = new ConfigurationManager();
+        configManager.getMetrics().register("gui");
         
         // Detect and apply DPI scaling
         detectDPIScaling();
@@ -125,6 +129,9 @@ public class MainFrame extends JFrame {
         inferencePanel = new InferencePanel(configManager);
         configurationPanel = new ConfigurationPanel(configManager);
         recipePanel = new RecipePanel(configManager);
+        visionPanel = new VisionPanel();
+        controlPanel = new ControlPanel(visionPanel, configManager);
+        lanesPanel = new LanesPanel();
         
         tabbedPane = new JTabbedPane();
     }
@@ -140,6 +147,11 @@ public class MainFrame extends JFrame {
         // Add tabs with icons and better labels (bigger spacing for touch)
         tabbedPane.addTab("  📚  Teach  ", teachModePanel);
         tabbedPane.addTab("  🔍  Inference  ", inferencePanel);
+        JPanel livePanel = new JPanel(new BorderLayout());
+        livePanel.add(visionPanel, BorderLayout.CENTER);
+        livePanel.add(controlPanel, BorderLayout.SOUTH);
+        tabbedPane.addTab("  🎥  Live  ", livePanel);
+        tabbedPane.addTab("  🛤  Lanes  ", lanesPanel);
         tabbedPane.addTab("  ⚙️  Config  ", configurationPanel);
         tabbedPane.addTab("  📋  Recipes  ", recipePanel);
         
@@ -164,7 +176,11 @@ public class MainFrame extends JFrame {
         
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, InputEvent.CTRL_DOWN_MASK));
-        exitItem.addActionListener(e -> System.exit(0));
+        exitItem.addActionListener(e -> {
+            controlPanel.shutdown();
+            lanesPanel.shutdown();
+            System.exit(0);
+        });
         
         fileMenu.add(loadConfigItem);
         fileMenu.add(saveConfigItem);
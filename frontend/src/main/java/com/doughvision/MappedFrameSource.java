@@ -0,0 +1,64 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a folder of recorded PPM/PGM/raw frames in file name order.
+ *
+ * Each frame is a zero-copy view over the mapped file (see {@link RawFrames});
+ * the mapping is dropped with the frame once it is released. Timestamps are
+ * the files' modification times.
+ */
+public class MappedFrameSource implements FrameSource {
+    
+    private final List<File> files;
+    private int next;
+    
+    public MappedFrameSource(File folder) throws IOException {
+        this(listFrames(folder));
+    }
+    
+    public MappedFrameSource(List<File> files) {
+        this.files = new ArrayList<>(files);
+    }
+    
+    /**
+     * Frame files in a folder, sorted by name
+     */
+    public static List<File> listFrames(File folder) throws IOException {
+        File[] entries = folder.listFiles();
+        if (entries == null) {
+            throw new IOException("Cannot list " + folder);
+        }
+        List<File> frames = new ArrayList<>();
+        for (File file : entries) {
+            if (file.isFile() && RawFrames.isRawFrameFile(file)) {
+                frames.add(file);
+            }
+        }
+        frames.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return frames;
+    }
+    
+    public int size() {
+        return files.size();
+    }
+    
+    @Override
+    public synchronized Frame next() throws IOException {
+        if (next >= files.size()) {
+            return null;
+        }
+        int sequence = next++;
+        File file = files.get(sequence);
+        return new Frame(sequence, file.lastModified() * 1_000_000L, RawFrames.map(file));
+    }
+    
+    @Override
+    public synchronized void close() {
+        next = files.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.doughvision;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles the full-image scratch masks of one inspection for the next one.
+ *
+ * Morphology and labelling need three width x height masks that never leave
+ * inspection; on a 50 MP image each is 50 MB, so allocating them per image
+ * keeps the collector busy. Masks of a different size (the image size
+ * changed) are dropped instead of reused. Safe for concurrent inspections.
+ */
+final class MaskPool {
+    
+    private final int maxRetained;
+    private final ConcurrentLinkedQueue<boolean[][]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retained = new AtomicInteger();
+    
+    MaskPool(int maxRetained) {
+        this.maxRetained = maxRetained;
+    }
+    
+    /**
+     * A height x width mask with undefined contents; the caller overwrites every cell
+     */
+    boolean[][] acquire(int width, int height) {
+        boolean[][] mask;
+        while ((mask = free.poll()) != null) {
+            retained.decrementAndGet();
+            if (mask.length == height && mask[0].length == width) {
+                return mask;
+            }
+        }
+        return new boolean[height][width];
+    }
+    
+    /**
+     * A height x width mask with every cell false
+     */
+    boolean[][] acquireCleared(int width, int height) {
+        boolean[][] mask = acquire(width, height);
+        for (boolean[] row : mask) {
+            Arrays.fill(row, false);
+        }
+        return mask;
+    }
+    
+    /**
+     * Return a mask; null is ignored. The caller must not use it afterwards.
+     */
+    void release(boolean[][] mask) {
+        if (mask == null || mask.length == 0) {
+            return;
+        }
+        if (retained.incrementAndGet() <= maxRetained) {
+            free.offer(mask);
+        } else {
+            retained.decrementAndGet();
+        }
+    }
+}
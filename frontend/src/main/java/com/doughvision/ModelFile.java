@@ -0,0 +1,204 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary compiled model, written next to learned_rules.json.
+ *
+ * The JSON file stays the editable source of truth; this file caches the parsed
+ * rules together with the compiled classifier tables so startup is one mapped
+ * read instead of a Gson parse and a table build. It records the SHA-256 of the
+ * JSON it was built from and is rebuilt whenever that no longer matches. A
+ * second SHA-256 covers the serialized rules and tables and is checked on every
+ * read, so a corrupt or truncated file is rejected instead of classifying wrongly.
+ * Models saved on their own (recipes) have no JSON source and record the payload
+ * hash in both places.
+ *
+ * Layout (big-endian):
+ *   int magic 'DVMB', int version, byte[32] sha256 of the JSON,
+ *   byte[32] sha256 of the payload (everything after it), int ruleCount, then per rule: short labelLength, UTF-8 label, byte ignore,
+ *   short hMin, sMin, vMin, hMax, sMax, vMax;
+ *   int words, long[180 * words] hue table, long[256 * words] saturation table,
+ *   long[256 * words] value table, long[words] ignore bits, long[words] detect bits.
+ */
+public class ModelFile {
+    
+    public static final String FILE_NAME = "learned_rules.bin";
+    
+    private static final int MAGIC = 0x44564D42;  // "DVMB"
+    private static final int VERSION = 2;
+    private static final int HASH_BYTES = 32;
+    
+    public final byte[] sourceHash;
+    public final List<ConfigurationManager.LabelRule> rules;
+    public final List<String> ignoreLabels;
+    public final CompiledClassifier classifier;
+    
+    private ModelFile(byte[] sourceHash, List<ConfigurationManager.LabelRule> rules, List<String> ignoreLabels,
+                      CompiledClassifier classifier) {
+        this.sourceHash = sourceHash;
+        this.rules = rules;
+        this.ignoreLabels = ignoreLabels;
+        this.classifier = classifier;
+    }
+    
+    /**
+     * SHA-256 of a file's bytes
+     */
+    public static byte[] sha256(byte[] content) {
+        return newDigest().digest(content);
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Whether this model was built from JSON with the given hash
+     */
+    public boolean isBuiltFrom(byte[] jsonHash) {
+        return Arrays.equals(sourceHash, jsonHash);
+    }
+    
+    /**
+     * Write the model atomically; rules are stored in the classifier's bit order.
+     * jsonHash is null for a model that was not built from a JSON file.
+     */
+    static void write(File file, byte[] jsonHash, Map<String, ConfigurationManager.LabelRule> rules,
+                      CompiledClassifier classifier) throws IOException {
+        int labelCount = classifier.getLabelCount();
+        byte[][] labels = new byte[labelCount][];
+        int header = 4 + 4 + 2 * HASH_BYTES;
+        int size = header + 4;
+        for (int i = 0; i < labelCount; i++) {
+            labels[i] = classifier.getLabel(i).getBytes(StandardCharsets.UTF_8);
+            if (labels[i].length > Short.MAX_VALUE) {
+                throw new IOException("Label too long: " + classifier.getLabel(i));
+            }
+            size += 2 + labels[i].length + 1 + 6 * 2;
+        }
+        int words = classifier.getWords();
+        size += 4 + 8 * ((LabelStatistics.H_BINS + 2 * LabelStatistics.SV_BINS + 2) * words);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.position(header);
+        buffer.putInt(labelCount);
+        for (int i = 0; i < labelCount; i++) {
+            ConfigurationManager.LabelRule rule = rules.get(classifier.getLabel(i));
+            buffer.putShort((short) labels[i].length);
+            buffer.put(labels[i]);
+            buffer.put((byte) (classifier.isIgnore(i) ? 1 : 0));
+            buffer.putShort((short) rule.hMin).putShort((short) rule.sMin).putShort((short) rule.vMin);
+            buffer.putShort((short) rule.hMax).putShort((short) rule.sMax).putShort((short) rule.vMax);
+        }
+        buffer.putInt(words);
+        putLongs(buffer, classifier.getHueTable());
+        putLongs(buffer, classifier.getSaturationTable());
+        putLongs(buffer, classifier.getValueTable());
+        putLongs(buffer, classifier.getIgnoreBits());
+        putLongs(buffer, classifier.getDetectBits());
+        
+        byte[] bytes = buffer.array();
+        MessageDigest digest = newDigest();
+        digest.update(bytes, header, size - header);
+        byte[] payloadHash = digest.digest();
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.put(jsonHash != null ? jsonHash : payloadHash, 0, HASH_BYTES);
+        buffer.put(payloadHash);
+        
+        AtomicFiles.write(file, bytes);
+    }
+    
+    private static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 8);
+    }
+    
+    /**
+     * Map and read a model file; throws if it is not a model of this version
+     */
+    public static ModelFile read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            if (buffer.remaining() < 8 + 2 * HASH_BYTES + 4 || buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a compiled model file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file.getName() + " has unsupported version " + version);
+            }
+            
+            byte[] hash = new byte[HASH_BYTES];
+            buffer.get(hash);
+            byte[] payloadHash = new byte[HASH_BYTES];
+            buffer.get(payloadHash);
+            MessageDigest digest = newDigest();
+            digest.update(buffer.duplicate());
+            if (!MessageDigest.isEqual(payloadHash, digest.digest())) {
+                throw new IOException(file.getName() + " is corrupt (checksum mismatch)");
+            }
+            
+            int ruleCount = buffer.getInt();
+            if (ruleCount < 0 || ruleCount > buffer.remaining()) {
+                throw new IOException(file.getName() + " is corrupt (rule count " + ruleCount + ")");
+            }
+            String[] labels = new String[ruleCount];
+            List<ConfigurationManager.LabelRule> rules = new ArrayList<>(ruleCount);
+            List<String> ignoreLabels = new ArrayList<>();
+            for (int i = 0; i < ruleCount; i++) {
+                byte[] label = new byte[buffer.getShort()];
+                buffer.get(label);
+                labels[i] = new String(label, StandardCharsets.UTF_8);
+                if (buffer.get() != 0) {
+                    ignoreLabels.add(labels[i]);
+                }
+                rules.add(new ConfigurationManager.LabelRule(labels[i],
+                    buffer.getShort(), buffer.getShort(), buffer.getShort(),
+                    buffer.getShort(), buffer.getShort(), buffer.getShort()));
+            }
+            
+            int words = buffer.getInt();
+            if (words < 1 || (long) words * 8 * (LabelStatistics.H_BINS + 2 * LabelStatistics.SV_BINS + 2) > buffer.remaining()) {
+                throw new IOException(file.getName() + " is truncated");
+            }
+            long[] hBits = getLongs(buffer, LabelStatistics.H_BINS * words);
+            long[] sBits = getLongs(buffer, LabelStatistics.SV_BINS * words);
+            long[] vBits = getLongs(buffer, LabelStatistics.SV_BINS * words);
+            long[] ignoreBits = getLongs(buffer, words);
+            long[] detectBits = getLongs(buffer, words);
+            
+            CompiledClassifier classifier = CompiledClassifier.fromTables(
+                labels, words, hBits, sBits, vBits, ignoreBits, detectBits);
+            return new ModelFile(hash, rules, ignoreLabels, classifier);
+        } catch (RuntimeException e) {
+            // Truncated or corrupt file (BufferUnderflowException, bad table sizes, ...)
+            throw new IOException("Invalid model file " + file.getName() + ": " + e, e);
+        }
+    }
+    
+    private static long[] getLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * 8);
+        return values;
+    }
+}
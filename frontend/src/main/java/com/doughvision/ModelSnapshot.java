@@ -0,0 +1,141 @@
+package com.doughvision;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything inspection reads from the model, frozen: rules, ignore labels,
+ * their compiled tables, calibration and target dimensions.
+ *
+ * ConfigurationManager publishes the current snapshot through one
+ * AtomicReference. Inspection takes it with a single read and uses it for the
+ * whole image without locking or copying; changes build a new snapshot with
+ * one of the with...() methods and swap it in.
+ */
+public final class ModelSnapshot {
+    
+    static final ModelSnapshot EMPTY = new ModelSnapshot(Collections.emptyMap(), Collections.emptySet(),
+        null, 1.0, 100.0, 100.0, 5.0, 5.0);
+    
+    private final Map<String, ConfigurationManager.LabelRule> rules;
+    private final Set<String> ignoreLabels;
+    private final CompiledClassifier classifier;
+    
+    private final double pixelsPerMm;
+    private final double targetWidth;      // mm
+    private final double targetHeight;     // mm
+    private final double widthTolerance;   // mm (±)
+    private final double heightTolerance;  // mm (±)
+    
+    private ModelSnapshot(Map<String, ConfigurationManager.LabelRule> rules, Set<String> ignoreLabels,
+                          CompiledClassifier classifier, double pixelsPerMm, double targetWidth, double targetHeight,
+                          double widthTolerance, double heightTolerance) {
+        this.rules = rules;
+        this.ignoreLabels = ignoreLabels;
+        this.classifier = classifier != null ? classifier : CompiledClassifier.compile(rules, ignoreLabels);
+        this.pixelsPerMm = pixelsPerMm;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.widthTolerance = widthTolerance;
+        this.heightTolerance = heightTolerance;
+    }
+    
+    /**
+     * Same calibration with new rules; the tables are compiled here unless a matching classifier is given
+     */
+    ModelSnapshot withRules(Map<String, ConfigurationManager.LabelRule> newRules, Collection<String> newIgnoreLabels,
+                            CompiledClassifier compiled) {
+        Set<String> ignore = new LinkedHashSet<>();
+        for (String label : newIgnoreLabels) {
+            if (newRules.containsKey(label)) {
+                ignore.add(label);
+            }
+        }
+        return new ModelSnapshot(Collections.unmodifiableMap(new HashMap<>(newRules)),
+            Collections.unmodifiableSet(ignore), compiled,
+            pixelsPerMm, targetWidth, targetHeight, widthTolerance, heightTolerance);
+    }
+    
+    /**
+     * Same rules and calibration, classified with another compiled rule set (for scoring candidates)
+     */
+    ModelSnapshot withClassifier(CompiledClassifier compiled) {
+        return new ModelSnapshot(rules, ignoreLabels, compiled,
+            pixelsPerMm, targetWidth, targetHeight, widthTolerance, heightTolerance);
+    }
+    
+    ModelSnapshot withPixelsPerMm(double newPixelsPerMm) {
+        return new ModelSnapshot(rules, ignoreLabels, classifier,
+            newPixelsPerMm, targetWidth, targetHeight, widthTolerance, heightTolerance);
+    }
+    
+    ModelSnapshot withTargets(double width, double height, double widthTol, double heightTol) {
+        return new ModelSnapshot(rules, ignoreLabels, classifier,
+            pixelsPerMm, width, height, widthTol, heightTol);
+    }
+    
+    /**
+     * Unmodifiable label -> rule map
+     */
+    public Map<String, ConfigurationManager.LabelRule> getRules() {
+        return rules;
+    }
+    
+    /**
+     * Unmodifiable set of labels that mark areas to ignore
+     */
+    public Set<String> getIgnoreLabels() {
+        return ignoreLabels;
+    }
+    
+    public boolean hasRules() {
+        return !rules.isEmpty();
+    }
+    
+    CompiledClassifier getClassifier() {
+        return classifier;
+    }
+    
+    public double getPixelsPerMm() {
+        return pixelsPerMm;
+    }
+    
+    public double getTargetWidth() {
+        return targetWidth;
+    }
+    
+    public double getTargetHeight() {
+        return targetHeight;
+    }
+    
+    public double getWidthTolerance() {
+        return widthTolerance;
+    }
+    
+    public double getHeightTolerance() {
+        return heightTolerance;
+    }
+    
+    /**
+     * Target for the longer side of a piece (larger vs larger, smaller vs smaller)
+     */
+    double getLengthTarget() {
+        return Math.max(targetWidth, targetHeight);
+    }
+    
+    double getWidthTarget() {
+        return Math.min(targetWidth, targetHeight);
+    }
+    
+    double getLengthTolerance() {
+        return Math.max(widthTolerance, heightTolerance);
+    }
+    
+    double getShortSideTolerance() {
+        return Math.min(widthTolerance, heightTolerance);
+    }
+}
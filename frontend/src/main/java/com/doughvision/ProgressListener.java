@@ -0,0 +1,32 @@
+package com.doughvision;
+
+/**
+ * Receives progress from inside an inspection, on the inspecting thread.
+ *
+ * Called once per row band (or per piece when measuring), so implementations
+ * should only record the value, e.g. SwingWorker.setProgress(), which
+ * coalesces updates for the EDT.
+ */
+public interface ProgressListener {
+    
+    ProgressListener NONE = (stage, fraction) -> { };
+    
+    /**
+     * @param fraction completed part of this stage, 0..1
+     */
+    void progress(InspectionPipeline.StageName stage, double fraction);
+    
+    /**
+     * Overall percentage for a stage fraction, weighting stages by their typical share of
+     * runSegmentation time (classify about half, morphology a quarter, the rest the remainder)
+     */
+    static int percent(InspectionPipeline.StageName stage, double fraction) {
+        double[] weights = {0.0, 0.50, 0.25, 0.08, 0.05, 0.12};  // DECODE .. RENDER
+        double done = 0;
+        for (int i = 0; i < stage.ordinal(); i++) {
+            done += weights[i];
+        }
+        done += weights[stage.ordinal()] * Math.max(0, Math.min(1, fraction));
+        return (int) Math.round(Math.min(1.0, done) * 100);
+    }
+}
@@ -0,0 +1,159 @@
+package com.doughvision;
+
+/**
+ * Holds live inspection to its frame deadline by trading precision for time.
+ *
+ * Each processed frame's time (inspect plus render, as the worker saw it) is
+ * fed to record(). When the smoothed time stays above DOWN_LOAD of the
+ * deadline for a few frames the controller steps to a cheaper level at once;
+ * it steps back up only after the time has stayed below UP_LOAD for a while.
+ * The gap between the two thresholds is the hysteresis, and each step up that
+ * has to be undone within its probation doubles the wait before the next
+ * attempt, so a level that cannot hold is not retried every second; once a
+ * step up holds through its probation the wait is back to UP_FRAMES. The
+ * deadline is workers / fps: with several workers each frame may take that
+ * long without falling behind the camera.
+ */
+public class QualityController {
+    
+    /**
+     * Processing settings, best first. FAST is what the manual fast mode uses.
+     */
+    public enum Level {
+        FULL(0, 0, 3, 2, false, 1),
+        BALANCED(ConfigurationManager.FAST_MODE_MAX_WIDTH, ConfigurationManager.FAST_MODE_MAX_HEIGHT, 3, 2, false, 1),
+        FAST(ConfigurationManager.FAST_MODE_MAX_WIDTH, ConfigurationManager.FAST_MODE_MAX_HEIGHT, 2, 1, true, 1),
+        LOW(ConfigurationManager.FAST_MODE_MAX_WIDTH / 2, ConfigurationManager.FAST_MODE_MAX_HEIGHT / 2, 2, 1, true, 1),
+        MINIMAL(ConfigurationManager.FAST_MODE_MAX_WIDTH / 2, ConfigurationManager.FAST_MODE_MAX_HEIGHT / 2, 2, 1, true, 3);
+        
+        final int maxWidth;    // Processing size cap (0 = input resolution)
+        final int maxHeight;
+        final int closeKernel;
+        final int openKernel;  // 1 skips the opening
+        final boolean nearestResize;
+        final int renderEvery; // Draw the overlay on every n-th frame
+        
+        Level(int maxWidth, int maxHeight, int closeKernel, int openKernel, boolean nearestResize, int renderEvery) {
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.closeKernel = closeKernel;
+            this.openKernel = openKernel;
+            this.nearestResize = nearestResize;
+            this.renderEvery = renderEvery;
+        }
+        
+        /**
+         * Processed size / input size for an image of this size
+         */
+        double scaleFor(int width, int height) {
+            if (maxWidth <= 0 || (width <= maxWidth && height <= maxHeight)) {
+                return 1.0;
+            }
+            return Math.min((double) maxWidth / width, (double) maxHeight / height);
+        }
+        
+        boolean rendersFrame(long frame) {
+            return frame % renderEvery == 0;
+        }
+    }
+    
+    static final double DOWN_LOAD = 0.9;   // Step down above 90% of the deadline...
+    static final double UP_LOAD = 0.5;     // ...and up only below 50%
+    static final int DOWN_FRAMES = 3;
+    static final int UP_FRAMES = 30;       // About a second at 30 fps
+    static final int MAX_UP_FRAMES = 30 * 32;
+    private static final double SMOOTHING = 0.25;
+    
+    private final long deadlineNanos;
+    private final Level best;
+    private final Level worst;
+    
+    private volatile Level level;
+    private double averageNanos;  // Smoothed frame time at the current level (0 = no frame yet)
+    private int over;
+    private int under;
+    private int upFrames = UP_FRAMES;
+    private int framesAtLevel;
+    private boolean probation;    // Current level was reached by stepping up
+    private long changes;
+    
+    /**
+     * @param best  highest quality the controller may use (e.g. FAST when fast mode is on)
+     * @param worst lowest quality it may fall to
+     */
+    public QualityController(long deadlineNanos, Level best, Level worst) {
+        this.deadlineNanos = deadlineNanos;
+        this.best = best;
+        this.worst = worst.ordinal() < best.ordinal() ? best : worst;
+        this.level = best;
+    }
+    
+    /**
+     * Deadline for a camera at fps shared by this many workers; every level from best down to MINIMAL
+     */
+    public static QualityController forFrameRate(double fps, int workers, Level best) {
+        long deadline = (long) (Math.max(1, workers) * 1e9 / Math.max(1, fps));
+        return new QualityController(deadline, best, Level.MINIMAL);
+    }
+    
+    /**
+     * Level to use for the next frame
+     */
+    public Level getLevel() {
+        return level;
+    }
+    
+    /**
+     * Account one processed frame; returns true if the level changed
+     */
+    public synchronized boolean record(long frameNanos) {
+        averageNanos = averageNanos == 0 ? frameNanos : averageNanos + (frameNanos - averageNanos) * SMOOTHING;
+        framesAtLevel++;
+        
+        over = averageNanos > deadlineNanos * DOWN_LOAD ? over + 1 : 0;
+        under = averageNanos < deadlineNanos * UP_LOAD ? under + 1 : 0;
+        if (over >= DOWN_FRAMES && level != worst) {
+            if (probation && framesAtLevel < upFrames) {
+                // The level just tried cannot hold: wait longer before the next try
+                upFrames = Math.min(MAX_UP_FRAMES, upFrames * 2);
+            }
+            change(Level.values()[level.ordinal() + 1], false);
+            return true;
+        }
+        if (under >= upFrames && level != best) {
+            change(Level.values()[level.ordinal() - 1], true);
+            return true;
+        }
+        if (probation && framesAtLevel >= upFrames) {
+            // The step up held: a past burst of load no longer slows the next recovery
+            probation = false;
+            upFrames = UP_FRAMES;
+        }
+        return false;
+    }
+    
+    private void change(Level next, boolean up) {
+        level = next;
+        probation = up;
+        averageNanos = 0;
+        over = 0;
+        under = 0;
+        framesAtLevel = 0;
+        changes++;
+    }
+    
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+    
+    /**
+     * Smoothed frame time at the current level, in ms
+     */
+    public synchronized double getAverageMillis() {
+        return averageNanos / 1e6;
+    }
+    
+    public synchronized long getChangeCount() {
+        return changes;
+    }
+}
@@ -0,0 +1,391 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Memory-mapped uncompressed frames: binary PPM (P6), PGM (P5) and headerless
+ * raw dumps from the capture process.
+ *
+ * A raw file is described by a sidecar JSON, either <name>.json next to it or a
+ * shared frames.json in the same folder:
+ *   {"width": 1920, "height": 1080, "format": "bgr24", "stride": 5760, "offset": 0}
+ * Formats are rgb24, bgr24, rgbx32, bgrx32 and gray8; stride (bytes per row)
+ * and offset (bytes before the first row) are optional.
+ *
+ * The returned images are read-only views over the mapped file; no pixel is
+ * decoded or copied until segmentation reads it. Region and subsampling are
+ * applied by adjusting the view's strides, so they are free as well.
+ */
+public final class RawFrames {
+    
+    public static final String FOLDER_SIDECAR = "frames.json";
+    
+    private static final int MAX_HEADER_BYTES = 1024;
+    
+    /** Pixel layouts; the order is also the format code in the shared frame ring */
+    enum PixelFormat {
+        RGB24(3, 0, 1, 2),
+        BGR24(3, 2, 1, 0),
+        RGBX32(4, 0, 1, 2),
+        BGRX32(4, 2, 1, 0),
+        GRAY8(1, 0, 0, 0);
+        
+        final int bytesPerPixel;
+        final int red;
+        final int green;
+        final int blue;
+        
+        PixelFormat(int bytesPerPixel, int red, int green, int blue) {
+            this.bytesPerPixel = bytesPerPixel;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+        
+        boolean isGray() {
+            return this == GRAY8;
+        }
+    }
+    
+    /**
+     * Geometry of the pixel data inside a file
+     */
+    private static class Layout {
+        final int width;
+        final int height;
+        final int stride;
+        final long offset;
+        final PixelFormat format;
+        
+        Layout(int width, int height, int stride, long offset, PixelFormat format) {
+            this.width = width;
+            this.height = height;
+            this.stride = stride;
+            this.offset = offset;
+            this.format = format;
+        }
+        
+        long dataSize() {
+            return (long) stride * (height - 1) + (long) width * format.bytesPerPixel;
+        }
+    }
+    
+    private RawFrames() {
+    }
+    
+    /**
+     * Whether the file is one of the formats handled here (by extension)
+     */
+    public static boolean isRawFrameFile(File file) {
+        String ext = extension(file);
+        return ext.equals("ppm") || ext.equals("pgm") || ext.equals("raw");
+    }
+    
+    /**
+     * Frame size from the header or sidecar, without mapping the pixels
+     */
+    public static Dimension readSize(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Layout layout = readLayout(channel, file);
+            return new Dimension(layout.width, layout.height);
+        }
+    }
+    
+    /**
+     * Pixel layout from the sidecar (raw) or the Netpbm header, read without mapping the file
+     */
+    private static Layout readLayout(FileChannel channel, File file) throws IOException {
+        if (extension(file).equals("raw")) {
+            return readSidecar(file);
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_HEADER_BYTES));
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Fill the header buffer
+        }
+        header.flip();
+        return parseNetpbmHeader(header, file);
+    }
+    
+    public static BufferedImage map(File file) throws IOException {
+        return map(file, null, 1);
+    }
+    
+    /**
+     * Map a frame and return a zero-copy view of part of it.
+     *
+     * @param sourceRegion region in full-resolution coordinates, or null for the whole frame
+     * @param subsampling  keep every n-th pixel in each direction (1 = full resolution)
+     */
+    public static BufferedImage map(File file, Rectangle sourceRegion, int subsampling) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The layout is checked before mapping: a mapping is limited to 2 GB
+            long size = channel.size();
+            Layout fileLayout = readLayout(channel, file);
+            if (fileLayout.offset + fileLayout.dataSize() > size) {
+                throw new IOException(file.getName() + " is truncated: expected " +
+                    (fileLayout.offset + fileLayout.dataSize()) + " bytes, found " + size);
+            }
+            
+            // Map only the pixel data
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, fileLayout.offset, fileLayout.dataSize());
+            Layout layout = new Layout(fileLayout.width, fileLayout.height, fileLayout.stride, 0, fileLayout.format);
+            
+            Rectangle region = new Rectangle(layout.width, layout.height);
+            if (sourceRegion != null) {
+                region = sourceRegion.intersection(region);
+                if (region.isEmpty()) {
+                    throw new IOException("Region " + sourceRegion + " is outside " + file.getName());
+                }
+            }
+            return createView(mapped, layout, region, Math.max(1, subsampling));
+        }
+    }
+    
+    /**
+     * Zero-copy view of a frame that is already in memory (e.g. a shared ring slot)
+     */
+    static BufferedImage view(ByteBuffer buffer, long offset, int width, int height, int stride, PixelFormat format) {
+        return createView(buffer, new Layout(width, height, stride, offset, format), new Rectangle(width, height), 1);
+    }
+    
+    private static BufferedImage createView(ByteBuffer mapped, Layout layout, Rectangle region, int subsampling) {
+        PixelFormat format = layout.format;
+        int width = (region.width + subsampling - 1) / subsampling;
+        int height = (region.height + subsampling - 1) / subsampling;
+        int pixelStride = format.bytesPerPixel * subsampling;
+        int scanlineStride = layout.stride * subsampling;
+        long base = layout.offset + (long) region.y * layout.stride + (long) region.x * format.bytesPerPixel;
+        long size = (long) scanlineStride * (height - 1) + (long) pixelStride * (width - 1) + format.bytesPerPixel;
+        
+        // Gray frames are exposed as sRGB with all three bands reading the same byte;
+        // CS_GRAY is linear and would brighten them when drawn
+        int[] bandOffsets = {format.red, format.green, format.blue};
+        PixelInterleavedSampleModel sampleModel = new PixelInterleavedSampleModel(
+            DataBuffer.TYPE_BYTE, width, height, pixelStride, scanlineStride, bandOffsets);
+        MappedFrameBuffer buffer = new MappedFrameBuffer(
+            mapped, (int) base, (int) size, pixelStride, scanlineStride, format);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+        
+        ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+            false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+    
+    /**
+     * Parse a binary PPM/PGM header: magic, width, height, maxval, one whitespace byte
+     */
+    private static Layout parseNetpbmHeader(ByteBuffer header, File file) throws IOException {
+        if (header.remaining() < 2 || header.get() != 'P') {
+            throw new IOException(file.getName() + " is not a PPM/PGM file");
+        }
+        byte type = header.get();
+        PixelFormat format;
+        if (type == '6') {
+            format = PixelFormat.RGB24;
+        } else if (type == '5') {
+            format = PixelFormat.GRAY8;
+        } else {
+            throw new IOException(file.getName() + ": only binary PPM (P6) and PGM (P5) are supported");
+        }
+        
+        int width = readHeaderNumber(header, file);
+        int height = readHeaderNumber(header, file);
+        int maxValue = readHeaderNumber(header, file);
+        if (width < 1 || height < 1) {
+            throw new IOException(file.getName() + " has invalid size " + width + "x" + height);
+        }
+        if (maxValue < 1 || maxValue > 255) {
+            throw new IOException(file.getName() + ": only 8-bit samples are supported (maxval " + maxValue + ")");
+        }
+        if (!header.hasRemaining()) {
+            throw new IOException(file.getName() + " has a truncated header");
+        }
+        header.get();  // Single whitespace before the pixel data
+        
+        long stride = (long) width * format.bytesPerPixel;
+        checkSize(stride, height, file);
+        return new Layout(width, height, (int) stride, header.position(), format);
+    }
+    
+    private static int readHeaderNumber(ByteBuffer header, File file) throws IOException {
+        // Skip whitespace and # comments
+        while (header.hasRemaining()) {
+            byte b = header.get(header.position());
+            if (b == '#') {
+                while (header.hasRemaining() && header.get() != '\n') {
+                    // Skip to end of line
+                }
+            } else if (Character.isWhitespace(b)) {
+                header.get();
+            } else {
+                break;
+            }
+        }
+        long value = 0;
+        int digits = 0;
+        while (header.hasRemaining() && header.get(header.position()) >= '0' && header.get(header.position()) <= '9') {
+            value = value * 10 + (header.get() - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException(file.getName() + " has an invalid header value");
+            }
+            digits++;
+        }
+        if (digits == 0) {
+            throw new IOException(file.getName() + " has a malformed header");
+        }
+        return (int) value;
+    }
+    
+    /**
+     * Read the layout of a raw frame from <name>.json, or frames.json in its folder
+     */
+    private static Layout readSidecar(File file) throws IOException {
+        String name = file.getName();
+        File sidecar = new File(file.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".json");
+        if (!sidecar.isFile()) {
+            sidecar = new File(file.getParentFile(), FOLDER_SIDECAR);
+        }
+        if (!sidecar.isFile()) {
+            throw new IOException("No sidecar for raw frame " + name + " (expected " +
+                name.substring(0, name.lastIndexOf('.')) + ".json or " + FOLDER_SIDECAR + ")");
+        }
+        
+        JsonObject json;
+        try (Reader reader = Files.newBufferedReader(sidecar.toPath(), StandardCharsets.UTF_8)) {
+            json = new Gson().fromJson(reader, JsonObject.class);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid sidecar " + sidecar.getName() + ": " + e.getMessage(), e);
+        }
+        if (json == null || !json.has("width") || !json.has("height") || !json.has("format")) {
+            throw new IOException(sidecar.getName() + " must define width, height and format");
+        }
+        
+        PixelFormat format;
+        try {
+            format = PixelFormat.valueOf(json.get("format").getAsString().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(sidecar.getName() + ": unsupported format " + json.get("format").getAsString());
+        }
+        int width = json.get("width").getAsInt();
+        int height = json.get("height").getAsInt();
+        if (width < 1 || height < 1) {
+            throw new IOException(sidecar.getName() + " has invalid size " + width + "x" + height);
+        }
+        long stride = json.has("stride") ? json.get("stride").getAsLong() : (long) width * format.bytesPerPixel;
+        long offset = json.has("offset") ? json.get("offset").getAsLong() : 0;
+        if (stride < (long) width * format.bytesPerPixel) {
+            throw new IOException(sidecar.getName() + ": stride " + stride + " is too small for width " + width);
+        }
+        if (offset < 0) {
+            throw new IOException(sidecar.getName() + " has a negative offset");
+        }
+        checkSize(stride, height, file);
+        return new Layout(width, height, (int) stride, offset, format);
+    }
+    
+    private static void checkSize(long stride, int height, File file) throws IOException {
+        // Views index the mapping with ints
+        if (stride * height > Integer.MAX_VALUE) {
+            throw new IOException(file.getName() + " is too large to map (over 2 GB)");
+        }
+    }
+    
+    private static String extension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Byte samples read straight from a mapped file.
+     *
+     * Element i is the byte at base + i, which is what the view's sample model
+     * expects. The row and pixel accessors are the fast path used by segmentation;
+     * they take view coordinates and skip the generic Raster/ColorModel calls.
+     */
+    static final class MappedFrameBuffer extends DataBuffer {
+        
+        private final ByteBuffer bytes;
+        private final int base;
+        private final int pixelStride;
+        private final int scanlineStride;
+        private final PixelFormat format;
+        
+        MappedFrameBuffer(ByteBuffer bytes, int base, int size, int pixelStride, int scanlineStride, PixelFormat format) {
+            super(DataBuffer.TYPE_BYTE, size);
+            this.bytes = bytes;
+            this.base = base;
+            this.pixelStride = pixelStride;
+            this.scanlineStride = scanlineStride;
+            this.format = format;
+        }
+        
+        @Override
+        public int getElem(int bank, int i) {
+            return bytes.get(base + i) & 0xFF;
+        }
+        
+        @Override
+        public void setElem(int bank, int i, int val) {
+            throw new UnsupportedOperationException("Mapped frames are read-only");
+        }
+        
+        /**
+         * Packed 0xRRGGBB of one pixel
+         */
+        int getRGB(int x, int y) {
+            int p = base + y * scanlineStride + x * pixelStride;
+            if (format.isGray()) {
+                int v = bytes.get(p) & 0xFF;
+                return (v << 16) | (v << 8) | v;
+            }
+            return ((bytes.get(p + format.red) & 0xFF) << 16)
+                | ((bytes.get(p + format.green) & 0xFF) << 8)
+                | (bytes.get(p + format.blue) & 0xFF);
+        }
+        
+        /**
+         * Packed 0xRRGGBB of width pixels starting at (x, y)
+         */
+        void readRGBRow(int x, int y, int width, int[] row) {
+            int p = base + y * scanlineStride + x * pixelStride;
+            if (format.isGray()) {
+                for (int i = 0; i < width; i++, p += pixelStride) {
+                    int v = bytes.get(p) & 0xFF;
+                    row[i] = (v << 16) | (v << 8) | v;
+                }
+                return;
+            }
+            int red = format.red;
+            int green = format.green;
+            int blue = format.blue;
+            for (int i = 0; i < width; i++, p += pixelStride) {
+                row[i] = ((bytes.get(p + red) & 0xFF) << 16)
+                    | ((bytes.get(p + green) & 0xFF) << 8)
+                    | (bytes.get(p + blue) & 0xFF);
+            }
+        }
+    }
+}
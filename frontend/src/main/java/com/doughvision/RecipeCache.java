@@ -0,0 +1,101 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Least-recently-used cache of compiled recipes.
+ *
+ * A changeover that hits the cache costs a map lookup plus
+ * {@link ConfigurationManager#activateRecipe}; a miss reads the recipe file and
+ * maps its model. preload() does that work on a background thread ahead of
+ * time, e.g. for the next product on the schedule or the recipe selected in
+ * the list, so the switch itself never waits on disk.
+ */
+public class RecipeCache {
+    
+    public static final int DEFAULT_CAPACITY = 8;
+    
+    private final File recipesFile;
+    private final File modelDir;
+    private final int capacity;
+    private final Map<String, CompiledRecipe> entries;
+    private final ExecutorService loader;
+    
+    public RecipeCache(File recipesFile, File modelDir, int capacity) {
+        this.recipesFile = recipesFile;
+        this.modelDir = modelDir;
+        this.capacity = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<String, CompiledRecipe>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledRecipe> eldest) {
+                return size() > RecipeCache.this.capacity;
+            }
+        };
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "recipe-preload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public RecipeCache() {
+        this(RecipeStore.getDefaultFile(), RecipeStore.getModelDir(), DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Compiled recipe by name (exact, like everywhere else), compiling it on a miss; null if there is no such recipe
+     */
+    public CompiledRecipe get(String name) throws IOException {
+        synchronized (entries) {
+            CompiledRecipe cached = entries.get(name);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Compile outside the lock so lookups of other recipes are not held up
+        DetectionRecipe recipe = RecipeStore.find(RecipeStore.load(recipesFile), name);
+        if (recipe == null) {
+            return null;
+        }
+        CompiledRecipe compiled = CompiledRecipe.compile(recipe, modelDir);
+        synchronized (entries) {
+            entries.put(name, compiled);
+        }
+        return compiled;
+    }
+    
+    /**
+     * Compile a recipe in the background so a later get() is a cache hit
+     */
+    public CompletableFuture<CompiledRecipe> preload(String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(name);
+            } catch (IOException e) {
+                System.err.println("Could not preload recipe '" + name + "': " + e.getMessage());
+                return null;
+            }
+        }, loader);
+    }
+    
+    /**
+     * Drop a recipe after it was edited or deleted
+     */
+    public void invalidate(String name) {
+        synchronized (entries) {
+            entries.remove(name);
+        }
+    }
+    
+    public boolean isCached(String name) {
+        synchronized (entries) {
+            return entries.containsKey(name);
+        }
+    }
+}
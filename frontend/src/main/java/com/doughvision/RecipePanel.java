@@ -6,10 +6,9 @@ import javax.swing.event.ListSelectionListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.*;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import com.google.gson.*;
 
 /**
  * Panel for managing detection recipes
@@ -26,6 +25,7 @@ public class RecipePanel extends JPanel {
     private JButton deleteRecipeButton;
     private JButton newRecipeButton;
     private List<DetectionRecipe> recipes;
+    private final RecipeCache recipeCache = new RecipeCache();
     
     // Current recipe display
     private JTextArea recipeDetailsArea;
@@ -59,6 +59,11 @@ public class RecipePanel extends JPanel {
             loadRecipeButton.setEnabled(!recipeList.isSelectionEmpty());
             deleteRecipeButton.setEnabled(!recipeList.isSelectionEmpty());
             showRecipeDetails();
+            // Compile the selected recipe in the background so Load is instant
+            int index = recipeList.getSelectedIndex();
+            if (!e.getValueIsAdjusting() && index >= 0 && index < recipes.size()) {
+                recipeCache.preload(recipes.get(index).name);
+            }
         });
         
         saveRecipeButton = new JButton("💾 Save Recipe");
@@ -191,6 +196,7 @@ public class RecipePanel extends JPanel {
             recipe.name = name;
             recipe.description = "Created from current configuration";
             recipe.dateCreated = new java.util.Date().toString();
+            RecipeStore.saveModel(configManager, recipe);
             
             recipes.add(recipe);
             updateRecipeListModel();
@@ -212,8 +218,10 @@ public class RecipePanel extends JPanel {
             DetectionRecipe recipe = recipes.get(selectedIndex);
             recipe.dateModified = new java.util.Date().toString();
             updateRecipeFromCurrentConfig(recipe);
+            RecipeStore.saveModel(configManager, recipe);
             updateRecipeListModel();
             saveRecipes();
+            recipeCache.invalidate(recipe.name);
             
             recipeStatusLabel.setText("Recipe saved successfully!");
             recipeStatusLabel.setForeground(new Color(46, 125, 50));
@@ -238,7 +246,11 @@ public class RecipePanel extends JPanel {
             heightToleranceSpinner.setValue(recipe.heightTolerance);
             
             // Apply recipe to current configuration
-            applyRecipe(recipe);
+            if (!applyRecipe(recipe)) {
+                recipeStatusLabel.setText("Could not load recipe (see log)");
+                recipeStatusLabel.setForeground(new Color(211, 47, 47));
+                return;
+            }
             
             // Update status
             recipeStatusLabel.setText("Recipe loaded successfully!");
@@ -266,6 +278,7 @@ public class RecipePanel extends JPanel {
                 recipes.remove(selectedIndex);
                 updateRecipeListModel();
                 saveRecipes();
+                recipeCache.invalidate(recipe.name);
                 
                 recipeNameLabel.setText("Recipe: None selected");
                 recipeDetailsArea.setText("");
@@ -350,80 +363,26 @@ public class RecipePanel extends JPanel {
         recipe.heightTolerance = (double)heightToleranceSpinner.getValue();
     }
     
-    private void applyRecipe(DetectionRecipe recipe) {
-        // Apply color settings
-        configManager.setColorRange(
-            recipe.hueMin, recipe.satMin, recipe.valMin,
-            recipe.hueMax, recipe.satMax, recipe.valMax
-        );
-        
-        // Apply detection rules
-        configManager.setMinArea(recipe.minArea);
-        configManager.setMaxArea(recipe.maxArea);
-        
-        // Apply measurement settings
-        configManager.setPixelsPerMm(recipe.pixelsPerMm);
-        configManager.setTargetDimensions(
-            recipe.targetWidth,
-            recipe.targetHeight,
-            recipe.widthTolerance,
-            recipe.heightTolerance
-        );
-    }
-    
-    private void loadRecipes() {
+    private boolean applyRecipe(DetectionRecipe recipe) {
         try {
-            File recipesFile = new File("detection_recipes.json");
-            if (!recipesFile.exists()) {
-                return;
+            CompiledRecipe compiled = recipeCache.get(recipe.name);
+            if (compiled == null) {
+                System.err.println("Recipe '" + recipe.name + "' is not in " + RecipeStore.FILE_NAME);
+                return false;
             }
-            
-            try (FileReader reader = new FileReader(recipesFile)) {
-                Gson gson = new Gson();
-                JsonElement jsonElement = JsonParser.parseReader(reader);
-                
-                if (jsonElement.isJsonArray()) {
-                    JsonArray jsonArray = jsonElement.getAsJsonArray();
-                    for (JsonElement element : jsonArray) {
-                        DetectionRecipe recipe = gson.fromJson(element, DetectionRecipe.class);
-                        recipes.add(recipe);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading recipes: " + e.getMessage());
+            configManager.activateRecipe(compiled);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading recipe model: " + e.getMessage());
+            return false;
         }
     }
     
-    private void saveRecipes() {
-        try {
-            File recipesFile = new File("detection_recipes.json");
-            try (FileWriter writer = new FileWriter(recipesFile)) {
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                gson.toJson(recipes, writer);
-            }
-        } catch (Exception e) {
-            System.err.println("Error saving recipes: " + e.getMessage());
-        }
+    private void loadRecipes() {
+        recipes.addAll(RecipeStore.load(RecipeStore.getDefaultFile()));
     }
     
-    private static class DetectionRecipe {
-        String name;
-        String description;
-        String dateCreated;
-        String dateModified;
-        
-        // Color detection
-        int hueMin, satMin, valMin;
-        int hueMax, satMax, valMax;
-        
-        // Detection rules
-        int minArea, maxArea;
-        double minCircularity, maxCircularity;
-        
-        // Measurement settings
-        double pixelsPerMm;
-        double targetWidth, targetHeight;
-        double widthTolerance, heightTolerance;
+    private void saveRecipes() {
+        RecipeStore.save(RecipeStore.getDefaultFile(), recipes);
     }
 }
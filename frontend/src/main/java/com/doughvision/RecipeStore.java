@@ -0,0 +1,116 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads and writes the saved recipes (detection_recipes.json in the working
+ * directory) and the compiled models saved with them (recipe_models/)
+ */
+public class RecipeStore {
+    
+    public static final String FILE_NAME = "detection_recipes.json";
+    public static final String MODEL_DIR = "recipe_models";
+    
+    private RecipeStore() {
+    }
+    
+    public static File getDefaultFile() {
+        return new File(FILE_NAME);
+    }
+    
+    public static File getModelDir() {
+        return new File(MODEL_DIR);
+    }
+    
+    /**
+     * Store the current rules and compiled classifier with the recipe so activating
+     * it later restores exactly this model. Returns false if there is nothing learned or the write fails;
+     * the recipe then has no model, rather than keeping one that no longer matches it.
+     */
+    public static boolean saveModel(ConfigurationManager configManager, DetectionRecipe recipe) {
+        recipe.modelFile = null;
+        String fileName = modelFileName(recipe.name);
+        File modelDir = getModelDir();
+        if (!modelDir.isDirectory() && !modelDir.mkdirs()) {
+            System.err.println("Cannot create folder: " + modelDir);
+            return false;
+        }
+        if (!configManager.saveCompiledModel(new File(modelDir, fileName))) {
+            return false;
+        }
+        recipe.modelFile = fileName;
+        return true;
+    }
+    
+    /**
+     * Model file name for a recipe: the name made file-safe plus a hash of the exact name, so names
+     * that sanitize alike ("Bagel A", "Bagel_A") or differ only in case get different files
+     */
+    static String modelFileName(String name) {
+        byte[] hash = ModelFile.sha256(name.getBytes(StandardCharsets.UTF_8));
+        StringBuilder suffix = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            suffix.append(String.format(Locale.ROOT, "%02x", hash[i] & 0xFF));
+        }
+        return name.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + suffix + ".bin";
+    }
+    
+    /**
+     * All recipes in the file; empty if it does not exist or cannot be read
+     */
+    public static List<DetectionRecipe> load(File file) {
+        List<DetectionRecipe> recipes = new ArrayList<>();
+        if (!file.exists()) {
+            return recipes;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Gson gson = new Gson();
+            JsonElement jsonElement = JsonParser.parseReader(reader);
+            
+            if (jsonElement.isJsonArray()) {
+                JsonArray jsonArray = jsonElement.getAsJsonArray();
+                for (JsonElement element : jsonArray) {
+                    recipes.add(gson.fromJson(element, DetectionRecipe.class));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading recipes: " + e.getMessage());
+        }
+        return recipes;
+    }
+    
+    public static boolean save(File file, List<DetectionRecipe> recipes) {
+        try {
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            AtomicFiles.write(file, writer -> gson.toJson(recipes, writer));
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving recipes: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Recipe with exactly the given name, or null
+     */
+    public static DetectionRecipe find(List<DetectionRecipe> recipes, String name) {
+        for (DetectionRecipe recipe : recipes) {
+            if (name.equals(recipe.name)) {
+                return recipe;
+            }
+        }
+        return null;
+    }
+}
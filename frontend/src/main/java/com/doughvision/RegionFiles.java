@@ -0,0 +1,113 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes annotated regions as JSON sidecar files next to their images.
+ *
+ * An image "belt01.jpg" is annotated by "belt01.regions.json":
+ * {"regions": [{"label": "dough", "type": "rectangle", "x": 10, "y": 20, "width": 80, "height": 40},
+ *              {"label": "background", "type": "polygon", "points": [[0, 0], [50, 0], [50, 50]]}]}
+ */
+public class RegionFiles {
+    
+    public static final String SUFFIX = ".regions.json";
+    
+    private RegionFiles() {
+    }
+    
+    /**
+     * Sidecar file holding the regions for an image
+     */
+    public static File sidecarFor(File imageFile) {
+        String name = imageFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(imageFile.getParentFile(), base + SUFFIX);
+    }
+    
+    public static List<TeachModePanel.AnnotatedRegion> read(File file) throws IOException {
+        try (FileReader reader = new FileReader(file)) {
+            JsonObject json = new Gson().fromJson(reader, JsonObject.class);
+            if (json == null || !json.has("regions")) {
+                return new ArrayList<>();
+            }
+            return fromJson(json.getAsJsonArray("regions"));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid region file " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+    
+    public static void write(File file, List<TeachModePanel.AnnotatedRegion> regions) throws IOException {
+        JsonObject json = new JsonObject();
+        json.add("regions", toJson(regions));
+        try (FileWriter writer = new FileWriter(file)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+        }
+    }
+    
+    /**
+     * Regions from a JSON array in the sidecar format (also used by the session config)
+     */
+    static List<TeachModePanel.AnnotatedRegion> fromJson(JsonArray array) {
+        List<TeachModePanel.AnnotatedRegion> regions = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject obj = array.get(i).getAsJsonObject();
+            String label = obj.get("label").getAsString();
+            
+            if (obj.has("points")) {
+                List<Point> points = new ArrayList<>();
+                JsonArray pointsArray = obj.getAsJsonArray("points");
+                for (int j = 0; j < pointsArray.size(); j++) {
+                    JsonArray p = pointsArray.get(j).getAsJsonArray();
+                    points.add(new Point(p.get(0).getAsInt(), p.get(1).getAsInt()));
+                }
+                regions.add(new TeachModePanel.AnnotatedRegion(label, points));
+            } else {
+                regions.add(new TeachModePanel.AnnotatedRegion(label, new Rectangle(
+                    obj.get("x").getAsInt(), obj.get("y").getAsInt(),
+                    obj.get("width").getAsInt(), obj.get("height").getAsInt())));
+            }
+        }
+        return regions;
+    }
+    
+    static JsonArray toJson(List<TeachModePanel.AnnotatedRegion> regions) {
+        JsonArray array = new JsonArray();
+        for (TeachModePanel.AnnotatedRegion region : regions) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("label", region.label);
+            if (region.isPolygon) {
+                obj.addProperty("type", "polygon");
+                JsonArray points = new JsonArray();
+                for (Point p : region.polygonPoints) {
+                    JsonArray point = new JsonArray();
+                    point.add(p.x);
+                    point.add(p.y);
+                    points.add(point);
+                }
+                obj.add("points", points);
+            } else {
+                obj.addProperty("type", "rectangle");
+                obj.addProperty("x", region.boundingBox.x);
+                obj.addProperty("y", region.boundingBox.y);
+                obj.addProperty("width", region.boundingBox.width);
+                obj.addProperty("height", region.boundingBox.height);
+            }
+            array.add(obj);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,300 @@
+package com.doughvision;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Annotated region rasterized into horizontal pixel spans.
+ *
+ * Polygons are filled with an edge-table scanline algorithm using the same
+ * even-odd, half-open rule as the old per-pixel point-in-polygon test, so a
+ * pixel (x, y) is covered when x lies in [start, end) of one of the spans on
+ * row y. Spans are immutable and can be cached with the region, iterated for
+ * teach sampling, or painted into a mask for static exclusion at inference.
+ */
+public class RegionSpans {
+    
+    private static final RegionSpans EMPTY = new RegionSpans(new int[0], new int[0], new int[0], 0);
+    
+    private final int[] rows;
+    private final int[] starts;
+    private final int[] ends;   // exclusive
+    private final int count;
+    private final long pixelCount;
+    
+    private RegionSpans(int[] rows, int[] starts, int[] ends, int count) {
+        this.rows = rows;
+        this.starts = starts;
+        this.ends = ends;
+        this.count = count;
+        
+        long pixels = 0;
+        for (int i = 0; i < count; i++) {
+            pixels += ends[i] - starts[i];
+        }
+        this.pixelCount = pixels;
+    }
+    
+    /**
+     * Rasterize an annotated region (rectangle or polygon)
+     */
+    public static RegionSpans of(TeachModePanel.AnnotatedRegion region) {
+        return of(region, 1.0);
+    }
+    
+    /**
+     * Rasterize an annotated region with its coordinates scaled, e.g. for a downsampled frame
+     */
+    public static RegionSpans of(TeachModePanel.AnnotatedRegion region, double scale) {
+        return of(region, scale, 0, 0);
+    }
+    
+    /**
+     * Rasterize a full-frame region into an image whose top-left pixel is frame (originX, originY)
+     * and which has scale pixels per frame pixel, e.g. a subsampled ROI crop
+     */
+    public static RegionSpans of(TeachModePanel.AnnotatedRegion region, double scale, int originX, int originY) {
+        if (region.isPolygon) {
+            return fromPolygon(region.polygonPoints, scale, originX, originY);
+        }
+        return fromRectangle(region.boundingBox, scale, originX, originY);
+    }
+    
+    public static RegionSpans fromRectangle(Rectangle rect, double scale) {
+        return fromRectangle(rect, scale, 0, 0);
+    }
+    
+    public static RegionSpans fromRectangle(Rectangle rect, double scale, int originX, int originY) {
+        if (rect == null || rect.width <= 0 || rect.height <= 0) {
+            return EMPTY;
+        }
+        
+        int x0 = (int) Math.ceil((rect.x - originX) * scale);
+        int x1 = (int) Math.ceil((rect.x + rect.width - originX) * scale);
+        int y0 = (int) Math.ceil((rect.y - originY) * scale);
+        int y1 = (int) Math.ceil((rect.y + rect.height - originY) * scale);
+        if (x1 <= x0 || y1 <= y0) {
+            return EMPTY;
+        }
+        
+        int n = y1 - y0;
+        int[] rows = new int[n];
+        int[] starts = new int[n];
+        int[] ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = y0 + i;
+            starts[i] = x0;
+            ends[i] = x1;
+        }
+        return new RegionSpans(rows, starts, ends, n);
+    }
+    
+    /**
+     * Edge-table scanline fill of a polygon (even-odd rule)
+     */
+    public static RegionSpans fromPolygon(List<Point> polygon, double scale) {
+        return fromPolygon(polygon, scale, 0, 0);
+    }
+    
+    public static RegionSpans fromPolygon(List<Point> polygon, double scale, int originX, int originY) {
+        if (polygon == null || polygon.size() < 3) {
+            return EMPTY;
+        }
+        
+        // Build the edge table, skipping horizontal edges
+        int n = polygon.size();
+        List<Edge> edgeTable = new ArrayList<>(n);
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double xi = (polygon.get(i).x - originX) * scale, yi = (polygon.get(i).y - originY) * scale;
+            double xj = (polygon.get(j).x - originX) * scale, yj = (polygon.get(j).y - originY) * scale;
+            if (yi == yj) {
+                continue;
+            }
+            
+            int yTop = (int) Math.ceil(Math.min(yi, yj));
+            int yBottom = (int) Math.ceil(Math.max(yi, yj));
+            if (yBottom > yTop) {
+                edgeTable.add(new Edge(yTop, yBottom, xi, yi, xj, yj));
+            }
+        }
+        if (edgeTable.isEmpty()) {
+            return EMPTY;
+        }
+        edgeTable.sort((a, b) -> Integer.compare(a.yTop, b.yTop));
+        
+        int yStart = edgeTable.get(0).yTop;
+        int yEnd = Integer.MIN_VALUE;
+        for (Edge e : edgeTable) {
+            yEnd = Math.max(yEnd, e.yBottom);
+        }
+        
+        SpanBuilder builder = new SpanBuilder(yEnd - yStart);
+        Edge[] active = new Edge[edgeTable.size()];
+        double[] crossings = new double[edgeTable.size()];
+        int activeCount = 0;
+        int next = 0;
+        
+        for (int y = yStart; y < yEnd; y++) {
+            // Drop edges that end above this scanline
+            int kept = 0;
+            for (int k = 0; k < activeCount; k++) {
+                if (active[k].yBottom > y) {
+                    active[kept++] = active[k];
+                }
+            }
+            activeCount = kept;
+            
+            // Activate edges starting on this scanline
+            while (next < edgeTable.size() && edgeTable.get(next).yTop == y) {
+                active[activeCount++] = edgeTable.get(next++);
+            }
+            
+            for (int k = 0; k < activeCount; k++) {
+                crossings[k] = active[k].crossingAt(y);
+            }
+            Arrays.sort(crossings, 0, activeCount);
+            
+            // Pixel x is inside when crossings[2m] <= x < crossings[2m + 1]
+            for (int k = 0; k + 1 < activeCount; k += 2) {
+                int x0 = (int) Math.ceil(crossings[k]);
+                int x1 = (int) Math.ceil(crossings[k + 1]);
+                if (x1 > x0) {
+                    builder.add(y, x0, x1);
+                }
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /**
+     * Spans restricted to an image of the given size
+     */
+    public RegionSpans clip(int width, int height) {
+        SpanBuilder builder = new SpanBuilder(count);
+        for (int i = 0; i < count; i++) {
+            int y = rows[i];
+            if (y < 0 || y >= height) {
+                continue;
+            }
+            int x0 = Math.max(0, starts[i]);
+            int x1 = Math.min(width, ends[i]);
+            if (x1 > x0) {
+                builder.add(y, x0, x1);
+            }
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Paint the spans into a mask (clipped to the mask bounds)
+     */
+    public void fill(boolean[][] mask, boolean value) {
+        int height = mask.length;
+        int width = height > 0 ? mask[0].length : 0;
+        for (int i = 0; i < count; i++) {
+            int y = rows[i];
+            if (y < 0 || y >= height) {
+                continue;
+            }
+            int x0 = Math.max(0, starts[i]);
+            int x1 = Math.min(width, ends[i]);
+            if (x1 > x0) {
+                Arrays.fill(mask[y], x0, x1, value);
+            }
+        }
+    }
+    
+    public boolean[][] toMask(int width, int height) {
+        boolean[][] mask = new boolean[height][width];
+        fill(mask, true);
+        return mask;
+    }
+    
+    public int getSpanCount() {
+        return count;
+    }
+    
+    public int getRow(int index) {
+        return rows[index];
+    }
+    
+    public int getStart(int index) {
+        return starts[index];
+    }
+    
+    public int getEnd(int index) {
+        return ends[index];
+    }
+    
+    public long getPixelCount() {
+        return pixelCount;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * Edge table entry covering scanlines [yTop, yBottom)
+     */
+    private static class Edge {
+        final int yTop;
+        final int yBottom;
+        final double xi, yi, dx, dy;
+        
+        Edge(int yTop, int yBottom, double xi, double yi, double xj, double yj) {
+            this.yTop = yTop;
+            this.yBottom = yBottom;
+            this.xi = xi;
+            this.yi = yi;
+            this.dx = xj - xi;
+            this.dy = yj - yi;
+        }
+        
+        // Evaluated directly rather than stepped, so rounding never accumulates down tall edges
+        double crossingAt(int y) {
+            return dx * (y - yi) / dy + xi;
+        }
+    }
+    
+    /**
+     * Growable span arrays
+     */
+    private static class SpanBuilder {
+        int[] rows;
+        int[] starts;
+        int[] ends;
+        int count;
+        
+        SpanBuilder(int capacity) {
+            capacity = Math.max(4, capacity);
+            rows = new int[capacity];
+            starts = new int[capacity];
+            ends = new int[capacity];
+        }
+        
+        void add(int y, int x0, int x1) {
+            if (count == rows.length) {
+                int capacity = rows.length * 2;
+                rows = Arrays.copyOf(rows, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+            }
+            rows[count] = y;
+            starts[count] = x0;
+            ends[count] = x1;
+            count++;
+        }
+        
+        RegionSpans build() {
+            if (count == 0) {
+                return EMPTY;
+            }
+            return new RegionSpans(rows, starts, ends, count);
+        }
+    }
+}
@@ -0,0 +1,677 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores learned rules against a folder of labelled images without rendering anything.
+ *
+ * Ground truth for an image "belt01.jpg" is either a binary mask "belt01.mask.png"
+ * (white = dough, every pixel labelled) or a region sidecar "belt01.regions.json"
+ * (only pixels inside regions are labelled). Images are decoded, converted to
+ * HSV and collapsed row by row into distinct (HSV, truth) pairs once by
+ * {@link #load(File)}; no per-pixel data is kept, so each evaluation is a few
+ * table lookups per distinct pair and a tolerance sweep over hundreds of rule
+ * sets stays fast. Piece counting decodes each image again and runs it through
+ * the same classify, clean-up and labelling steps as inspection. Images are scored
+ * on a worker pool with per-worker counters, the same way {@link BatchTeacher} works.
+ */
+public class RuleEvaluator {
+    
+    public static final String MASK_SUFFIX = ".mask.png";
+    
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList("jpg", "jpeg", "png", "bmp");
+    
+    // Per-pixel ground truth codes; region label k is stored as REGION + k
+    private static final short UNLABELLED = 0;
+    private static final short NEGATIVE = 1;
+    private static final short POSITIVE = 2;
+    private static final short REGION = 3;
+    
+    private final ConfigurationManager configManager;
+    private final int threads;
+    private final List<Sample> samples = new ArrayList<>();
+    
+    public RuleEvaluator(ConfigurationManager configManager) {
+        this(configManager, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public RuleEvaluator(ConfigurationManager configManager, int threads) {
+        this.configManager = configManager;
+        this.threads = Math.max(1, threads);
+    }
+    
+    /**
+     * Images in a folder that have a ground-truth mask or region sidecar
+     */
+    public static List<File> findLabelledImages(File folder) {
+        List<File> images = new ArrayList<>();
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return images;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            int dot = name.lastIndexOf('.');
+            if (file.isFile() && dot > 0 && !name.endsWith(MASK_SUFFIX) &&
+                IMAGE_EXTENSIONS.contains(name.substring(dot + 1)) &&
+                (maskFor(file).exists() || RegionFiles.sidecarFor(file).exists())) {
+                images.add(file);
+            }
+        }
+        return images;
+    }
+    
+    /**
+     * Ground-truth mask file for an image
+     */
+    public static File maskFor(File imageFile) {
+        String name = imageFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(imageFile.getParentFile(), base + MASK_SUFFIX);
+    }
+    
+    /**
+     * Decode every labelled image in the folder and reduce it to distinct (HSV, truth) pairs for repeated evaluation
+     */
+    public int load(File folder) throws Exception {
+        List<File> images = findLabelledImages(folder);
+        if (images.isEmpty()) {
+            throw new Exception("No labelled images found in " + folder.getAbsolutePath() +
+                " (expected image files with " + MASK_SUFFIX + " or " + RegionFiles.SUFFIX + " files)");
+        }
+        
+        System.out.println("Loading " + images.size() + " labelled image(s) for evaluation...");
+        Sample[] loaded = new Sample[images.size()];
+        runWithLoaders(images.size(), (loader, index) -> {
+            File imageFile = images.get(index);
+            try {
+                loaded[index] = loadSample(loader, imageFile);
+            } catch (Exception e) {
+                System.err.println("Skipping " + imageFile.getName() + ": " + e.getMessage());
+            }
+            return null;
+        });
+        
+        samples.clear();
+        for (Sample sample : loaded) {
+            if (sample != null) {
+                samples.add(sample);
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new Exception("None of the labelled images in " + folder.getAbsolutePath() + " could be read");
+        }
+        return samples.size();
+    }
+    
+    /**
+     * Decode an image and its ground truth and count the distinct labelled (HSV, truth) pairs row by row
+     */
+    private Sample loadSample(ImageLoader loader, File imageFile) throws Exception {
+        BufferedImage image = loader.read(imageFile);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Sample sample = new Sample(imageFile);
+        
+        // Ground truth is produced one row at a time: from the mask, or from the region spans
+        BufferedImage mask = null;
+        boolean[][] truthMask = null;
+        List<RegionSpans> regionSpans = new ArrayList<>();
+        short[] regionCodes = null;
+        File maskFile = maskFor(imageFile);
+        if (maskFile.exists()) {
+            mask = loader.read(maskFile);
+            if (mask.getWidth() != width || mask.getHeight() != height) {
+                throw new Exception("mask " + maskFile.getName() + " is not " + width + "x" + height);
+            }
+            truthMask = new boolean[height][width];
+        } else {
+            List<TeachModePanel.AnnotatedRegion> regions = new ArrayList<>(RegionFiles.read(RegionFiles.sidecarFor(imageFile)));
+            // Exclusion zones are positions, not colour classes: their pixels are not scored
+            regions.removeIf(region -> ConfigurationManager.isExclusionLabel(region.label));
+            List<String> labels = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            regionCodes = new short[regions.size()];
+            for (int r = 0; r < regions.size(); r++) {
+                TeachModePanel.AnnotatedRegion region = regions.get(r);
+                int index = labels.indexOf(region.label);
+                if (index < 0) {
+                    index = labels.size();
+                    labels.add(region.label);
+                    counts.add(0);
+                }
+                counts.set(index, counts.get(index) + 1);
+                regionSpans.add(region.getSpans().clip(width, height));
+                regionCodes[r] = (short) (REGION + index);
+            }
+            sample.regionLabels = labels.toArray(new String[0]);
+            sample.regionIgnore = new boolean[labels.size()];
+            sample.regionCounts = new int[labels.size()];
+            for (int i = 0; i < labels.size(); i++) {
+                sample.regionIgnore[i] = configManager.isIgnoreLabel(labels.get(i));
+                sample.regionCounts[i] = counts.get(i);
+            }
+        }
+        
+        PairCounter pairs = new PairCounter();
+        int[] row = new int[width];
+        short[] truthRow = new short[width];
+        int[] cursors = new int[regionSpans.size()];
+        for (int y = 0; y < height; y++) {
+            if (mask != null) {
+                ConfigurationManager.readRGBRow(mask, y, row);
+                for (int x = 0; x < width; x++) {
+                    int rgb = row[x];
+                    boolean positive = ((rgb >> 16) & 0xFF) > 127 || ((rgb >> 8) & 0xFF) > 127 || (rgb & 0xFF) > 127;
+                    truthRow[x] = positive ? POSITIVE : NEGATIVE;
+                    truthMask[y][x] = positive;
+                }
+            } else {
+                // Spans are in row order; later regions win where regions overlap
+                Arrays.fill(truthRow, UNLABELLED);
+                for (int r = 0; r < regionSpans.size(); r++) {
+                    RegionSpans spans = regionSpans.get(r);
+                    int i = cursors[r];
+                    for (; i < spans.getSpanCount() && spans.getRow(i) <= y; i++) {
+                        if (spans.getRow(i) == y) {
+                            Arrays.fill(truthRow, spans.getStart(i), spans.getEnd(i), regionCodes[r]);
+                        }
+                    }
+                    cursors[r] = i;
+                }
+            }
+            
+            ConfigurationManager.readRGBRow(image, y, row);
+            for (int x = 0; x < width; x++) {
+                if (truthRow[x] != UNLABELLED) {
+                    int rgb = row[x];
+                    int hsv = ConfigurationManager.rgbToHsvPacked((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                    pairs.add(((long) hsv << 16) | truthRow[x]);
+                }
+            }
+        }
+        
+        if (truthMask != null) {
+            sample.maskPieces = configManager.findBoundingBoxes(truthMask).size();
+        }
+        sample.keys = pairs.keys();
+        sample.weights = pairs.counts();
+        return sample;
+    }
+    
+    public int getImageCount() {
+        return samples.size();
+    }
+    
+    /**
+     * Evaluate the model's current rules, including piece counts
+     */
+    public Report evaluate() throws Exception {
+        return evaluate(configManager.getCompiledClassifier(), true);
+    }
+    
+    /**
+     * Evaluate a compiled rule set; piece counting runs the morphology and is much slower than pixel scoring
+     */
+    public Report evaluate(CompiledClassifier classifier, boolean countPieces) throws Exception {
+        if (samples.isEmpty()) {
+            throw new Exception("No evaluation images loaded");
+        }
+        
+        long startTime = System.nanoTime();
+        Counts total = new Counts(classifier.getLabelCount());
+        for (Counts partial : runWithLoaders(samples.size(),
+                (loader, index) -> score(samples.get(index), classifier, countPieces, loader))) {
+            total.add(partial);
+        }
+        return new Report(classifier, total, countPieces, samples.size(), System.nanoTime() - startTime);
+    }
+    
+    /**
+     * Re-derive rules from the taught statistics for every tolerance combination and rank them by detection IoU.
+     * The model itself is not changed.
+     */
+    public List<SweepResult> sweepTolerances(int[] hTols, int[] sTols, int[] vTols) throws Exception {
+        Map<String, LabelStatistics> statistics = configManager.getStatisticsSnapshot();
+        if (statistics.isEmpty()) {
+            throw new Exception("No taught statistics to sweep; teach the model first");
+        }
+        
+        System.out.println("Sweeping " + (hTols.length * sTols.length * vTols.length) +
+            " tolerance combinations over " + samples.size() + " image(s)...");
+        long startTime = System.nanoTime();
+        
+        List<SweepResult> results = new ArrayList<>();
+        for (int hTol : hTols) {
+            for (int sTol : sTols) {
+                for (int vTol : vTols) {
+                    Map<String, ConfigurationManager.LabelRule> rules = new HashMap<>();
+                    List<String> ignore = new ArrayList<>();
+                    for (LabelStatistics stats : statistics.values()) {
+                        rules.put(stats.getLabel(),
+                            ConfigurationManager.computeRobustRule(stats.getLabel(), stats, hTol, sTol, vTol));
+                        if (stats.isIgnore()) {
+                            ignore.add(stats.getLabel());
+                        }
+                    }
+                    Report report = evaluate(CompiledClassifier.compile(rules, ignore), false);
+                    results.add(new SweepResult(hTol, sTol, vTol, report));
+                }
+            }
+        }
+        
+        results.sort((a, b) -> Double.compare(b.report.detection.getIoU(), a.report.detection.getIoU()));
+        System.out.println(String.format(Locale.ROOT, "Sweep finished in %.2fs", (System.nanoTime() - startTime) / 1e9));
+        return results;
+    }
+    
+    /**
+     * Score one image
+     */
+    private Counts score(Sample sample, CompiledClassifier classifier, boolean countPieces,
+                         ImageLoader loader) throws Exception {
+        Counts counts = new Counts(classifier.getLabelCount());
+        int words = classifier.getWords();
+        
+        // Region label -> rule index for this image
+        int[] ruleOf = new int[sample.regionLabels.length];
+        for (int i = 0; i < ruleOf.length; i++) {
+            ruleOf[i] = classifier.indexOf(sample.regionLabels[i]);
+        }
+        
+        // Pixel scores are weighted sums over the distinct (HSV, truth) pairs of the image
+        long[] keys = sample.keys;
+        int[] weights = sample.weights;
+        for (int i = 0; i < keys.length; i++) {
+            int hsv = (int) (keys[i] >>> 16);
+            int t = (int) (keys[i] & 0xFFFF);
+            long n = weights[i];
+            
+            int h = hsv >>> 16, s = (hsv >>> 8) & 0xFF, v = hsv & 0xFF;
+            boolean detected = classifier.classify(h, s, v) == CompiledClassifier.DETECT;
+            boolean positive = t == POSITIVE || (t >= REGION && !sample.regionIgnore[t - REGION]);
+            counts.detection.count(detected, positive, n);
+            
+            // Per-label scores: raw rule matches against region labels
+            if (t >= REGION) {
+                int truthRule = ruleOf[t - REGION];
+                boolean truthMatched = false;
+                for (int w = 0; w < words; w++) {
+                    long bits = classifier.matchBits(h, s, v, w);
+                    while (bits != 0) {
+                        int rule = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        if (rule == truthRule) {
+                            counts.labelTp[rule] += n;
+                            truthMatched = true;
+                        } else {
+                            counts.labelFp[rule] += n;
+                        }
+                    }
+                }
+                if (truthRule >= 0 && !truthMatched) {
+                    counts.labelFn[truthRule] += n;
+                }
+            }
+        }
+        
+        if (countPieces) {
+            // Same classify, clean-up and labelling as inspection, with this rule set; like the pixel
+            // scores above, without the exclusion zones, and kept out of the live stage metrics
+            ConfigurationManager.InspectionState state = configManager.beginInspection(classifier);
+            configManager.classify(state, loader.read(sample.imageFile));
+            configManager.cleanMasks(state);
+            configManager.label(state);
+            int truePieces = sample.truePieces(classifier);
+            int predicted = state.boxes.size();
+            counts.truePieces = truePieces;
+            counts.predictedPieces = predicted;
+            counts.countError = Math.abs(predicted - truePieces);
+            counts.exactCounts = predicted == truePieces ? 1 : 0;
+        }
+        return counts;
+    }
+    
+    /**
+     * runOnWorkers with an image loader per worker, closed when all tasks are done
+     */
+    private <T> List<T> runWithLoaders(int count, LoaderTask<T> task) throws Exception {
+        List<ImageLoader> loaders = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<ImageLoader> workerLoader = ThreadLocal.withInitial(() -> {
+            ImageLoader loader = new ImageLoader();
+            loaders.add(loader);
+            return loader;
+        });
+        try {
+            return runOnWorkers(count, index -> task.run(workerLoader.get(), index));
+        } finally {
+            for (ImageLoader loader : loaders) {
+                loader.close();
+            }
+        }
+    }
+    
+    /**
+     * Run a task for every index on the worker pool; workers claim indices from a shared cursor
+     */
+    private <T> List<T> runOnWorkers(int count, IndexTask<T> task) throws Exception {
+        AtomicInteger cursor = new AtomicInteger();
+        int workers = Math.min(threads, count);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<List<T>>> partials = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                partials.add(pool.submit(() -> {
+                    List<T> local = new ArrayList<>();
+                    int index;
+                    while ((index = cursor.getAndIncrement()) < count) {
+                        T result = task.run(index);
+                        if (result != null) {
+                            local.add(result);
+                        }
+                    }
+                    return local;
+                }));
+            }
+            
+            List<T> results = new ArrayList<>();
+            for (Future<List<T>> partial : partials) {
+                results.addAll(partial.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private interface IndexTask<T> {
+        T run(int index) throws Exception;
+    }
+    
+    private interface LoaderTask<T> {
+        T run(ImageLoader loader, int index) throws Exception;
+    }
+    
+    /**
+     * One evaluation image, reduced to its distinct labelled pixels
+     */
+    private static class Sample {
+        final File imageFile;  // Decoded again for piece counting
+        String[] regionLabels = new String[0];
+        boolean[] regionIgnore = new boolean[0];
+        int[] regionCounts = new int[0];  // Regions drawn per label
+        int maskPieces = -1;  // Pieces in the ground-truth mask, -1 for region sidecars
+        
+        // Distinct labelled (hsv << 16 | truth) pairs and how many pixels have each
+        long[] keys;
+        int[] weights;
+        
+        Sample(File imageFile) {
+            this.imageFile = imageFile;
+        }
+        
+        /**
+         * Expected pieces: the mask's components, or the regions whose label the rules detect
+         */
+        int truePieces(CompiledClassifier classifier) {
+            if (maskPieces >= 0) {
+                return maskPieces;
+            }
+            int pieces = 0;
+            for (int i = 0; i < regionLabels.length; i++) {
+                int rule = classifier.indexOf(regionLabels[i]);
+                if (rule >= 0 && !classifier.isIgnore(rule)) {
+                    pieces += regionCounts[i];
+                }
+            }
+            return pieces;
+        }
+    }
+    
+    /**
+     * Open-addressing counts of (hsv, truth) pairs; camera images repeat HSV values
+     * heavily, so this is typically many times smaller than the image. Key 0 marks
+     * an empty slot, which no labelled pair uses (its truth code is never 0).
+     */
+    private static class PairCounter {
+        private long[] table = new long[1 << 12];
+        private int[] tableCounts = new int[1 << 12];
+        private int size;
+        
+        void add(long key) {
+            int slot = slot(key);
+            if (table[slot] == 0) {
+                if ((size + 1) * 2 > table.length) {
+                    grow();
+                    slot = slot(key);
+                }
+                table[slot] = key;
+                size++;
+            }
+            tableCounts[slot]++;
+        }
+        
+        private int slot(long key) {
+            int mask = table.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (table[slot] != 0 && table[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+        
+        private void grow() {
+            long[] oldTable = table;
+            int[] oldCounts = tableCounts;
+            table = new long[oldTable.length * 2];
+            tableCounts = new int[oldTable.length * 2];
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] != 0) {
+                    int slot = slot(oldTable[i]);
+                    table[slot] = oldTable[i];
+                    tableCounts[slot] = oldCounts[i];
+                }
+            }
+        }
+        
+        long[] keys() {
+            long[] keys = new long[size];
+            int n = 0;
+            for (long key : table) {
+                if (key != 0) {
+                    keys[n++] = key;
+                }
+            }
+            return keys;
+        }
+        
+        int[] counts() {
+            int[] counts = new int[size];
+            int n = 0;
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != 0) {
+                    counts[n++] = tableCounts[i];
+                }
+            }
+            return counts;
+        }
+    }
+    
+    /**
+     * Raw counters from one or more images
+     */
+    private static class Counts {
+        final PixelMetrics detection = new PixelMetrics("detection", false);
+        final long[] labelTp;
+        final long[] labelFp;
+        final long[] labelFn;
+        int truePieces;
+        int predictedPieces;
+        int countError;
+        int exactCounts;
+        
+        Counts(int labels) {
+            labelTp = new long[labels];
+            labelFp = new long[labels];
+            labelFn = new long[labels];
+        }
+        
+        void add(Counts other) {
+            detection.add(other.detection);
+            for (int i = 0; i < labelTp.length; i++) {
+                labelTp[i] += other.labelTp[i];
+                labelFp[i] += other.labelFp[i];
+                labelFn[i] += other.labelFn[i];
+            }
+            truePieces += other.truePieces;
+            predictedPieces += other.predictedPieces;
+            countError += other.countError;
+            exactCounts += other.exactCounts;
+        }
+    }
+    
+    /**
+     * Pixel-level confusion counts for one label (or for the combined detection decision)
+     */
+    public static class PixelMetrics {
+        public final String label;
+        public final boolean ignore;
+        long tp, fp, fn, tn;
+        
+        PixelMetrics(String label, boolean ignore) {
+            this.label = label;
+            this.ignore = ignore;
+        }
+        
+        void count(boolean predicted, boolean actual, long n) {
+            if (predicted) {
+                if (actual) tp += n; else fp += n;
+            } else {
+                if (actual) fn += n; else tn += n;
+            }
+        }
+        
+        void add(PixelMetrics other) {
+            tp += other.tp;
+            fp += other.fp;
+            fn += other.fn;
+            tn += other.tn;
+        }
+        
+        public double getPrecision() {
+            return tp + fp == 0 ? 0 : (double) tp / (tp + fp);
+        }
+        
+        public double getRecall() {
+            return tp + fn == 0 ? 0 : (double) tp / (tp + fn);
+        }
+        
+        public double getIoU() {
+            return tp + fp + fn == 0 ? 0 : (double) tp / (tp + fp + fn);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-20s precision %.3f  recall %.3f  IoU %.3f  (tp %d, fp %d, fn %d)",
+                label + (ignore ? " [ignore]" : ""), getPrecision(), getRecall(), getIoU(), tp, fp, fn);
+        }
+    }
+    
+    /**
+     * Scores of one rule set over the loaded images
+     */
+    public static class Report {
+        public final PixelMetrics detection;
+        public final List<PixelMetrics> labels;
+        public final boolean piecesCounted;
+        public final int images;
+        public final int truePieces;
+        public final int predictedPieces;
+        public final int countError;
+        public final int exactCounts;
+        public final long elapsedNanos;
+        
+        Report(CompiledClassifier classifier, Counts counts, boolean piecesCounted, int images, long elapsedNanos) {
+            this.detection = counts.detection;
+            List<PixelMetrics> labelMetrics = new ArrayList<>();
+            for (int i = 0; i < classifier.getLabelCount(); i++) {
+                PixelMetrics metrics = new PixelMetrics(classifier.getLabel(i), classifier.isIgnore(i));
+                metrics.tp = counts.labelTp[i];
+                metrics.fp = counts.labelFp[i];
+                metrics.fn = counts.labelFn[i];
+                labelMetrics.add(metrics);
+            }
+            labelMetrics.sort((a, b) -> a.label.compareTo(b.label));
+            this.labels = Collections.unmodifiableList(labelMetrics);
+            this.piecesCounted = piecesCounted;
+            this.images = images;
+            this.truePieces = counts.truePieces;
+            this.predictedPieces = counts.predictedPieces;
+            this.countError = counts.countError;
+            this.exactCounts = counts.exactCounts;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        /**
+         * Fraction of images whose detected piece count matches the ground truth
+         */
+        public double getCountAccuracy() {
+            return images == 0 ? 0 : (double) exactCounts / images;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Evaluated %d image(s) in %.2fs%n", images, elapsedNanos / 1e9));
+            sb.append(detection).append(String.format("%n"));
+            for (PixelMetrics metrics : labels) {
+                sb.append(metrics).append(String.format("%n"));
+            }
+            if (piecesCounted) {
+                sb.append(String.format(Locale.ROOT,
+                    "Pieces: %d detected / %d expected, exact count on %d of %d image(s) (%.1f%%), mean abs error %.2f",
+                    predictedPieces, truePieces, exactCounts, images, getCountAccuracy() * 100,
+                    images == 0 ? 0.0 : (double) countError / images));
+            }
+            return sb.toString();
+        }
+    }
+    
+    /**
+     * One point of a tolerance sweep
+     */
+    public static class SweepResult {
+        public final int hTol;
+        public final int sTol;
+        public final int vTol;
+        public final Report report;
+        
+        SweepResult(int hTol, int sTol, int vTol, Report report) {
+            this.hTol = hTol;
+            this.sTol = sTol;
+            this.vTol = vTol;
+            this.report = report;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "H +/-%d, S +/-%d, V +/-%d: IoU %.3f, precision %.3f, recall %.3f",
+                hTol, sTol, vTol, report.detection.getIoU(), report.detection.getPrecision(),
+                report.detection.getRecall());
+        }
+    }
+}
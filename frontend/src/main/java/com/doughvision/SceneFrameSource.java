@@ -0,0 +1,76 @@
+package com.doughvision;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Generated scenes delivered as frames at a fixed rate, forever. The first
+ * pass renders scenes 0..distinct-1 as they are needed; after that they are
+ * replayed from memory, so even large scenes keep up with the frame rate.
+ * Each frame owns its image (scenes are never modified once rendered).
+ */
+public class SceneFrameSource implements FrameSource {
+    
+    private final SceneGenerator generator;
+    private final SceneGenerator.Scene[] scenes;
+    private final long frameNanos;  // 0 = as fast as they render
+    private long sequence;
+    private long nextDue;
+    private volatile boolean closed;
+    
+    /**
+     * @param fps      frame rate; 0 or less delivers frames as fast as they render
+     * @param distinct scenes to cycle through
+     */
+    public SceneFrameSource(SceneGenerator generator, double fps, int distinct) {
+        this.generator = generator;
+        this.scenes = new SceneGenerator.Scene[Math.max(1, distinct)];
+        this.frameNanos = fps > 0 ? (long) (1e9 / fps) : 0;
+    }
+    
+    /**
+     * The scene behind a frame, for comparing an inspection with its ground truth
+     */
+    public synchronized SceneGenerator.Scene sceneFor(Frame frame) {
+        return scenes[(int) (frame.getSequence() % scenes.length)];
+    }
+    
+    @Override
+    public Frame next() throws IOException {
+        long frameSequence;
+        SceneGenerator.Scene scene;
+        long due;
+        synchronized (this) {
+            if (closed) {
+                return null;
+            }
+            frameSequence = sequence++;
+            int index = (int) (frameSequence % scenes.length);
+            if (scenes[index] == null) {
+                scenes[index] = generator.generate(index);
+            }
+            scene = scenes[index];
+            long now = System.nanoTime();
+            if (nextDue == 0) {
+                nextDue = now;
+            }
+            due = nextDue;
+            nextDue = Math.max(due + frameNanos, now - frameNanos);
+        }
+        // Pace outside the monitor, so sceneFor() is never held up by the wait
+        try {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for the next frame");
+        }
+        return new Frame(frameSequence, System.nanoTime(), scene.getImage());
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
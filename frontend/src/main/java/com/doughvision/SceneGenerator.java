@@ -0,0 +1,699 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Renders synthetic belts of dough pieces with exact ground truth, for
+ * benchmarks, soak tests and rule evaluation without customer images.
+ *
+ * Pieces are laid out on a jittered grid, then sized, rotated and shaded at
+ * random; some can be pushed against their left neighbour until they touch
+ * or overlap it. Every pixel is rasterized from the piece geometry (no
+ * antialiasing), so the label map is exact: a pixel is dough if and only if
+ * it was painted by a piece, and the top piece owns shared pixels. Flour
+ * specks, a lighting gradient and sensor noise are added on top and do not
+ * change the truth.
+ *
+ * Scenes are deterministic: the same options, seed and index always give the
+ * same pixels, and any index can be generated without the ones before it.
+ */
+public class SceneGenerator {
+    
+    public static final long DEFAULT_SEED = 42;
+    public static final String TRUTH_SUFFIX = ".truth.json";
+    
+    /**
+     * ROUND is a disc (length = width), OVAL an ellipse, BAR a rectangle with rounded corners
+     */
+    public enum Shape { ROUND, OVAL, BAR }
+    
+    /**
+     * Scene settings; the defaults give a 1280x960 belt with 12 separate oval pieces
+     */
+    public static class Options {
+        int width = 1280;
+        int height = 960;
+        int pieces = 12;
+        Shape shape = Shape.OVAL;
+        double lengthMm = 120;
+        double widthMm = 60;
+        double sizeSpread = 0.1;      // ± fraction of the nominal length and width
+        double maxRotation = 20;      // ± degrees
+        int colourSpread = 10;        // ± per-piece brightness, in RGB levels
+        double touching = 0;          // Probability that a piece touches its left neighbour
+        double overlap = 0;           // Probability that it overlaps it instead
+        double overlapDepth = 0.2;    // How far an overlapping piece reaches in, as a fraction of its width
+        double flour = 0.002;         // Fraction of the image covered by flour specks
+        double lighting = 0.15;       // Brightness falloff across the belt, 0..1
+        int noise = 4;                // ± sensor noise, in RGB levels
+        double pixelsPerMm;           // 0 = whatever fits the pieces into the grid
+        Color belt = new Color(60, 60, 65);
+        Color dough = new Color(225, 190, 140);
+        
+        public Options size(int width, int height) {
+            this.width = Math.max(16, width);
+            this.height = Math.max(16, height);
+            return this;
+        }
+        
+        public Options pieces(int count) {
+            pieces = Math.max(0, count);
+            return this;
+        }
+        
+        public Options shape(Shape shape) {
+            this.shape = shape;
+            return this;
+        }
+        
+        /**
+         * Nominal piece size; a ROUND piece uses the length as its diameter
+         */
+        public Options pieceSize(double lengthMm, double widthMm) {
+            this.lengthMm = Math.max(lengthMm, widthMm);
+            this.widthMm = Math.min(lengthMm, widthMm);
+            return this;
+        }
+        
+        public Options sizeSpread(double fraction) {
+            sizeSpread = Math.max(0, Math.min(0.5, fraction));
+            return this;
+        }
+        
+        public Options rotation(double maxDegrees) {
+            maxRotation = Math.abs(maxDegrees);
+            return this;
+        }
+        
+        public Options colourSpread(int levels) {
+            colourSpread = Math.max(0, levels);
+            return this;
+        }
+        
+        public Options touching(double probability) {
+            touching = Math.max(0, Math.min(1, probability));
+            return this;
+        }
+        
+        public Options overlap(double probability, double depth) {
+            overlap = Math.max(0, Math.min(1, probability));
+            overlapDepth = Math.max(0.01, Math.min(0.9, depth));
+            return this;
+        }
+        
+        public Options flour(double coverage) {
+            flour = Math.max(0, Math.min(0.5, coverage));
+            return this;
+        }
+        
+        public Options lighting(double falloff) {
+            lighting = Math.max(0, Math.min(1, falloff));
+            return this;
+        }
+        
+        public Options noise(int levels) {
+            noise = Math.max(0, levels);
+            return this;
+        }
+        
+        public Options pixelsPerMm(double pixelsPerMm) {
+            this.pixelsPerMm = Math.max(0, pixelsPerMm);
+            return this;
+        }
+        
+        public Options colours(Color belt, Color dough) {
+            this.belt = belt;
+            this.dough = dough;
+            return this;
+        }
+    }
+    
+    /**
+     * One piece as generated: its full geometry (even where another piece covers it)
+     * and what is visible of it
+     */
+    public static class Piece {
+        public final int id;            // 1-based, the value in the label map
+        public final double centerX;
+        public final double centerY;
+        public final double lengthPx;
+        public final double widthPx;
+        public final double angle;      // Degrees, of the long axis from the x axis
+        public final double lengthMm;
+        public final double widthMm;
+        int visiblePixels;
+        Rectangle bounds;
+        boolean touching;
+        boolean occluded;
+        
+        Piece(int id, double centerX, double centerY, double lengthPx, double widthPx, double angle,
+              double pixelsPerMm) {
+            this.id = id;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.lengthPx = lengthPx;
+            this.widthPx = widthPx;
+            this.angle = angle;
+            this.lengthMm = lengthPx / pixelsPerMm;
+            this.widthMm = widthPx / pixelsPerMm;
+        }
+        
+        /**
+         * The same piece moved left by dx pixels
+         */
+        Piece movedLeft(double dx) {
+            return new Piece(id, centerX - dx, centerY, lengthPx, widthPx, angle, lengthPx / lengthMm);
+        }
+        
+        public int getVisiblePixels() {
+            return visiblePixels;
+        }
+        
+        /**
+         * Bounding box of the visible pixels
+         */
+        public Rectangle getBounds() {
+            return bounds;
+        }
+        
+        /**
+         * True if the piece borders another one without being covered by it
+         */
+        public boolean isTouching() {
+            return touching;
+        }
+        
+        /**
+         * True if a later piece covers part of this one
+         */
+        public boolean isOccluded() {
+            return occluded;
+        }
+    }
+    
+    /**
+     * A rendered scene and its ground truth
+     */
+    public static class Scene {
+        private final long index;
+        private final BufferedImage image;
+        private final int[] labels;  // Piece id per pixel, 0 = belt
+        private final List<Piece> pieces;
+        private final double pixelsPerMm;
+        
+        Scene(long index, BufferedImage image, int[] labels, List<Piece> pieces, double pixelsPerMm) {
+            this.index = index;
+            this.image = image;
+            this.labels = labels;
+            this.pieces = Collections.unmodifiableList(pieces);
+            this.pixelsPerMm = pixelsPerMm;
+        }
+        
+        public long getIndex() {
+            return index;
+        }
+        
+        public BufferedImage getImage() {
+            return image;
+        }
+        
+        public List<Piece> getPieces() {
+            return pieces;
+        }
+        
+        public double getPixelsPerMm() {
+            return pixelsPerMm;
+        }
+        
+        public int getWidth() {
+            return image.getWidth();
+        }
+        
+        public int getHeight() {
+            return image.getHeight();
+        }
+        
+        /**
+         * Id of the piece on top at a pixel, 0 for belt
+         */
+        public int pieceAt(int x, int y) {
+            return labels[y * image.getWidth() + x];
+        }
+        
+        /**
+         * True where there is dough
+         */
+        public boolean[][] getMask() {
+            int width = getWidth();
+            boolean[][] mask = new boolean[getHeight()][width];
+            for (int y = 0; y < mask.length; y++) {
+                for (int x = 0; x < width; x++) {
+                    mask[y][x] = labels[y * width + x] != 0;
+                }
+            }
+            return mask;
+        }
+        
+        /**
+         * The mask as an image (white = dough), in the form RuleEvaluator reads
+         */
+        public BufferedImage getMaskImage() {
+            BufferedImage mask = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+            int[] row = new int[getWidth()];
+            for (int y = 0; y < getHeight(); y++) {
+                for (int x = 0; x < row.length; x++) {
+                    row[x] = labels[y * row.length + x] != 0 ? 0xFFFFFF : 0;
+                }
+                mask.setRGB(0, y, row.length, 1, row, 0, row.length);
+            }
+            return mask;
+        }
+        
+        public JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("index", index);
+            json.addProperty("width", getWidth());
+            json.addProperty("height", getHeight());
+            json.addProperty("pixels_per_mm", pixelsPerMm);
+            json.addProperty("count", pieces.size());
+            JsonArray array = new JsonArray();
+            for (Piece piece : pieces) {
+                JsonObject p = new JsonObject();
+                p.addProperty("id", piece.id);
+                p.addProperty("center_x", Math.round(piece.centerX * 10) / 10.0);
+                p.addProperty("center_y", Math.round(piece.centerY * 10) / 10.0);
+                p.addProperty("angle", Math.round(piece.angle * 10) / 10.0);
+                p.addProperty("length_mm", Math.round(piece.lengthMm * 100) / 100.0);
+                p.addProperty("width_mm", Math.round(piece.widthMm * 100) / 100.0);
+                p.addProperty("visible_pixels", piece.visiblePixels);
+                if (piece.bounds != null) {
+                    p.addProperty("x", piece.bounds.x);
+                    p.addProperty("y", piece.bounds.y);
+                    p.addProperty("w", piece.bounds.width);
+                    p.addProperty("h", piece.bounds.height);
+                }
+                p.addProperty("touching", piece.touching);
+                p.addProperty("occluded", piece.occluded);
+                array.add(p);
+            }
+            json.add("pieces", array);
+            return json;
+        }
+    }
+    
+    private static final Color FLOUR = new Color(245, 240, 230);
+    private static final double GRID_FILL = 0.65;   // Nominal piece size as a fraction of its grid cell
+    private static final double MIN_SHADE = 0.92;   // Brightness at a piece's rim relative to its centre
+    
+    private final Options options;
+    private final long seed;
+    
+    public SceneGenerator(Options options, long seed) {
+        this.options = options;
+        this.seed = seed;
+    }
+    
+    public SceneGenerator(long seed) {
+        this(new Options(), seed);
+    }
+    
+    /**
+     * Scene number index of this generator's sequence
+     */
+    public Scene generate(long index) {
+        SplittableRandom random = new SplittableRandom(seed + index * 0x9E3779B97F4A7C15L);
+        int width = options.width;
+        int height = options.height;
+        int count = options.pieces;
+        int columns = Math.max(1, (int) Math.ceil(Math.sqrt(count * (double) width / height)));
+        int rows = Math.max(1, (count + columns - 1) / columns);
+        double cellW = (double) width / columns;
+        double cellH = (double) height / rows;
+        double pixelsPerMm = options.pixelsPerMm > 0 ? options.pixelsPerMm
+            : GRID_FILL * Math.min(cellW / options.lengthMm,
+                cellH / (options.shape == Shape.ROUND ? options.lengthMm : options.widthMm));
+        
+        int[] pixels = new int[width * height];
+        int[] labels = new int[width * height];
+        Arrays.fill(pixels, options.belt.getRGB() & 0xFFFFFF);
+        
+        List<Piece> pieces = new ArrayList<>();
+        Set<Long> covered = new HashSet<>();  // Pairs (below, above) of pieces painted over each other
+        for (int i = 0; i < count; i++) {
+            int column = i % columns;
+            double lengthPx = options.lengthMm * pixelsPerMm * spread(random, options.sizeSpread);
+            double widthPx = options.shape == Shape.ROUND ? lengthPx
+                : Math.min(lengthPx, options.widthMm * pixelsPerMm * spread(random, options.sizeSpread));
+            double angle = options.maxRotation > 0 ? random.nextDouble(-options.maxRotation, options.maxRotation) : 0;
+            double centerX = (column + 0.5) * cellW + random.nextDouble(-0.05, 0.05) * cellW;
+            double centerY = (i / columns + 0.5) * cellH + random.nextDouble(-0.05, 0.05) * cellH;
+            int shade = options.colourSpread > 0 ? random.nextInt(-options.colourSpread, options.colourSpread + 1) : 0;
+            
+            Piece piece = new Piece(i + 1, centerX, centerY, lengthPx, widthPx, angle, pixelsPerMm);
+            double contact = random.nextDouble();
+            if (column > 0 && contact < options.overlap + options.touching) {
+                Piece neighbour = pieces.get(i - 1);
+                double shift = touchingShift(piece, neighbour, labels, width, height);
+                if (contact < options.overlap) {
+                    shift += options.overlapDepth * widthPx;
+                }
+                piece = piece.movedLeft(shift);
+            }
+            paint(piece, shade, pixels, labels, width, height, covered);
+            pieces.add(piece);
+        }
+        
+        sprinkleFlour(random, pixels, width, height);
+        applyLightingAndNoise(random, pixels, width, height);
+        measureVisible(pieces, labels, width, height, covered);
+        
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] target = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, target, 0, pixels.length);
+        return new Scene(index, image, labels, pieces, pixelsPerMm);
+    }
+    
+    private static double spread(SplittableRandom random, double fraction) {
+        return fraction > 0 ? 1 + random.nextDouble(-fraction, fraction) : 1;
+    }
+    
+    /**
+     * True if the pixel's centre is inside the piece (cos and sin of its angle precomputed)
+     */
+    private static boolean contains(Shape shape, Piece piece, double cos, double sin, int x, int y) {
+        double dx = x + 0.5 - piece.centerX;
+        double dy = y + 0.5 - piece.centerY;
+        double u = Math.abs(dx * cos + dy * sin);
+        double v = Math.abs(-dx * sin + dy * cos);
+        double a = piece.lengthPx / 2;
+        double b = piece.widthPx / 2;
+        if (shape != Shape.BAR) {
+            return (u * u) / (a * a) + (v * v) / (b * b) <= 1;
+        }
+        if (u > a || v > b) {
+            return false;
+        }
+        double radius = b / 2;
+        double cu = u - (a - radius);
+        double cv = v - (b - radius);
+        return cu <= 0 || cv <= 0 || cu * cu + cv * cv <= radius * radius;
+    }
+    
+    /**
+     * Pixels that can be inside the piece, clipped to the image: x0, y0, x1, y1 (exclusive)
+     */
+    private static int[] reach(Piece piece, int width, int height) {
+        double r = Math.hypot(piece.lengthPx, piece.widthPx) / 2 + 1;
+        return new int[]{
+            Math.max(0, (int) Math.floor(piece.centerX - r)), Math.max(0, (int) Math.floor(piece.centerY - r)),
+            Math.min(width, (int) Math.ceil(piece.centerX + r)), Math.min(height, (int) Math.ceil(piece.centerY + r))};
+    }
+    
+    private boolean overlaps(Piece piece, int other, int[] labels, int width, int height) {
+        double cos = Math.cos(Math.toRadians(piece.angle));
+        double sin = Math.sin(Math.toRadians(piece.angle));
+        int[] box = reach(piece, width, height);
+        for (int y = box[1]; y < box[3]; y++) {
+            for (int x = box[0]; x < box[2]; x++) {
+                if (labels[y * width + x] == other && contains(options.shape, piece, cos, sin, x, y)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Largest whole-pixel shift to the left that keeps the piece off its neighbour: one
+     * pixel further and they would share a pixel, so at this shift they touch
+     */
+    private double touchingShift(Piece piece, Piece neighbour, int[] labels, int width, int height) {
+        int low = 0;                                                  // Known not to overlap
+        int high = (int) Math.ceil(piece.centerX - neighbour.centerX);  // Centres coincide: overlaps
+        if (overlaps(piece, neighbour.id, labels, width, height) ||
+            !overlaps(piece.movedLeft(high), neighbour.id, labels, width, height)) {
+            return 0;  // Already in contact, or not in line with the neighbour
+        }
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (overlaps(piece.movedLeft(middle), neighbour.id, labels, width, height)) {
+                high = middle;
+            } else {
+                low = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Rasterize a piece over whatever is below it, slightly darker towards the rim
+     */
+    private void paint(Piece piece, int shade, int[] pixels, int[] labels, int width, int height, Set<Long> covered) {
+        double cos = Math.cos(Math.toRadians(piece.angle));
+        double sin = Math.sin(Math.toRadians(piece.angle));
+        double a = piece.lengthPx / 2;
+        double b = piece.widthPx / 2;
+        int red = options.dough.getRed() + shade;
+        int green = options.dough.getGreen() + shade;
+        int blue = options.dough.getBlue() + shade;
+        int[] box = reach(piece, width, height);
+        for (int y = box[1]; y < box[3]; y++) {
+            for (int x = box[0]; x < box[2]; x++) {
+                if (!contains(options.shape, piece, cos, sin, x, y)) {
+                    continue;
+                }
+                double dx = x + 0.5 - piece.centerX;
+                double dy = y + 0.5 - piece.centerY;
+                double u = (dx * cos + dy * sin) / a;
+                double v = (-dx * sin + dy * cos) / b;
+                double gain = 1 - (1 - MIN_SHADE) * Math.min(1, u * u + v * v);
+                int i = y * width + x;
+                pixels[i] = rgb(red * gain, green * gain, blue * gain);
+                if (labels[i] != 0) {
+                    covered.add(pair(labels[i], piece.id));
+                }
+                labels[i] = piece.id;
+            }
+        }
+    }
+    
+    /**
+     * Small discs of flour anywhere on the image, partly covering what is below
+     */
+    private void sprinkleFlour(SplittableRandom random, int[] pixels, int width, int height) {
+        int specks = (int) (options.flour * width * height / 7);  // A speck covers ~7 pixels on average
+        for (int s = 0; s < specks; s++) {
+            int cx = random.nextInt(width);
+            int cy = random.nextInt(height);
+            int radius = 1 + random.nextInt(2);
+            double alpha = random.nextDouble(0.5, 1.0);
+            for (int y = Math.max(0, cy - radius); y <= Math.min(height - 1, cy + radius); y++) {
+                for (int x = Math.max(0, cx - radius); x <= Math.min(width - 1, cx + radius); x++) {
+                    if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius) {
+                        int i = y * width + x;
+                        int below = pixels[i];
+                        pixels[i] = rgb(
+                            blend((below >> 16) & 0xFF, FLOUR.getRed(), alpha),
+                            blend((below >> 8) & 0xFF, FLOUR.getGreen(), alpha),
+                            blend(below & 0xFF, FLOUR.getBlue(), alpha));
+                    }
+                }
+            }
+        }
+    }
+    
+    private static double blend(int below, int over, double alpha) {
+        return below + (over - below) * alpha;
+    }
+    
+    /**
+     * A linear brightness gradient in a random direction, then the same noise on all channels
+     */
+    private void applyLightingAndNoise(SplittableRandom random, int[] pixels, int width, int height) {
+        double direction = random.nextDouble(0, 2 * Math.PI);
+        double gx = Math.cos(direction) / width;
+        double gy = Math.sin(direction) / height;
+        double offset = Math.min(0, gx * width) + Math.min(0, gy * height);
+        double range = Math.abs(gx * width) + Math.abs(gy * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double t = range > 0 ? (gx * x + gy * y - offset) / range : 0;
+                double gain = 1 - options.lighting * t;
+                int noise = options.noise > 0 ? random.nextInt(-options.noise, options.noise + 1) : 0;
+                int i = y * width + x;
+                int rgb = pixels[i];
+                pixels[i] = rgb(((rgb >> 16) & 0xFF) * gain + noise, ((rgb >> 8) & 0xFF) * gain + noise,
+                    (rgb & 0xFF) * gain + noise);
+            }
+        }
+    }
+    
+    private static int rgb(double r, double g, double b) {
+        return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+    }
+    
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+    
+    private static long pair(int first, int second) {
+        return (long) Math.min(first, second) << 32 | Math.max(first, second);
+    }
+    
+    /**
+     * Visible pixels, bounds, touching and occlusion from the finished label map. Pieces
+     * that border each other touch, unless one was painted over the other.
+     */
+    private static void measureVisible(List<Piece> pieces, int[] labels, int width, int height, Set<Long> covered) {
+        int[][] boxes = new int[pieces.size()][];
+        Set<Long> contacts = new HashSet<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int id = labels[y * width + x];
+                if (id == 0) {
+                    continue;
+                }
+                pieces.get(id - 1).visiblePixels++;
+                int[] box = boxes[id - 1];
+                if (box == null) {
+                    boxes[id - 1] = new int[]{x, y, x, y};
+                } else {
+                    box[0] = Math.min(box[0], x);
+                    box[1] = Math.min(box[1], y);
+                    box[2] = Math.max(box[2], x);
+                    box[3] = Math.max(box[3], y);
+                }
+                int right = x + 1 < width ? labels[y * width + x + 1] : 0;
+                int below = y + 1 < height ? labels[(y + 1) * width + x] : 0;
+                if (right != 0 && right != id) {
+                    contacts.add(pair(id, right));
+                }
+                if (below != 0 && below != id) {
+                    contacts.add(pair(id, below));
+                }
+            }
+        }
+        for (Piece piece : pieces) {
+            int[] box = boxes[piece.id - 1];
+            if (box != null) {
+                piece.bounds = new Rectangle(box[0], box[1], box[2] - box[0] + 1, box[3] - box[1] + 1);
+            }
+        }
+        for (long contact : contacts) {
+            if (!covered.contains(contact)) {
+                pieces.get((int) (contact >>> 32) - 1).touching = true;
+                pieces.get((int) contact - 1).touching = true;
+            }
+        }
+        for (long cover : covered) {
+            // Ids are painted in order, so the lower one is underneath
+            pieces.get((int) (cover >>> 32) - 1).occluded = true;
+        }
+    }
+    
+    /**
+     * Write scenes 0..count-1 as PNG images with a RuleEvaluator mask and a ground-truth
+     * JSON next to each (scene0000.png, scene0000.mask.png, scene0000.truth.json)
+     */
+    public void writeDataset(File folder, int count) throws IOException {
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        for (int i = 0; i < count; i++) {
+            Scene scene = generate(i);
+            String name = String.format(Locale.ROOT, "scene%04d", i);
+            AtomicFiles.write(new File(folder, name + ".png"), png(scene.getImage()));
+            AtomicFiles.write(new File(folder, name + RuleEvaluator.MASK_SUFFIX), png(scene.getMaskImage()));
+            AtomicFiles.write(new File(folder, name + TRUTH_SUFFIX),
+                gson.toJson(scene.toJson()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Command line entry (args[0] is "scenes")
+     */
+    static int run(String[] args) {
+        String usage = "Usage: scenes <output-folder> [--count N] [--seed N] [--size WxH] [--pieces N] " +
+            "[--shape round|oval|bar] [--touching P] [--overlap P] [--flour F] [--lighting F]";
+        Options options = new Options();
+        File folder = null;
+        int count = 10;
+        long seed = DEFAULT_SEED;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--count") && i + 1 < args.length) {
+                    count = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--size") && i + 1 < args.length) {
+                    String[] size = args[++i].toLowerCase(Locale.ROOT).split("x");
+                    options.size(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+                } else if (args[i].equals("--pieces") && i + 1 < args.length) {
+                    options.pieces(Integer.parseInt(args[++i]));
+                } else if (args[i].equals("--shape") && i + 1 < args.length) {
+                    options.shape(Shape.valueOf(args[++i].toUpperCase(Locale.ROOT)));
+                } else if (args[i].equals("--touching") && i + 1 < args.length) {
+                    options.touching(Double.parseDouble(args[++i]));
+                } else if (args[i].equals("--overlap") && i + 1 < args.length) {
+                    options.overlap(Double.parseDouble(args[++i]), options.overlapDepth);
+                } else if (args[i].equals("--flour") && i + 1 < args.length) {
+                    options.flour(Double.parseDouble(args[++i]));
+                } else if (args[i].equals("--lighting") && i + 1 < args.length) {
+                    options.lighting(Double.parseDouble(args[++i]));
+                } else if (folder == null && !args[i].startsWith("--")) {
+                    folder = new File(args[i]);
+                } else {
+                    System.err.println(usage);
+                    return 2;
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Bad argument: " + e.getMessage());
+            System.err.println(usage);
+            return 2;
+        }
+        if (folder == null) {
+            System.err.println(usage);
+            return 2;
+        }
+        
+        try {
+            long start = System.nanoTime();
+            new SceneGenerator(options, seed).writeDataset(folder, count);
+            System.out.printf(Locale.ROOT, "Wrote %d scene(s) of %dx%d to %s in %.1f s%n", count, options.width,
+                options.height, folder, (System.nanoTime() - start) / 1e9);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Could not write scenes: " + e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Single-producer/single-consumer frame ring in a memory-mapped file, normally
+ * under /dev/shm, shared with the native capture backend (shm_frame_ring.h).
+ *
+ * Layout (native byte order):
+ *   header page (4096 bytes):
+ *     0 int magic 'DVRG', 4 int version, 8 int slotCount, 12 int width,
+ *     16 int height, 20 int stride, 24 int format (RawFrames.PixelFormat ordinal),
+ *     32 long slotSize, 40 long dataOffset,
+ *     64 long writeSequence, 128 long readSequence, 192 long droppedFrames,
+ *     256 int producerState (0 running, 1 closed, 2 replaced by a restarted
+ *     producer; each counter on its own cache line)
+ *   slotCount slots of slotSize bytes at dataOffset, each:
+ *     0 long sequence, 8 long timestampNanos, 16 int state, 20 int length,
+ *     pixels at 64
+ *
+ * writeSequence is the number of frames published and readSequence the number
+ * the consumer has released; frame n lives in slot n % slotCount. The producer
+ * fills a slot and then publishes it with a release store of writeSequence, and
+ * the consumer hands it back with a release store of readSequence, so neither
+ * side takes a lock. When the ring is full the producer drops the frame rather
+ * than stall the camera. Slot states are informational (for tools and crash
+ * diagnosis); the sequences alone carry ownership.
+ *
+ * A ring file is never truncated or resized once created, since a consumer may
+ * have it mapped and would fault on the lost pages. A restarting producer marks
+ * the existing ring replaced, builds a new ring in a temporary file and renames
+ * it over the path; consumers drain the old mapping and then map the new file.
+ *
+ * This class is the Java producer (used for tests and replay); the consumer is
+ * {@link ShmFrameSource}.
+ */
+public class ShmFrameRing implements AutoCloseable {
+    
+    static final int MAGIC = 0x44565247;  // "DVRG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4096;
+    static final int SLOT_HEADER_SIZE = 64;
+    
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_SLOT_COUNT = 8;
+    static final int OFF_WIDTH = 12;
+    static final int OFF_HEIGHT = 16;
+    static final int OFF_STRIDE = 20;
+    static final int OFF_FORMAT = 24;
+    static final int OFF_SLOT_SIZE = 32;
+    static final int OFF_DATA_OFFSET = 40;
+    static final int OFF_WRITE_SEQUENCE = 64;
+    static final int OFF_READ_SEQUENCE = 128;
+    static final int OFF_DROPPED = 192;
+    static final int OFF_CLOSED = 256;
+    
+    static final int SLOT_SEQUENCE = 0;
+    static final int SLOT_TIMESTAMP = 8;
+    static final int SLOT_STATE = 16;
+    static final int SLOT_LENGTH = 20;
+    
+    static final int PRODUCER_RUNNING = 0;
+    static final int PRODUCER_CLOSED = 1;
+    static final int PRODUCER_REPLACED = 2;
+    
+    static final int STATE_EMPTY = 0;
+    static final int STATE_WRITING = 1;
+    static final int STATE_READY = 2;
+    static final int STATE_READING = 3;
+    
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final RawFrames.PixelFormat format;
+    private final long slotSize;
+    private long writeSequence;
+    private byte[] rowBytes;
+    private int[] rowPixels;
+    
+    private ShmFrameRing(MappedByteBuffer buffer, int slotCount, int width, int height, int stride,
+                         RawFrames.PixelFormat format, long slotSize) {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.format = format;
+        this.slotSize = slotSize;
+    }
+    
+    /**
+     * Create (or replace) a ring file and return its producer. An existing ring is
+     * marked replaced and swapped out by rename, never truncated under its consumers.
+     */
+    public static ShmFrameRing create(File file, int slotCount, int width, int height,
+                                      RawFrames.PixelFormat format) throws IOException {
+        if (slotCount < 2 || width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid ring geometry: " + slotCount + " slots of " + width + "x" + height);
+        }
+        int stride = width * format.bytesPerPixel;
+        long slotSize = slotSize(stride, height);
+        long fileSize = HEADER_SIZE + slotSize * slotCount;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Ring of " + slotCount + " " + width + "x" + height + " frames exceeds 2 GB");
+        }
+        
+        // The temporary file is private to this producer until the rename, so it may be truncated
+        File temp = new File(file.getPath() + ".new");
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(OFF_VERSION, VERSION);
+        buffer.putInt(OFF_SLOT_COUNT, slotCount);
+        buffer.putInt(OFF_WIDTH, width);
+        buffer.putInt(OFF_HEIGHT, height);
+        buffer.putInt(OFF_STRIDE, stride);
+        buffer.putInt(OFF_FORMAT, format.ordinal());
+        buffer.putLong(OFF_SLOT_SIZE, slotSize);
+        buffer.putLong(OFF_DATA_OFFSET, HEADER_SIZE);
+        // Magic last: a consumer that sees it also sees the geometry
+        INTS.setRelease(buffer, OFF_MAGIC, MAGIC);
+        
+        markReplaced(file);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ShmFrameRing(buffer, slotCount, width, height, stride, format, slotSize);
+    }
+    
+    /**
+     * Tell consumers of an existing ring at this path that a new producer is taking over.
+     * Only the header page is touched; the file keeps its size.
+     */
+    private static void markReplaced(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                return;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if ((int) INTS.getAcquire(header, OFF_MAGIC) == MAGIC) {
+                INTS.setRelease(header, OFF_CLOSED, PRODUCER_REPLACED);
+            }
+        }
+    }
+    
+    /**
+     * Slot size: slot header plus pixels, rounded up to whole pages
+     */
+    static long slotSize(int stride, int height) {
+        long size = SLOT_HEADER_SIZE + (long) stride * height;
+        return (size + 4095) & ~4095L;
+    }
+    
+    /**
+     * Publish one frame of raw pixels in the ring's format (stride * height bytes).
+     *
+     * @return false if the ring was full and the frame was dropped
+     */
+    public boolean offer(byte[] pixels, long timestampNanos) {
+        if (pixels.length < stride * height) {
+            throw new IllegalArgumentException("Frame has " + pixels.length + " bytes, expected " + (stride * height));
+        }
+        int slot = beginWrite();
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(slot + SLOT_HEADER_SIZE);
+        data.put(pixels, 0, stride * height);
+        publish(slot, timestampNanos);
+        return true;
+    }
+    
+    /**
+     * Publish an image, converting it to the ring's format (same size required)
+     *
+     * @return false if the ring was full and the frame was dropped
+     */
+    public boolean offer(BufferedImage image, long timestampNanos) {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Image is " + image.getWidth() + "x" + image.getHeight() +
+                ", ring frames are " + width + "x" + height);
+        }
+        int slot = beginWrite();
+        if (slot < 0) {
+            return false;
+        }
+        if (rowPixels == null) {
+            rowPixels = new int[width];
+            rowBytes = new byte[stride];
+        }
+        int bpp = format.bytesPerPixel;
+        ByteBuffer data = buffer.duplicate();
+        data.position(slot + SLOT_HEADER_SIZE);
+        for (int y = 0; y < height; y++) {
+            ConfigurationManager.readRGBRow(image, y, rowPixels);
+            for (int x = 0, p = 0; x < width; x++, p += bpp) {
+                int rgb = rowPixels[x];
+                if (format.isGray()) {
+                    // Rec. 601 luma
+                    rowBytes[p] = (byte) ((((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000);
+                } else {
+                    rowBytes[p + format.red] = (byte) (rgb >> 16);
+                    rowBytes[p + format.green] = (byte) (rgb >> 8);
+                    rowBytes[p + format.blue] = (byte) rgb;
+                }
+            }
+            data.put(rowBytes);
+        }
+        publish(slot, timestampNanos);
+        return true;
+    }
+    
+    /**
+     * Claim the next slot, or return -1 (and count a drop) if the consumer is a full ring behind
+     */
+    private int beginWrite() {
+        long read = (long) LONGS.getAcquire(buffer, OFF_READ_SEQUENCE);
+        if (writeSequence - read >= slotCount) {
+            long dropped = (long) LONGS.getOpaque(buffer, OFF_DROPPED);
+            LONGS.setRelease(buffer, OFF_DROPPED, dropped + 1);
+            return -1;
+        }
+        int slot = slotOffset(writeSequence);
+        INTS.setOpaque(buffer, slot + SLOT_STATE, STATE_WRITING);
+        return slot;
+    }
+    
+    private void publish(int slot, long timestampNanos) {
+        buffer.putLong(slot + SLOT_SEQUENCE, writeSequence);
+        buffer.putLong(slot + SLOT_TIMESTAMP, timestampNanos);
+        buffer.putInt(slot + SLOT_LENGTH, stride * height);
+        INTS.setOpaque(buffer, slot + SLOT_STATE, STATE_READY);
+        // Release: the pixels and slot header above are visible before the new sequence
+        LONGS.setRelease(buffer, OFF_WRITE_SEQUENCE, ++writeSequence);
+    }
+    
+    private int slotOffset(long sequence) {
+        return (int) (HEADER_SIZE + (sequence % slotCount) * slotSize);
+    }
+    
+    /**
+     * Frames dropped because the consumer fell behind
+     */
+    public long getDroppedFrames() {
+        return (long) LONGS.getAcquire(buffer, OFF_DROPPED);
+    }
+    
+    /**
+     * Mark the stream finished; the consumer drains the remaining frames and then ends
+     */
+    @Override
+    public void close() {
+        // A restarted producer may already have marked this ring replaced; keep that, so consumers follow it
+        INTS.compareAndSet(buffer, OFF_CLOSED, PRODUCER_RUNNING, PRODUCER_CLOSED);
+    }
+}
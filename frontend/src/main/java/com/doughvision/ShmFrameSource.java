@@ -0,0 +1,237 @@
+package com.doughvision;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Consumer side of a {@link ShmFrameRing}: frames written by the capture
+ * process (or a Java producer) come back as zero-copy views of their slot.
+ *
+ * A frame's slot is handed back to the producer when the frame is released.
+ * Frames may be held several at a time but are returned in order: releasing a
+ * frame also releases every older one. Waiting for the next frame spins briefly
+ * and then parks in short intervals, so latency stays in the tens of microseconds
+ * without burning a core while the line is idle.
+ *
+ * A restarted producer never truncates a ring this source has mapped: it marks
+ * the old ring replaced and renames a new file over the path. Once the old ring
+ * is drained the source maps the new one and continues from its first frame;
+ * frames still held from the old ring stay valid until released.
+ */
+public class ShmFrameSource implements FrameSource {
+    
+    private static final int SPIN_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+    private static final long REOPEN_PARK_NANOS = 10_000_000;
+    
+    private final File file;
+    private volatile Ring ring;  // Replaced only by the thread calling next()
+    private volatile boolean closed;
+    
+    /**
+     * One mapping of the ring file and the consumer's position in it
+     */
+    private static final class Ring {
+        final MappedByteBuffer buffer;
+        final int slotCount;
+        final int width;
+        final int height;
+        final int stride;
+        final RawFrames.PixelFormat format;
+        final long slotSize;
+        final long dataOffset;
+        long nextSequence;
+        long released;
+        
+        Ring(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() < ShmFrameRing.HEADER_SIZE) {
+                    throw new IOException(file + " is not a frame ring (too small)");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            buffer.order(ByteOrder.nativeOrder());
+            
+            if ((int) ShmFrameRing.INTS.getAcquire(buffer, ShmFrameRing.OFF_MAGIC) != ShmFrameRing.MAGIC) {
+                throw new IOException(file + " is not a frame ring (or the producer has not finished creating it)");
+            }
+            int version = buffer.getInt(ShmFrameRing.OFF_VERSION);
+            if (version != ShmFrameRing.VERSION) {
+                throw new IOException(file + " has unsupported ring version " + version);
+            }
+            slotCount = buffer.getInt(ShmFrameRing.OFF_SLOT_COUNT);
+            width = buffer.getInt(ShmFrameRing.OFF_WIDTH);
+            height = buffer.getInt(ShmFrameRing.OFF_HEIGHT);
+            stride = buffer.getInt(ShmFrameRing.OFF_STRIDE);
+            int formatCode = buffer.getInt(ShmFrameRing.OFF_FORMAT);
+            slotSize = buffer.getLong(ShmFrameRing.OFF_SLOT_SIZE);
+            dataOffset = buffer.getLong(ShmFrameRing.OFF_DATA_OFFSET);
+            
+            RawFrames.PixelFormat[] formats = RawFrames.PixelFormat.values();
+            if (formatCode < 0 || formatCode >= formats.length) {
+                throw new IOException(file + " has unknown pixel format " + formatCode);
+            }
+            format = formats[formatCode];
+            if (slotCount < 1 || width < 1 || height < 1 || stride < width * format.bytesPerPixel ||
+                    slotSize < ShmFrameRing.SLOT_HEADER_SIZE + (long) stride * height ||
+                    dataOffset + slotSize * slotCount > buffer.capacity()) {
+                throw new IOException(file + " has an inconsistent ring header");
+            }
+            
+            released = (long) ShmFrameRing.LONGS.getAcquire(buffer, ShmFrameRing.OFF_READ_SEQUENCE);
+            nextSequence = released;
+        }
+        
+        long writeSequence() {
+            return (long) ShmFrameRing.LONGS.getAcquire(buffer, ShmFrameRing.OFF_WRITE_SEQUENCE);
+        }
+        
+        int producerState() {
+            return (int) ShmFrameRing.INTS.getAcquire(buffer, ShmFrameRing.OFF_CLOSED);
+        }
+        
+        /**
+         * Return the slots of this frame and all older ones to the producer
+         */
+        synchronized void release(long sequence) {
+            if (sequence < released) {
+                return;
+            }
+            for (long s = released; s <= sequence; s++) {
+                ShmFrameRing.INTS.setOpaque(buffer, slotOffset(s) + ShmFrameRing.SLOT_STATE, ShmFrameRing.STATE_EMPTY);
+            }
+            released = sequence + 1;
+            // Release: our reads of the slots happen before the producer may overwrite them
+            ShmFrameRing.LONGS.setRelease(buffer, ShmFrameRing.OFF_READ_SEQUENCE, released);
+        }
+        
+        int slotOffset(long sequence) {
+            return (int) (dataOffset + (sequence % slotCount) * slotSize);
+        }
+    }
+    
+    public ShmFrameSource(File file) throws IOException {
+        this.file = file;
+        this.ring = new Ring(file);
+    }
+    
+    public int getWidth() {
+        return ring.width;
+    }
+    
+    public int getHeight() {
+        return ring.height;
+    }
+    
+    /**
+     * Frames the producer dropped because this consumer fell behind (since the producer last started)
+     */
+    public long getDroppedFrames() {
+        return (long) ShmFrameRing.LONGS.getAcquire(ring.buffer, ShmFrameRing.OFF_DROPPED);
+    }
+    
+    /**
+     * Wait for the next frame; null once the producer has closed the ring and it is drained
+     */
+    @Override
+    public Frame next() throws IOException {
+        Ring ring = this.ring;
+        long sequence;
+        synchronized (ring) {
+            sequence = ring.nextSequence;
+        }
+        int spins = 0;
+        while (ring.writeSequence() <= sequence) {
+            if (closed) {
+                return null;
+            }
+            int producerState = ring.producerState();
+            if (producerState != ShmFrameRing.PRODUCER_RUNNING) {
+                // Producer finished or restarted; take anything it published first
+                if (ring.writeSequence() > sequence) {
+                    break;
+                }
+                if (producerState != ShmFrameRing.PRODUCER_REPLACED) {
+                    return null;
+                }
+                ring = reopen();
+                if (ring == null) {
+                    return null;
+                }
+                synchronized (ring) {
+                    sequence = ring.nextSequence;
+                }
+                spins = 0;
+                continue;
+            }
+            checkInterrupted(sequence);
+            if (spins < SPIN_TRIES) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        
+        int slot = ring.slotOffset(sequence);
+        long slotSequence = ring.buffer.getLong(slot + ShmFrameRing.SLOT_SEQUENCE);
+        if (slotSequence != sequence) {
+            throw new IOException("Frame ring out of sync: expected frame " + sequence + ", slot holds " + slotSequence);
+        }
+        long timestamp = ring.buffer.getLong(slot + ShmFrameRing.SLOT_TIMESTAMP);
+        ShmFrameRing.INTS.setOpaque(ring.buffer, slot + ShmFrameRing.SLOT_STATE, ShmFrameRing.STATE_READING);
+        synchronized (ring) {
+            ring.nextSequence = sequence + 1;
+        }
+        Ring owner = ring;
+        long frameSequence = sequence;
+        return new Frame(sequence, timestamp,
+            RawFrames.view(ring.buffer, slot + ShmFrameRing.SLOT_HEADER_SIZE, ring.width, ring.height, ring.stride,
+                ring.format),
+            () -> owner.release(frameSequence));
+    }
+    
+    /**
+     * Map the ring the restarted producer renamed over the path; null if this source was closed first
+     */
+    private Ring reopen() throws IOException {
+        while (!closed) {
+            checkInterrupted(-1);
+            try {
+                Ring next = new Ring(file);
+                if (next.producerState() != ShmFrameRing.PRODUCER_REPLACED) {
+                    ring = next;
+                    System.out.println("Frame ring " + file.getName() + " was restarted; following the new ring (" +
+                        next.width + "x" + next.height + ")");
+                    return next;
+                }
+                // Still the old file: the new producer has not renamed its ring into place yet
+            } catch (IOException e) {
+                // Missing or half-written; the producer is still starting
+            }
+            LockSupport.parkNanos(REOPEN_PARK_NANOS);
+        }
+        return null;
+    }
+    
+    private static void checkInterrupted(long sequence) throws InterruptedIOException {
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException(sequence >= 0 ? "Interrupted waiting for frame " + sequence
+                : "Interrupted waiting for the restarted frame ring");
+        }
+    }
+    
+    /**
+     * Stop waiting; a blocked next() returns null
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
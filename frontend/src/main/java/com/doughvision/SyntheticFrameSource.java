@@ -0,0 +1,81 @@
+package com.doughvision;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A simulated camera over a moving belt: one still image scrolled along its
+ * width by a fixed number of pixels per frame (wrapping around), delivered at
+ * a fixed frame rate and forever. Frames are written into a few recycled
+ * buffers, so like a real camera the images are borrowed (see Frame.isBorrowed).
+ */
+public class SyntheticFrameSource implements FrameSource {
+    
+    private static final int BUFFERS = 3;
+    
+    private final int[] template;
+    private final int width;
+    private final int height;
+    private final int stepPixels;
+    private final long frameNanos;
+    private final BlockingQueue<BufferedImage> free = new ArrayBlockingQueue<>(BUFFERS);
+    private long sequence;
+    private long nextDue;
+    private volatile boolean closed;
+    
+    /**
+     * @param belt       the scene to scroll
+     * @param fps        frame rate
+     * @param stepPixels belt movement per frame
+     */
+    public SyntheticFrameSource(BufferedImage belt, double fps, int stepPixels) {
+        this.width = belt.getWidth();
+        this.height = belt.getHeight();
+        this.template = belt.getRGB(0, 0, width, height, null, 0, width);
+        this.stepPixels = stepPixels;
+        this.frameNanos = (long) (1e9 / Math.max(0.1, fps));
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        }
+    }
+    
+    @Override
+    public synchronized Frame next() throws IOException {
+        if (closed) {
+            return null;
+        }
+        BufferedImage image;
+        try {
+            long now = System.nanoTime();
+            if (nextDue == 0) {
+                nextDue = now;
+            }
+            long wait = nextDue - now;
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            nextDue = Math.max(nextDue + frameNanos, System.nanoTime() - frameNanos);
+            image = free.take();  // Waits while the consumer holds every buffer
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for the next frame");
+        }
+        
+        int offset = (int) ((sequence * stepPixels) % width);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            int base = y * width;
+            System.arraycopy(template, base + offset, row, 0, width - offset);
+            System.arraycopy(template, base, row, width - offset, offset);
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return new Frame(sequence++, System.nanoTime(), image, () -> free.offer(image));
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
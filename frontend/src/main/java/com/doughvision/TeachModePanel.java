@@ -17,6 +17,8 @@ public class TeachModePanel extends JPanel {
     
     enum DrawMode { NONE, RECTANGLE, POLYGON }
     
+    private static final String RUN_SEGMENTATION_LABEL = "Run Segmentation";
+    
     private ConfigurationManager configManager;
     private DrawingCanvas canvas;
     private JPanel toolPanel;
@@ -26,6 +28,11 @@ public class TeachModePanel extends JPanel {
     private JButton saveRegionsButton;
     private JButton teachModelButton;
     private JButton runSegmentationButton;
+    private JButton setExclusionButton;
+    private JButton forgetButton;
+    private JButton batchTeachButton;
+    private JButton evaluateButton;
+    private final ImageLoader imageLoader = new ImageLoader();  // Teaching needs full resolution, decoded as TYPE_INT_RGB
     private JToggleButton drawRectButton;
     private JToggleButton drawPolyButton;
     private JButton zoomInButton;
@@ -37,10 +44,13 @@ public class TeachModePanel extends JPanel {
     private DefaultListModel<String> regionListModel;
     private JTextField labelField;
     private String currentLabel = "dough";
+    private File currentImageFile;
     
     // Background task management
     private SwingWorker<Boolean, String> currentTeachTask = null;
     private SwingWorker<BufferedImage, String> currentSegmentTask = null;
+    private CancellationToken currentSegmentToken;
+    private SwingWorker<BatchTeacher.Report, String> currentBatchTask = null;
     
     public TeachModePanel(ConfigurationManager configManager) {
         this.configManager = configManager;
@@ -64,9 +74,25 @@ public class TeachModePanel extends JPanel {
         teachModelButton = new JButton("Teach Model");
         teachModelButton.addActionListener(e -> teachModel());
         
-        runSegmentationButton = new JButton("Run Segmentation");
+        runSegmentationButton = new JButton(RUN_SEGMENTATION_LABEL);
         runSegmentationButton.addActionListener(e -> runSegmentation());
         
+        setExclusionButton = new JButton("Set Exclusion Zones");
+        setExclusionButton.setToolTipText("Use the regions labelled \"exclude\" as areas that are never detected");
+        setExclusionButton.addActionListener(e -> setExclusionZones());
+        
+        forgetButton = new JButton("Forget Taught Data...");
+        forgetButton.setToolTipText("Forget a label, decay older teaching, or start over");
+        forgetButton.addActionListener(e -> forgetTaughtData());
+        
+        batchTeachButton = new JButton("Batch Teach Folder...");
+        batchTeachButton.setToolTipText("Teach from every image in a folder that has a saved regions file");
+        batchTeachButton.addActionListener(e -> batchTeach());
+        
+        evaluateButton = new JButton("Evaluate Rules...");
+        evaluateButton.setToolTipText("Score the rules against a folder of images with masks or regions files");
+        evaluateButton.addActionListener(e -> evaluateRules());
+        
         drawRectButton = new JToggleButton("Rectangle Tool");
         drawRectButton.addActionListener(e -> {
             canvas.setDrawingMode(DrawMode.RECTANGLE);
@@ -132,7 +158,11 @@ public class TeachModePanel extends JPanel {
         
         toolPanel.add(saveRegionsButton);
         toolPanel.add(teachModelButton);
+        toolPanel.add(batchTeachButton);
+        toolPanel.add(evaluateButton);
         toolPanel.add(runSegmentationButton);
+        toolPanel.add(setExclusionButton);
+        toolPanel.add(forgetButton);
         toolPanel.add(clearButton);
         toolPanel.add(Box.createVerticalStrut(20));
         
@@ -168,8 +198,9 @@ public class TeachModePanel extends JPanel {
         
         if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                BufferedImage img = javax.imageio.ImageIO.read(chooser.getSelectedFile());
+                BufferedImage img = imageLoader.read(chooser.getSelectedFile());
                 canvas.setImage(img);
+                currentImageFile = chooser.getSelectedFile();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error loading image: " + ex.getMessage(),
                     "Error", JOptionPane.ERROR_MESSAGE);
@@ -190,11 +221,212 @@ public class TeachModePanel extends JPanel {
                 shapeType, i+1, ar.label, ar.isPolygon ? ar.polygonPoints.size() : 4));
         }
         
+        // Keep the annotations next to the image so the folder can be batch taught later
+        String savedTo = "";
+        if (currentImageFile != null && !regions.isEmpty()) {
+            File sidecar = RegionFiles.sidecarFor(currentImageFile);
+            try {
+                RegionFiles.write(sidecar, regions);
+                savedTo = "\nWritten to " + sidecar.getName();
+            } catch (Exception ex) {
+                System.err.println("Error writing regions file: " + ex.getMessage());
+            }
+        }
+        
         JOptionPane.showMessageDialog(this, 
-            "Saved " + regions.size() + " region(s)", 
+            "Saved " + regions.size() + " region(s)" + savedTo, 
             "Success", JOptionPane.INFORMATION_MESSAGE);
     }
     
+    private void setExclusionZones() {
+        // Teach images are loaded at full resolution, so the regions are already in frame pixels
+        int zones = configManager.setExclusionRegions(canvas.getAnnotatedRegions());
+        
+        JOptionPane.showMessageDialog(this, 
+            zones == 0 ? "Exclusion zones cleared (no regions labelled \"exclude\")" : "Set " + zones + " exclusion zone(s)", 
+            "Exclusion Zones", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    private void forgetTaughtData() {
+        String[] options = {"Forget Label", "Decay Older Data", "Reset Everything", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this,
+            "Taught statistics accumulate across images and sessions.\nWhat would you like to forget?",
+            "Forget Taught Data", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE,
+            null, options, options[3]);
+        
+        if (choice == 0) {
+            List<String> labels = configManager.getTaughtLabels();
+            if (labels.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No taught labels yet.", 
+                    "Forget Label", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            Object label = JOptionPane.showInputDialog(this, "Label to forget:", "Forget Label",
+                JOptionPane.QUESTION_MESSAGE, null, labels.toArray(), labels.get(0));
+            if (label != null) {
+                configManager.forgetLabel(label.toString());
+            }
+        } else if (choice == 1) {
+            String input = JOptionPane.showInputDialog(this,
+                "Keep this fraction of the weight of everything taught so far (0-1):", "0.5");
+            if (input != null) {
+                try {
+                    double factor = Double.parseDouble(input.trim());
+                    if (factor <= 0 || factor > 1) {
+                        throw new NumberFormatException();
+                    }
+                    configManager.decayStatistics(factor);
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Enter a number greater than 0 and at most 1.", 
+                        "Invalid Factor", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        } else if (choice == 2) {
+            int confirm = JOptionPane.showConfirmDialog(this,
+                "Delete all taught statistics and rules?", "Reset Everything", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                configManager.resetStatistics();
+            }
+        }
+    }
+    
+    private void batchTeach() {
+        JFileChooser chooser = new JFileChooser(currentImageFile != null ? currentImageFile.getParentFile() : null);
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("Folder of images with " + RegionFiles.SUFFIX + " files");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File folder = chooser.getSelectedFile();
+        
+        if (currentBatchTask != null && !currentBatchTask.isDone()) {
+            currentBatchTask.cancel(true);
+        }
+        
+        currentBatchTask = new SwingWorker<BatchTeacher.Report, String>() {
+            @Override
+            protected BatchTeacher.Report doInBackground() throws Exception {
+                return new BatchTeacher(configManager).teachFolder(folder);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    
+                    BatchTeacher.Report report = get();
+                    JOptionPane.showMessageDialog(TeachModePanel.this, 
+                        report.toString(), 
+                        "Batch Teach Complete", JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(TeachModePanel.this, 
+                        "Batch teach failed: " + e.getCause().getMessage(), 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    // Cancelled
+                } finally {
+                    batchTeachButton.setEnabled(true);
+                    currentBatchTask = null;
+                }
+            }
+        };
+        
+        batchTeachButton.setEnabled(false);
+        currentBatchTask.execute();
+    }
+    
+    private void evaluateRules() {
+        JFileChooser chooser = new JFileChooser(currentImageFile != null ? currentImageFile.getParentFile() : null);
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("Folder of images with " + RuleEvaluator.MASK_SUFFIX + " or " + RegionFiles.SUFFIX + " files");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File folder = chooser.getSelectedFile();
+        RuleEvaluator evaluator = new RuleEvaluator(configManager);
+        
+        evaluateButton.setEnabled(false);
+        new SwingWorker<RuleEvaluator.Report, Void>() {
+            @Override
+            protected RuleEvaluator.Report doInBackground() throws Exception {
+                evaluator.load(folder);
+                return evaluator.evaluate();
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    RuleEvaluator.Report report = get();
+                    System.out.println(report);
+                    int choice = JOptionPane.showConfirmDialog(TeachModePanel.this,
+                        reportArea(report.toString() + "\n\nSweep H/S/V tolerances to find better rules?"),
+                        "Rule Evaluation", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE);
+                    if (choice == JOptionPane.YES_OPTION) {
+                        sweepTolerances(evaluator);
+                        return;
+                    }
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(TeachModePanel.this, 
+                        "Evaluation failed: " + e.getCause().getMessage(), 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    // Cancelled
+                }
+                evaluateButton.setEnabled(true);
+            }
+        }.execute();
+    }
+    
+    private void sweepTolerances(RuleEvaluator evaluator) {
+        new SwingWorker<List<RuleEvaluator.SweepResult>, Void>() {
+            @Override
+            protected List<RuleEvaluator.SweepResult> doInBackground() throws Exception {
+                return evaluator.sweepTolerances(
+                    new int[]{5, 10, 15, 20, 25, 30},
+                    new int[]{20, 30, 40, 50, 60, 70, 80},
+                    new int[]{20, 30, 40, 50, 60, 70, 80, 90, 100});
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    List<RuleEvaluator.SweepResult> results = get();
+                    int[] current = configManager.getRuleTolerances();
+                    StringBuilder text = new StringBuilder("Best tolerances by detection IoU:\n");
+                    for (int i = 0; i < Math.min(5, results.size()); i++) {
+                        text.append(i + 1).append(". ").append(results.get(i)).append("\n");
+                    }
+                    RuleEvaluator.SweepResult best = results.get(0);
+                    text.append("\nCurrent: H +/-").append(current[0]).append(", S +/-").append(current[1])
+                        .append(", V +/-").append(current[2]).append("\n\nApply the best tolerances and rebuild the rules?");
+                    
+                    int choice = JOptionPane.showConfirmDialog(TeachModePanel.this, reportArea(text.toString()),
+                        "Tolerance Sweep", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE);
+                    if (choice == JOptionPane.YES_OPTION) {
+                        configManager.setRuleTolerances(best.hTol, best.sTol, best.vTol);
+                    }
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(TeachModePanel.this, 
+                        "Sweep failed: " + e.getCause().getMessage(), 
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    // Cancelled
+                } finally {
+                    evaluateButton.setEnabled(true);
+                }
+            }
+        }.execute();
+    }
+    
+    private JScrollPane reportArea(String text) {
+        JTextArea area = new JTextArea(text, 14, 80);
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        return new JScrollPane(area);
+    }
+    
     private void teachModel() {
         List<AnnotatedRegion> regions = canvas.getAnnotatedRegions();
         if (regions.isEmpty()) {
@@ -241,7 +473,7 @@ public class TeachModePanel extends JPanel {
                     if (success) {
                         JOptionPane.showMessageDialog(TeachModePanel.this, 
                             "Model trained successfully with " + regions.size() + " example(s)!\n" +
-                            "Rule-based segmentation model updated.", 
+                            "Merged with previously taught images; rule-based segmentation model updated.", 
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                         
                         // Clear annotations after successful teaching
@@ -286,28 +518,28 @@ public class TeachModePanel extends JPanel {
             return;
         }
         
-        // Cancel any existing task
+        // While running, the button cancels; segmentation stops within a row band
         if (currentSegmentTask != null && !currentSegmentTask.isDone()) {
+            currentSegmentToken.cancel();
             currentSegmentTask.cancel(true);
+            return;
         }
         
         // Create background task for segmentation
+        CancellationToken token = new CancellationToken();
+        currentSegmentToken = token;
         currentSegmentTask = new SwingWorker<BufferedImage, String>() {
             @Override
             protected BufferedImage doInBackground() throws Exception {
                 publish("Running segmentation...");
-                BufferedImage result = configManager.runSegmentation(image);
+                BufferedImage result = configManager.runSegmentation(image, token,
+                    (stage, fraction) -> setProgress(ProgressListener.percent(stage, fraction)));
                 if (result == null) {
                     throw new Exception("No learned model. Please teach the model first.");
                 }
                 return result;
             }
             
-            @Override
-            protected void process(java.util.List<String> chunks) {
-                // Could add progress updates here
-            }
-            
             @Override
             protected void done() {
                 try {
@@ -326,22 +558,23 @@ public class TeachModePanel extends JPanel {
                 } catch (InterruptedException e) {
                     // Cancelled
                 } finally {
-                    currentSegmentTask = null;
+                    // A cancelled task ends before its thread does; leave a newer task's button alone
+                    if (currentSegmentTask == this) {
+                        runSegmentationButton.setText(RUN_SEGMENTATION_LABEL);
+                        currentSegmentTask = null;
+                    }
                 }
             }
         };
         
-        // Disable button and start task
-        runSegmentationButton.setEnabled(false);
-        currentSegmentTask.execute();
-        
-        // Re-enable button after completion
+        // The button shows progress and cancels until the task ends
         currentSegmentTask.addPropertyChangeListener(evt -> {
-            if ("state".equals(evt.getPropertyName()) && 
-                evt.getNewValue() == SwingWorker.StateValue.DONE) {
-                runSegmentationButton.setEnabled(true);
+            if ("progress".equals(evt.getPropertyName()) && currentSegmentTask != null && currentSegmentToken == token) {
+                runSegmentationButton.setText("Cancel Segmentation (" + evt.getNewValue() + "%)");
             }
         });
+        runSegmentationButton.setText("Cancel Segmentation");
+        currentSegmentTask.execute();
     }
     
     /**
@@ -375,6 +608,21 @@ public class TeachModePanel extends JPanel {
             }
             this.boundingBox = new Rectangle(minX, minY, maxX - minX, maxY - minY);
         }
+        
+        // Rasterized once on first use; regions are not edited after creation
+        private transient RegionSpans spans;
+        
+        /**
+         * Scanline spans covered by this region (cached)
+         */
+        public RegionSpans getSpans() {
+            RegionSpans s = spans;
+            if (s == null) {
+                s = RegionSpans.of(this);
+                spans = s;
+            }
+            return s;
+        }
     }
     
     /**
@@ -0,0 +1,490 @@
+package com.doughvision;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Headless inspection of images dropped into a folder (e.g. by the offline QA station).
+ *
+ * A watcher thread follows the input folder with a WatchService. A new or
+ * changed file is only picked up once its size and modification time have been
+ * stable for SETTLE_MILLIS, so half-copied files are never decoded; temporary
+ * and hidden names are ignored until they are renamed. Each settled file is a
+ * JobExecutor job: read and written on a platform I/O thread
+ * while decoding, inspection and overlay encoding use `threads` CPU threads, so
+ * a slow disk or network share does not leave cores idle. At most four files per
+ * CPU thread are in flight, so a burst of files waits on disk instead of in memory.
+ *
+ * For each image, <name>.result.json is written to the output folder, plus
+ * <name>.overlay.png if overlays are on. A file that already has a result newer
+ * than itself is skipped, so a restarted service resumes where it stopped.
+ * With a DetectionLog, every piece is also appended to the binary log.
+ */
+public class WatchFolderService implements AutoCloseable {
+    
+    private static final long SETTLE_MILLIS = 500;
+    private static final long POLL_MILLIS = 100;
+    private static final long REPORT_MILLIS = 10_000;
+    private static final int FILES_PER_THREAD = 4;  // In flight per CPU thread
+    private static final List<String> IMAGE_EXTENSIONS =
+        Arrays.asList("jpg", "jpeg", "png", "bmp", "ppm", "pgm", "raw");
+    
+    public static final String RESULT_SUFFIX = ".result.json";
+    public static final String OVERLAY_SUFFIX = ".overlay.png";
+    
+    /**
+     * A file seen by the watcher that has not been stable long enough yet
+     */
+    private static class Candidate {
+        long size;
+        long modified;
+        long stableSince;
+    }
+    
+    private final ConfigurationManager configManager;
+    private final File inputDir;
+    private final File outputDir;
+    private final boolean writeOverlays;
+    private final DetectionLog detectionLog;  // May be null
+    private final int threads;
+    private final JobExecutor workers;
+    private final Semaphore slots;  // Bounds files queued + being processed
+    private final ThreadLocal<ImageLoader> loaders = ThreadLocal.withInitial(ImageLoader::new);
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    
+    // Watcher thread state
+    private final Map<Path, Candidate> settling = new HashMap<>();
+    private final Deque<File> ready = new ArrayDeque<>();
+    private final Map<String, Long> submitted = new ConcurrentHashMap<>();  // name -> modified time handed to workers
+    private volatile int backlogSettling;
+    private volatile int backlogReady;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong frameIds = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile boolean running;
+    
+    public WatchFolderService(ConfigurationManager configManager, File inputDir, File outputDir,
+                              int threads, boolean writeOverlays, DetectionLog detectionLog) {
+        this.configManager = configManager;
+        this.detectionLog = detectionLog;
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+        this.writeOverlays = writeOverlays;
+        this.threads = Math.max(1, threads);
+        this.slots = new Semaphore(this.threads * FILES_PER_THREAD);
+        this.workers = new JobExecutor("watch", this.threads);
+    }
+    
+    /**
+     * Start watching; files already in the folder are queued first
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        if (!inputDir.isDirectory()) {
+            throw new IOException("Input folder does not exist: " + inputDir);
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create output folder: " + outputDir);
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        inputDir.toPath().register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        running = true;
+        watcher = new Thread(this::watchLoop, "watch-folder");
+        watcher.setDaemon(true);
+        watcher.start();
+        System.out.println("Watching " + inputDir.getAbsolutePath() + " -> " + outputDir.getAbsolutePath() +
+            " (" + threads + " workers" + (workers.usesVirtualThreads() ? ", virtual-thread I/O" : "") +
+            (writeOverlays ? ", overlays" : "") + ")");
+    }
+    
+    private void watchLoop() {
+        scanFolder();
+        long nextReport = System.currentTimeMillis() + REPORT_MILLIS;
+        try {
+            while (running) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events were lost; fall back to a full listing
+                            scanFolder();
+                        } else {
+                            consider(inputDir.toPath().resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        System.err.println("Watch folder is no longer accessible: " + inputDir);
+                        running = false;
+                        break;
+                    }
+                }
+                promoteSettled();
+                dispatch();
+                
+                long now = System.currentTimeMillis();
+                if (now >= nextReport) {
+                    nextReport = now + REPORT_MILLIS;
+                    if (getBacklog() > 0 || inFlight.get() > 0) {
+                        printStatus();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopping
+        }
+    }
+    
+    private void scanFolder() {
+        File[] files = inputDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                consider(file.toPath());
+            }
+        }
+    }
+    
+    /**
+     * Start (or restart) the settle timer for an image file that still needs processing
+     */
+    private void consider(Path path) {
+        File file = path.toFile();
+        String name = file.getName();
+        if (!isImageName(name) || !file.isFile()) {
+            return;
+        }
+        long modified = file.lastModified();
+        Long done = submitted.get(name);
+        if (done != null && done == modified) {
+            return;
+        }
+        if (done == null && resultFile(name).lastModified() >= modified) {
+            // Already processed by an earlier run
+            submitted.put(name, modified);
+            return;
+        }
+        
+        Candidate candidate = settling.get(path);
+        if (candidate == null) {
+            candidate = new Candidate();
+            settling.put(path, candidate);
+        }
+        candidate.size = file.length();
+        candidate.modified = modified;
+        candidate.stableSince = System.currentTimeMillis();
+        backlogSettling = settling.size();
+    }
+    
+    /**
+     * Move files whose size and time have not changed for the settle period to the ready queue
+     */
+    private void promoteSettled() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Candidate>> it = settling.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Candidate> entry = it.next();
+            File file = entry.getKey().toFile();
+            Candidate candidate = entry.getValue();
+            if (!file.isFile()) {
+                it.remove();  // Deleted or renamed away
+                continue;
+            }
+            long size = file.length();
+            long modified = file.lastModified();
+            if (size != candidate.size || modified != candidate.modified) {
+                candidate.size = size;
+                candidate.modified = modified;
+                candidate.stableSince = now;
+            } else if (size > 0 && now - candidate.stableSince >= SETTLE_MILLIS) {
+                it.remove();
+                ready.add(file);
+            }
+        }
+        backlogSettling = settling.size();
+        backlogReady = ready.size();
+    }
+    
+    private void dispatch() {
+        while (!ready.isEmpty() && slots.tryAcquire()) {
+            File file = ready.poll();
+            submitted.put(file.getName(), file.lastModified());
+            workers.execute(() -> {
+                inFlight.incrementAndGet();
+                try {
+                    process(file);
+                } finally {
+                    inFlight.decrementAndGet();
+                    slots.release();
+                }
+            });
+        }
+        backlogReady = ready.size();
+    }
+    
+    /**
+     * Decoded and inspected form of one file, built on a CPU thread
+     */
+    private static class Inspected {
+        BufferedImage image;
+        InspectionResult result;
+        long decodeNanos;
+        byte[] overlayPng;
+    }
+    
+    /**
+     * Read one file, decode, inspect and measure it on the CPU pool, and write its results
+     */
+    private void process(File file) {
+        long start = System.nanoTime();
+        try {
+            // Raw frames are mapped, not read, so there is nothing to prefetch
+            byte[] encoded = RawFrames.isRawFrameFile(file) ? null : Files.readAllBytes(file.toPath());
+            Inspected inspected = workers.onCpu(() -> inspect(file, encoded));
+            InspectionResult result = inspected.result;
+            if (detectionLog != null) {
+                detectionLog.append(System.currentTimeMillis(), frameIds.incrementAndGet(), 0, result);
+            }
+            
+            JsonObject json = toJson(file.getName(), inspected.image.getWidth(), inspected.image.getHeight(), result);
+            json.addProperty("decode_ms", inspected.decodeNanos / 1e6);
+            byte[] content = gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+            if (inspected.overlayPng != null) {
+                AtomicFiles.write(new File(outputDir, file.getName() + OVERLAY_SUFFIX), inspected.overlayPng);
+            }
+            // Result last: its presence marks the file as done
+            AtomicFiles.write(resultFile(file.getName()), content);
+            
+            long elapsed = System.nanoTime() - start;
+            totalNanos.addAndGet(elapsed);
+            processed.incrementAndGet();
+            System.out.println(String.format("%s: %d pieces (%d pass, %d reject) in %.1f ms",
+                file.getName(), result.getPieces().size(), result.getPassCount(), result.getRejectCount(), elapsed / 1e6));
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("Failed to process " + file.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    private Inspected inspect(File file, byte[] encoded) throws IOException {
+        Inspected inspected = new Inspected();
+        InspectionEvents.Stage decodeEvent = InspectionEvents.beginStage(InspectionPipeline.StageName.DECODE);
+        long start = System.nanoTime();
+        inspected.image = encoded != null ? loaders.get().read(encoded, file.getName()) : loaders.get().read(file);
+        inspected.decodeNanos = System.nanoTime() - start;
+        configManager.endDecode(decodeEvent, start, inspected.image);
+        inspected.result = configManager.inspect(inspected.image);
+        if (inspected.result == null) {
+            throw new IOException("Inspection failed (no learned rules?)");
+        }
+        if (writeOverlays) {
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(configManager.renderOverlay(inspected.image, inspected.result), "png", png);
+            inspected.overlayPng = png.toByteArray();
+        }
+        return inspected;
+    }
+    
+    /**
+     * Result record for one image; piece geometry is reported in input-image pixels
+     */
+    static JsonObject toJson(String imageName, int width, int height, InspectionResult result) {
+        JsonObject json = new JsonObject();
+        json.addProperty("image", imageName);
+        json.addProperty("width", width);
+        json.addProperty("height", height);
+        json.addProperty("inspect_ms", result.getElapsedNanos() / 1e6);
+        json.addProperty("quality", result.getQuality().name().toLowerCase(Locale.ROOT));
+        json.addProperty("count", result.getPieces().size());
+        json.addProperty("pass", result.getPassCount());
+        json.addProperty("reject", result.getRejectCount());
+        
+        double toInput = 1.0 / result.getScale();
+        JsonArray pieces = new JsonArray();
+        for (InspectionResult.Piece piece : result.getPieces()) {
+            JsonObject p = new JsonObject();
+            Rectangle b = piece.bounds;
+            p.addProperty("id", piece.id);
+            p.addProperty("x", (int) Math.round(b.x * toInput));
+            p.addProperty("y", (int) Math.round(b.y * toInput));
+            p.addProperty("w", (int) Math.round(b.width * toInput));
+            p.addProperty("h", (int) Math.round(b.height * toInput));
+            p.addProperty("length_mm", Math.round(piece.lengthMm * 10) / 10.0);
+            p.addProperty("width_mm", Math.round(piece.widthMm * 10) / 10.0);
+            p.addProperty("pass", piece.pass);
+            if (!piece.pass) {
+                p.addProperty("failure", piece.failureReason);
+            }
+            pieces.add(p);
+        }
+        json.add("pieces", pieces);
+        return json;
+    }
+    
+    private File resultFile(String imageName) {
+        return new File(outputDir, imageName + RESULT_SUFFIX);
+    }
+    
+    private static boolean isImageName(String name) {
+        if (name.startsWith(".")) {
+            return false;  // Hidden or in-progress copies (e.g. rsync's .name.XXXX)
+        }
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Files seen but not yet processed: settling, waiting for a worker, queued or running
+     */
+    public int getBacklog() {
+        return backlogSettling + backlogReady + (threads * FILES_PER_THREAD - slots.availablePermits());
+    }
+    
+    public long getProcessedCount() {
+        return processed.get();
+    }
+    
+    public long getFailedCount() {
+        return failed.get();
+    }
+    
+    public void printStatus() {
+        long done = processed.get();
+        System.out.println(String.format("Watch status: %d processed, %d failed, backlog %d (%d settling, %d in flight)%s",
+            done, failed.get(), getBacklog(), backlogSettling, inFlight.get(),
+            done > 0 ? String.format(", avg %.1f ms/image", totalNanos.get() / 1e6 / done) : ""));
+    }
+    
+    /**
+     * Stop watching and wait for in-flight files to finish
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (watcher != null) {
+            try {
+                watcher.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            workers.shutdown(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Command line: watch <input-folder> <output-folder> [--threads N] [--overlays] [--log FILE]
+     * Runs until the process is stopped.
+     */
+    static int run(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: watch <input-folder> <output-folder> [--threads N] [--overlays] [--log FILE]");
+            return 2;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean overlays = false;
+        File logFile = null;
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--overlays")) {
+                overlays = true;
+            } else if (args[i].equals("--log") && i + 1 < args.length) {
+                logFile = new File(args[++i]);
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                return 2;
+            }
+        }
+        
+        DetectionLog detectionLog = null;
+        if (logFile != null) {
+            try {
+                detectionLog = DetectionLog.open(logFile);
+            } catch (IOException e) {
+                System.err.println("Cannot open detection log: " + e.getMessage());
+                return 1;
+            }
+        }
+        
+        ConfigurationManager configManager = new ConfigurationManager();
+        configManager.getMetrics().register("watch");
+        WatchFolderService service = new WatchFolderService(
+            configManager, new File(args[1]), new File(args[2]), threads, overlays, detectionLog);
+        try {
+            service.start();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            if (detectionLog != null) {
+                detectionLog.close();
+            }
+            return 1;
+        }
+        DetectionLog log = detectionLog;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.close();
+            if (log != null) {
+                log.close();
+            }
+            service.printStatus();
+            configManager.getMetrics().printStatus();
+        }, "watch-folder-shutdown"));
+        
+        try {
+            while (service.running) {
+                Thread.sleep(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 1;
+    }
+}
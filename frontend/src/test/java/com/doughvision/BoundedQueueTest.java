@@ -0,0 +1,133 @@
+package com.doughvision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class BoundedQueueTest {
+    
+    private static final int PRODUCERS = 3;
+    private static final int CONSUMERS = 2;
+    private static final int ITEMS_PER_PRODUCER = 200_000;
+    
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new BoundedQueue<Integer>(1).capacity());
+        assertEquals(8, new BoundedQueue<Integer>(5).capacity());
+        assertEquals(16, new BoundedQueue<Integer>(16).capacity());
+    }
+    
+    @Test
+    void offerFailsWhenFullAndPollReturnsNullWhenEmpty() {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(4);
+        assertNull(queue.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        
+        // FIFO, and the freed slots are reused on the next lap
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+    
+    @Test
+    void takeTimesOutWhenEmpty() throws InterruptedException {
+        BoundedQueue<Integer> queue = new BoundedQueue<>(4);
+        assertNull(queue.take(TimeUnit.MILLISECONDS.toNanos(5)));
+    }
+    
+    /**
+     * Three producers and two consumers on a small queue: every item arrives exactly once,
+     * and each consumer sees any one producer's items in the order they were put
+     */
+    @Test
+    @Timeout(60)
+    void manyProducersAndConsumersDeliverEveryItemOnceInOrder() throws Exception {
+        BoundedQueue<long[]> queue = new BoundedQueue<>(8);
+        int total = PRODUCERS * ITEMS_PER_PRODUCER;
+        byte[] seen = new byte[total];
+        AtomicInteger received = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ITEMS_PER_PRODUCER; i++) {
+                        queue.put(new long[]{producer, i});
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "producer-" + p));
+        }
+        for (int c = 0; c < CONSUMERS; c++) {
+            threads.add(new Thread(() -> {
+                int[] last = new int[PRODUCERS];
+                Arrays.fill(last, -1);
+                try {
+                    start.await();
+                    while (received.get() < total && failure.get() == null) {
+                        long[] item = queue.take(TimeUnit.MILLISECONDS.toNanos(10));
+                        if (item == null) {
+                            continue;
+                        }
+                        int producer = (int) item[0];
+                        int index = (int) item[1];
+                        if (index <= last[producer]) {
+                            throw new AssertionError("producer " + producer + " item " + index
+                                + " arrived after item " + last[producer]);
+                        }
+                        last[producer] = index;
+                        synchronized (seen) {
+                            seen[producer * ITEMS_PER_PRODUCER + index]++;
+                        }
+                        received.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "consumer-" + c));
+        }
+        
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(total, received.get());
+        for (int i = 0; i < total; i++) {
+            int item = i;
+            assertEquals(1, seen[i], () -> "item " + item + " delivered " + seen[item] + " times");
+        }
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,145 @@
+package com.doughvision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writer, reader and CSV export of the binary detection log
+ */
+class DetectionLogTest {
+    
+    @TempDir
+    Path dir;
+    
+    private static InspectionResult.Piece piece(int id, int x, int y, boolean lengthPass, boolean widthPass) {
+        Point[] corners = {
+            new Point(x, y), new Point(x + 10, y), new Point(x + 10, y + 20), new Point(x, y + 20)
+        };
+        return new InspectionResult.Piece(id, new Rectangle(x, y, 10, 20), new Point(x + 5, y + 10), corners,
+            100.5 + id, 50.25 + id, lengthPass, widthPass);
+    }
+    
+    /**
+     * A result inspected at the given scale (processed size / input size)
+     */
+    private static InspectionResult result(double scale, InspectionResult.Piece... pieces) {
+        return new InspectionResult(null, null, null, scale, QualityController.Level.FULL, Arrays.asList(pieces), 0);
+    }
+    
+    private static void assertRecord(DetectionLog.Record record, long timestamp, long frame, int lane,
+                                     InspectionResult.Piece piece, int reasons, float... corners) {
+        assertNotNull(record);
+        assertEquals(timestamp, record.timestampMillis);
+        assertEquals(frame, record.frameId);
+        assertEquals(lane, record.lane);
+        assertEquals(piece.id, record.pieceId);
+        assertEquals((float) piece.lengthMm, record.lengthMm);
+        assertEquals((float) piece.widthMm, record.widthMm);
+        assertEquals(piece.pass, record.pass);
+        assertEquals(reasons, record.reasonFlags);
+        assertEquals(piece.failureReason, record.getFailureReason());
+        assertArrayEquals(corners, record.corners);
+    }
+    
+    @Test
+    void recordsRoundTripThroughReaderAndCsv() throws Exception {
+        File file = dir.resolve("logs").resolve("detections.dvl").toFile();
+        InspectionResult.Piece good = piece(1, 10, 20, true, true);
+        InspectionResult.Piece narrow = piece(2, 40, 60, true, false);
+        InspectionResult.Piece shortPiece = piece(1, 0, 0, false, true);
+        InspectionResult.Piece both = piece(2, 8, 4, false, false);
+        
+        DetectionLog log = DetectionLog.open(file);
+        assertTrue(log.append(1_700_000_000_000L, 7, 0, result(1.0, good, narrow)));
+        // Lane 2 inspected a region at (100, 200), downsampled to half size
+        assertTrue(log.append(1_700_000_000_500L, 8, 2, result(0.5, shortPiece, both), new Point(100, 200)));
+        assertTrue(log.append(1_700_000_001_000L, 9, 1, result(1.0)));
+        log.close();
+        assertEquals(4, log.getWrittenCount());
+        assertEquals(0, log.getDroppedCount());
+        assertFalse(log.append(1_700_000_002_000L, 10, 0, result(1.0, good)));
+        assertEquals(1, log.getDroppedCount());
+        assertEquals(DetectionLog.HEADER_SIZE + 4 * DetectionLog.RECORD_SIZE, file.length());
+        
+        try (DetectionLogReader reader = new DetectionLogReader(file)) {
+            assertEquals(4, reader.getRecordCount());
+            assertRecord(reader.next(), 1_700_000_000_000L, 7, 0, good, 0,
+                10, 20, 20, 20, 20, 40, 10, 40);
+            assertRecord(reader.next(), 1_700_000_000_000L, 7, 0, narrow, DetectionLog.REASON_WIDTH,
+                40, 60, 50, 60, 50, 80, 40, 80);
+            assertRecord(reader.next(), 1_700_000_000_500L, 8, 2, shortPiece, DetectionLog.REASON_LENGTH,
+                100, 200, 120, 200, 120, 240, 100, 240);
+            assertRecord(reader.next(), 1_700_000_000_500L, 8, 2, both,
+                DetectionLog.REASON_WIDTH | DetectionLog.REASON_LENGTH,
+                116, 208, 136, 208, 136, 248, 116, 248);
+            assertNull(reader.next());
+        }
+        
+        File csv = dir.resolve("detections.csv").toFile();
+        assertEquals(4, DetectionLogReader.exportCsv(file, csv));
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertEquals("timestamp,frame,lane,piece,length_mm,width_mm,pass,failure,x1,y1,x2,y2,x3,y3,x4,y4", lines.get(0));
+        assertEquals("2023-11-14T22:13:20Z,7,0,1,101.5,51.3,PASS,,10,20,20,20,20,40,10,40", lines.get(1));
+        assertEquals("2023-11-14T22:13:20Z,7,0,2,102.5,52.3,FAIL,Width,40,60,50,60,50,80,40,80", lines.get(2));
+        assertEquals("2023-11-14T22:13:20.500Z,8,2,1,101.5,51.3,FAIL,Height,100,200,120,200,120,240,100,240",
+            lines.get(3));
+        assertEquals("2023-11-14T22:13:20.500Z,8,2,2,102.5,52.3,FAIL,Width & Height,116,208,136,208,136,248,116,248",
+            lines.get(4));
+    }
+    
+    @Test
+    void aTornLastRecordIsCutBackOnReopen() throws Exception {
+        File file = dir.resolve("detections.dvl").toFile();
+        InspectionResult.Piece first = piece(1, 10, 20, true, true);
+        InspectionResult.Piece second = piece(2, 40, 60, false, true);
+        DetectionLog log = DetectionLog.open(file);
+        assertTrue(log.append(1000, 1, 0, result(1.0, first, second)));
+        log.close();
+        
+        // A crash half way through the second record
+        long torn = DetectionLog.HEADER_SIZE + DetectionLog.RECORD_SIZE + DetectionLog.RECORD_SIZE / 2;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(torn);
+        }
+        
+        // Readers ignore the partial record even before the log is reopened
+        try (DetectionLogReader reader = new DetectionLogReader(file)) {
+            assertEquals(1, reader.getRecordCount());
+            assertRecord(reader.next(), 1000, 1, 0, first, 0, 10, 20, 20, 20, 20, 40, 10, 40);
+            assertNull(reader.next());
+        }
+        
+        // Reopening drops the partial bytes, so new records stay aligned
+        InspectionResult.Piece third = piece(1, 0, 0, true, false);
+        log = DetectionLog.open(file);
+        assertEquals(DetectionLog.HEADER_SIZE + DetectionLog.RECORD_SIZE, file.length());
+        assertTrue(log.append(2000, 2, 1, result(1.0, third)));
+        log.close();
+        assertEquals(DetectionLog.HEADER_SIZE + 2 * DetectionLog.RECORD_SIZE, file.length());
+        
+        try (DetectionLogReader reader = new DetectionLogReader(file)) {
+            assertEquals(2, reader.getRecordCount());
+            assertRecord(reader.next(), 1000, 1, 0, first, 0, 10, 20, 20, 20, 20, 40, 10, 40);
+            assertRecord(reader.next(), 2000, 2, 1, third, DetectionLog.REASON_WIDTH, 0, 0, 10, 0, 10, 20, 0, 20);
+            assertNull(reader.next());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.doughvision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compiled model files round-trip and reject corrupt payloads
+ */
+class ModelFileTest {
+    
+    private static final int HASH_OFFSET = 8;
+    private static final int PAYLOAD_OFFSET = HASH_OFFSET + 2 * 32;
+    
+    @TempDir
+    Path dir;
+    
+    private static Map<String, ConfigurationManager.LabelRule> rules() {
+        Map<String, ConfigurationManager.LabelRule> rules = new LinkedHashMap<>();
+        rules.put("dough", new ConfigurationManager.LabelRule("dough", 10, 40, 120, 30, 160, 255));
+        rules.put("belt", new ConfigurationManager.LabelRule("belt", 90, 0, 0, 130, 80, 90));
+        return rules;
+    }
+    
+    private File writeModel(byte[] jsonHash) throws IOException {
+        Map<String, ConfigurationManager.LabelRule> rules = rules();
+        CompiledClassifier classifier = CompiledClassifier.compile(rules, Collections.singleton("belt"));
+        File file = dir.resolve(ModelFile.FILE_NAME).toFile();
+        ModelFile.write(file, jsonHash, rules, classifier);
+        return file;
+    }
+    
+    @Test
+    void aWrittenModelReadsBack() throws Exception {
+        byte[] jsonHash = ModelFile.sha256("{}".getBytes(StandardCharsets.UTF_8));
+        ModelFile model = ModelFile.read(writeModel(jsonHash));
+        
+        assertTrue(model.isBuiltFrom(jsonHash));
+        assertEquals(2, model.rules.size());
+        assertEquals(Collections.singletonList("belt"), model.ignoreLabels);
+        assertEquals(2, model.classifier.getLabelCount());
+        CompiledClassifier expected = CompiledClassifier.compile(rules(), Collections.singleton("belt"));
+        assertArrayEquals(expected.getHueTable(), model.classifier.getHueTable());
+        assertArrayEquals(expected.getSaturationTable(), model.classifier.getSaturationTable());
+        assertArrayEquals(expected.getValueTable(), model.classifier.getValueTable());
+        assertArrayEquals(expected.getIgnoreBits(), model.classifier.getIgnoreBits());
+        assertArrayEquals(expected.getDetectBits(), model.classifier.getDetectBits());
+    }
+    
+    @Test
+    void aFlippedPayloadByteIsRejected() throws Exception {
+        File file = writeModel(null);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int offset : new int[] {PAYLOAD_OFFSET + 7, bytes.length - 1}) {
+            byte[] corrupt = bytes.clone();
+            corrupt[offset] ^= 0x10;
+            Files.write(file.toPath(), corrupt);
+            IOException e = assertThrows(IOException.class, () -> ModelFile.read(file), "byte " + offset);
+            assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+        }
+        
+        // The recorded hash itself is covered too
+        byte[] corrupt = bytes.clone();
+        corrupt[PAYLOAD_OFFSET - 1] ^= 0x01;
+        Files.write(file.toPath(), corrupt);
+        assertThrows(IOException.class, () -> ModelFile.read(file));
+        
+        Files.write(file.toPath(), bytes);
+        ModelFile.read(file);
+    }
+    
+    @Test
+    void aTruncatedModelIsRejected() throws Exception {
+        File file = writeModel(null);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> ModelFile.read(file));
+    }
+}
@@ -0,0 +1,171 @@
+package com.doughvision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The Java producer against the consumer, through a real mapped file
+ */
+class ShmFrameRingTest {
+    
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    
+    @TempDir
+    Path dir;
+    
+    /**
+     * An RGB24 frame whose pixel (x, y) is (frame, x, y)
+     */
+    private static byte[] pixels(int width, int height, int frame) {
+        byte[] pixels = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = (y * width + x) * 3;
+                pixels[p] = (byte) frame;
+                pixels[p + 1] = (byte) x;
+                pixels[p + 2] = (byte) y;
+            }
+        }
+        return pixels;
+    }
+    
+    private static void assertPixels(BufferedImage image, int frame) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int expected = ((frame & 0xFF) << 16) | (x << 8) | y;
+                assertEquals(expected, image.getRGB(x, y) & 0xFFFFFF, "frame " + frame + " pixel " + x + "," + y);
+            }
+        }
+    }
+    
+    private static Frame next(ShmFrameSource source) {
+        return assertTimeoutPreemptively(TIMEOUT, source::next);
+    }
+    
+    @Test
+    void framesRoundTripWithPixelsSequenceAndTimestamp() throws Exception {
+        File file = dir.resolve("ring").toFile();
+        try (ShmFrameRing ring = ShmFrameRing.create(file, 4, WIDTH, HEIGHT, RawFrames.PixelFormat.RGB24)) {
+            ShmFrameSource source = new ShmFrameSource(file);
+            assertEquals(WIDTH, source.getWidth());
+            assertEquals(HEIGHT, source.getHeight());
+            
+            assertTrue(ring.offer(pixels(WIDTH, HEIGHT, 7), 123_456_789L));
+            Frame frame = next(source);
+            assertEquals(0, frame.getSequence());
+            assertEquals(123_456_789L, frame.getTimestampNanos());
+            assertTrue(frame.isBorrowed());
+            assertEquals(WIDTH, frame.getImage().getWidth());
+            assertEquals(HEIGHT, frame.getImage().getHeight());
+            assertPixels(frame.getImage(), 7);
+            frame.release();
+            
+            // A closed producer ends the stream once it is drained
+            assertTrue(ring.offer(pixels(WIDTH, HEIGHT, 8), 2));
+            ring.close();
+            Frame last = next(source);
+            assertEquals(1, last.getSequence());
+            assertPixels(last.getImage(), 8);
+            last.release();
+            assertNull(next(source));
+        }
+    }
+    
+    @Test
+    void sequencesContinuePastTheSlotCount() throws Exception {
+        File file = dir.resolve("ring").toFile();
+        try (ShmFrameRing ring = ShmFrameRing.create(file, 3, WIDTH, HEIGHT, RawFrames.PixelFormat.RGB24)) {
+            ShmFrameSource source = new ShmFrameSource(file);
+            for (int i = 0; i < 10; i++) {
+                assertTrue(ring.offer(pixels(WIDTH, HEIGHT, i), i * 1000L), "frame " + i);
+                Frame frame = next(source);
+                assertEquals(i, frame.getSequence());
+                assertEquals(i * 1000L, frame.getTimestampNanos());
+                assertPixels(frame.getImage(), i);
+                frame.release();
+            }
+            assertEquals(0, ring.getDroppedFrames());
+        }
+    }
+    
+    @Test
+    void aFullRingDropsAndCountsFrames() throws Exception {
+        File file = dir.resolve("ring").toFile();
+        try (ShmFrameRing ring = ShmFrameRing.create(file, 4, WIDTH, HEIGHT, RawFrames.PixelFormat.RGB24)) {
+            ShmFrameSource source = new ShmFrameSource(file);
+            int accepted = 0;
+            for (int i = 0; i < 10; i++) {
+                if (ring.offer(pixels(WIDTH, HEIGHT, i), i)) {
+                    accepted++;
+                }
+            }
+            assertEquals(4, accepted);
+            assertEquals(6, ring.getDroppedFrames());
+            assertEquals(6, source.getDroppedFrames());
+            
+            // The consumer gets the frames that fitted, and a released slot takes a new frame
+            for (int i = 0; i < 4; i++) {
+                Frame frame = next(source);
+                assertEquals(i, frame.getSequence());
+                assertPixels(frame.getImage(), i);
+                frame.release();
+            }
+            assertTrue(ring.offer(pixels(WIDTH, HEIGHT, 20), 20));
+            Frame frame = next(source);
+            assertEquals(4, frame.getSequence());
+            assertPixels(frame.getImage(), 20);
+            frame.release();
+        }
+    }
+    
+    @Test
+    void theConsumerFollowsAProducerThatReplacesALiveRing() throws Exception {
+        File file = dir.resolve("ring").toFile();
+        ShmFrameRing first = ShmFrameRing.create(file, 4, WIDTH, HEIGHT, RawFrames.PixelFormat.RGB24);
+        ShmFrameSource source = new ShmFrameSource(file);
+        assertTrue(first.offer(pixels(WIDTH, HEIGHT, 1), 1));
+        assertTrue(first.offer(pixels(WIDTH, HEIGHT, 2), 2));
+        Frame held = next(source);
+        assertPixels(held.getImage(), 1);
+        
+        // A restarted producer with a different geometry takes over the path
+        int width = WIDTH * 2;
+        int height = HEIGHT + 2;
+        try (ShmFrameRing second = ShmFrameRing.create(file, 3, width, height, RawFrames.PixelFormat.RGB24)) {
+            assertTrue(second.offer(pixels(width, height, 9), 9));
+            
+            // The old ring is drained first, then the new one is mapped from sequence 0
+            Frame old = next(source);
+            assertEquals(1, old.getSequence());
+            assertPixels(old.getImage(), 2);
+            old.release();
+            Frame frame = next(source);
+            assertNotNull(frame);
+            assertEquals(0, frame.getSequence());
+            assertEquals(width, frame.getImage().getWidth());
+            assertEquals(height, frame.getImage().getHeight());
+            assertPixels(frame.getImage(), 9);
+            frame.release();
+            
+            // A frame held across the restart stays readable: the old file was never truncated
+            assertPixels(held.getImage(), 1);
+            held.release();
+            assertFalse(new File(file.getPath() + ".new").exists());
+        }
+        first.close();
+    }
+}